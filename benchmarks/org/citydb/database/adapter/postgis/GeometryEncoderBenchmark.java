@@ -0,0 +1,122 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter.postgis;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.citydb.api.geometry.GeometryObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the EWKT and EWKB encoding of geometries bound to PostGIS statements. 
+ * The EWKT path includes parsing the string into a PGgeometry on the client side, 
+ * just like the importer does when EWKT geometries are enabled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryEncoderBenchmark {
+
+	@Param({"5", "50", "500"})
+	private int vertices;
+
+	private GeometryConverterAdapter ewktConverter;
+	private GeometryConverterAdapter ewkbConverter;
+	private GeometryObject polygon;
+	private GeometryObject solid;
+
+	@Setup
+	public void setup() {
+		ewktConverter = new GeometryConverterAdapter();
+		ewktConverter.setUseEWKT(true);
+		ewkbConverter = new GeometryConverterAdapter();
+
+		// a polygon with one hole and a box-shaped solid of six such polygons
+		polygon = GeometryObject.createPolygon(new double[][]{
+				ring(vertices, 0, 0, 0, 100),
+				ring(vertices, 0, 0, 0, 50)}, 3, 25833);
+
+		double[][] faces = new double[6][];
+		int[] exteriorRings = new int[6];
+		for (int i = 0; i < 6; i++) {
+			faces[i] = ring(vertices, i * 200, 0, i, 100);
+			exteriorRings[i] = i;
+		}
+
+		solid = GeometryObject.createSolid(faces, exteriorRings, 25833);
+	}
+
+	@Benchmark
+	public Object polygonEWKT() throws SQLException {
+		return ewktConverter.getDatabaseObject(polygon, null);
+	}
+
+	@Benchmark
+	public Object polygonEWKB() throws SQLException {
+		return ewkbConverter.getDatabaseObject(polygon, null);
+	}
+
+	@Benchmark
+	public Object solidEWKT() throws SQLException {
+		return ewktConverter.getDatabaseObject(solid, null);
+	}
+
+	@Benchmark
+	public Object solidEWKB() throws SQLException {
+		return ewkbConverter.getDatabaseObject(solid, null);
+	}
+
+	private double[] ring(int vertices, double x, double y, double z, double radius) {
+		// closed ring with coordinates in the range of a projected reference system
+		double[] ring = new double[(vertices + 1) * 3];
+		for (int i = 0; i < vertices; i++) {
+			double angle = 2 * Math.PI * i / vertices;
+			ring[i * 3] = 367186.40808105 + x + radius * Math.cos(angle);
+			ring[i * 3 + 1] = 5808056.27807617 + y + radius * Math.sin(angle);
+			ring[i * 3 + 2] = 41.98 + z + i * 0.01;
+		}
+
+		System.arraycopy(ring, 0, ring, vertices * 3, 3);
+		return ring;
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.citydb.config.Config;
+import org.citygml4j.geometry.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the in-place affine transformation of primitive coordinate arrays with
+ * the former per-point transformation of boxed coordinate lists, which created a
+ * citygml4j matrix for every point. The matrix rotates about the z axis and 
+ * translates, so repeated transformations keep the coordinates bounded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AffineTransformerBenchmark {
+
+	@Param({"5", "50", "5000"})
+	private int points;
+
+	private AffineTransformer transformer;
+	private Matrix matrix3x4;
+	private double[] coordinates;
+	private List<Double> coordinateList;
+
+	@Setup
+	public void setup() throws Exception {
+		double cos = Math.cos(Math.toRadians(30)), sin = Math.sin(Math.toRadians(30));
+		Config config = new Config();
+		config.getProject().getImporter().getAffineTransformation().getTransformationMatrix().setValue(Arrays.asList(
+				cos, -sin, 0.0, 100.0, 
+				sin, cos, 0.0, -50.0, 
+				0.0, 0.0, 1.0, 10.0));
+
+		transformer = new AffineTransformer(config);
+		matrix3x4 = transformer.toMatrix4x4(config.getProject().getImporter().getAffineTransformation().getTransformationMatrix()).getMatrix(3, 4);
+
+		coordinates = new double[points * 3];
+		coordinateList = new ArrayList<Double>(points * 3);
+		for (int i = 0; i < coordinates.length; i++) {
+			coordinates[i] = i % 3 == 2 ? 40 + i * 0.01 : 1000 + i;
+			coordinateList.add(coordinates[i]);
+		}
+	}
+
+	@Benchmark
+	public double[] primitiveInPlace() {
+		transformer.transformCoordinates(coordinates);
+		return coordinates;
+	}
+
+	@Benchmark
+	public List<Double> boxedPerPoint() {
+		for (int i = 0; i < coordinateList.size(); i += 3) {
+			double[] vals = new double[]{ coordinateList.get(i), coordinateList.get(i+1), coordinateList.get(i+2), 1};
+			Matrix v = new Matrix(vals, 4);
+
+			v = matrix3x4.times(v);
+			coordinateList.set(i, v.get(0, 0));
+			coordinateList.set(i+1, v.get(1, 0));
+			coordinateList.set(i+2, v.get(2, 0));
+		}
+
+		return coordinateList;
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.citydb.api.geometry.GeometryObject;
+import org.citygml4j.model.gml.geometry.primitives.DirectPositionList;
+import org.citygml4j.model.gml.geometry.primitives.LinearRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converts the linear rings of a polygon with holes into a geometry object, once 
+ * along the primitive coordinate path of the importer and once along the former 
+ * path that validated, reversed and copied boxed coordinate lists. Run it with the
+ * GC profiler (-prof gc) to compare the allocation rate per operation 
+ * (gc.alloc.rate.norm) of both paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingPipelineBenchmark {
+
+	@Param({"5", "50", "500"})
+	private int vertices;
+
+	@Param({"0", "4"})
+	private int holes;
+
+	private final RingValidator ringValidator = new RingValidator();
+	private List<LinearRing> rings;
+
+	@Setup
+	public void setup() {
+		rings = new ArrayList<LinearRing>();
+		rings.add(createRing(vertices, 0, 0, 100));
+		for (int i = 0; i < holes; i++)
+			rings.add(createRing(vertices, (i - holes / 2.0) * 20, 0, 5));
+	}
+
+	@Benchmark
+	public GeometryObject primitive() {
+		double[][] coordinates = new double[rings.size()][];
+		for (int i = 0; i < coordinates.length; i++)
+			coordinates[i] = ringValidator.getCoordinates(rings.get(i), "benchmark", true);
+
+		return GeometryObject.createPolygon(coordinates, 3, 25833);
+	}
+
+	@Benchmark
+	public GeometryObject boxed() {
+		List<List<Double>> pointList = new ArrayList<List<Double>>(rings.size());
+		for (LinearRing ring : rings) {
+			// former validation read the ring once for checking closedness and size
+			List<Double> coords = ring.toList3d();
+			Double x = coords.get(0);
+			Double y = coords.get(1);
+			Double z = coords.get(2);
+			int nrOfPoints = coords.size();
+			if (!x.equals(coords.get(nrOfPoints - 3)) ||
+					!y.equals(coords.get(nrOfPoints - 2)) ||
+					!z.equals(coords.get(nrOfPoints - 1)) ||
+					nrOfPoints / 3 < 4)
+				throw new IllegalStateException("Invalid benchmark ring.");
+
+			pointList.add(ring.toList3d(true));
+		}
+
+		double[][] coordinates = new double[pointList.size()][];
+		int i = 0;
+		for (List<Double> coordsList : pointList) {
+			double[] coords = new double[coordsList.size()];
+
+			int j = 0;
+			for (Double coord : coordsList) {
+				coords[j] = coord.doubleValue();
+				j++;
+			}
+
+			coordinates[i] = coords;
+			i++;
+		}
+
+		return GeometryObject.createPolygon(coordinates, 3, 25833);
+	}
+
+	private LinearRing createRing(int vertices, double x, double y, double radius) {
+		List<Double> values = new ArrayList<Double>((vertices + 1) * 3);
+		for (int i = 0; i <= vertices; i++) {
+			double angle = 2 * Math.PI * (i % vertices) / vertices;
+			values.add(367186.40808105 + x + radius * Math.cos(angle));
+			values.add(5808056.27807617 + y + radius * Math.sin(angle));
+			values.add(41.98);
+		}
+
+		DirectPositionList posList = new DirectPositionList();
+		posList.setSrsDimension(3);
+		posList.setValue(values);
+
+		LinearRing ring = new LinearRing();
+		ring.setPosList(posList);
+		return ring;
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Triangulates all polygons of a sample dataset with the ear clipping and the 
+ * Java3D triangulator. The polygons are read from the gml:posList elements of a 
+ * CityGML file, which may also be contained in a zip archive. Before measuring, 
+ * the results are checked against the expected number of triangles and against
+ * the area of the polygon, and the number of polygons that would fall back to 
+ * Java3D is reported. The area tolerance allows for slightly non-planar rings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangulatorBenchmark {
+	private static final String GML = "http://www.opengis.net/gml";
+
+	@Param({"samples/Potsdam/CityGML/Potsdam_LoD1/Potsdam_LoD1.gml", "samples/TUM Munich/TUM Munich.zip"})
+	private String sample;
+
+	private final Triangulator earClipping = new EarClippingTriangulator();
+	private final Triangulator java3d = new Java3DTriangulator();
+	private List<double[]> coordinates;
+	private List<int[]> ringVertexCounts;
+
+	@Setup
+	public void setup() throws IOException, XMLStreamException {
+		coordinates = new ArrayList<double[]>();
+		ringVertexCounts = new ArrayList<int[]>();
+
+		File file = new File(System.getProperty("benchmark.basedir", "."), sample);
+		InputStream stream = new FileInputStream(file);
+		try {
+			if (file.getName().endsWith(".zip")) {
+				ZipInputStream zip = new ZipInputStream(stream);
+				stream = zip;
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null) {
+					if (entry.getName().endsWith(".gml"))
+						readPolygons(zip);
+				}
+			} else
+				readPolygons(stream);
+		} finally {
+			stream.close();
+		}
+
+		if (coordinates.isEmpty())
+			throw new IOException("No polygons found in sample '" + file + "'.");
+
+		checkResults();
+	}
+
+	@Benchmark
+	public void earClipping(Blackhole blackhole) {
+		for (int i = 0; i < coordinates.size(); i++)
+			blackhole.consume(earClipping.triangulate(coordinates.get(i), ringVertexCounts.get(i)));
+	}
+
+	@Benchmark
+	public void java3d(Blackhole blackhole) {
+		for (int i = 0; i < coordinates.size(); i++)
+			blackhole.consume(java3d.triangulate(coordinates.get(i), ringVertexCounts.get(i)));
+	}
+
+	private void checkResults() {
+		int fallbacks = 0;
+		int wrongTriangleCount = 0;
+		int areaMismatch = 0;
+		int java3dAreaMismatch = 0;
+
+		for (int i = 0; i < coordinates.size(); i++) {
+			double[] polygon = coordinates.get(i);
+			int[] counts = ringVertexCounts.get(i);
+
+			double area = getArea(polygon, 0, counts[0]);
+			for (int j = 1, offset = counts[0]; j < counts.length; offset += counts[j++])
+				area -= getArea(polygon, offset, counts[j]);
+
+			double tolerance = 1e-3 * Math.max(1, area);
+			TriangulatedSurface reference = java3d.triangulate(polygon, counts);
+			if (reference != null && Math.abs(getArea(polygon, reference.getIndexes()) - area) > tolerance)
+				java3dAreaMismatch++;
+
+			TriangulatedSurface result = earClipping.triangulate(polygon, counts);
+			if (result == null) {
+				fallbacks++;
+				continue;
+			}
+
+			// a simple polygon with n vertices and h holes has n + 2h - 2 triangles
+			int vertices = 0;
+			for (int count : counts)
+				vertices += count;
+
+			if (result.getNumTriangles() != vertices + 2 * (counts.length - 1) - 2)
+				wrongTriangleCount++;
+
+			if (Math.abs(getArea(polygon, result.getIndexes()) - area) > tolerance)
+				areaMismatch++;
+		}
+
+		System.out.println();
+		System.out.println(sample + ": " + coordinates.size() + " polygons, " 
+				+ fallbacks + " Java3D fallbacks, " 
+				+ wrongTriangleCount + " unexpected triangle counts, " 
+				+ areaMismatch + " area mismatches (Java3D: " + java3dAreaMismatch + ")");
+	}
+
+	private double getArea(double[] coordinates, int offset, int vertices) {
+		// area of a ring based on its normal computed with Newell's method
+		double nx = 0, ny = 0, nz = 0;
+		for (int i = 0; i < vertices; i++) {
+			int a = (offset + i) * 3, b = (offset + (i + 1) % vertices) * 3;
+			nx += (coordinates[a + 1] - coordinates[b + 1]) * (coordinates[a + 2] + coordinates[b + 2]);
+			ny += (coordinates[a + 2] - coordinates[b + 2]) * (coordinates[a] + coordinates[b]);
+			nz += (coordinates[a] - coordinates[b]) * (coordinates[a + 1] + coordinates[b + 1]);
+		}
+
+		return Math.sqrt(nx * nx + ny * ny + nz * nz) / 2;
+	}
+
+	private double getArea(double[] coordinates, int[] indexes) {
+		double area = 0;
+		for (int i = 0; i < indexes.length; i += 3) {
+			int a = indexes[i] * 3, b = indexes[i + 1] * 3, c = indexes[i + 2] * 3;
+			double ux = coordinates[b] - coordinates[a], uy = coordinates[b + 1] - coordinates[a + 1], uz = coordinates[b + 2] - coordinates[a + 2];
+			double vx = coordinates[c] - coordinates[a], vy = coordinates[c + 1] - coordinates[a + 1], vz = coordinates[c + 2] - coordinates[a + 2];
+			double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+			area += Math.sqrt(nx * nx + ny * ny + nz * nz) / 2;
+		}
+
+		return area;
+	}
+
+	private void readPolygons(InputStream stream) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		XMLStreamReader reader = factory.createXMLStreamReader(new NonClosingInputStream(stream));
+
+		List<double[]> rings = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT && GML.equals(reader.getNamespaceURI())) {
+				if (reader.getLocalName().equals("Polygon"))
+					rings = new ArrayList<double[]>();
+				else if (rings != null && reader.getLocalName().equals("posList")) {
+					String dimension = reader.getAttributeValue(null, "srsDimension");
+					double[] ring = parseRing(reader.getElementText(), dimension != null ? Integer.parseInt(dimension) : 3);
+					if (ring != null)
+						rings.add(ring);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT && rings != null
+					&& GML.equals(reader.getNamespaceURI()) && reader.getLocalName().equals("Polygon")) {
+				addPolygon(rings);
+				rings = null;
+			}
+		}
+
+		reader.close();
+	}
+
+	private double[] parseRing(String posList, int dimension) {
+		String[] values = posList.trim().split("\\s+");
+		int points = values.length / dimension - 1; // the closing point is skipped
+		if (points < 3)
+			return null;
+
+		double[] ring = new double[points * 3];
+		for (int i = 0; i < points; i++) {
+			ring[i * 3] = Double.parseDouble(values[i * dimension]);
+			ring[i * 3 + 1] = Double.parseDouble(values[i * dimension + 1]);
+			ring[i * 3 + 2] = dimension > 2 ? Double.parseDouble(values[i * dimension + 2]) : 0;
+		}
+
+		return ring;
+	}
+
+	private void addPolygon(List<double[]> rings) {
+		if (rings.isEmpty())
+			return;
+
+		int size = 0;
+		int[] counts = new int[rings.size()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = rings.get(i).length / 3;
+			size += rings.get(i).length;
+		}
+
+		double[] polygon = new double[size];
+		int offset = 0;
+		for (double[] ring : rings) {
+			System.arraycopy(ring, 0, polygon, offset, ring.length);
+			offset += ring.length;
+		}
+
+		coordinates.add(polygon);
+		ringVertexCounts.add(counts);
+	}
+
+	private static final class NonClosingInputStream extends InputStream {
+		// keeps the zip stream open for the next entry
+		private final InputStream stream;
+
+		NonClosingInputStream(InputStream stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return stream.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return stream.read(b, off, len);
+		}
+
+		@Override
+		public void close() {
+			//
+		}
+	}
+
+}
@@ -410,6 +410,7 @@ public class ImpExp {
 		// init logging environment
 		Logging logging = config.getProject().getGlobal().getLogging();
 		LOG.setDefaultConsoleLogLevel(logging.getConsole().getLogLevel());
+		LOG.setAsynchronous(logging.isAsynchronous());
 		if (logging.getFile().isSet()) {
 			LOG.setDefaultFileLogLevel(logging.getFile().getLogLevel());
 
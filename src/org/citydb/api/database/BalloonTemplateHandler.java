@@ -28,7 +28,9 @@
 package org.citydb.api.database;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 public interface BalloonTemplateHandler {
@@ -44,4 +46,8 @@ public interface BalloonTemplateHandler {
 	public String getBalloonContent(String temporaryTemplate, long id, int lod, Connection connection) throws Exception;
 	public Set<String> getSupportedAggregationFunctions();
 	public HashMap<String, Set<String>> getSupportedTablesAndColumns();		
+
+	// optional, the no-op defaults keep existing implementations compatible
+	public default void prefetch(List<Long> ids, Connection connection) throws SQLException {}
+	public default void close() {}
 }
@@ -30,6 +30,10 @@ package org.citydb.api.geometry;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * The coordinate arrays passed to the factory methods are not copied. The geometry
+ * object takes ownership of them, so callers must not modify them afterwards.
+ */
 public class GeometryObject {
 
 	public static GeometryObject createEnvelope(double[] coordinates, int dimension, int srid) {
@@ -121,6 +121,8 @@ public class DBConnection implements DatabaseConnectionDetails, Comparable<DBCon
 	private Boolean useEquals;
 	@XmlAttribute
 	private Integer suspectTimeout;
+	@XmlAttribute
+	private Boolean useEWKTGeometries;
 	
 	@XmlTransient
 	private String internalPassword;
@@ -430,6 +432,14 @@ public class DBConnection implements DatabaseConnectionDetails, Comparable<DBCon
 	public void setSuspectTimeout(Integer suspectTimeout) {
 		this.suspectTimeout = suspectTimeout;
 	}
+
+	public Boolean getUseEWKTGeometries() {
+		return useEWKTGeometries;
+	}
+
+	public void setUseEWKTGeometries(Boolean useEWKTGeometries) {
+		this.useEWKTGeometries = useEWKTGeometries;
+	}
 	
 	@Override
 	public String toString() {
@@ -0,0 +1,67 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.config.project.exporter;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+@XmlType(name="ExportFeatureQueryType", propOrder={
+		"fetchSize",
+		"estimateCount"
+})
+public class ExportFeatureQuery {
+	@XmlElement(defaultValue="1000")
+	private Integer fetchSize = 1000;
+	@XmlElement(defaultValue="false")
+	private Boolean estimateCount = false;
+
+	public Integer getFetchSize() {
+		return fetchSize;
+	}
+
+	public void setFetchSize(Integer fetchSize) {
+		if (fetchSize != null && fetchSize > 0)
+			this.fetchSize = fetchSize;
+	}
+
+	public boolean isSetEstimateCount() {
+		if (estimateCount != null)
+			return estimateCount.booleanValue();
+
+		return false;
+	}
+
+	public Boolean getEstimateCount() {
+		return estimateCount;
+	}
+
+	public void setEstimateCount(Boolean estimateCount) {
+		this.estimateCount = estimateCount;
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.config.project.exporter;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+@XmlType(name="ExportWriterType", propOrder={
+		"usePreEncoding",
+		"bufferPoolSize",
+		"compressOutput"
+})
+public class ExportWriter {
+	@XmlElement(defaultValue="false")
+	private Boolean usePreEncoding = false;
+	@XmlElement(defaultValue="100")
+	private Integer bufferPoolSize = 100;
+	@XmlElement(defaultValue="false")
+	private Boolean compressOutput = false;
+
+	public boolean isSetUsePreEncoding() {
+		if (usePreEncoding != null)
+			return usePreEncoding.booleanValue();
+
+		return false;
+	}
+
+	public Boolean getUsePreEncoding() {
+		return usePreEncoding;
+	}
+
+	public void setUsePreEncoding(Boolean usePreEncoding) {
+		this.usePreEncoding = usePreEncoding;
+	}
+
+	public Integer getBufferPoolSize() {
+		return bufferPoolSize;
+	}
+
+	public void setBufferPoolSize(Integer bufferPoolSize) {
+		if (bufferPoolSize != null && bufferPoolSize > 0)
+			this.bufferPoolSize = bufferPoolSize;
+	}
+
+	public boolean isSetCompressOutput() {
+		if (compressOutput != null)
+			return compressOutput.booleanValue();
+
+		return false;
+	}
+
+	public Boolean getCompressOutput() {
+		return compressOutput;
+	}
+
+	public void setCompressOutput(Boolean compressOutput) {
+		this.compressOutput = compressOutput;
+	}
+
+}
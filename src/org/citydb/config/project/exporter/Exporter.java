@@ -32,7 +32,6 @@ import javax.xml.bind.annotation.XmlType;
 
 import org.citydb.api.database.DatabaseSrs;
 import org.citydb.config.project.general.Path;
-import org.citydb.config.project.resources.Resources;
 
 @XmlType(name="ExportType", propOrder={
 		"path",
@@ -43,6 +42,9 @@ import org.citydb.config.project.resources.Resources;
 		"filter",
 		"cityGMLVersion",
 		"xlink",
+		"geometryPrefetch",
+		"featureQuery",
+		"writer",
 		"resources"
 })
 public class Exporter {
@@ -55,7 +57,10 @@ public class Exporter {
 	private ExportFilterConfig filter;
 	private CityGMLVersionType cityGMLVersion = CityGMLVersionType.v2_0_0;
 	private XLink xlink;
-	private Resources resources;
+	private ExportGeometryPrefetch geometryPrefetch;
+	private ExportFeatureQuery featureQuery;
+	private ExportWriter writer;
+	private ExportResources resources;
 
 	public Exporter() {
 		path = new Path();
@@ -64,7 +69,10 @@ public class Exporter {
 		appearances = new ExportAppearance();
 		filter = new ExportFilterConfig();
 		xlink = new XLink();
-		resources = new Resources();
+		geometryPrefetch = new ExportGeometryPrefetch();
+		featureQuery = new ExportFeatureQuery();
+		writer = new ExportWriter();
+		resources = new ExportResources();
 	}
 
 	public Path getPath() {
@@ -138,11 +146,38 @@ public class Exporter {
 			this.xlink = xlink;
 	}
 
-	public Resources getResources() {
+	public ExportGeometryPrefetch getGeometryPrefetch() {
+		return geometryPrefetch;
+	}
+
+	public void setGeometryPrefetch(ExportGeometryPrefetch geometryPrefetch) {
+		if (geometryPrefetch != null)
+			this.geometryPrefetch = geometryPrefetch;
+	}
+
+	public ExportFeatureQuery getFeatureQuery() {
+		return featureQuery;
+	}
+
+	public void setFeatureQuery(ExportFeatureQuery featureQuery) {
+		if (featureQuery != null)
+			this.featureQuery = featureQuery;
+	}
+
+	public ExportWriter getWriter() {
+		return writer;
+	}
+
+	public void setWriter(ExportWriter writer) {
+		if (writer != null)
+			this.writer = writer;
+	}
+
+	public ExportResources getResources() {
 		return resources;
 	}
 
-	public void setResources(Resources system) {
+	public void setResources(ExportResources system) {
 		if (system != null)
 			this.resources = system;
 	}
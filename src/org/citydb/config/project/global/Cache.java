@@ -35,12 +35,15 @@ import javax.xml.bind.annotation.XmlType;
 
 @XmlType(name="CacheType", propOrder={
 		"mode",
-		"localPath"
+		"localPath",
+		"offHeapMemory"
 })
 public class Cache {
 	@XmlElement(required=true)
 	private CacheMode mode = CacheMode.DATABASE;
 	private String localPath;
+	@XmlElement(defaultValue="1024")
+	private Integer offHeapMemory = 1024;
 
 	public Cache() {
 		File tmp = new File(System.getProperty("java.io.tmpdir") + "3dcitydb.tmp");
@@ -56,6 +59,10 @@ public class Cache {
 		return mode == CacheMode.LOCAL;
 	}
 
+	public boolean isUseOffHeap() {
+		return mode == CacheMode.OFF_HEAP;
+	}
+
 	public CacheMode getCacheMode() {
 		return mode;
 	}
@@ -72,4 +79,13 @@ public class Cache {
 		this.localPath = localPath;
 	}
 
+	public Integer getOffHeapMemory() {
+		return offHeapMemory;
+	}
+
+	public void setOffHeapMemory(Integer offHeapMemory) {
+		if (offHeapMemory != null && offHeapMemory > 0)
+			this.offHeapMemory = offHeapMemory;
+	}
+
 }
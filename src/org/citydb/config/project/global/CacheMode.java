@@ -37,7 +37,9 @@ public enum CacheMode {
 	@XmlEnumValue("database")
     DATABASE("database"),
     @XmlEnumValue("local")
-    LOCAL("local");
+    LOCAL("local"),
+    @XmlEnumValue("offHeap")
+    OFF_HEAP("offHeap");
 
     private final String value;
 
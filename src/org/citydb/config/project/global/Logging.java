@@ -27,6 +27,7 @@
  */
 package org.citydb.config.project.global;
 
+import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlType;
 
 @XmlType(name="LoggingType", propOrder={
@@ -36,6 +37,8 @@ import javax.xml.bind.annotation.XmlType;
 public class Logging {
 	private LogConsole console;
 	private LogFile file;
+	@XmlAttribute(required=false)
+	private Boolean asynchronous = false;
 	
 	public Logging() {
 		console = new LogConsole();
@@ -59,5 +62,16 @@ public class Logging {
 		if (file != null)
 			this.file = file;
 	}
+
+	public boolean isAsynchronous() {
+		if (asynchronous != null)
+			return asynchronous.booleanValue();
+		
+		return false;
+	}
+
+	public void setAsynchronous(Boolean asynchronous) {
+		this.asynchronous = asynchronous;
+	}
 	
 }
@@ -0,0 +1,87 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.config.project.importer;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * Settings of the bulk load mode of the importer, which is only available for 
+ * PostgreSQL/PostGIS. In this mode, rows are streamed into the database using 
+ * COPY instead of batched INSERT statements. 
+ * 
+ * COPY is used for the tables that receive most rows of an import: CITYOBJECT, 
+ * CITYOBJECT_GENERICATTRIB, SURFACE_GEOMETRY, TEXTUREPARAM, BUILDING and 
+ * THEMATIC_SURFACE. All other tables get at most a few rows per feature, or are 
+ * written by statements that COPY cannot express (for example, sequence values 
+ * in the VALUES clause or updates of existing rows). They keep using batched 
+ * INSERT statements. Both kinds of batches are flushed in the same foreign key 
+ * order, so the two modes can be mixed in one transaction.
+ * 
+ * With COPY, CITYOBJECT.LAST_MODIFICATION_DATE cannot be evaluated per row. It is 
+ * queried once per batch instead, which gives the start time of the current 
+ * transaction just like CURRENT_TIMESTAMP in the batched INSERT statements.
+ */
+@XmlType(name="ImportBulkLoadType", propOrder={
+		"useBulkLoad",
+		"batchSize"
+})
+public class ImportBulkLoad {
+	@XmlElement(required=true, defaultValue="false")
+	private Boolean useBulkLoad = false;
+	@XmlElement(defaultValue="10000")
+	private Integer batchSize = 10000;
+
+	public ImportBulkLoad() {
+	}
+
+	public boolean isSetUseBulkLoad() {
+		if (useBulkLoad != null)
+			return useBulkLoad.booleanValue();
+
+		return false;
+	}
+
+	public Boolean getUseBulkLoad() {
+		return useBulkLoad;
+	}
+
+	public void setUseBulkLoad(Boolean useBulkLoad) {
+		this.useBulkLoad = useBulkLoad;
+	}
+
+	public Integer getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(Integer batchSize) {
+		if (batchSize != null && batchSize > 0)
+			this.batchSize = batchSize;
+	}
+
+}
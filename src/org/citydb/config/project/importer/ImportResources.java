@@ -31,17 +31,25 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlType;
 
 import org.citydb.config.project.resources.Resources;
+import org.citydb.config.project.resources.SequenceCacheConfig;
 import org.citydb.config.project.resources.UIDCacheConfig;
 
 @XmlType(name="ImportResourcesType", propOrder={
-		"texImageCache"
+		"texImageCache",
+		"sequenceCache",
+		"concurrentFiles"
 })
 public class ImportResources extends Resources {
 	@XmlElement(required=true)
 	private UIDCacheConfig texImageCache;
+	@XmlElement(required=true)
+	private SequenceCacheConfig sequenceCache;
+	@XmlElement(defaultValue="1")
+	private Integer concurrentFiles = 1;
 	
 	public ImportResources() {
 		texImageCache = new UIDCacheConfig();
+		sequenceCache = new SequenceCacheConfig();
 	}
 
 	public UIDCacheConfig getTexImageCache() {
@@ -51,4 +59,22 @@ public class ImportResources extends Resources {
 	public void setTexImageCache(UIDCacheConfig texImageCache) {
 		this.texImageCache = texImageCache;
 	}
+
+	public SequenceCacheConfig getSequenceCache() {
+		return sequenceCache;
+	}
+
+	public void setSequenceCache(SequenceCacheConfig sequenceCache) {
+		if (sequenceCache != null)
+			this.sequenceCache = sequenceCache;
+	}
+
+	public Integer getConcurrentFiles() {
+		return concurrentFiles;
+	}
+
+	public void setConcurrentFiles(Integer concurrentFiles) {
+		if (concurrentFiles != null && concurrentFiles > 0)
+			this.concurrentFiles = concurrentFiles;
+	}
 }
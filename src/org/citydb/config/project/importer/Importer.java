@@ -41,6 +41,7 @@ import org.citydb.config.project.general.Path;
 		"filter",
 		"affineTransformation",
 		"indexes",
+		"bulkLoad",
 		"xmlValidation",
 		"importLog",
 		"resources"
@@ -54,6 +55,7 @@ public class Importer {
 	private ImportFilterConfig filter;
 	private AffineTransformation affineTransformation;
 	private Index indexes;
+	private ImportBulkLoad bulkLoad;
 	private XMLValidation xmlValidation;
 	private ImportLog importLog;
 	private ImportResources resources;
@@ -67,6 +69,7 @@ public class Importer {
 		filter = new ImportFilterConfig();
 		affineTransformation = new AffineTransformation();
 		indexes = new Index();
+		bulkLoad = new ImportBulkLoad();
 		xmlValidation = new XMLValidation();
 		importLog = new ImportLog();
 		resources = new ImportResources();
@@ -135,6 +138,15 @@ public class Importer {
 			this.indexes = indexes;
 	}
 
+	public ImportBulkLoad getBulkLoad() {
+		return bulkLoad;
+	}
+
+	public void setBulkLoad(ImportBulkLoad bulkLoad) {
+		if (bulkLoad != null)
+			this.bulkLoad = bulkLoad;
+	}
+
 	public XMLValidation getXMLValidation() {
 		return xmlValidation;
 	}
@@ -84,6 +84,7 @@ import org.citydb.config.project.resources.Resources;
 		"showBoundingBox",
 		"showTileBorders",
 		"exportEmptyTiles",
+		"incrementalExport",
 		"autoTileSideLength",
 		"oneFilePerObject",
 		"singleObjectRegionSize",
@@ -94,13 +95,20 @@ import org.citydb.config.project.resources.Resources;
 		"callbackNameJSONP",
 		"createGltfModel",
 		"pathOfGltfConverter",
+		"useGltfConverter",
 		"notCreateColladaFiles",
 		"embedTexturesInGltfFiles",
+		"createGltfBinary",
+		"useJava3DTriangulator",
+		"prefetchBalloonContent",
+		"colladaBatchSize",
 		"appearanceTheme",
 		"altitudeMode",
 		"altitudeOffsetMode",
 		"altitudeOffsetValue",
 		"callGElevationService",
+		"elevationSource",
+		"elevationGridFile",
 		"useOriginalZCoords",
 		"idPrefixes",
 		"resources"
@@ -170,6 +178,7 @@ public class KmlExporter {
 	private boolean showBoundingBox;
 	private boolean showTileBorders;
 	private boolean exportEmptyTiles;
+	private boolean incrementalExport;
 	private double autoTileSideLength;
 	private boolean oneFilePerObject;
 	private double singleObjectRegionSize;
@@ -180,14 +189,21 @@ public class KmlExporter {
 	private String callbackNameJSONP;
 	private boolean createGltfModel;
 	private String pathOfGltfConverter;
+	private boolean useGltfConverter;
 	private boolean notCreateColladaFiles;
 	private boolean embedTexturesInGltfFiles;
+	private boolean createGltfBinary;
+	private boolean useJava3DTriangulator;
+	private boolean prefetchBalloonContent;
+	private int colladaBatchSize;
 	private boolean exportAsKmz;
 	private String appearanceTheme;
 	private AltitudeMode altitudeMode;
 	private AltitudeOffsetMode altitudeOffsetMode;
 	private double altitudeOffsetValue;
 	private boolean callGElevationService;
+	private ElevationSource elevationSource;
+	private String elevationGridFile;
 	private boolean useOriginalZCoords;
 
 	private IdPrefixes idPrefixes;
@@ -239,6 +255,7 @@ public class KmlExporter {
 		showBoundingBox = false;
 		showTileBorders = false;
 		exportEmptyTiles = true;
+		incrementalExport = false;
 		autoTileSideLength = 125.0;
 		oneFilePerObject = false;
 		singleObjectRegionSize = 50.0;
@@ -248,8 +265,13 @@ public class KmlExporter {
 		writeJSONPFile = false;
 		callbackNameJSONP = "handle_3DCityDB_data";
 		createGltfModel = false;
+		useGltfConverter = false;
 		notCreateColladaFiles = false;
 		embedTexturesInGltfFiles = false;
+		createGltfBinary = false;
+		useJava3DTriangulator = false;
+		prefetchBalloonContent = false;
+		colladaBatchSize = 20;
 
 		pathOfGltfConverter = "contribs" + File.separator + "collada2gltf";
 		String osName = System.getProperty("os.name").toLowerCase(Locale.ENGLISH);
@@ -265,6 +287,7 @@ public class KmlExporter {
 		setAltitudeOffsetMode(AltitudeOffsetMode.GENERIC_ATTRIBUTE);
 		altitudeOffsetValue = 0;
 		callGElevationService = true;
+		elevationSource = ElevationSource.GOOGLE_ELEVATION_API;
 		setUseOriginalZCoords(false);
 
 		idPrefixes = new IdPrefixes();
@@ -428,6 +451,14 @@ public class KmlExporter {
 		return pathOfGltfConverter;
 	}
 
+	public void setUseGltfConverter(boolean useGltfConverter) {
+		this.useGltfConverter = useGltfConverter;
+	}
+
+	public boolean isUseGltfConverter() {
+		return useGltfConverter;
+	}
+
 	public void setNotCreateColladaFiles(boolean notCreateColladaFiles) {
 		this.notCreateColladaFiles = notCreateColladaFiles;
 	}
@@ -444,6 +475,38 @@ public class KmlExporter {
 		return embedTexturesInGltfFiles;
 	}
 
+	public void setCreateGltfBinary(boolean createGltfBinary) {
+		this.createGltfBinary = createGltfBinary;
+	}
+
+	public boolean isCreateGltfBinary() {
+		return createGltfBinary;
+	}
+
+	public void setUseJava3DTriangulator(boolean useJava3DTriangulator) {
+		this.useJava3DTriangulator = useJava3DTriangulator;
+	}
+
+	public boolean isUseJava3DTriangulator() {
+		return useJava3DTriangulator;
+	}
+
+	public void setPrefetchBalloonContent(boolean prefetchBalloonContent) {
+		this.prefetchBalloonContent = prefetchBalloonContent;
+	}
+
+	public boolean isPrefetchBalloonContent() {
+		return prefetchBalloonContent;
+	}
+
+	public void setColladaBatchSize(int colladaBatchSize) {
+		this.colladaBatchSize = colladaBatchSize;
+	}
+
+	public int getColladaBatchSize() {
+		return colladaBatchSize;
+	}
+
 	public void setShowBoundingBox(boolean showBoundingBox) {
 		this.showBoundingBox = showBoundingBox;
 	}
@@ -468,6 +531,14 @@ public class KmlExporter {
 		this.exportEmptyTiles = exportEmptyTiles;
 	}
 
+	public boolean isIncrementalExport() {
+		return incrementalExport;
+	}
+
+	public void setIncrementalExport(boolean incrementalExport) {
+		this.incrementalExport = incrementalExport;
+	}
+
 	public void setAppearanceTheme(String appearanceTheme) {
 		this.appearanceTheme = appearanceTheme;
 	}
@@ -508,6 +579,22 @@ public class KmlExporter {
 		return callGElevationService;
 	}
 
+	public void setElevationSource(ElevationSource elevationSource) {
+		this.elevationSource = elevationSource;
+	}
+
+	public ElevationSource getElevationSource() {
+		return elevationSource;
+	}
+
+	public void setElevationGridFile(String elevationGridFile) {
+		this.elevationGridFile = elevationGridFile;
+	}
+
+	public String getElevationGridFile() {
+		return elevationGridFile;
+	}
+
 	public void setAutoTileSideLength(double autoTileSideLength) {
 		this.autoTileSideLength = autoTileSideLength;
 	}
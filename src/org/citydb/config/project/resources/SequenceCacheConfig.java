@@ -0,0 +1,66 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.config.project.resources;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlSchemaType;
+import javax.xml.bind.annotation.XmlType;
+
+@XmlType(name="SequenceCacheConfigType", propOrder={
+		"rangeSize",
+		"refillFactor"
+})
+public class SequenceCacheConfig {
+	@XmlSchemaType(name="positiveInteger")
+	@XmlElement(required=true, defaultValue="1000")
+	private Integer rangeSize = 1000;
+	@XmlElement(required=true, defaultValue="0.5")
+	private Float refillFactor = 0.5f;
+	
+	public SequenceCacheConfig() {
+	}
+
+	public Integer getRangeSize() {
+		return rangeSize;
+	}
+
+	public void setRangeSize(Integer rangeSize) {
+		if (rangeSize != null && rangeSize > 0)
+			this.rangeSize = rangeSize;
+	}
+
+	public Float getRefillFactor() {
+		return refillFactor;
+	}
+
+	public void setRefillFactor(Float refillFactor) {
+		if (refillFactor != null && refillFactor >= 0 && refillFactor <= 1)
+			this.refillFactor = refillFactor;
+	}
+	
+}
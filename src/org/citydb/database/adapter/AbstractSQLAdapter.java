@@ -61,6 +61,8 @@ public abstract class AbstractSQLAdapter {
 	public abstract String getBoundingBoxPredicate(String attributeName, BoundingBox bbox, boolean overlap);
 	public abstract boolean spatialPredicateRequiresNoIndexHint();
 	public abstract String getHierarchicalGeometryQuery();
+	public abstract String getGeometryParameter();
+	public abstract String getSolidGeometryParameter();
 	public abstract String getNextSequenceValue(DBSequencerEnum sequence);
 	public abstract String getCurrentSequenceValue(DBSequencerEnum sequence);
 	public abstract String getNextSequenceValuesQuery(DBSequencerEnum sequence);
@@ -72,6 +74,7 @@ public abstract class AbstractSQLAdapter {
 	
 	public abstract BlobImportAdapter getBlobImportAdapter(Connection connection, BlobType type) throws SQLException;
 	public abstract BlobExportAdapter getBlobExportAdapter(Connection connection, BlobType type);
+	public abstract InsertRowWriter getBulkInsertWriter(Connection connection, String tableName, String... columns) throws SQLException;
 	
 	protected String getSequenceName(DBSequencerEnum sequence) {
 		switch (sequence) {
@@ -0,0 +1,54 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.citydb.api.geometry.GeometryObject;
+
+/**
+ * Writes rows into a single table. Values are bound to 1-based column indexes 
+ * and remain bound across rows until they are set again. A row is complete 
+ * with {@link #endRow()}, and all pending rows are written by {@link #executeBatch()}.
+ */
+public interface InsertRowWriter {
+	public void setLong(int index, long value) throws SQLException;
+	public void setInt(int index, int value) throws SQLException;
+	public void setDouble(int index, double value) throws SQLException;
+	public void setString(int index, String value) throws SQLException;
+	public void setDate(int index, Date value) throws SQLException;
+	public void setTimestamp(int index, Timestamp value) throws SQLException;
+	public void setGeometry(int index, GeometryObject geometry) throws SQLException;
+	public void setNull(int index, int sqlType) throws SQLException;
+	public void setNullGeometry(int index) throws SQLException;
+	public void endRow() throws SQLException;
+	public void executeBatch() throws SQLException;
+	public void close() throws SQLException;
+}
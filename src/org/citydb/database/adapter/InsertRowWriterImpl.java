@@ -0,0 +1,110 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.citydb.api.geometry.GeometryObject;
+
+public class InsertRowWriterImpl implements InsertRowWriter {
+	private final Connection connection;
+	private final AbstractGeometryConverterAdapter geometryConverter;
+	private final PreparedStatement ps;
+
+	public InsertRowWriterImpl(Connection connection, String insertStatement, AbstractGeometryConverterAdapter geometryConverter) throws SQLException {
+		this.connection = connection;
+		this.geometryConverter = geometryConverter;
+
+		ps = connection.prepareStatement(insertStatement);
+	}
+
+	@Override
+	public void setLong(int index, long value) throws SQLException {
+		ps.setLong(index, value);
+	}
+
+	@Override
+	public void setInt(int index, int value) throws SQLException {
+		ps.setInt(index, value);
+	}
+
+	@Override
+	public void setDouble(int index, double value) throws SQLException {
+		ps.setDouble(index, value);
+	}
+
+	@Override
+	public void setString(int index, String value) throws SQLException {
+		ps.setString(index, value);
+	}
+
+	@Override
+	public void setDate(int index, Date value) throws SQLException {
+		ps.setDate(index, value);
+	}
+
+	@Override
+	public void setTimestamp(int index, Timestamp value) throws SQLException {
+		ps.setTimestamp(index, value);
+	}
+
+	@Override
+	public void setGeometry(int index, GeometryObject geometry) throws SQLException {
+		ps.setObject(index, geometryConverter.getDatabaseObject(geometry, connection));
+	}
+
+	@Override
+	public void setNull(int index, int sqlType) throws SQLException {
+		ps.setNull(index, sqlType);
+	}
+
+	@Override
+	public void setNullGeometry(int index) throws SQLException {
+		ps.setNull(index, geometryConverter.getNullGeometryType(), geometryConverter.getNullGeometryTypeName());
+	}
+
+	@Override
+	public void endRow() throws SQLException {
+		ps.addBatch();
+	}
+
+	@Override
+	public void executeBatch() throws SQLException {
+		ps.executeBatch();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		ps.close();
+	}
+
+}
@@ -35,6 +35,7 @@ import org.citydb.database.adapter.AbstractSQLAdapter;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.database.adapter.BlobImportAdapter;
 import org.citydb.database.adapter.BlobType;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.modules.citygml.importer.database.content.DBSequencerEnum;
 
 public class SQLAdapter extends AbstractSQLAdapter {
@@ -153,6 +154,16 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return false;
 	}
 
+	@Override
+	public String getGeometryParameter() {
+		return "?";
+	}
+
+	@Override
+	public String getSolidGeometryParameter() {
+		return "?";
+	}
+
 	@Override
 	public String getHierarchicalGeometryQuery() {
 		// not required for cache tables
@@ -195,4 +206,10 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return null;
 	}
 
+	@Override
+	public InsertRowWriter getBulkInsertWriter(Connection connection, String tableName, String... columns) throws SQLException {
+		// not required for cache tables
+		return null;
+	}
+
 }
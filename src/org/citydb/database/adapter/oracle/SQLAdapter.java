@@ -37,6 +37,7 @@ import org.citydb.database.adapter.BlobExportAdapterImpl;
 import org.citydb.database.adapter.BlobImportAdapter;
 import org.citydb.database.adapter.BlobImportAdapterImpl;
 import org.citydb.database.adapter.BlobType;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.modules.citygml.importer.database.content.DBSequencerEnum;
 
 public class SQLAdapter extends AbstractSQLAdapter {
@@ -184,6 +185,16 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return true;
 	}
 
+	@Override
+	public String getGeometryParameter() {
+		return "?";
+	}
+
+	@Override
+	public String getSolidGeometryParameter() {
+		return "?";
+	}
+
 	@Override
 	public String getHierarchicalGeometryQuery() {
 		return "select sg.*, LEVEL from SURFACE_GEOMETRY sg start with sg.ID=? connect by prior sg.ID=sg.PARENT_ID";
@@ -199,4 +210,10 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return new BlobExportAdapterImpl(connection, type);
 	}
 
+	@Override
+	public InsertRowWriter getBulkInsertWriter(Connection connection, String tableName, String... columns) throws SQLException {
+		// not supported
+		return null;
+	}
+
 }
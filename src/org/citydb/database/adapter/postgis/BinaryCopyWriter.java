@@ -0,0 +1,471 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter.postgis;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.citydb.api.geometry.GeometryObject;
+import org.citydb.database.adapter.InsertRowWriter;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Writes rows into a table using the PostgreSQL <code>COPY ... FROM STDIN (FORMAT binary)</code> 
+ * protocol. Completed rows are encoded into a reusable buffer and streamed to the 
+ * server in a single COPY operation upon {@link #executeBatch()}.
+ * 
+ * The binary encoding is chosen per column based on its type in the database catalog. 
+ * Geometries are encoded as EWKB, which is accepted by the binary input function of 
+ * the geometry type. If a column has a type that cannot be encoded, no writer is 
+ * created and callers must fall back to a plain insert.
+ */
+public class BinaryCopyWriter implements InsertRowWriter {
+	private static final byte[] HEADER = new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte)0xff, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0};
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final long PG_EPOCH_MILLIS = 946684800000L;
+	private static final long MILLIS_PER_DAY = 86400000L;
+	private static final BigInteger NBASE = BigInteger.valueOf(10000);
+
+	private enum ColumnType {
+		INT2,
+		INT4,
+		INT8,
+		FLOAT4,
+		FLOAT8,
+		NUMERIC,
+		BOOL,
+		TEXT,
+		BYTEA,
+		DATE,
+		TIMESTAMP,
+		TIMESTAMPTZ
+	}
+
+	private final CopyManager copyManager;
+	private final String copyStatement;
+	private final ColumnType[] types;
+	private final Object[] values;
+	private final boolean[] isSet;
+	private final TimeZone timeZone;
+	private final EWKBWriter ewkbWriter;
+
+	private byte[] buffer;
+	private int pos;
+	private int rows;
+	private boolean isClosed;
+
+	private BinaryCopyWriter(CopyManager copyManager, String tableName, String[] columns, ColumnType[] types) {
+		this.copyManager = copyManager;
+		this.types = types;
+
+		StringBuilder stmt = new StringBuilder("COPY ").append(tableName).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				stmt.append(", ");
+			stmt.append(columns[i]);
+		}
+
+		copyStatement = stmt.append(") FROM STDIN (FORMAT binary)").toString();
+		values = new Object[columns.length];
+		isSet = new boolean[columns.length];
+		timeZone = TimeZone.getDefault();
+		ewkbWriter = new EWKBWriter();
+		buffer = new byte[65536];
+		reset();
+	}
+
+	public static BinaryCopyWriter newInstance(Connection connection, String tableName, String... columns) throws SQLException {
+		ColumnType[] types = getColumnTypes(connection, tableName, columns);
+		if (types == null)
+			return null;
+
+		CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+		return new BinaryCopyWriter(copyManager, tableName, columns, types);
+	}
+
+	private static ColumnType[] getColumnTypes(Connection connection, String tableName, String[] columns) throws SQLException {
+		Map<String, String> typeNames = new HashMap<String, String>();
+		boolean integerDateTimes = true;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = connection.prepareStatement("select a.attname, t.typname, current_setting('integer_datetimes') from pg_attribute a "
+					+ "join pg_type t on t.oid = a.atttypid where a.attrelid = ?::regclass and a.attnum > 0 and not a.attisdropped");
+			ps.setString(1, tableName);
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				typeNames.put(rs.getString(1).toLowerCase(), rs.getString(2));
+				integerDateTimes = "on".equalsIgnoreCase(rs.getString(3));
+			}
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException e) {
+					//
+				}
+			}
+
+			if (ps != null) {
+				try {
+					ps.close();
+				} catch (SQLException e) {
+					//
+				}
+			}
+		}
+
+		ColumnType[] types = new ColumnType[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			String typeName = typeNames.get(columns[i].toLowerCase());
+			if (typeName == null)
+				return null;
+
+			if (typeName.equals("int2"))
+				types[i] = ColumnType.INT2;
+			else if (typeName.equals("int4"))
+				types[i] = ColumnType.INT4;
+			else if (typeName.equals("int8"))
+				types[i] = ColumnType.INT8;
+			else if (typeName.equals("float4"))
+				types[i] = ColumnType.FLOAT4;
+			else if (typeName.equals("float8"))
+				types[i] = ColumnType.FLOAT8;
+			else if (typeName.equals("numeric"))
+				types[i] = ColumnType.NUMERIC;
+			else if (typeName.equals("bool"))
+				types[i] = ColumnType.BOOL;
+			else if (typeName.equals("varchar") || typeName.equals("text") || typeName.equals("bpchar"))
+				types[i] = ColumnType.TEXT;
+			else if (typeName.equals("bytea") || typeName.equals("geometry"))
+				// geometry values are passed as EWKB which is accepted by the binary input function
+				types[i] = ColumnType.BYTEA;
+			else if (typeName.equals("date") && integerDateTimes)
+				types[i] = ColumnType.DATE;
+			else if (typeName.equals("timestamp") && integerDateTimes)
+				types[i] = ColumnType.TIMESTAMP;
+			else if (typeName.equals("timestamptz") && integerDateTimes)
+				types[i] = ColumnType.TIMESTAMPTZ;
+			else
+				return null;
+		}
+
+		return types;
+	}
+
+	@Override
+	public void setLong(int index, long value) throws SQLException {
+		setValue(index, value);
+	}
+
+	@Override
+	public void setInt(int index, int value) throws SQLException {
+		setValue(index, value);
+	}
+
+	@Override
+	public void setDouble(int index, double value) throws SQLException {
+		setValue(index, value);
+	}
+
+	@Override
+	public void setString(int index, String value) throws SQLException {
+		setValue(index, value);
+	}
+
+	@Override
+	public void setDate(int index, Date value) throws SQLException {
+		setValue(index, value);
+	}
+
+	@Override
+	public void setTimestamp(int index, Timestamp value) throws SQLException {
+		setValue(index, value);
+	}
+
+	@Override
+	public void setGeometry(int index, GeometryObject geometry) throws SQLException {
+		setValue(index, geometry != null ? ewkbWriter.write(geometry) : null);
+	}
+
+	@Override
+	public void setNull(int index, int sqlType) throws SQLException {
+		setValue(index, null);
+	}
+
+	@Override
+	public void setNullGeometry(int index) throws SQLException {
+		setValue(index, null);
+	}
+
+	@Override
+	public void endRow() throws SQLException {
+		if (isClosed)
+			throw new SQLException("This writer has been closed.");
+
+		ensureCapacity(2);
+		writeShort(values.length);
+
+		for (int i = 0; i < values.length; i++) {
+			if (!isSet[i])
+				throw new SQLException("No value specified for column " + (i + 1) + ".");
+
+			writeValue(values[i], types[i], i + 1);
+		}
+
+		rows++;
+	}
+
+	@Override
+	public void executeBatch() throws SQLException {
+		if (isClosed)
+			throw new SQLException("This writer has been closed.");
+
+		if (rows == 0)
+			return;
+
+		ensureCapacity(2);
+		writeShort(-1);
+
+		CopyIn copyIn = copyManager.copyIn(copyStatement);
+		try {
+			copyIn.writeToCopy(buffer, 0, pos);
+			copyIn.endCopy();
+		} finally {
+			if (copyIn.isActive())
+				copyIn.cancelCopy();
+
+			reset();
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		isClosed = true;
+		buffer = null;
+	}
+
+	private void setValue(int index, Object value) throws SQLException {
+		if (isClosed)
+			throw new SQLException("This writer has been closed.");
+
+		if (index < 1 || index > values.length)
+			throw new SQLException("The column index is out of range: " + index + ", number of columns: " + values.length + ".");
+
+		values[index - 1] = value;
+		isSet[index - 1] = true;
+	}
+
+	private void reset() {
+		System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+		pos = HEADER.length;
+		rows = 0;
+	}
+
+	private void writeValue(Object value, ColumnType type, int index) throws SQLException {
+		if (value == null) {
+			ensureCapacity(4);
+			writeInt(-1);
+			return;
+		}
+
+		try {
+			switch (type) {
+			case INT2:
+				ensureCapacity(6);
+				writeInt(2);
+				writeShort((int)toLong(value));
+				break;
+			case INT4:
+				ensureCapacity(8);
+				writeInt(4);
+				writeInt((int)toLong(value));
+				break;
+			case INT8:
+				ensureCapacity(12);
+				writeInt(8);
+				writeLong(toLong(value));
+				break;
+			case FLOAT4:
+				ensureCapacity(8);
+				writeInt(4);
+				writeInt(Float.floatToIntBits(((Number)value).floatValue()));
+				break;
+			case FLOAT8:
+				ensureCapacity(12);
+				writeInt(8);
+				writeLong(Double.doubleToLongBits(((Number)value).doubleValue()));
+				break;
+			case NUMERIC:
+				writeNumeric(toBigDecimal(value));
+				break;
+			case BOOL:
+				ensureCapacity(5);
+				writeInt(1);
+				buffer[pos++] = (byte)(value instanceof Boolean ? (((Boolean)value) ? 1 : 0) : (toLong(value) != 0 ? 1 : 0));
+				break;
+			case TEXT:
+				writeBytes(value.toString().getBytes(UTF8));
+				break;
+			case BYTEA:
+				writeBytes((byte[])value);
+				break;
+			case DATE:
+				long millis = ((java.util.Date)value).getTime();
+				ensureCapacity(8);
+				writeInt(4);
+				writeInt((int)Math.floorDiv(millis + timeZone.getOffset(millis) - PG_EPOCH_MILLIS, MILLIS_PER_DAY));
+				break;
+			case TIMESTAMP:
+			case TIMESTAMPTZ:
+				ensureCapacity(12);
+				writeInt(8);
+				writeLong(toMicroseconds((java.util.Date)value, type == ColumnType.TIMESTAMP));
+				break;
+			}
+		} catch (ClassCastException e) {
+			throw new SQLException("Cannot convert value of type " + value.getClass().getName() + " for column " + index + " to " + type + ".");
+		} catch (NumberFormatException e) {
+			throw new SQLException("Cannot convert value '" + value + "' for column " + index + " to " + type + ".");
+		}
+	}
+
+	private long toLong(Object value) {
+		if (value instanceof Boolean)
+			return ((Boolean)value) ? 1 : 0;
+		else if (value instanceof String)
+			return Long.parseLong((String)value);
+
+		return ((Number)value).longValue();
+	}
+
+	private BigDecimal toBigDecimal(Object value) {
+		if (value instanceof BigDecimal)
+			return (BigDecimal)value;
+		else if (value instanceof Boolean)
+			return ((Boolean)value) ? BigDecimal.ONE : BigDecimal.ZERO;
+		else if (value instanceof Double || value instanceof Float)
+			return BigDecimal.valueOf(((Number)value).doubleValue());
+		else if (value instanceof String)
+			return new BigDecimal((String)value);
+
+		return BigDecimal.valueOf(((Number)value).longValue());
+	}
+
+	private long toMicroseconds(java.util.Date date, boolean localTime) {
+		long millis = date.getTime();
+		if (localTime)
+			millis += timeZone.getOffset(millis);
+
+		long micros = Math.floorDiv(millis - PG_EPOCH_MILLIS, 1000L) * 1000000L;
+		if (date instanceof Timestamp)
+			micros += ((Timestamp)date).getNanos() / 1000;
+		else
+			micros += Math.floorMod(millis, 1000L) * 1000L;
+
+		return micros;
+	}
+
+	private void writeNumeric(BigDecimal value) {
+		// binary numeric format: ndigits, weight, sign, dscale followed by base 10000 digits
+		int dscale = Math.max(value.scale(), 0);
+		int fractionGroups = (dscale + 3) / 4;
+		BigInteger unscaled = value.abs().setScale(fractionGroups * 4).unscaledValue();
+
+		short[] digits = new short[unscaled.bitLength() / 13 + 2];
+		int ndigits = 0;
+		while (unscaled.signum() > 0) {
+			BigInteger[] qr = unscaled.divideAndRemainder(NBASE);
+			digits[ndigits++] = qr[1].shortValue();
+			unscaled = qr[0];
+		}
+
+		int weight = ndigits - fractionGroups - 1;
+		int start = 0;
+		while (start < ndigits && digits[start] == 0)
+			start++;
+
+		ndigits -= start;
+		if (ndigits == 0)
+			weight = 0;
+
+		ensureCapacity(12 + ndigits * 2);
+		writeInt(8 + ndigits * 2);
+		writeShort(ndigits);
+		writeShort(weight);
+		writeShort(value.signum() < 0 ? 0x4000 : 0x0000);
+		writeShort(dscale);
+		for (int i = start + ndigits - 1; i >= start; i--)
+			writeShort(digits[i]);
+	}
+
+	private void writeBytes(byte[] bytes) {
+		ensureCapacity(4 + bytes.length);
+		writeInt(bytes.length);
+		System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+		pos += bytes.length;
+	}
+
+	private void writeShort(int value) {
+		buffer[pos++] = (byte)(value >>> 8);
+		buffer[pos++] = (byte)value;
+	}
+
+	private void writeInt(int value) {
+		buffer[pos++] = (byte)(value >>> 24);
+		buffer[pos++] = (byte)(value >>> 16);
+		buffer[pos++] = (byte)(value >>> 8);
+		buffer[pos++] = (byte)value;
+	}
+
+	private void writeLong(long value) {
+		writeInt((int)(value >>> 32));
+		writeInt((int)value);
+	}
+
+	private void ensureCapacity(int size) {
+		if (pos + size > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, pos + size));
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter.postgis;
+
+import java.util.Arrays;
+
+import org.citydb.api.geometry.ElementType;
+import org.citydb.api.geometry.GeometryObject;
+
+/**
+ * Encodes {@link GeometryObject} instances as PostGIS EWKB (little endian, with SRID
+ * and Z flag) into a reusable byte buffer. The size of the encoded geometry is computed 
+ * upfront so that the buffer is grown at most once per geometry. 
+ * 
+ * Instances are not thread-safe and are meant to be used by a single thread.
+ */
+public class EWKBWriter {
+	private static final int WKB_POINT = 1;
+	private static final int WKB_LINESTRING = 2;
+	private static final int WKB_POLYGON = 3;
+	private static final int WKB_MULTIPOINT = 4;
+	private static final int WKB_MULTILINESTRING = 5;
+	private static final int WKB_MULTIPOLYGON = 6;
+	private static final int WKB_POLYHEDRALSURFACE = 15;
+
+	private static final int EWKB_Z_FLAG = 0x80000000;
+	private static final int EWKB_SRID_FLAG = 0x20000000;
+	private static final byte NDR = 1;
+
+	private byte[] buffer;
+	private int pos;
+
+	public EWKBWriter() {
+		this(4096);
+	}
+
+	public EWKBWriter(int initialCapacity) {
+		buffer = new byte[initialCapacity > 0 ? initialCapacity : 4096];
+	}
+
+	public byte[] write(GeometryObject geomObj) {
+		int dimension = geomObj.getDimension();
+		double[][] coordinates = geomObj.getCoordinates();
+		pos = 0;
+
+		switch (geomObj.getGeometryType()) {
+		case POINT:
+			ensureCapacity(9 + dimension * 8);
+			writeHeader(WKB_POINT, dimension, geomObj.getSrid());
+			writeCoordinates(coordinates[0]);
+			break;
+		case LINE_STRING:
+			ensureCapacity(9 + sizeOfPointArray(coordinates[0]));
+			writeHeader(WKB_LINESTRING, dimension, geomObj.getSrid());
+			writePointArray(coordinates[0], dimension);
+			break;
+		case POLYGON:
+			ensureCapacity(9 + sizeOfRings(coordinates, 0, coordinates.length));
+			writeHeader(WKB_POLYGON, dimension, geomObj.getSrid());
+			writeRings(coordinates, 0, coordinates.length, dimension);
+			break;
+		case ENVELOPE:
+			double[][] ring = new double[][]{ getEnvelopeRing(coordinates[0], dimension) };
+			ensureCapacity(9 + sizeOfRings(ring, 0, 1));
+			writeHeader(WKB_POLYGON, dimension, geomObj.getSrid());
+			writeRings(ring, 0, 1, dimension);
+			break;
+		case MULTI_POINT:
+			ensureCapacity(13 + coordinates.length * (5 + dimension * 8));
+			writeHeader(WKB_MULTIPOINT, dimension, geomObj.getSrid());
+			writeInt(coordinates.length);
+			for (double[] point : coordinates) {
+				writeHeader(WKB_POINT, dimension, 0);
+				writeCoordinates(point);
+			}
+			break;
+		case MULTI_LINE_STRING:
+			int size = 13;
+			for (double[] lineString : coordinates)
+				size += 5 + sizeOfPointArray(lineString);
+
+			ensureCapacity(size);
+			writeHeader(WKB_MULTILINESTRING, dimension, geomObj.getSrid());
+			writeInt(coordinates.length);
+			for (double[] lineString : coordinates) {
+				writeHeader(WKB_LINESTRING, dimension, 0);
+				writePointArray(lineString, dimension);
+			}
+			break;
+		case MULTI_POLYGON:
+			writePolygonCollection(geomObj, WKB_MULTIPOLYGON);
+			break;
+		case SOLID:
+			// PostGIS lacks a solid type, so solids are encoded as PolyhedralSurface
+			writePolygonCollection(geomObj, WKB_POLYHEDRALSURFACE);
+			break;
+		case COMPOSITE_SOLID:
+			// CompositeSolids are not supported yet
+			return null;
+		}
+
+		return Arrays.copyOf(buffer, pos);
+	}
+
+	private void writePolygonCollection(GeometryObject geomObj, int type) {
+		double[][] coordinates = geomObj.getCoordinates();
+		int dimension = geomObj.getDimension();
+
+		int numPolygons = 0;
+		int size = 13;
+		for (int i = 0; i < coordinates.length; i++) {
+			ElementType elementType = geomObj.getElementType(i);
+			if (elementType == ElementType.SHELL)
+				continue;
+
+			if (elementType == ElementType.EXTERIOR_LINEAR_RING) {
+				numPolygons++;
+				size += 9;
+			}
+
+			size += sizeOfPointArray(coordinates[i]);
+		}
+
+		ensureCapacity(size);
+		writeHeader(type, dimension, geomObj.getSrid());
+		writeInt(numPolygons);
+
+		int i = 0;
+		while (i < coordinates.length) {
+			if (geomObj.getElementType(i) != ElementType.EXTERIOR_LINEAR_RING) {
+				i++;
+				continue;
+			}
+
+			int end = i + 1;
+			while (end < coordinates.length && geomObj.getElementType(end) == ElementType.INTERIOR_LINEAR_RING)
+				end++;
+
+			writeHeader(WKB_POLYGON, dimension, 0);
+			writeRings(coordinates, i, end, dimension);
+			i = end;
+		}
+	}
+
+	private double[] getEnvelopeRing(double[] envelope, int dimension) {
+		if (dimension == 3) {
+			return new double[]{
+					envelope[0], envelope[1], envelope[2],
+					envelope[3], envelope[1], envelope[2],
+					envelope[3], envelope[4], envelope[5],
+					envelope[0], envelope[4], envelope[5],
+					envelope[0], envelope[1], envelope[2]
+			};
+		} else {
+			return new double[]{
+					envelope[0], envelope[1],
+					envelope[2], envelope[1],
+					envelope[2], envelope[3],
+					envelope[0], envelope[3],
+					envelope[0], envelope[1]
+			};
+		}
+	}
+
+	private int sizeOfPointArray(double[] coordinates) {
+		return 4 + coordinates.length * 8;
+	}
+
+	private int sizeOfRings(double[][] coordinates, int from, int to) {
+		int size = 4;
+		for (int i = from; i < to; i++)
+			size += sizeOfPointArray(coordinates[i]);
+
+		return size;
+	}
+
+	private void writeHeader(int type, int dimension, int srid) {
+		buffer[pos++] = NDR;
+
+		if (dimension == 3)
+			type |= EWKB_Z_FLAG;
+
+		if (srid > 0) {
+			writeInt(type | EWKB_SRID_FLAG);
+			writeInt(srid);
+		} else
+			writeInt(type);
+	}
+
+	private void writeRings(double[][] coordinates, int from, int to, int dimension) {
+		writeInt(to - from);
+		for (int i = from; i < to; i++)
+			writePointArray(coordinates[i], dimension);
+	}
+
+	private void writePointArray(double[] coordinates, int dimension) {
+		writeInt(coordinates.length / dimension);
+		writeCoordinates(coordinates);
+	}
+
+	private void writeCoordinates(double[] coordinates) {
+		for (double coordinate : coordinates)
+			writeLong(Double.doubleToLongBits(coordinate));
+	}
+
+	private void writeInt(int value) {
+		buffer[pos++] = (byte)value;
+		buffer[pos++] = (byte)(value >>> 8);
+		buffer[pos++] = (byte)(value >>> 16);
+		buffer[pos++] = (byte)(value >>> 24);
+	}
+
+	private void writeLong(long value) {
+		buffer[pos++] = (byte)value;
+		buffer[pos++] = (byte)(value >>> 8);
+		buffer[pos++] = (byte)(value >>> 16);
+		buffer[pos++] = (byte)(value >>> 24);
+		buffer[pos++] = (byte)(value >>> 32);
+		buffer[pos++] = (byte)(value >>> 40);
+		buffer[pos++] = (byte)(value >>> 48);
+		buffer[pos++] = (byte)(value >>> 56);
+	}
+
+	private void ensureCapacity(int size) {
+		if (buffer.length < size)
+			buffer = new byte[Math.max(size, buffer.length << 1)];
+	}
+
+}
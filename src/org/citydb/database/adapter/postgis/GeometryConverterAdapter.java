@@ -33,8 +33,9 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.citydb.api.geometry.GeometryObject;
 import org.citydb.api.geometry.ElementType;
+import org.citydb.api.geometry.GeometryObject;
+import org.citydb.api.geometry.GeometryType;
 import org.citydb.database.adapter.AbstractGeometryConverterAdapter;
 import org.postgis.Geometry;
 import org.postgis.LineString;
@@ -47,9 +48,16 @@ import org.postgis.Point;
 import org.postgis.Polygon;
 
 public class GeometryConverterAdapter extends AbstractGeometryConverterAdapter {
+	private final ThreadLocal<EWKBWriter> ewkbWriter;
+	private boolean useEWKT;
 
 	protected GeometryConverterAdapter() {
-
+		ewkbWriter = new ThreadLocal<EWKBWriter>() {
+			@Override
+			protected EWKBWriter initialValue() {
+				return new EWKBWriter();
+			}
+		};
 	}
 
 	@Override
@@ -389,28 +397,43 @@ public class GeometryConverterAdapter extends AbstractGeometryConverterAdapter {
 		return null;
 	}
 
+	protected void setUseEWKT(boolean useEWKT) {
+		this.useEWKT = useEWKT;
+	}
+
 	@Override
 	public Object getDatabaseObject(GeometryObject geomObj, Connection connection) throws SQLException {
+		// CompositeSolids are not supported yet
+		if (geomObj.getGeometryType() == GeometryType.COMPOSITE_SOLID)
+			return null;
+
 		Object geometry = null;
 
-		switch (geomObj.getGeometryType()) {
-		case POLYGON:
-		case LINE_STRING:
-		case POINT:
-		case MULTI_LINE_STRING:
-		case MULTI_POINT:
-		case ENVELOPE:
-		case MULTI_POLYGON:
-			geometry = new PGgeometry(PGgeometry.geomFromString(convertToEWKT(geomObj)));
-			break;
-		case SOLID:
-			// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
-			// thus, we return the EWKT only
-			// TODO: rework as soon as the JDBC driver supports PolyhedralSurface
-			geometry = convertToEWKT(geomObj);
-			break;
-		case COMPOSITE_SOLID:
-			return null;
+		if (!useEWKT) {
+			// geometries are bound as EWKB byte arrays which PostGIS implicitly casts to geometry.
+			// this avoids formatting and parsing coordinate values as text on both sides
+			byte[] ewkb = ewkbWriter.get().write(geomObj);
+			if (ewkb != null && ewkb.length > 0)
+				geometry = ewkb;
+		} else {
+			switch (geomObj.getGeometryType()) {
+			case POLYGON:
+			case LINE_STRING:
+			case POINT:
+			case MULTI_LINE_STRING:
+			case MULTI_POINT:
+			case ENVELOPE:
+			case MULTI_POLYGON:
+				geometry = new PGgeometry(PGgeometry.geomFromString(convertToEWKT(geomObj)));
+				break;
+			case SOLID:
+				// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
+				// thus, we return the EWKT only
+				geometry = convertToEWKT(geomObj);
+				break;
+			default:
+				break;
+			}
 		}
 
 		if (geometry == null)
@@ -28,15 +28,28 @@
 package org.citydb.database.adapter.postgis;
 
 import org.citydb.api.database.DatabaseType;
+import org.citydb.config.project.database.DBConnection;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
 
 public class PostGISAdapter extends AbstractDatabaseAdapter {
+	private final GeometryConverterAdapter postgisGeometryAdapter;
+	private final SQLAdapter postgisSqlAdapter;
 
 	public PostGISAdapter() {
-		geometryAdapter = new GeometryConverterAdapter();
+		geometryAdapter = postgisGeometryAdapter = new GeometryConverterAdapter();
 		utilAdapter = new UtilAdapter(this);
 		workspaceAdapter = new WorkspaceManagerAdapter(this);
-		sqlAdapter = new SQLAdapter();
+		sqlAdapter = postgisSqlAdapter = new SQLAdapter();
+	}
+
+	@Override
+	public void setConnectionDetails(DBConnection connectionDetails) {
+		super.setConnectionDetails(connectionDetails);
+
+		// geometries are passed as EWKB unless EWKT is requested for the connection
+		boolean useEWKT = connectionDetails != null && Boolean.TRUE.equals(connectionDetails.getUseEWKTGeometries());
+		postgisGeometryAdapter.setUseEWKT(useEWKT);
+		postgisSqlAdapter.setUseEWKT(useEWKT);
 	}
 	
 	@Override
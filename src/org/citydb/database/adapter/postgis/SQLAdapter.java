@@ -37,9 +37,15 @@ import org.citydb.database.adapter.BlobExportAdapterImpl;
 import org.citydb.database.adapter.BlobImportAdapter;
 import org.citydb.database.adapter.BlobImportAdapterImpl;
 import org.citydb.database.adapter.BlobType;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.modules.citygml.importer.database.content.DBSequencerEnum;
 
 public class SQLAdapter extends AbstractSQLAdapter {
+	private boolean useEWKT;
+
+	protected void setUseEWKT(boolean useEWKT) {
+		this.useEWKT = useEWKT;
+	}
 
 	@Override
 	public String getInteger() {
@@ -181,16 +187,28 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return false;
 	}
 
+	@Override
+	public String getGeometryParameter() {
+		// EWKT geometries are bound as PGgeometry objects
+		return useEWKT ? "?" : "ST_GeomFromEWKB(?)";
+	}
+
+	@Override
+	public String getSolidGeometryParameter() {
+		// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
+		// thus, we have to use a database function to insert such geometries
+		return useEWKT ? "ST_GeomFromEWKT(?)" : "ST_GeomFromEWKB(?)";
+	}
+
 	@Override
 	public String getHierarchicalGeometryQuery() {
 		// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
-		// thus, we have to use the database function ST_AsEWKT to load such geometries
-		// TODO: rework as soon as the JDBC driver supports PolyhedralSurface
+		// thus, we have to use a database function to load such geometries
 		StringBuilder query = new StringBuilder()
 		.append("WITH RECURSIVE geometry_rec (id, gmlid, parent_id, root_id, is_solid, is_composite, is_triangulated, is_xlink, is_reverse, geometry, implicit_geometry, solid_geometry, cityobject_id, level) ")
 		.append("AS (SELECT sg.id, sg.gmlid, sg.parent_id, sg.root_id, sg.is_solid, sg.is_composite, sg.is_triangulated, sg.is_xlink, sg.is_reverse, sg.geometry, sg.implicit_geometry, sg.solid_geometry, sg.cityobject_id, 1 AS level FROM surface_geometry sg WHERE sg.id=? UNION ALL ")
 		.append("SELECT sg.id, sg.gmlid, sg.parent_id, sg.root_id, sg.is_solid, sg.is_composite, sg.is_triangulated, sg.is_xlink, sg.is_reverse, sg.geometry, sg.implicit_geometry, sg.solid_geometry, sg.cityobject_id, g.level + 1 AS level FROM surface_geometry sg, geometry_rec g WHERE sg.parent_id=g.id) ")
-		.append("SELECT id, gmlid, parent_id, root_id, is_solid, is_composite, is_triangulated, is_xlink, is_reverse, geometry, implicit_geometry, ST_AsEWKT(solid_geometry) as solid_geometry, cityobject_id, level FROM geometry_rec");
+		.append("SELECT id, gmlid, parent_id, root_id, is_solid, is_composite, is_triangulated, is_xlink, is_reverse, geometry, implicit_geometry, ").append(useEWKT ? "ST_AsEWKT" : "ST_AsEWKB").append("(solid_geometry) as solid_geometry, cityobject_id, level FROM geometry_rec");
 		
 		return query.toString();
 	}
@@ -205,4 +223,9 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return new BlobExportAdapterImpl(connection, type);
 	}
 
+	@Override
+	public InsertRowWriter getBulkInsertWriter(Connection connection, String tableName, String... columns) throws SQLException {
+		return BinaryCopyWriter.newInstance(connection, tableName, columns);
+	}
+
 }
@@ -497,7 +497,7 @@ public class UtilAdapter extends AbstractUtilAdapter {
 			if (unconverted == null)
 				return null;
 
-			StringBuilder query = new StringBuilder("select ST_Transform(?, ").append(targetSrs.getSrid()).append(')');
+			StringBuilder query = new StringBuilder("select ST_Transform(").append(databaseAdapter.getSQLAdapter().getGeometryParameter()).append(", ").append(targetSrs.getSrid()).append(')');
 			psQuery = connection.prepareStatement(query.toString());			
 			psQuery.setObject(1, unconverted);
 			
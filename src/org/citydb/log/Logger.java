@@ -32,7 +32,13 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.citydb.api.controller.LogController;
 import org.citydb.api.log.LogLevel;
@@ -40,15 +46,24 @@ import org.citydb.api.log.LogLevel;
 public class Logger implements LogController {
 	private static Logger instance = new Logger();
 
+	private static final int QUEUE_SIZE = 8192;
+	private static final int BATCH_SIZE = 512;
+	private static final long FLUSH_INTERVAL = 1000;
+
 	private LogLevel consoleLogLevel = LogLevel.INFO;
 	private LogLevel fileLogLevel = LogLevel.INFO;
 
 	private Calendar cal;
 	private DecimalFormat df = new DecimalFormat("00");
+	private volatile PrefixCache prefixCache = new PrefixCache(-1);
 
 	private boolean isLogToConsole = true;
 	private boolean isLogToFile = false;
 	private BufferedWriter logFile;
+	private final Object fileLock = new Object();
+
+	private volatile AsyncAppender asyncAppender;
+	private Thread shutdownHook;
 
 	private Logger() {
 		// just to thwart instantiation
@@ -77,43 +92,24 @@ public class Logger implements LogController {
 	}
 
 	private String getPrefix(LogLevel type) {
-		cal = Calendar.getInstance();
-
-		int h = cal.get(Calendar.HOUR_OF_DAY);
-		int m = cal.get(Calendar.MINUTE);
-		int s = cal.get(Calendar.SECOND);
-
-		StringBuffer prefix = new StringBuffer()
-		.append("[")
-		.append(df.format(h))
-		.append(":")
-		.append(df.format(m))
-		.append(":")
-		.append(df.format(s))
-		.append(" ")
-		.append(type.value())
-		.append("] ");
+		// the prefix only changes once per second
+		long second = System.currentTimeMillis() / 1000;
+		PrefixCache cache = prefixCache;
+		if (cache.second != second) {
+			cache = new PrefixCache(second);
+			prefixCache = cache;
+		}
 
-		return prefix.toString();
+		return cache.prefixes[type.ordinal()];
 	}
 
 	@Override
 	public void log(LogLevel type, String msg) {
-		StringBuffer buffer = new StringBuffer(getPrefix(type));
-		buffer.append(msg);
-
-		if (isLogToConsole && consoleLogLevel.ordinal() >= type.ordinal())
-			System.out.println(buffer.toString());
+		boolean toConsole = isLogToConsole && consoleLogLevel.ordinal() >= type.ordinal();
+		boolean toFile = isLogToFile && fileLogLevel.ordinal() >= type.ordinal();
 
-		if (isLogToFile && fileLogLevel.ordinal() >= type.ordinal()) {
-			try {
-				logFile.write(buffer.toString());
-				logFile.newLine();
-				logFile.flush();
-			} catch (IOException e) {
-				//
-			}
-		}
+		if (toConsole || toFile)
+			write(getPrefix(type) + msg, toConsole, toFile, type == LogLevel.DEBUG);
 	}
 
 	@Override
@@ -138,34 +134,18 @@ public class Logger implements LogController {
 
 	@Override
 	public void all(LogLevel type, String message) {
-		StringBuffer buffer = new StringBuffer(getPrefix(type));
-		buffer.append(message);
-
-		if (isLogToConsole && consoleLogLevel.ordinal() >= type.ordinal())
-			System.out.println(buffer.toString());
-
-		if (fileLogLevel.ordinal() >= type.ordinal())
-			writeToFile(buffer.toString());
+		log(type, message);
 	}
 
 	@Override
 	public void print(String msg) {
-		if (isLogToConsole)
-			System.out.println(msg);
-
-		writeToFile(msg);
+		if (isLogToConsole || isLogToFile)
+			write(msg, isLogToConsole, isLogToFile, false);
 	}
 
 	public void writeToFile(String msg) {
-		if (isLogToFile) {
-			try {
-				logFile.write(msg);
-				logFile.newLine();
-				logFile.flush();
-			} catch (IOException e) {
-				//
-			}
-		}
+		if (isLogToFile)
+			write(msg, false, true, false);
 	}
 	
 	public void logToConsole(boolean isLogToConsole) {
@@ -176,6 +156,38 @@ public class Logger implements LogController {
 		this.isLogToFile = isLogToFile;
 	}
 
+	public synchronized void setAsynchronous(boolean isAsynchronous) {
+		if (isAsynchronous && asyncAppender == null) {
+			asyncAppender = new AsyncAppender();
+			asyncAppender.start();
+
+			// make sure queued messages are written when the application exits
+			if (shutdownHook == null) {
+				shutdownHook = new Thread("log_shutdown") {
+					public void run() {
+						setAsynchronous(false);
+					}
+				};
+
+				Runtime.getRuntime().addShutdownHook(shutdownHook);
+			}
+		} else if (!isAsynchronous && asyncAppender != null) {
+			AsyncAppender appender = asyncAppender;
+			asyncAppender = null;
+			appender.shutdown();
+		}
+	}
+
+	public boolean isAsynchronous() {
+		return asyncAppender != null;
+	}
+
+	public void flush() {
+		AsyncAppender appender = asyncAppender;
+		if (appender != null)
+			appender.flush();
+	}
+
 	public boolean appendLogFile(String logFile, boolean isDirectory) {
 		File file = new File(logFile);
 		
@@ -192,8 +204,10 @@ public class Logger implements LogController {
 			info("Writing log messages to file: '" + file.getAbsolutePath() + "'");
 			detachLogFile();
 
-			this.logFile = new BufferedWriter(new FileWriter(file, file.exists()));
-			isLogToFile = true;
+			synchronized (fileLock) {
+				this.logFile = new BufferedWriter(new FileWriter(file, file.exists()));
+				isLogToFile = true;
+			}
 		} catch (IOException e) {
 			error("Failed to open log file '" + logFile + "': " + e.getMessage());
 			error("Not writing log messages to file");
@@ -205,14 +219,46 @@ public class Logger implements LogController {
 
 	public void detachLogFile() {
 		if (logFile != null) {
-			try {
-				warn("Stopped writing log messages to log file.");
-				logFile.close();
-			} catch (IOException e) {
-				//
-			} finally {
-				logFile = null;
-				isLogToFile = false;
+			warn("Stopped writing log messages to log file.");
+
+			// queued messages still go to the file before it is closed
+			flush();
+
+			synchronized (fileLock) {
+				try {
+					if (logFile != null)
+						logFile.close();
+				} catch (IOException e) {
+					//
+				} finally {
+					logFile = null;
+					isLogToFile = false;
+				}
+			}
+		}
+	}
+
+	private void write(String line, boolean toConsole, boolean toFile, boolean isDroppable) {
+		AsyncAppender appender = asyncAppender;
+		if (appender == null || !appender.append(new LogRecord(line, toConsole, toFile), isDroppable))
+			writeDirectly(line, toConsole, toFile);
+	}
+
+	private void writeDirectly(String line, boolean toConsole, boolean toFile) {
+		if (toConsole)
+			System.out.println(line);
+
+		if (toFile) {
+			synchronized (fileLock) {
+				if (logFile != null) {
+					try {
+						logFile.write(line);
+						logFile.newLine();
+						logFile.flush();
+					} catch (IOException e) {
+						//
+					}
+				}
 			}
 		}
 	}
@@ -235,4 +281,217 @@ public class Logger implements LogController {
 		return defaultLog.toString();
 	}
 
+	private static final class PrefixCache {
+		private final long second;
+		private final String[] prefixes;
+
+		private PrefixCache(long second) {
+			this.second = second;
+
+			Calendar cal = Calendar.getInstance();
+			cal.setTimeInMillis(second * 1000);
+			DecimalFormat df = new DecimalFormat("00");
+
+			String time = df.format(cal.get(Calendar.HOUR_OF_DAY)) + ":" 
+					+ df.format(cal.get(Calendar.MINUTE)) + ":" 
+					+ df.format(cal.get(Calendar.SECOND));
+
+			prefixes = new String[LogLevel.values().length];
+			for (LogLevel level : LogLevel.values())
+				prefixes[level.ordinal()] = "[" + time + " " + level.value() + "] ";
+		}
+	}
+
+	private static final class LogRecord {
+		private final String line;
+		private final boolean toConsole;
+		private final boolean toFile;
+		private final CountDownLatch written;
+		private final boolean isLast;
+
+		private LogRecord(String line, boolean toConsole, boolean toFile) {
+			this.line = line;
+			this.toConsole = toConsole;
+			this.toFile = toFile;
+			written = null;
+			isLast = false;
+		}
+
+		private LogRecord(boolean isLast) {
+			line = null;
+			toConsole = false;
+			toFile = false;
+			written = new CountDownLatch(1);
+			this.isLast = isLast;
+		}
+	}
+
+	/**
+	 * Writes log messages on a background thread. Messages are taken from a 
+	 * bounded queue in batches and written to the console and the log file, 
+	 * which are flushed once the queue is empty or at least once per second. 
+	 * If the queue is full, debug messages are dropped and counted, whereas 
+	 * the callers of all other messages wait for free space.
+	 */
+	private final class AsyncAppender extends Thread {
+		private final ArrayBlockingQueue<LogRecord> queue = new ArrayBlockingQueue<LogRecord>(QUEUE_SIZE);
+		private final AtomicLong droppedRecords = new AtomicLong();
+		private final String lineSeparator = System.getProperty("line.separator");
+
+		private AsyncAppender() {
+			super("log_appender");
+			setDaemon(true);
+		}
+
+		private boolean append(LogRecord record, boolean isDroppable) {
+			if (queue.offer(record))
+				return true;
+
+			if (isDroppable) {
+				droppedRecords.incrementAndGet();
+				return true;
+			}
+
+			try {
+				queue.put(record);
+				return true;
+			} catch (InterruptedException e) {
+				// the message is written by the caller instead
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		private void flush() {
+			enqueueMarker(new LogRecord(false));
+		}
+
+		private void shutdown() {
+			enqueueMarker(new LogRecord(true));
+
+			try {
+				join(FLUSH_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			// messages added while shutting down
+			LogRecord record = null;
+			while ((record = queue.poll()) != null) {
+				if (record.written == null)
+					writeDirectly(record.line, record.toConsole, record.toFile);
+				else
+					record.written.countDown();
+			}
+		}
+
+		private void enqueueMarker(LogRecord marker) {
+			if (Thread.currentThread() == this)
+				return;
+
+			boolean isInterrupted = false;
+			try {
+				while (isAlive()) {
+					try {
+						if (queue.offer(marker, FLUSH_INTERVAL, TimeUnit.MILLISECONDS))
+							break;
+					} catch (InterruptedException e) {
+						isInterrupted = true;
+					}
+				}
+
+				while (isAlive()) {
+					try {
+						if (marker.written.await(FLUSH_INTERVAL, TimeUnit.MILLISECONDS))
+							break;
+					} catch (InterruptedException e) {
+						isInterrupted = true;
+					}
+				}
+			} finally {
+				if (isInterrupted)
+					Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			List<LogRecord> records = new ArrayList<LogRecord>(BATCH_SIZE);
+			StringBuilder console = new StringBuilder();
+			long lastFlush = System.currentTimeMillis();
+
+			while (true) {
+				try {
+					LogRecord record = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+					if (record != null) {
+						records.add(record);
+						queue.drainTo(records, BATCH_SIZE - 1);
+					}
+				} catch (InterruptedException e) {
+					// the appender is only stopped by a marker
+				}
+
+				boolean isFlushRequested = false;
+				boolean isLast = false;
+				for (LogRecord record : records) {
+					if (record.written != null) {
+						isFlushRequested = true;
+						isLast |= record.isLast;
+					}
+				}
+
+				long dropped = droppedRecords.getAndSet(0);
+				if (dropped > 0) {
+					String line = getPrefix(LogLevel.WARN) + dropped + " debug messages have been dropped due to a full log buffer.";
+					records.add(0, new LogRecord(line, isLogToConsole, isLogToFile));
+				}
+
+				for (LogRecord record : records) {
+					if (record.toConsole && record.line != null)
+						console.append(record.line).append(lineSeparator);
+				}
+
+				if (console.length() > 0) {
+					System.out.print(console.toString());
+					console.setLength(0);
+				}
+
+				long now = System.currentTimeMillis();
+				boolean flush = isFlushRequested || queue.isEmpty() || now - lastFlush >= FLUSH_INTERVAL;
+
+				synchronized (fileLock) {
+					if (logFile != null) {
+						try {
+							for (LogRecord record : records) {
+								if (record.toFile && record.line != null) {
+									logFile.write(record.line);
+									logFile.newLine();
+								}
+							}
+
+							if (flush)
+								logFile.flush();
+						} catch (IOException e) {
+							//
+						}
+					}
+				}
+
+				if (flush) {
+					System.out.flush();
+					lastFlush = now;
+				}
+
+				for (LogRecord record : records) {
+					if (record.written != null)
+						record.written.countDown();
+				}
+
+				records.clear();
+				if (isLast)
+					return;
+			}
+		}
+	}
+
 }
@@ -92,6 +92,10 @@ public class CacheTableManager {
 		return cacheAdapter;
 	}
 
+	public File getLocalCacheDirectory() {
+		return cacheDir != null ? new File(cacheDir) : null;
+	}
+
 	public CacheTable createCacheTable(CacheTableModelEnum model) throws SQLException {
 		return createCacheTable(model, cacheConnection, cacheAdapter);		
 	}
@@ -0,0 +1,367 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.common.database.uid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.citydb.log.Logger;
+
+/**
+ * Provides the buffers of off-heap gml:id caches and keeps their memory footprint 
+ * below a given limit. Buffers are allocated as direct buffers as long as the limit
+ * is not exceeded. Once it is exceeded, the least recently used segments are spilled 
+ * to memory-mapped files in the local cache directory so that the operating system 
+ * can page them out. Segments that have been spilled allocate further buffers from 
+ * memory-mapped files as well. Every segment maps its buffers from a single file.
+ * Regions of released buffers are reused by later mappings of the segment, and free 
+ * regions at the end of the file are truncated. Since a table and its rehashed copy 
+ * are mapped at the same time, a file stays below about twice the largest mapped 
+ * footprint of its segment instead of growing with every rehash. The limit never 
+ * exceeds the maximum amount of direct memory of the JVM. Released buffers are freed 
+ * immediately rather than being left to the garbage collector.
+ */
+public class OffHeapStore {
+	private static final Method CLEANER;
+	private static final Method CLEAN;
+
+	static {
+		Method cleaner = null;
+		Method clean = null;
+
+		try {
+			cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+		} catch (Exception e) {
+			// buffers are freed by the garbage collector
+		}
+
+		CLEANER = cleaner;
+		CLEAN = clean;
+	}
+
+	private final Logger LOG = Logger.getInstance();
+	private final File directory;
+	private final long maxMemory;
+
+	private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+	private final AtomicLong memory = new AtomicLong();
+	private final AtomicLong mapped = new AtomicLong();
+	private final AtomicInteger fileCounter = new AtomicInteger();
+	private final AtomicBoolean isSpilling = new AtomicBoolean(false);
+	private final AtomicBoolean isDirectMemoryExhausted = new AtomicBoolean(false);
+
+	public OffHeapStore(File directory, long maxMemory) throws IOException {
+		if (directory == null || !directory.isDirectory())
+			throw new IOException("No local cache directory available for off-heap gml:id caches.");
+
+		this.directory = directory;
+
+		// leave some direct memory for rehashing and for other users of direct buffers
+		long maxDirectMemory = getMaxDirectMemory() / 4 * 3;
+		if (maxMemory > maxDirectMemory) {
+			LOG.info("Limiting off-heap gml:id caches to " + (maxDirectMemory >> 20) + " MB of direct memory.");
+			maxMemory = maxDirectMemory;
+		}
+
+		this.maxMemory = maxMemory;
+	}
+
+	public long getMemoryFootprint() {
+		return memory.get();
+	}
+
+	public long getMappedFootprint() {
+		return mapped.get();
+	}
+
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	void register(Segment segment) {
+		segments.add(segment);
+	}
+
+	void unregister(Segment segment) {
+		segments.remove(segment);
+	}
+
+	ByteBuffer allocateDirect(int size) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+		memory.addAndGet(size);
+		return buffer;
+	}
+
+	ByteBuffer allocateMapped(Segment segment, int size) throws IOException {
+		if (segment.file == null) {
+			segment.file = new File(directory, "uidcache-" + fileCounter.incrementAndGet() + ".tmp");
+			segment.file.deleteOnExit();
+			segment.channel = new RandomAccessFile(segment.file, "rw").getChannel();
+		}
+
+		// reuse the first free region that is large enough before extending the file
+		long offset = -1;
+		for (Map.Entry<Long, Integer> region : segment.freeRegions.entrySet()) {
+			if (region.getValue() >= size) {
+				offset = region.getKey();
+				segment.freeRegions.remove(offset);
+				if (region.getValue() > size)
+					segment.freeRegions.put(offset + size, region.getValue() - size);
+
+				break;
+			}
+		}
+
+		ByteBuffer buffer;
+		if (offset != -1) {
+			buffer = segment.channel.map(MapMode.READ_WRITE, offset, size);
+
+			// reused regions still hold the content of the released buffer
+			while (buffer.remaining() >= 8)
+				buffer.putLong(0);
+			while (buffer.hasRemaining())
+				buffer.put((byte)0);
+
+			buffer.clear();
+		} else {
+			offset = segment.fileLength;
+			buffer = segment.channel.map(MapMode.READ_WRITE, offset, size);
+			segment.fileLength += size;
+		}
+
+		segment.offsets.put(buffer, offset);
+		mapped.addAndGet(size);
+		return buffer;
+	}
+
+	void release(Segment segment, ByteBuffer buffer, boolean isMapped) {
+		if (!isMapped)
+			memory.addAndGet(-buffer.capacity());
+		else
+			mapped.addAndGet(-buffer.capacity());
+
+		free(buffer);
+
+		if (isMapped) {
+			Long offset = segment.offsets.remove(buffer);
+			if (offset != null)
+				addFreeRegion(segment, offset, buffer.capacity());
+		}
+	}
+
+	void close(Segment segment) {
+		if (segment.channel != null) {
+			try {
+				segment.channel.close();
+			} catch (IOException e) {
+				//
+			}
+
+			segment.file.delete();
+			segment.channel = null;
+			segment.file = null;
+			segment.fileLength = 0;
+		}
+
+		segment.freeRegions.clear();
+		segment.offsets.clear();
+	}
+
+	private void addFreeRegion(Segment segment, long offset, int size) {
+		// merge with adjacent free regions
+		Map.Entry<Long, Integer> previous = segment.freeRegions.floorEntry(offset);
+		if (previous != null && previous.getKey() + previous.getValue() == offset) {
+			segment.freeRegions.remove(previous.getKey());
+			offset = previous.getKey();
+			size += previous.getValue();
+		}
+
+		Integer next = segment.freeRegions.remove(offset + size);
+		if (next != null)
+			size += next;
+
+		if (offset + size == segment.fileLength) {
+			// give the tail of the file back to the file system
+			segment.fileLength = offset;
+			try {
+				segment.channel.truncate(offset);
+			} catch (IOException e) {
+				// the region is reused by the next mapping that extends the file
+			}
+		} else
+			segment.freeRegions.put(offset, size);
+	}
+
+	private void directMemoryExhausted() {
+		if (isDirectMemoryExhausted.compareAndSet(false, true))
+			LOG.warn("Direct memory exhausted. Off-heap gml:id caches continue in the local cache directory.");
+	}
+
+	private void free(ByteBuffer buffer) {
+		if (CLEANER == null)
+			return;
+
+		try {
+			Object cleaner = CLEANER.invoke(buffer);
+			if (cleaner != null)
+				CLEAN.invoke(cleaner);
+		} catch (Exception e) {
+			// buffer is freed by the garbage collector
+		}
+	}
+
+	private long getMaxDirectMemory() {
+		try {
+			return (Long)Class.forName("sun.misc.VM").getMethod("maxDirectMemory").invoke(null);
+		} catch (Exception e) {
+			// direct memory defaults to the maximum heap size
+			return Runtime.getRuntime().maxMemory();
+		}
+	}
+
+	void checkMemory() {
+		if (memory.get() <= maxMemory || !isSpilling.compareAndSet(false, true))
+			return;
+
+		try {
+			while (memory.get() > maxMemory) {
+				// spill the segment that has been accessed least since the last check
+				Segment coldest = null;
+				long minAccess = Long.MAX_VALUE;
+				for (Segment segment : segments) {
+					if (segment.isSpilled())
+						continue;
+
+					long access = segment.getAccessCount();
+					if (access < minAccess) {
+						minAccess = access;
+						coldest = segment;
+					}
+				}
+
+				if (coldest == null)
+					break;
+
+				try {
+					coldest.spill();
+				} catch (IOException e) {
+					LOG.error("Failed to spill gml:id cache segment to local cache directory: " + e.getMessage());
+					break;
+				}
+			}
+
+			for (Segment segment : segments)
+				segment.resetAccessCount();
+		} finally {
+			isSpilling.set(false);
+		}
+	}
+
+	static abstract class Segment {
+		protected final OffHeapStore store;
+		protected boolean isSpilled;
+		protected long accessCount;
+
+		private File file;
+		private FileChannel channel;
+		private long fileLength;
+		private final TreeMap<Long, Integer> freeRegions = new TreeMap<Long, Integer>();
+		private final Map<ByteBuffer, Long> offsets = new IdentityHashMap<ByteBuffer, Long>();
+
+		Segment(OffHeapStore store) {
+			this.store = store;
+			store.register(this);
+		}
+
+		protected ByteBuffer allocate(int size) throws IOException {
+			if (!isSpilled) {
+				try {
+					return store.allocateDirect(size);
+				} catch (OutOfMemoryError e) {
+					// direct memory is exhausted, so continue with memory-mapped buffers.
+					// callers must not keep references to buffers across this call
+					store.directMemoryExhausted();
+					spill();
+				}
+			}
+
+			return store.allocateMapped(this, size);
+		}
+
+		protected void release(ByteBuffer buffer) {
+			store.release(this, buffer, isSpilled);
+		}
+
+		protected ByteBuffer moveToMappedFile(ByteBuffer buffer) throws IOException {
+			ByteBuffer target = store.allocateMapped(this, buffer.capacity());
+			ByteBuffer source = buffer.duplicate();
+			source.clear();
+			target.put(source);
+			target.clear();
+			store.release(this, buffer, false);
+
+			return target;
+		}
+
+		protected void close() {
+			store.close(this);
+			store.unregister(this);
+		}
+
+		synchronized boolean isSpilled() {
+			return isSpilled;
+		}
+
+		synchronized long getAccessCount() {
+			return accessCount;
+		}
+
+		synchronized void resetAccessCount() {
+			accessCount = 0;
+		}
+
+		abstract void spill() throws IOException;
+		abstract long getMemoryFootprint();
+		abstract long getMappedFootprint();
+	}
+
+}
@@ -0,0 +1,529 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.common.database.uid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.citydb.log.Logger;
+import org.citygml4j.model.citygml.CityGMLClass;
+
+/**
+ * A {@link UIDCache} which keeps its entries outside the Java heap. Entries are 
+ * stored as records in append-only data chunks and are addressed through open 
+ * addressing tables mapping the hashed key bytes and the database ids to the 
+ * records. Tables and chunks are split into independently locked segments whose 
+ * buffers are provided by an {@link OffHeapStore}. Since all entries are kept in 
+ * the cache, there is no need for backup tables.
+ */
+public class OffHeapUIDCache implements UIDCache {
+	private static final CityGMLClass[] TYPES = CityGMLClass.values();
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+	private static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int MAX_TABLE_CAPACITY = 1 << 26;
+	private static final int SLOT_SIZE = 16;
+	private static final long REF_MASK = 0xFFFFFFFFFFFFL;
+
+	// record layout: id, root id, type, reverse flag, key length, key, mapping length, mapping
+	private static final int RECORD_ROOT_ID = 8;
+	private static final int RECORD_TYPE = 16;
+	private static final int RECORD_REVERSE = 18;
+	private static final int RECORD_KEY_LENGTH = 19;
+	private static final int RECORD_KEY = 23;
+
+	private final Logger LOG = Logger.getInstance();
+	private final OffHeapStore store;
+	private final String name;
+	private final KeySegment[] keySegments;
+	private final IdSegment[] idSegments;
+	private final int segmentMask;
+	private final AtomicLong entries = new AtomicLong();
+
+	public OffHeapUIDCache(OffHeapStore store, String name, int capacity, int concurrencyLevel) {
+		this.store = store;
+		this.name = name;
+
+		int size = 16;
+		while (size < concurrencyLevel * 4 && size < 1024)
+			size <<= 1;
+
+		int tableCapacity = 1024;
+		while ((long)tableCapacity * size * 3 < (long)capacity * 4 && tableCapacity < MAX_TABLE_CAPACITY)
+			tableCapacity <<= 1;
+
+		segmentMask = size - 1;
+		keySegments = new KeySegment[size];
+		idSegments = new IdSegment[size];
+		for (int i = 0; i < size; i++) {
+			keySegments[i] = new KeySegment(store, tableCapacity);
+			idSegments[i] = new IdSegment(store, tableCapacity);
+		}
+	}
+
+	@Override
+	public void put(String key, long id, long rootId, boolean reverse, String mapping, CityGMLClass type) {
+		insert(key, id, rootId, reverse, mapping, type);
+	}
+
+	@Override
+	public boolean lookupAndPut(String key, long id, long rootId, boolean reverse, String mapping, CityGMLClass type) {
+		return insert(key, id, rootId, reverse, mapping, type);
+	}
+
+	@Override
+	public boolean lookupAndPut(String key, long id, CityGMLClass type) {
+		return insert(key, id, 0, false, null, type);
+	}
+
+	@Override
+	public UIDCacheEntry get(String key) {
+		byte[] keyBytes = key.getBytes(UTF8);
+		long hash = hash(keyBytes);
+		KeySegment segment = keySegments[(int)(hash >>> 48) & segmentMask];
+
+		synchronized (segment) {
+			segment.accessCount++;
+			long ref = segment.find(keyBytes, hash);
+			return ref != -1 ? segment.readEntry(ref) : null;
+		}
+	}
+
+	@Override
+	public String get(long id, CityGMLClass type) {
+		IdSegment idSegment = idSegments[(int)(mix(id) >>> 48) & segmentMask];
+		long[] refs;
+
+		synchronized (idSegment) {
+			idSegment.accessCount++;
+			refs = idSegment.find(id);
+		}
+
+		if (refs != null) {
+			for (long ref : refs) {
+				KeySegment segment = keySegments[(int)(ref >>> 48)];
+				synchronized (segment) {
+					segment.accessCount++;
+					long recordRef = ref & REF_MASK;
+					if (segment.readId(recordRef) == id && segment.readType(recordRef).isInstance(type))
+						return segment.readKey(recordRef);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public UIDCacheEntry getFromMemory(String key) {
+		return get(key);
+	}
+
+	public long size() {
+		return entries.get();
+	}
+
+	public long getMemoryFootprint() {
+		long footprint = 0;
+		for (int i = 0; i < keySegments.length; i++)
+			footprint += keySegments[i].getMemoryFootprint() + idSegments[i].getMemoryFootprint();
+
+		return footprint;
+	}
+
+	public long getMappedFootprint() {
+		long footprint = 0;
+		for (int i = 0; i < keySegments.length; i++)
+			footprint += keySegments[i].getMappedFootprint() + idSegments[i].getMappedFootprint();
+
+		return footprint;
+	}
+
+	@Override
+	public void shutdown() {
+		LOG.info("Off-heap " + name + " cache: " + entries.get() + " entries, " 
+				+ toMegaBytes(getMemoryFootprint()) + " MB in memory, "
+				+ toMegaBytes(getMappedFootprint()) + " MB in memory-mapped files.");
+
+		for (int i = 0; i < keySegments.length; i++) {
+			keySegments[i].free();
+			idSegments[i].free();
+		}
+
+		entries.set(0);
+	}
+
+	private boolean insert(String key, long id, long rootId, boolean reverse, String mapping, CityGMLClass type) {
+		byte[] keyBytes = key.getBytes(UTF8);
+		long hash = hash(keyBytes);
+		int segmentIndex = (int)(hash >>> 48) & segmentMask;
+		KeySegment segment = keySegments[segmentIndex];
+
+		try {
+			long ref;
+			synchronized (segment) {
+				segment.accessCount++;
+				if (segment.find(keyBytes, hash) != -1)
+					return true;
+
+				ref = segment.append(keyBytes, id, rootId, reverse, mapping != null ? mapping.getBytes(UTF8) : null, type);
+				segment.insert(hash, ref);
+			}
+
+			IdSegment idSegment = idSegments[(int)(mix(id) >>> 48) & segmentMask];
+			synchronized (idSegment) {
+				idSegment.accessCount++;
+				idSegment.insert(id, ((long)segmentIndex << 48) | ref);
+			}
+
+			entries.incrementAndGet();
+		} catch (IOException e) {
+			LOG.error("Failed to store entry in off-heap " + name + " cache: " + e.getMessage());
+		}
+
+		store.checkMemory();
+		return false;
+	}
+
+	private long hash(byte[] bytes) {
+		// 64-bit FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : bytes) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		return mix(hash);
+	}
+
+	private static long mix(long value) {
+		// 64-bit finalizer of MurmurHash3
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	private long toMegaBytes(long bytes) {
+		return (bytes + (1 << 19)) >> 20;
+	}
+
+	private static abstract class Table extends OffHeapStore.Segment {
+		private final int initialCapacity;
+		private ByteBuffer slots;
+		private int capacity;
+		private int size;
+
+		Table(OffHeapStore store, int initialCapacity) {
+			super(store);
+			this.initialCapacity = initialCapacity;
+		}
+
+		final int first(long key) {
+			return slots != null ? (int)mix(key) & (capacity - 1) : -1;
+		}
+
+		final int next(int slot) {
+			slot = (slot + 1) & (capacity - 1);
+			return isEmpty(slot) ? -1 : slot;
+		}
+
+		final boolean isEmpty(int slot) {
+			return slots.getLong(slot * SLOT_SIZE + 8) == 0;
+		}
+
+		final long keyAt(int slot) {
+			return slots.getLong(slot * SLOT_SIZE);
+		}
+
+		final long valueAt(int slot) {
+			// values are stored incremented by one to mark empty slots with zero
+			return slots.getLong(slot * SLOT_SIZE + 8) - 1;
+		}
+
+		final int start(long key) {
+			int slot = first(key);
+			return slot != -1 && !isEmpty(slot) ? slot : -1;
+		}
+
+		final void insert(long key, long value) throws IOException {
+			if (slots == null) {
+				capacity = initialCapacity;
+				slots = allocate(capacity * SLOT_SIZE);
+			} else if ((size + 1) * 4L > capacity * 3L)
+				rehash(capacity << 1);
+
+			int slot = (int)mix(key) & (capacity - 1);
+			while (!isEmpty(slot))
+				slot = (slot + 1) & (capacity - 1);
+
+			slots.putLong(slot * SLOT_SIZE, key);
+			slots.putLong(slot * SLOT_SIZE + 8, value + 1);
+			size++;
+		}
+
+		private void rehash(int newCapacity) throws IOException {
+			if (newCapacity > MAX_TABLE_CAPACITY)
+				throw new IOException("Maximum capacity of cache segment exceeded.");
+
+			// allocating may move the current slots to a memory-mapped file
+			ByteBuffer newSlots = allocate(newCapacity * SLOT_SIZE);
+			ByteBuffer oldSlots = slots;
+			int oldCapacity = capacity;
+
+			slots = newSlots;
+			capacity = newCapacity;
+			size = 0;
+
+			for (int i = 0; i < oldCapacity; i++) {
+				long value = oldSlots.getLong(i * SLOT_SIZE + 8);
+				if (value != 0)
+					insert(oldSlots.getLong(i * SLOT_SIZE), value - 1);
+			}
+
+			release(oldSlots);
+		}
+
+		void spillTable() throws IOException {
+			if (slots != null)
+				slots = moveToMappedFile(slots);
+		}
+
+		long getTableFootprint() {
+			return slots != null ? slots.capacity() : 0;
+		}
+
+		void freeTable() {
+			if (slots != null) {
+				release(slots);
+				slots = null;
+				capacity = 0;
+				size = 0;
+			}
+		}
+	}
+
+	private static final class KeySegment extends Table {
+		private ByteBuffer[] chunks = new ByteBuffer[4];
+		private int chunkCount;
+
+		KeySegment(OffHeapStore store, int initialCapacity) {
+			super(store, initialCapacity);
+		}
+
+		long find(byte[] key, long hash) {
+			for (int slot = start(hash); slot != -1; slot = next(slot)) {
+				if (keyAt(slot) == hash) {
+					long ref = valueAt(slot);
+					if (keyEquals(ref, key))
+						return ref;
+				}
+			}
+
+			return -1;
+		}
+
+		long append(byte[] key, long id, long rootId, boolean reverse, byte[] mapping, CityGMLClass type) throws IOException {
+			int length = RECORD_KEY + key.length + 4 + (mapping != null ? mapping.length : 0);
+			ByteBuffer chunk = chunkCount > 0 ? chunks[chunkCount - 1] : null;
+
+			if (chunk == null || chunk.remaining() < length) {
+				if (chunkCount == 0xFFFF)
+					throw new IOException("Maximum number of data chunks of cache segment exceeded.");
+
+				int size = chunk == null ? MIN_CHUNK_SIZE : Math.min(chunk.capacity() << 1, MAX_CHUNK_SIZE);
+				chunk = allocate(Math.max(size, length));
+
+				if (chunkCount == chunks.length)
+					chunks = Arrays.copyOf(chunks, chunkCount << 1);
+
+				chunks[chunkCount++] = chunk;
+			}
+
+			int pos = chunk.position();
+			chunk.putLong(id);
+			chunk.putLong(rootId);
+			chunk.putShort((short)type.ordinal());
+			chunk.put((byte)(reverse ? 1 : 0));
+			chunk.putInt(key.length);
+			chunk.put(key);
+			if (mapping != null) {
+				chunk.putInt(mapping.length);
+				chunk.put(mapping);
+			} else
+				chunk.putInt(-1);
+
+			return ((long)(chunkCount - 1) << 32) | pos;
+		}
+
+		long readId(long ref) {
+			return chunks[(int)(ref >>> 32)].getLong((int)ref);
+		}
+
+		CityGMLClass readType(long ref) {
+			return TYPES[chunks[(int)(ref >>> 32)].getShort((int)ref + RECORD_TYPE)];
+		}
+
+		String readKey(long ref) {
+			ByteBuffer chunk = chunks[(int)(ref >>> 32)];
+			int pos = (int)ref;
+			return readString(chunk, pos + RECORD_KEY, chunk.getInt(pos + RECORD_KEY_LENGTH));
+		}
+
+		UIDCacheEntry readEntry(long ref) {
+			ByteBuffer chunk = chunks[(int)(ref >>> 32)];
+			int pos = (int)ref;
+			int keyLength = chunk.getInt(pos + RECORD_KEY_LENGTH);
+			int mappingLength = chunk.getInt(pos + RECORD_KEY + keyLength);
+
+			return new UIDCacheEntry(chunk.getLong(pos), 
+					chunk.getLong(pos + RECORD_ROOT_ID), 
+					chunk.get(pos + RECORD_REVERSE) == 1, 
+					mappingLength != -1 ? readString(chunk, pos + RECORD_KEY + keyLength + 4, mappingLength) : null, 
+					TYPES[chunk.getShort(pos + RECORD_TYPE)]);
+		}
+
+		private boolean keyEquals(long ref, byte[] key) {
+			ByteBuffer chunk = chunks[(int)(ref >>> 32)];
+			int pos = (int)ref;
+			if (chunk.getInt(pos + RECORD_KEY_LENGTH) != key.length)
+				return false;
+
+			pos += RECORD_KEY;
+			for (int i = 0; i < key.length; i++)
+				if (chunk.get(pos + i) != key[i])
+					return false;
+
+			return true;
+		}
+
+		private String readString(ByteBuffer chunk, int pos, int length) {
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++)
+				bytes[i] = chunk.get(pos + i);
+
+			return new String(bytes, UTF8);
+		}
+
+		@Override
+		synchronized void spill() throws IOException {
+			if (isSpilled)
+				return;
+
+			spillTable();
+			for (int i = 0; i < chunkCount; i++) {
+				int pos = chunks[i].position();
+				chunks[i] = moveToMappedFile(chunks[i]);
+				chunks[i].position(pos);
+			}
+
+			isSpilled = true;
+		}
+
+		@Override
+		synchronized long getMemoryFootprint() {
+			return !isSpilled ? getFootprint() : 0;
+		}
+
+		@Override
+		synchronized long getMappedFootprint() {
+			return isSpilled ? getFootprint() : 0;
+		}
+
+		private long getFootprint() {
+			long footprint = getTableFootprint();
+			for (int i = 0; i < chunkCount; i++)
+				footprint += chunks[i].capacity();
+
+			return footprint;
+		}
+
+		synchronized void free() {
+			freeTable();
+			for (int i = 0; i < chunkCount; i++) {
+				release(chunks[i]);
+				chunks[i] = null;
+			}
+
+			chunkCount = 0;
+			close();
+		}
+	}
+
+	private static final class IdSegment extends Table {
+
+		IdSegment(OffHeapStore store, int initialCapacity) {
+			super(store, initialCapacity);
+		}
+
+		long[] find(long id) {
+			long[] refs = null;
+			for (int slot = start(id); slot != -1; slot = next(slot)) {
+				if (keyAt(slot) == id) {
+					if (refs == null)
+						refs = new long[]{valueAt(slot)};
+					else {
+						refs = Arrays.copyOf(refs, refs.length + 1);
+						refs[refs.length - 1] = valueAt(slot);
+					}
+				}
+			}
+
+			return refs;
+		}
+
+		@Override
+		synchronized void spill() throws IOException {
+			if (!isSpilled) {
+				spillTable();
+				isSpilled = true;
+			}
+		}
+
+		@Override
+		synchronized long getMemoryFootprint() {
+			return !isSpilled ? getTableFootprint() : 0;
+		}
+
+		@Override
+		synchronized long getMappedFootprint() {
+			return isSpilled ? getTableFootprint() : 0;
+		}
+
+		synchronized void free() {
+			freeTable();
+			close();
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.common.database.uid;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index of a {@link UIDCache} mapping database ids to the keys of the
+ * cache entries. Ids are stored in primitive open addressing tables which are
+ * split into independently locked segments. Since different keys may share the
+ * same id, a lookup returns all candidate keys which have to be checked against
+ * the cache entries by the caller.
+ */
+class UIDCacheIdIndex {
+	private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+	private final Segment[] segments;
+	private final int segmentMask;
+
+	UIDCacheIdIndex(int capacity, int concurrencyLevel) {
+		int size = 1;
+		while (size < concurrencyLevel)
+			size <<= 1;
+
+		segments = new Segment[size];
+		segmentMask = size - 1;
+
+		int segmentCapacity = INITIAL_SEGMENT_CAPACITY;
+		while (segmentCapacity * size * 3 < capacity * 4)
+			segmentCapacity <<= 1;
+
+		for (int i = 0; i < size; i++)
+			segments[i] = new Segment(segmentCapacity);
+	}
+
+	void put(long id, String key) {
+		long hash = hash(id);
+		segments[(int)(hash >>> 32) & segmentMask].put(id, key, (int)hash);
+	}
+
+	String[] get(long id) {
+		long hash = hash(id);
+		return segments[(int)(hash >>> 32) & segmentMask].get(id, (int)hash);
+	}
+
+	void retainAll(ConcurrentHashMap<String, UIDCacheEntry> map) {
+		for (Segment segment : segments)
+			segment.retainAll(map);
+	}
+
+	private long hash(long id) {
+		// 64-bit finalizer of MurmurHash3
+		id ^= id >>> 33;
+		id *= 0xff51afd7ed558ccdL;
+		id ^= id >>> 33;
+		id *= 0xc4ceb9fe1a85ec53L;
+		id ^= id >>> 33;
+		return id;
+	}
+
+	private static final class Segment {
+		private long[] ids;
+		private String[] keys;
+		private int[] hashes;
+		private int size;
+
+		private Segment(int capacity) {
+			allocate(capacity);
+		}
+
+		private synchronized void put(long id, String key, int hash) {
+			if ((size + 1) * 4 > keys.length * 3)
+				rehash(keys.length << 1);
+
+			insert(id, key, hash);
+		}
+
+		private synchronized String[] get(long id, int hash) {
+			int mask = keys.length - 1;
+			String[] result = null;
+
+			for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+				if (ids[i] == id) {
+					if (result == null)
+						result = new String[]{keys[i]};
+					else {
+						result = Arrays.copyOf(result, result.length + 1);
+						result[result.length - 1] = keys[i];
+					}
+				}
+			}
+
+			return result;
+		}
+
+		private synchronized void retainAll(ConcurrentHashMap<String, UIDCacheEntry> map) {
+			long[] oldIds = ids;
+			String[] oldKeys = keys;
+			int[] oldHashes = hashes;
+
+			// count remaining entries to shrink the table if possible
+			int remaining = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null && isValid(oldIds[i], oldKeys[i], map))
+					remaining++;
+				else
+					oldKeys[i] = null;
+			}
+
+			int capacity = INITIAL_SEGMENT_CAPACITY;
+			while (capacity * 3 < remaining * 4)
+				capacity <<= 1;
+
+			allocate(Math.min(Math.max(capacity, oldKeys.length >> 2), oldKeys.length));
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldKeys[i] != null)
+					insert(oldIds[i], oldKeys[i], oldHashes[i]);
+		}
+
+		private boolean isValid(long id, String key, ConcurrentHashMap<String, UIDCacheEntry> map) {
+			UIDCacheEntry entry = map.get(key);
+			return entry != null && entry.getId() == id;
+		}
+
+		private void insert(long id, String key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (keys[i] != null)
+				i = (i + 1) & mask;
+
+			ids[i] = id;
+			keys[i] = key;
+			hashes[i] = hash;
+			size++;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldIds = ids;
+			String[] oldKeys = keys;
+			int[] oldHashes = hashes;
+
+			allocate(capacity);
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldKeys[i] != null)
+					insert(oldIds[i], oldKeys[i], oldHashes[i]);
+		}
+
+		private void allocate(int capacity) {
+			ids = new long[capacity];
+			keys = new String[capacity];
+			hashes = new int[capacity];
+			size = 0;
+		}
+	}
+
+}
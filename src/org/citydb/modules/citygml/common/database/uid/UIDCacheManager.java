@@ -46,7 +46,7 @@ public class UIDCacheManager {
 		float drainFactor,
 		int concurrencyLevel) {
 
-		cacheMap.put(cacheType, new UIDCache(
+		cacheMap.put(cacheType, new UIDCacheImpl(
 				model,
 				cacheSize,
 				drainFactor,
@@ -54,6 +54,32 @@ public class UIDCacheManager {
 		));
 	}
 
+	public void initCache(
+		UIDCacheType cacheType,
+		OffHeapStore store,
+		int cacheSize,
+		int concurrencyLevel) {
+
+		String name;
+		switch (cacheType) {
+		case GEOMETRY:
+			name = "geometry";
+			break;
+		case TEX_IMAGE:
+			name = "texture image";
+			break;
+		default:
+			name = "feature";
+		}
+
+		cacheMap.put(cacheType, new OffHeapUIDCache(
+				store,
+				name,
+				cacheSize,
+				concurrencyLevel
+		));
+	}
+
 	public UIDCache getCache(CityGMLClass type) {
 		UIDCacheType cacheType;
 
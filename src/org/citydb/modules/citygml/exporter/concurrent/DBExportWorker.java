@@ -29,19 +29,19 @@ package org.citydb.modules.citygml.exporter.concurrent;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.api.concurrent.Worker;
-import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.api.event.EventHandler;
 import org.citydb.api.log.LogLevel;
 import org.citydb.config.Config;
 import org.citydb.database.DatabaseConnectionPool;
-import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
-import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
-import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.exporter.database.content.DBAppearance;
 import org.citydb.modules.citygml.exporter.database.content.DBBridge;
 import org.citydb.modules.citygml.exporter.database.content.DBBuilding;
@@ -55,19 +55,17 @@ import org.citydb.modules.citygml.exporter.database.content.DBPlantCover;
 import org.citydb.modules.citygml.exporter.database.content.DBReliefFeature;
 import org.citydb.modules.citygml.exporter.database.content.DBSolitaryVegetatObject;
 import org.citydb.modules.citygml.exporter.database.content.DBSplittingResult;
+import org.citydb.modules.citygml.exporter.database.content.DBSurfaceGeometry;
 import org.citydb.modules.citygml.exporter.database.content.DBTransportationComplex;
 import org.citydb.modules.citygml.exporter.database.content.DBTunnel;
 import org.citydb.modules.citygml.exporter.database.content.DBWaterBody;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessException;
-import org.citydb.modules.citygml.exporter.util.FeatureProcessor;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.EventType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
-import org.citydb.modules.common.filter.ExportFilter;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.xml.sax.SAXException;
 
@@ -78,39 +76,26 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final JAXBBuilder jaxbBuilder;
-	private final FeatureProcessor featureProcessor;
-	private final WorkerPool<DBXlink> xlinkExporterPool;
-	private final UIDCacheManager uidCacheManager;
-	private final CacheTableManager cacheTableManager;
-	private final ExportFilter exportFilter;
 	private final Config config;
 	private Connection connection;	
-	private DBExporterManager dbExporterManager;
 	private final EventDispatcher eventDispatcher;
 	private int exportCounter = 0;
 
+	private List<DBSplittingResult> batch;
+	private int batchSize = 1;
+
 	public DBExportWorker(DatabaseConnectionPool dbConnectionPool,
 			JAXBBuilder jaxbBuilder,
-			FeatureProcessor featureProcessor,
-			WorkerPool<DBXlink> xlinkExporterPool,
-			UIDCacheManager uidCacheManager,
-			CacheTableManager cacheTableManager,
-			ExportFilter exportFilter,
 			Config config,
-			EventDispatcher eventDispatcher) throws SQLException, SAXException {
+			EventDispatcher eventDispatcher) throws SQLException {
 		this.dbConnectionPool = dbConnectionPool;
 		this.jaxbBuilder = jaxbBuilder;
-		this.featureProcessor = featureProcessor;
-		this.xlinkExporterPool = xlinkExporterPool;
-		this.uidCacheManager = uidCacheManager;
-		this.cacheTableManager = cacheTableManager;
-		this.exportFilter = exportFilter;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 		init();
 	}
 
-	private void init() throws SQLException, SAXException {
+	private void init() throws SQLException {
 		connection = dbConnectionPool.getConnection();
 
 		// try and change workspace the connections if needed
@@ -120,17 +105,10 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 					config.getProject().getDatabase().getWorkspaces().getExportWorkspace());
 		}
 
-		dbExporterManager = new DBExporterManager( 
-				connection,
-				dbConnectionPool.getActiveDatabaseAdapter(),
-				jaxbBuilder,
-				featureProcessor,
-				xlinkExporterPool,
-				uidCacheManager,
-				cacheTableManager,
-				exportFilter,
-				config,
-				eventDispatcher);
+		if (config.getProject().getExporter().getGeometryPrefetch().isSetUsePrefetch()) {
+			batchSize = config.getProject().getExporter().getGeometryPrefetch().getBatchSize();
+			batch = new ArrayList<DBSplittingResult>(batchSize);
+		}
 
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 	}
@@ -166,21 +144,16 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 			while (shouldRun) {
 				try {
 					DBSplittingResult work = workQueue.take();
-					doWork(work);
+					if (batchSize > 1)
+						doWork(work, batchSize);
+					else
+						doWork(work);
 				} catch (InterruptedException ie) {
 					// re-check state
 				}
 			}
 
-			try {
-				dbExporterManager.close();
-			} catch (SQLException e) {
-				//
-			}
-
 			eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, exportCounter, this));
-			eventDispatcher.triggerEvent(new FeatureCounterEvent(dbExporterManager.getFeatureCounter(), this));
-			eventDispatcher.triggerEvent(new GeometryCounterEvent(dbExporterManager.getGeometryCounter(), this));
 		} finally {
 			if (connection != null) {
 				try {
@@ -194,6 +167,80 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 		}
 	}
 
+	private DBExporterManager getExporterManager(ExportTileContext tileContext) throws SAXException {
+		// every tile has its own filter, gml:id caches and output,
+		// so we keep one exporter manager per tile
+		DBExporterManager dbExporterManager = tileContext.getExporterManager(this);
+		if (dbExporterManager == null) {
+			dbExporterManager = new DBExporterManager( 
+					connection,
+					dbConnectionPool.getActiveDatabaseAdapter(),
+					jaxbBuilder,
+					tileContext.getFeatureProcessorFactory().createFeatureProcessor(),
+					tileContext.getXlinkExporterPool(),
+					tileContext.getUIDCacheManager(),
+					tileContext.getCacheTableManager(),
+					tileContext.getExportFilter(),
+					config,
+					tileContext,
+					eventDispatcher);
+
+			tileContext.putExporterManager(this, dbExporterManager);
+		}
+
+		return dbExporterManager;
+	}
+
+	private void doWork(DBSplittingResult firstWork, int batchSize) {
+		final ReentrantLock runLock = this.runLock;
+		runLock.lock();
+
+		List<DBSurfaceGeometry> surfaceGeometryExporters = new ArrayList<DBSurfaceGeometry>();
+
+		try {
+			// collect further work items that are already waiting
+			// and fetch their surface geometries at once
+			batch.add(firstWork);
+			DBSplittingResult work = null;
+			while (batch.size() < batchSize && (work = workQueue.poll()) != null)
+				batch.add(work);
+
+			if (shouldWork) {
+				Map<ExportTileContext, List<DBSplittingResult>> tiles = new LinkedHashMap<ExportTileContext, List<DBSplittingResult>>();
+				for (DBSplittingResult item : batch) {
+					List<DBSplittingResult> tile = tiles.get(item.getTileContext());
+					if (tile == null) {
+						tile = new ArrayList<DBSplittingResult>();
+						tiles.put(item.getTileContext(), tile);
+					}
+
+					tile.add(item);
+				}
+
+				try {
+					for (Map.Entry<ExportTileContext, List<DBSplittingResult>> entry : tiles.entrySet()) {
+						DBSurfaceGeometry surfaceGeometryExporter = (DBSurfaceGeometry)getExporterManager(entry.getKey()).getDBExporter(DBExporterEnum.SURFACE_GEOMETRY);
+						surfaceGeometryExporters.add(surfaceGeometryExporter);
+						surfaceGeometryExporter.prefetch(entry.getValue());
+					}
+				} catch (SQLException e) {
+					eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.SQL_ERROR, "Aborting export due to SQL errors.", LogLevel.WARN, e, eventChannel, this));
+				} catch (SAXException e) {
+					eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.UNKNOWN_ERROR, "Failed to create export worker.", LogLevel.ERROR, e, eventChannel, this));
+				}
+			}
+
+			for (DBSplittingResult item : batch)
+				doWork(item);
+		} finally {
+			batch.clear();
+			for (DBSurfaceGeometry surfaceGeometryExporter : surfaceGeometryExporters)
+				surfaceGeometryExporter.clearPrefetchCache();
+
+			runLock.unlock();
+		}
+	}
+
 	private void doWork(DBSplittingResult work) {
 		final ReentrantLock runLock = this.runLock;
 		runLock.lock();
@@ -203,6 +250,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 				return;
 			
 			boolean success = false;
+			DBExporterManager dbExporterManager = getExporterManager(work.getTileContext());
 
 			if (work.isCheckIfAlreadyExported())
 				if (dbExporterManager.lookupAndPutGmlId(work.getGmlId(), work.getPrimaryKey(), work.getCityObjectType()))
@@ -299,6 +347,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 			// this is to catch general exceptions that may occur during the export
 			eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.UNKNOWN_ERROR, "Aborting due to an unexpected " + e.getClass().getName() + " error.", LogLevel.ERROR, e, eventChannel, this));
 		} finally {
+			work.getTileContext().releasePendingWork();
 			runLock.unlock();
 		}
 	}
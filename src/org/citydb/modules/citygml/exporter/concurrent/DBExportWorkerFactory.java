@@ -31,50 +31,28 @@ import java.sql.SQLException;
 
 import org.citydb.api.concurrent.Worker;
 import org.citydb.api.concurrent.WorkerFactory;
-import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.log.Logger;
-import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
-import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
-import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.exporter.database.content.DBSplittingResult;
-import org.citydb.modules.citygml.exporter.util.FeatureProcessorFactory;
-import org.citydb.modules.common.filter.ExportFilter;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
-import org.xml.sax.SAXException;
 
 public class DBExportWorkerFactory implements WorkerFactory<DBSplittingResult> {
 	private final Logger LOG = Logger.getInstance();
 	
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final JAXBBuilder jaxbBuilder;
-	private final FeatureProcessorFactory featureProcessorFactory;
-	private final WorkerPool<DBXlink> xlinkExporterPool;
-	private final UIDCacheManager uidCacheManager;
-	private final CacheTableManager cacheTableManager;
-	private final ExportFilter exportFilter;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
 
 	public DBExportWorkerFactory(
 			DatabaseConnectionPool dbConnectionPool,
 			JAXBBuilder jaxbBuilder,
-			FeatureProcessorFactory featureProcessorFactory,
-			WorkerPool<DBXlink> xlinkExporterPool,
-			UIDCacheManager uidCacheManager,
-			CacheTableManager cacheTableManager,
-			ExportFilter exportFilter,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.dbConnectionPool = dbConnectionPool;
 		this.jaxbBuilder = jaxbBuilder;
-		this.featureProcessorFactory = featureProcessorFactory;
-		this.xlinkExporterPool = xlinkExporterPool;
-		this.uidCacheManager = uidCacheManager;
-		this.cacheTableManager = cacheTableManager;
-		this.exportFilter = exportFilter;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 	}
@@ -87,17 +65,10 @@ public class DBExportWorkerFactory implements WorkerFactory<DBSplittingResult> {
 			dbWorker = new DBExportWorker(
 					dbConnectionPool,
 					jaxbBuilder,
-					featureProcessorFactory.createFeatureProcessor(),
-					xlinkExporterPool,
-					uidCacheManager,
-					cacheTableManager,
-					exportFilter,
 					config,
 					eventDispatcher);
 		} catch (SQLException e) {
 			LOG.error("Failed to create export worker: " + e.getMessage());
-		} catch (SAXException e) {
-			LOG.error("Failed to create export worker: " + e.getMessage());
 		}
 
 		return dbWorker;
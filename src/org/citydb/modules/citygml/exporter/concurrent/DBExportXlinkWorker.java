@@ -46,6 +46,7 @@ import org.citydb.modules.citygml.exporter.database.xlink.DBXlinkExporterEnum;
 import org.citydb.modules.citygml.exporter.database.xlink.DBXlinkExporterLibraryObject;
 import org.citydb.modules.citygml.exporter.database.xlink.DBXlinkExporterManager;
 import org.citydb.modules.citygml.exporter.database.xlink.DBXlinkExporterTextureImage;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
 import org.citydb.modules.common.event.EventType;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
@@ -58,12 +59,14 @@ public class DBExportXlinkWorker extends Worker<DBXlink> implements EventHandler
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final EventDispatcher eventDispatcher;
 	private final Config config;
+	private final ExportTileContext tileContext;
 	private Connection connection;
 	private DBXlinkExporterManager xlinkExporterManager;
 
-	public DBExportXlinkWorker(DatabaseConnectionPool dbConnectionPool, Config config, EventDispatcher eventDispatcher) throws SQLException {
+	public DBExportXlinkWorker(DatabaseConnectionPool dbConnectionPool, Config config, ExportTileContext tileContext, EventDispatcher eventDispatcher) throws SQLException {
 		this.dbConnectionPool = dbConnectionPool;
 		this.config = config;
+		this.tileContext = tileContext;
 		this.eventDispatcher = eventDispatcher;
 
 		init();
@@ -79,7 +82,7 @@ public class DBExportXlinkWorker extends Worker<DBXlink> implements EventHandler
 					config.getProject().getDatabase().getWorkspaces().getExportWorkspace());
 		}
 
-		xlinkExporterManager = new DBXlinkExporterManager(connection, dbConnectionPool.getActiveDatabaseAdapter(), config, eventDispatcher);
+		xlinkExporterManager = new DBXlinkExporterManager(connection, dbConnectionPool.getActiveDatabaseAdapter(), config, tileContext, eventDispatcher);
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 	}
 
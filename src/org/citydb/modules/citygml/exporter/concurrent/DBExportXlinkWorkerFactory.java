@@ -36,17 +36,20 @@ import org.citydb.config.Config;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
 
 public class DBExportXlinkWorkerFactory implements WorkerFactory<DBXlink> {
 	private final Logger LOG = Logger.getInstance();
 	
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final Config config;
+	private final ExportTileContext tileContext;
 	private final EventDispatcher eventDispatcher;
 
-	public DBExportXlinkWorkerFactory(DatabaseConnectionPool dbConnectionPool, Config config, EventDispatcher eventDispatcher) {
+	public DBExportXlinkWorkerFactory(DatabaseConnectionPool dbConnectionPool, Config config, ExportTileContext tileContext, EventDispatcher eventDispatcher) {
 		this.dbConnectionPool = dbConnectionPool;
 		this.config = config;
+		this.tileContext = tileContext;
 		this.eventDispatcher = eventDispatcher;
 	}
 
@@ -55,7 +58,7 @@ public class DBExportXlinkWorkerFactory implements WorkerFactory<DBXlink> {
 		DBExportXlinkWorker dbWorker = null;
 
 		try {
-			dbWorker = new DBExportXlinkWorker(dbConnectionPool, config, eventDispatcher);
+			dbWorker = new DBExportXlinkWorker(dbConnectionPool, config, tileContext, eventDispatcher);
 		} catch (SQLException e) {
 			LOG.error("Failed to create XLink export worker: " + e.getMessage());
 		}
@@ -0,0 +1,117 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.concurrent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.citydb.api.concurrent.Worker;
+import org.citydb.log.Logger;
+import org.citydb.modules.citygml.exporter.util.FeatureBuffer;
+import org.citydb.modules.citygml.exporter.util.FeatureBufferPool;
+import org.citygml4j.util.xml.SAXWriter;
+import org.xml.sax.SAXException;
+
+public class FeatureBufferWriterWorker extends Worker<FeatureBuffer> {
+	private final Logger LOG = Logger.getInstance();
+	private final ReentrantLock runLock = new ReentrantLock();	
+	private volatile boolean shouldRun = true;
+
+	private final SAXWriter saxWriter;
+	private final OutputStream outputStream;
+	private final FeatureBufferPool bufferPool;
+	private boolean isFirstFeature = true;
+
+	public FeatureBufferWriterWorker(SAXWriter saxWriter, OutputStream outputStream, FeatureBufferPool bufferPool) {
+		this.saxWriter = saxWriter;
+		this.outputStream = outputStream;
+		this.bufferPool = bufferPool;
+	}
+
+	@Override
+	public void interrupt() {
+		shouldRun = false;
+		workerThread.interrupt();
+	}
+
+	@Override
+	public void interruptIfIdle() {
+		final ReentrantLock runLock = this.runLock;
+		shouldRun = false;
+
+		if (runLock.tryLock()) {
+			try {
+				workerThread.interrupt();
+			} finally {
+				runLock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		if (firstWork != null) {
+			doWork(firstWork);
+			firstWork = null;
+		}
+
+		while (shouldRun) {
+			try {
+				FeatureBuffer work = workQueue.take();
+				doWork(work);
+			} catch (InterruptedException ie) {
+				// re-check state
+			}
+		}
+	}
+
+	private void doWork(FeatureBuffer work) {
+		final ReentrantLock runLock = this.runLock;
+		runLock.lock();
+
+		try {
+			if (isFirstFeature) {
+				// let the SAX writer close the start tag of the root element
+				char[] lineBreak = work.getLineBreak().toCharArray();
+				saxWriter.characters(lineBreak, 0, lineBreak.length);
+				saxWriter.flush();
+				isFirstFeature = false;
+			}
+
+			work.writeTo(outputStream);
+		} catch (SAXException e) {
+			LOG.error("XML error: " + e.getMessage());
+		} catch (IOException e) {
+			LOG.error("I/O error: " + e.getMessage());
+		} finally {
+			bufferPool.release(work);
+			runLock.unlock();
+		}
+	}
+}
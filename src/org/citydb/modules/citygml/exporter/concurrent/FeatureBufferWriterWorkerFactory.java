@@ -0,0 +1,53 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.concurrent;
+
+import java.io.OutputStream;
+
+import org.citydb.api.concurrent.Worker;
+import org.citydb.api.concurrent.WorkerFactory;
+import org.citydb.modules.citygml.exporter.util.FeatureBuffer;
+import org.citydb.modules.citygml.exporter.util.FeatureBufferPool;
+import org.citygml4j.util.xml.SAXWriter;
+
+public class FeatureBufferWriterWorkerFactory implements WorkerFactory<FeatureBuffer> {
+	private final SAXWriter saxWriter;
+	private final OutputStream outputStream;
+	private final FeatureBufferPool bufferPool;
+
+	public FeatureBufferWriterWorkerFactory(SAXWriter saxWriter, OutputStream outputStream, FeatureBufferPool bufferPool) {
+		this.saxWriter = saxWriter;
+		this.outputStream = outputStream;
+		this.bufferPool = bufferPool;
+	}
+
+	@Override
+	public Worker<FeatureBuffer> createWorker() {
+		return new FeatureBufferWriterWorker(saxWriter, outputStream, bufferPool);
+	}
+}
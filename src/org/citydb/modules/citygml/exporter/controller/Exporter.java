@@ -27,15 +27,29 @@
  */
 package org.citydb.modules.citygml.exporter.controller;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import org.citydb.api.concurrent.PoolSizeAdaptationStrategy;
 import org.citydb.api.concurrent.SingleWorkerPool;
@@ -56,16 +70,23 @@ import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.database.IndexStatusInfo.IndexType;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
+import org.citydb.modules.citygml.common.database.uid.OffHeapStore;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheType;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.exporter.concurrent.DBExportWorkerFactory;
 import org.citydb.modules.citygml.exporter.concurrent.DBExportXlinkWorkerFactory;
+import org.citydb.modules.citygml.exporter.concurrent.FeatureBufferWriterWorkerFactory;
+import org.citydb.modules.citygml.exporter.database.content.DBExporterManager;
 import org.citydb.modules.citygml.exporter.database.content.DBSplitter;
 import org.citydb.modules.citygml.exporter.database.content.DBSplittingResult;
 import org.citydb.modules.citygml.exporter.database.uid.FeatureGmlIdCache;
 import org.citydb.modules.citygml.exporter.database.uid.GeometryGmlIdCache;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
+import org.citydb.modules.citygml.exporter.util.FeatureBuffer;
+import org.citydb.modules.citygml.exporter.util.FeatureBufferPool;
 import org.citydb.modules.citygml.exporter.util.FeatureWriterFactory;
+import org.citydb.modules.citygml.exporter.util.SAXWriterFactory;
 import org.citydb.modules.common.concurrent.IOWriterWorkerFactory;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
@@ -73,7 +94,9 @@ import org.citydb.modules.common.event.EventType;
 import org.citydb.modules.common.event.FeatureCounterEvent;
 import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
+import org.citydb.modules.common.event.ProgressBarEventType;
 import org.citydb.modules.common.event.StatusDialogMessage;
+import org.citydb.modules.common.event.StatusDialogProgressBar;
 import org.citydb.modules.common.event.StatusDialogTitle;
 import org.citydb.modules.common.filter.ExportFilter;
 import org.citydb.util.Util;
@@ -100,23 +123,23 @@ public class Exporter implements EventHandler {
 	private final DatabaseConnectionPool dbPool;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
-	private DBSplitter dbSplitter;
+	private final List<TileExporter> tileExporters;
 
 	private volatile boolean shouldRun = true;
 	private AtomicBoolean isInterrupted = new AtomicBoolean(false);
 
 	private WorkerPool<DBSplittingResult> dbWorkerPool;
-	private SingleWorkerPool<SAXEventBuffer> ioWriterPool;
-	private WorkerPool<DBXlink> xlinkExporterPool;
-	private CacheTableManager cacheTableManager;
-	private UIDCacheManager uidCacheManager;
 	private ExportFilter exportFilter;
+	private ModuleContext moduleContext;
+	private Tiling tiling;
 	private boolean useTiling;
+	private boolean isConcurrentTiling;
+	private String folderName;
+	private String fileName;
+	private String fileExtension;
 
 	private EnumMap<CityGMLClass, Long> totalFeatureCounterMap;
 	private EnumMap<GMLClass, Long> totalGeometryCounterMap;
-	private EnumMap<CityGMLClass, Long> featureCounterMap;
-	private EnumMap<GMLClass, Long> geometryCounterMap;
 
 	public Exporter(JAXBBuilder jaxbBuilder, DatabaseConnectionPool dbPool, Config config, EventDispatcher eventDispatcher) {
 		this.jaxbBuilder = jaxbBuilder;
@@ -124,8 +147,7 @@ public class Exporter implements EventHandler {
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
-		featureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
-		geometryCounterMap = new EnumMap<GMLClass, Long>(GMLClass.class);
+		tileExporters = new ArrayList<TileExporter>();
 		totalFeatureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
 		totalGeometryCounterMap = new EnumMap<GMLClass, Long>(GMLClass.class);
 	}
@@ -147,31 +169,9 @@ public class Exporter implements EventHandler {
 				!dbPool.getActiveDatabaseAdapter().getWorkspaceManager().existsWorkspace(workspace, true))
 			return false;
 
-		// prepare SAX writer
-		SAXWriter saxWriter = new SAXWriter();
-		saxWriter.setWriteEncoding(true);
-		saxWriter.setIndentString("  ");
-		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
-				this.getClass().getPackage().getImplementationVersion() + '"', 
-				this.getClass().getPackage().getImplementationVendor());
-
-		// set CityGML prefixes and schema locations
+		// set CityGML version for the output files
 		CityGMLVersion version = Util.toCityGMLVersion(config.getProject().getExporter().getCityGMLVersion());
-		ModuleContext moduleContext = new ModuleContext(version);
-		saxWriter.setDefaultNamespace(moduleContext.getModule(CityGMLModuleType.CORE).getNamespaceURI());
-
-		for (Module module : moduleContext.getModules()) {
-			if (module.getType() == CityGMLModuleType.CORE)
-				continue;
-
-			if (!config.getProject().getExporter().getAppearances().isSetExportAppearance() 
-					&& module.getType() == CityGMLModuleType.APPEARANCE)
-				continue;
-
-			saxWriter.setPrefix(module.getNamespacePrefix(), module.getNamespaceURI());
-			if (module instanceof CityGMLModule)
-				saxWriter.setSchemaLocation(module.getNamespaceURI(), module.getSchemaLocation());
-		}
+		moduleContext = new ModuleContext(version);
 
 		// set target reference system for export
 		DatabaseSrs targetSRS = config.getProject().getExporter().getTargetSRS();
@@ -222,148 +222,436 @@ public class Exporter implements EventHandler {
 				&& !config.getProject().getExporter().getCityObjectGroup().isExportMemberAsXLinks());
 
 		// bounding box config
-		Tiling tiling = config.getProject().getExporter().getFilter().getComplexFilter().getTiledBoundingBox().getTiling();
+		tiling = config.getProject().getExporter().getFilter().getComplexFilter().getTiledBoundingBox().getTiling();
 		useTiling = exportFilter.getBoundingBoxFilter().isActive() && tiling.getMode() != TilingMode.NO_TILING;
 		int rows = useTiling ? tiling.getRows() : 1;  
 		int columns = useTiling ? tiling.getColumns() : 1;
 		
 		// prepare files and folders
 		File exportFile = new File(config.getInternal().getExportFileName());
-		String fileName = exportFile.getName();
-		String folderName = exportFile.getAbsoluteFile().getParent();
+		fileName = exportFile.getName();
+		folderName = exportFile.getAbsoluteFile().getParent();
 
-		String fileExtension = Util.getFileExtension(fileName);		
+		fileExtension = Util.getFileExtension(fileName);		
 		if (fileExtension == null)
 			fileExtension = "gml";
 		else
 			fileName = Util.stripFileExtension(fileName);
 
+		if (config.getProject().getExporter().getWriter().isSetCompressOutput() && !fileExtension.equalsIgnoreCase("gz"))
+			fileExtension += ".gz";
+
 		File folder = new File(folderName);
 		if (!folder.exists() && !folder.mkdirs())
 			throw new CityGMLExportException("Failed to create folder '" + folderName + "'.");
 
 		int remainingTiles = rows * columns;
+		int concurrentTiles = useTiling ? Math.min(config.getProject().getExporter().getResources().getConcurrentTiles(), remainingTiles) : 1;
+		isConcurrentTiling = concurrentTiles > 1;
 		long start = System.currentTimeMillis();
 
-		for (int i = 0; shouldRun && i < rows; i++) {
-			for (int j = 0; shouldRun && j < columns; j++) {
+		// keep enough work items queued to fill the geometry prefetch batches
+		int dbWorkQueueSize = 300;
+		if (config.getProject().getExporter().getGeometryPrefetch().isSetUsePrefetch()) {
+			int maxThreads = config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads();
+			dbWorkQueueSize = Math.max(dbWorkQueueSize, 2 * maxThreads * config.getProject().getExporter().getGeometryPrefetch().getBatchSize());
+		}
 
-				try {
-					File file = null;
-
-					if (useTiling) {
-						exportFilter.getBoundingBoxFilter().setActiveTile(i, j);
-
-						// create suffix for folderName and fileName
-						TileSuffixMode suffixMode = tiling.getTilePathSuffix();
-						String suffix = "";
-
-						BoundingBox bbox = exportFilter.getBoundingBoxFilter().getFilterState();
-						double minX = bbox.getLowerCorner().getX();
-						double minY = bbox.getLowerCorner().getY();
-						double maxX = bbox.getUpperCorner().getX();
-						double maxY = bbox.getUpperCorner().getY();
-
-						switch (suffixMode) {
-						case XMIN_YMIN:
-							suffix = String.valueOf(minX) + '_' + String.valueOf(minY);
-							break;
-						case XMAX_YMIN:
-							suffix = String.valueOf(maxX) + '_' + String.valueOf(minY);
-							break;
-						case XMIN_YMAX:
-							suffix = String.valueOf(minX) + '_' + String.valueOf(maxY);
-							break;
-						case XMAX_YMAX:
-							suffix = String.valueOf(maxX) + '_' + String.valueOf(maxY);
-							break;
-						case XMIN_YMIN_XMAX_YMAX:
-							suffix = String.valueOf(minX) + '_' + String.valueOf(minY) + '_' + String.valueOf(maxX) + '_' + String.valueOf(maxY);
-							break;
-						default:
-							suffix = String.valueOf(i) + '_' + String.valueOf(j);
-						}
+		// the database workers are shared by all tiles. they create
+		// the tile-specific resources when they receive the first
+		// work item of a tile
+		dbWorkerPool = new WorkerPool<DBSplittingResult>(
+				"db_exporter_pool",
+				config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
+				config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
+				PoolSizeAdaptationStrategy.AGGRESSIVE,
+				new DBExportWorkerFactory(
+						dbPool,
+						jaxbBuilder,
+						config,
+						eventDispatcher),
+				dbWorkQueueSize,
+				false);
+
+		try {
+			dbWorkerPool.prestartCoreWorkers();
 
-						File subfolder = new File(folderName, tiling.getTilePath() + '_'  + suffix);
-						if (!subfolder.exists() && !subfolder.mkdirs())
-							throw new CityGMLExportException("Failed to create tiling subfolder '" + subfolder + "'.");
+			// fail if we could not start a single import worker
+			if (dbWorkerPool.getPoolSize() == 0)
+				throw new CityGMLExportException("Failed to start database export worker pool. Check the database connection pool settings.");
 
-						if (tiling.getTileNameSuffix() == TileNameSuffixMode.SAME_AS_PATH)
-							file = new File(subfolder, fileName + '_'  + suffix + '.' + fileExtension);
-						else // no suffix for filename
-							file = new File(subfolder, fileName + '.' + fileExtension);
+			if (!isConcurrentTiling) {
+				for (int i = 0; shouldRun && i < rows; i++) {
+					for (int j = 0; shouldRun && j < columns; j++) {
+						if (useTiling)
+							exportFilter.getBoundingBoxFilter().setActiveTile(i, j);
+
+						new TileExporter().export(i, j, exportFilter, --remainingTiles);
 					}
+				}
+			} else
+				exportConcurrently(rows, columns, concurrentTiles);
 
-					else // no tiling
-						file = new File(folderName, fileName + '.' + fileExtension);
+			try {
+				dbWorkerPool.shutdownAndWait();
+			} catch (InterruptedException e) {
+				throw new CityGMLExportException("Failed to shutdown worker pools.", e);
+			}
+		} finally {
+			if (!dbWorkerPool.isTerminated())
+				dbWorkerPool.shutdownNow();
+
+			try {
+				eventDispatcher.flushEvents();
+			} catch (InterruptedException e) {
+				//
+			}
+		}
 
-					config.getInternal().setExportFileName(file.getAbsolutePath());
-					File path = new File(file.getAbsolutePath());
-					config.getInternal().setExportPath(path.getParent());
-
-					eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.cityObj.msg"), this));
-					eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
-					eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, --remainingTiles, this));
-
-					// checking export path for texture images
-					if (config.getProject().getExporter().getAppearances().isSetExportAppearance()) {
-						String textureExportPath = null;
-						boolean isRelative = config.getProject().getExporter().getAppearances().getTexturePath().isRelative();
-
-						if (isRelative)
-							textureExportPath = config.getProject().getExporter().getAppearances().getTexturePath().getRelativePath();
-						else
-							textureExportPath = config.getProject().getExporter().getAppearances().getTexturePath().getAbsolutePath();
-
-						if (textureExportPath != null && textureExportPath.length() > 0) {
-							File tmp = new File(textureExportPath);
-							textureExportPath = tmp.getPath();
-
-							if (isRelative) {
-								File exportPath = new File(path.getParent(), textureExportPath);
-
-								if (exportPath.isFile() || (exportPath.isDirectory() && !exportPath.canWrite())) {
-									throw new CityGMLExportException("Failed to open texture files subfolder '" + exportPath.toString() + "' for writing.");
-								} else if (!exportPath.isDirectory()) {
-									boolean success = exportPath.mkdirs();
-
-									if (!success)
-										throw new CityGMLExportException("Failed to create texture files subfolder '" + exportPath.toString() + "'.");
-									else
-										LOG.info("Created texture files subfolder '" + textureExportPath + "'.");
-								}
+		// show totally exported features
+		if (useTiling && (rows > 1 || columns > 1)) {
+			if (!totalFeatureCounterMap.isEmpty()) {
+				LOG.info("Totally exported CityGML features:");
+				for (CityGMLClass type : totalFeatureCounterMap.keySet())
+					LOG.info(type + ": " + totalFeatureCounterMap.get(type));
+			}
 
-								config.getInternal().setExportTextureFilePath(textureExportPath);
-							} else {
-								File exportPath = new File(tmp.getAbsolutePath());
-								if (!exportPath.exists() || !exportPath.isDirectory() || !exportPath.canWrite())
-									throw new CityGMLExportException("Failed to open texture files folder '" + exportPath.toString() + "' for writing.");
+			long geometryObjects = 0;
+			for (GMLClass type : totalGeometryCounterMap.keySet())
+				geometryObjects += totalGeometryCounterMap.get(type);
 
-								config.getInternal().setExportTextureFilePath(exportPath.toString());
-							}
-						}
+			if (geometryObjects != 0)
+				LOG.info("Total processed geometry objects: " + geometryObjects);
+		}
+
+		if (shouldRun)
+			LOG.info("Total export time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
+
+		return shouldRun;
+	}
+
+	@Override
+	public void handleEvent(Event e) throws Exception {
+		if (e.getEventType() == EventType.FEATURE_COUNTER) {
+			HashMap<CityGMLClass, Long> counterMap = ((FeatureCounterEvent)e).getCounter();
+
+			for (CityGMLClass type : counterMap.keySet()) {
+				Long update = counterMap.get(type);
+
+				Long counter = totalFeatureCounterMap.get(type);
+				totalFeatureCounterMap.put(type, counter == null ? update : counter + update);
+			}
+		}
+
+		else if (e.getEventType() == EventType.GEOMETRY_COUNTER) {
+			HashMap<GMLClass, Long> counterMap = ((GeometryCounterEvent)e).getCounter();
+
+			for (GMLClass type : counterMap.keySet()) {
+				Long update = counterMap.get(type);
+
+				Long counter = totalGeometryCounterMap.get(type);
+				totalGeometryCounterMap.put(type, counter == null ? update : counter + update);
+			}
+		}
+
+		else if (e.getEventType() == EventType.INTERRUPT) {
+			if (isInterrupted.compareAndSet(false, true)) {
+				shouldRun = false;
+				InterruptEvent interruptEvent = (InterruptEvent)e;
+
+				if (interruptEvent.getCause() != null) {
+					Throwable cause = interruptEvent.getCause();
+
+					if (cause instanceof SQLException) {
+						Iterator<Throwable> iter = ((SQLException)cause).iterator();
+						LOG.error("A SQL error occured: " + iter.next().getMessage().trim());
+						while (iter.hasNext())
+							LOG.error("Cause: " + iter.next().getMessage().trim());
+					} else {
+						LOG.error("An error occured: " + cause.getMessage().trim());
+						while ((cause = cause.getCause()) != null)
+							LOG.error("Cause: " + cause.getMessage().trim());
 					}
+				}
 
-					// open file for writing
-					try {
-						saxWriter.setOutput(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
-					} catch (IOException e) {
-						throw new CityGMLExportException("Failed to open file '" + fileName + "' for writing.", e);
-					}					
+				String log = interruptEvent.getLogMessage();
+				if (log != null)
+					LOG.log(interruptEvent.getLogLevelType(), log);
+
+				interruptTiles();
+
+				// drained work items will never be processed, so
+				// release them from the pending work of their tiles
+				if (dbWorkerPool != null) {
+					for (DBSplittingResult work : dbWorkerPool.drainWorkQueue())
+						work.getTileContext().releasePendingWork();
+				}
+			}
+		}
+	}
+
+	private void exportConcurrently(int rows, int columns, int concurrentTiles) throws CityGMLExportException {
+		final ConcurrentLinkedQueue<int[]> tileQueue = new ConcurrentLinkedQueue<int[]>();
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < columns; j++)
+				tileQueue.add(new int[]{i, j});
 
-					// create instance of temp table manager
+		final AtomicInteger remainingTileCounter = new AtomicInteger(tileQueue.size());
+		final AtomicReference<CityGMLExportException> tileException = new AtomicReference<CityGMLExportException>();
+
+		// progress is reported per finished tile
+		eventDispatcher.triggerEvent(new StatusDialogProgressBar(ProgressBarEventType.INIT, tileQueue.size(), this));
+
+		ExecutorService service = Executors.newFixedThreadPool(concurrentTiles, new ThreadFactory() {
+			private final AtomicInteger threadCounter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "citygml_tile_exporter-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		// every tile gets its own filter, gml:id caches and writer
+		// whereas the database workers are shared by all tiles
+		for (int i = 0; i < concurrentTiles; i++) {
+			service.execute(new Runnable() {
+				@Override
+				public void run() {
 					try {
-						cacheTableManager = new CacheTableManager(dbPool, 
-								config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(), 
-								config);
-					} catch (SQLException | IOException e) {
-						throw new CityGMLExportException("Failed to initialize internal cache manager.", e);
+						int[] tile = null;
+						while (shouldRun && (tile = tileQueue.poll()) != null) {
+							ExportFilter tileFilter = new ExportFilter(config);
+							tileFilter.getBoundingBoxFilter().setActiveTile(tile[0], tile[1]);
+
+							new TileExporter().export(tile[0], tile[1], tileFilter, remainingTileCounter.decrementAndGet());
+							eventDispatcher.triggerEvent(new StatusDialogProgressBar(ProgressBarEventType.UPDATE, 1, this));
+						}
+					} catch (CityGMLExportException e) {
+						if (tileException.compareAndSet(null, e)) {
+							shouldRun = false;
+							interruptTiles();
+						}
+					}
+				}
+			});
+		}
+
+		service.shutdown();
+		try {
+			service.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			service.shutdownNow();
+			throw new CityGMLExportException("Failed to shutdown tile exporters.", e);
+		}
+
+		if (tileException.get() != null)
+			throw tileException.get();
+	}
+
+	private void interruptTiles() {
+		synchronized (tileExporters) {
+			for (TileExporter tileExporter : tileExporters)
+				tileExporter.interrupt();
+		}
+	}
+
+	private SAXWriter createSAXWriter() {
+		SAXWriter saxWriter = new SAXWriter();
+		saxWriter.setWriteEncoding(true);
+		saxWriter.setIndentString("  ");
+		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
+				this.getClass().getPackage().getImplementationVersion() + '"', 
+				this.getClass().getPackage().getImplementationVendor());
+
+		// set CityGML prefixes and schema locations
+		saxWriter.setDefaultNamespace(moduleContext.getModule(CityGMLModuleType.CORE).getNamespaceURI());
+
+		for (Module module : moduleContext.getModules()) {
+			if (module.getType() == CityGMLModuleType.CORE)
+				continue;
+
+			if (!config.getProject().getExporter().getAppearances().isSetExportAppearance() 
+					&& module.getType() == CityGMLModuleType.APPEARANCE)
+				continue;
+
+			saxWriter.setPrefix(module.getNamespacePrefix(), module.getNamespaceURI());
+			if (module instanceof CityGMLModule)
+				saxWriter.setSchemaLocation(module.getNamespaceURI(), module.getSchemaLocation());
+		}
+
+		return saxWriter;
+	}
+
+	private File getTileFile(int row, int column, ExportFilter exportFilter) throws CityGMLExportException {
+		if (!useTiling)
+			return new File(folderName, fileName + '.' + fileExtension);
+
+		// create suffix for folderName and fileName
+		TileSuffixMode suffixMode = tiling.getTilePathSuffix();
+		String suffix = "";
+
+		BoundingBox bbox = exportFilter.getBoundingBoxFilter().getFilterState();
+		double minX = bbox.getLowerCorner().getX();
+		double minY = bbox.getLowerCorner().getY();
+		double maxX = bbox.getUpperCorner().getX();
+		double maxY = bbox.getUpperCorner().getY();
+
+		switch (suffixMode) {
+		case XMIN_YMIN:
+			suffix = String.valueOf(minX) + '_' + String.valueOf(minY);
+			break;
+		case XMAX_YMIN:
+			suffix = String.valueOf(maxX) + '_' + String.valueOf(minY);
+			break;
+		case XMIN_YMAX:
+			suffix = String.valueOf(minX) + '_' + String.valueOf(maxY);
+			break;
+		case XMAX_YMAX:
+			suffix = String.valueOf(maxX) + '_' + String.valueOf(maxY);
+			break;
+		case XMIN_YMIN_XMAX_YMAX:
+			suffix = String.valueOf(minX) + '_' + String.valueOf(minY) + '_' + String.valueOf(maxX) + '_' + String.valueOf(maxY);
+			break;
+		default:
+			suffix = String.valueOf(row) + '_' + String.valueOf(column);
+		}
+
+		File subfolder = new File(folderName, tiling.getTilePath() + '_'  + suffix);
+		if (!subfolder.exists() && !subfolder.mkdirs())
+			throw new CityGMLExportException("Failed to create tiling subfolder '" + subfolder + "'.");
+
+		if (tiling.getTileNameSuffix() == TileNameSuffixMode.SAME_AS_PATH)
+			return new File(subfolder, fileName + '_'  + suffix + '.' + fileExtension);
+		else // no suffix for filename
+			return new File(subfolder, fileName + '.' + fileExtension);
+	}
+
+	private String getTextureExportPath(File path) throws CityGMLExportException {
+		String textureExportPath = null;
+		boolean isRelative = config.getProject().getExporter().getAppearances().getTexturePath().isRelative();
+
+		if (isRelative)
+			textureExportPath = config.getProject().getExporter().getAppearances().getTexturePath().getRelativePath();
+		else
+			textureExportPath = config.getProject().getExporter().getAppearances().getTexturePath().getAbsolutePath();
+
+		if (textureExportPath != null && textureExportPath.length() > 0) {
+			File tmp = new File(textureExportPath);
+			textureExportPath = tmp.getPath();
+
+			if (isRelative) {
+				File exportPath = new File(path.getParent(), textureExportPath);
+
+				if (exportPath.isFile() || (exportPath.isDirectory() && !exportPath.canWrite())) {
+					throw new CityGMLExportException("Failed to open texture files subfolder '" + exportPath.toString() + "' for writing.");
+				} else if (!exportPath.isDirectory()) {
+					boolean success = exportPath.mkdirs();
+
+					if (!success)
+						throw new CityGMLExportException("Failed to create texture files subfolder '" + exportPath.toString() + "'.");
+					else
+						LOG.info("Created texture files subfolder '" + textureExportPath + "'.");
+				}
+
+				return textureExportPath;
+			} else {
+				File exportPath = new File(tmp.getAbsolutePath());
+				if (!exportPath.exists() || !exportPath.isDirectory() || !exportPath.canWrite())
+					throw new CityGMLExportException("Failed to open texture files folder '" + exportPath.toString() + "' for writing.");
+
+				return exportPath.toString();
+			}
+		}
+
+		return null;
+	}
+
+	private class TileExporter {
+		private ExportTileContext tileContext;
+		private DBSplitter dbSplitter;
+		private WorkerPool<DBXlink> xlinkExporterPool;
+		private SingleWorkerPool<?> ioWriterPool;
+		private CacheTableManager cacheTableManager;
+		private UIDCacheManager uidCacheManager;
+
+		private HashMap<CityGMLClass, Long> featureCounterMap = new HashMap<CityGMLClass, Long>();
+		private HashMap<GMLClass, Long> geometryCounterMap = new HashMap<GMLClass, Long>();
+
+		private void export(int row, int column, ExportFilter exportFilter, int remainingTiles) throws CityGMLExportException {
+			synchronized (tileExporters) {
+				tileExporters.add(this);
+			}
+
+			try {
+				File file = getTileFile(row, column, exportFilter);
+				tileContext = new ExportTileContext(file, exportFilter);
+				tileContext.setExportTextureFilePath(config.getInternal().getExportTextureFilePath());
+
+				// tiles exported concurrently must not share the internal config
+				if (!isConcurrentTiling) {
+					config.getInternal().setExportFileName(file.getAbsolutePath());
+					config.getInternal().setExportPath(tileContext.getExportPath());
+				}
+
+				eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.cityObj.msg"), this));
+				eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
+				eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, remainingTiles, this));
+
+				// checking export path for texture images
+				if (config.getProject().getExporter().getAppearances().isSetExportAppearance()) {
+					String textureExportPath = getTextureExportPath(file.getAbsoluteFile());
+					if (textureExportPath != null) {
+						tileContext.setExportTextureFilePath(textureExportPath);
+						if (!isConcurrentTiling)
+							config.getInternal().setExportTextureFilePath(textureExportPath);
 					}
+				}
 
-					// create instance of gml:id lookup server manager...
-					uidCacheManager = new UIDCacheManager();
+				// open file for writing
+				SAXWriter saxWriter = createSAXWriter();
+				OutputStream outputStream = null;
+				try {
+					outputStream = new FileOutputStream(file);
+					if (config.getProject().getExporter().getWriter().isSetCompressOutput())
+						outputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+
+					outputStream = new BufferedOutputStream(outputStream, 64 * 1024);
+					saxWriter.setOutput(new OutputStreamWriter(outputStream, "UTF-8"));
+				} catch (IOException e) {
+					throw new CityGMLExportException("Failed to open file '" + fileName + "' for writing.", e);
+				}					
 
-					// ...and start servers
+				// create instance of temp table manager
+				try {
+					cacheTableManager = new CacheTableManager(dbPool, 
+							config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(), 
+							config);
+				} catch (SQLException | IOException e) {
+					throw new CityGMLExportException("Failed to initialize internal cache manager.", e);
+				}
+
+				// create instance of gml:id lookup server manager...
+				uidCacheManager = new UIDCacheManager();
+
+				// ...and start servers
+				if (config.getProject().getGlobal().getCache().isUseOffHeap()) {
+					try {
+						OffHeapStore offHeapStore = new OffHeapStore(cacheTableManager.getLocalCacheDirectory(), 
+								config.getProject().getGlobal().getCache().getOffHeapMemory() * 1024L * 1024L);
+
+						uidCacheManager.initCache(UIDCacheType.GEOMETRY, offHeapStore, 
+								config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getCacheSize(),
+								config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads());
+
+						uidCacheManager.initCache(UIDCacheType.FEATURE, offHeapStore, 
+								config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getCacheSize(),
+								config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads());
+					} catch (IOException e) {
+						throw new CityGMLExportException("Failed to initialize off-heap gml:id caches.", e);
+					}
+				} else {
 					try {		
 						uidCacheManager.initCache(
 								UIDCacheType.GEOMETRY,
@@ -385,245 +673,208 @@ public class Exporter implements EventHandler {
 					} catch (SQLException e) {
 						throw new CityGMLExportException("Failed to initialize internal gml:id caches.", e);
 					}	
+				}
 
-					// create worker pools
-					// here we have an open issue: queue sizes are fix...
-					xlinkExporterPool = new WorkerPool<DBXlink>(
-							"xlink_exporter_pool",
-							1,
-							Math.max(1, config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads() / 2),
-							PoolSizeAdaptationStrategy.AGGRESSIVE,
-							new DBExportXlinkWorkerFactory(dbPool, config, eventDispatcher),
-							300,
+				tileContext.setCacheTableManager(cacheTableManager);
+				tileContext.setUIDCacheManager(uidCacheManager);
+
+				// create worker pools
+				// here we have an open issue: queue sizes are fix...
+				xlinkExporterPool = new WorkerPool<DBXlink>(
+						"xlink_exporter_pool",
+						1,
+						Math.max(1, config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads() / 2),
+						PoolSizeAdaptationStrategy.AGGRESSIVE,
+						new DBExportXlinkWorkerFactory(dbPool, config, tileContext, eventDispatcher),
+						300,
+						false);
+
+				tileContext.setXlinkExporterPool(xlinkExporterPool);
+
+				if (config.getProject().getExporter().getWriter().isSetUsePreEncoding()) {
+					// features are encoded by the database workers and the
+					// writer thread only appends the encoded bytes
+					FeatureBufferPool bufferPool = new FeatureBufferPool(config.getProject().getExporter().getWriter().getBufferPoolSize());
+					SingleWorkerPool<FeatureBuffer> bufferWriterPool = new SingleWorkerPool<FeatureBuffer>(
+							"citygml_writer_pool",
+							new FeatureBufferWriterWorkerFactory(saxWriter, outputStream, bufferPool),
+							100,
 							false);
 
-					ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
+					ioWriterPool = bufferWriterPool;
+					tileContext.setFeatureProcessorFactory(new FeatureWriterFactory(bufferWriterPool, 
+							bufferPool, 
+							new SAXWriterFactory() {
+								public SAXWriter createSAXWriter() {
+									return Exporter.this.createSAXWriter();
+								}
+							}, 
+							moduleContext, 
+							jaxbBuilder, 
+							config));
+				} else {
+					SingleWorkerPool<SAXEventBuffer> eventWriterPool = new SingleWorkerPool<SAXEventBuffer>(
 							"citygml_writer_pool",
 							new IOWriterWorkerFactory(saxWriter),
 							100,
 							false);
 
-					dbWorkerPool = new WorkerPool<DBSplittingResult>(
-							"db_exporter_pool",
-							config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
-							config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
-							PoolSizeAdaptationStrategy.AGGRESSIVE,
-							new DBExportWorkerFactory(
-									dbPool,
-									jaxbBuilder,
-									new FeatureWriterFactory(ioWriterPool, jaxbBuilder, config),
-									xlinkExporterPool,
-									uidCacheManager,
-									cacheTableManager,
-									exportFilter,
-									config,
-									eventDispatcher),
-							300,
-							false);
+					ioWriterPool = eventWriterPool;
+					tileContext.setFeatureProcessorFactory(new FeatureWriterFactory(eventWriterPool, jaxbBuilder, config));
+				}
 
-					// prestart pool workers
-					xlinkExporterPool.prestartCoreWorkers();
-					ioWriterPool.prestartCoreWorkers();
-					dbWorkerPool.prestartCoreWorkers();
+				// prestart pool workers
+				xlinkExporterPool.prestartCoreWorkers();
+				ioWriterPool.prestartCoreWorkers();
 
-					// fail if we could not start a single import worker
-					if (dbWorkerPool.getPoolSize() == 0)
-						throw new CityGMLExportException("Failed to start database export worker pool. Check the database connection pool settings.");
+				// ok, preparations done. inform user...
+				LOG.info("Exporting to file: " + file.getAbsolutePath());
 
-					// ok, preparations done. inform user...
-					LOG.info("Exporting to file: " + file.getAbsolutePath());
+				// write CityModel header element
+				JAXBModelWriter writer = null;
+				try {
+					writer = new JAXBModelWriter(
+							saxWriter, 
+							(JAXBOutputFactory)jaxbBuilder.createCityGMLOutputFactory(moduleContext), 
+							moduleContext, 
+							new CityModelInfo());
+
+					writer.writeStartDocument();
+					saxWriter.flush();
+				} catch (CityGMLWriteException | SAXException e) {
+					throw new CityGMLExportException("Failed to write CityGML file.", e);
+				}
 
-					// write CityModel header element
-					JAXBModelWriter writer = null;
-					try {
-						writer = new JAXBModelWriter(
-								saxWriter, 
-								(JAXBOutputFactory)jaxbBuilder.createCityGMLOutputFactory(moduleContext), 
-								moduleContext, 
-								new CityModelInfo());
-
-						writer.writeStartDocument();
-						saxWriter.flush();
-					} catch (CityGMLWriteException | SAXException e) {
-						throw new CityGMLExportException("Failed to write CityGML file.", e);
-					}
+				// get database splitter and start query
+				try {
+					dbSplitter = new DBSplitter(
+							dbPool,
+							dbWorkerPool,
+							tileContext,
+							eventDispatcher,
+							config);
+
+					// the progress bar shows finished tiles instead
+					if (isConcurrentTiling)
+						dbSplitter.setEstimateCount(false);
+
+					if (shouldRun)
+						dbSplitter.startQuery();
+				} catch (SQLException e) {
+					throw new CityGMLExportException("Failed to query the database.", e);
+				}
 
-					// get database splitter and start query
-					dbSplitter = null;
-					try {
-						dbSplitter = new DBSplitter(
-								dbPool,
-								dbWorkerPool,
-								exportFilter,
-								uidCacheManager.getCache(CityGMLClass.ABSTRACT_CITY_OBJECT),
-								cacheTableManager,
-								eventDispatcher,
-								config);
-
-						if (shouldRun)
-							dbSplitter.startQuery();
-					} catch (SQLException e) {
-						throw new CityGMLExportException("Failed to query the database.", e);
-					}
+				try {
+					tileContext.join();
+					closeExporterManagers();
 
-					try {
-						dbWorkerPool.shutdownAndWait();
-						xlinkExporterPool.shutdownAndWait();
-						ioWriterPool.shutdownAndWait();
-					} catch (InterruptedException e) {
-						throw new CityGMLExportException("Failed to shutdown worker pools.", e);
-					}
+					xlinkExporterPool.shutdownAndWait();
+					ioWriterPool.shutdownAndWait();
+				} catch (InterruptedException e) {
+					throw new CityGMLExportException("Failed to shutdown worker pools.", e);
+				}
 
-					// write footer element and flush sax writer
-					try {
-						writer.writeEndDocument();						
-						saxWriter.flush();
-						saxWriter.getOutputWriter().close();
-					} catch (CityGMLWriteException | SAXException | IOException e) {
-						throw new CityGMLExportException("Failed to write CityGML file.", e);
-					}
+				// write footer element and flush sax writer
+				try {
+					writer.writeEndDocument();						
+					saxWriter.flush();
+					saxWriter.getOutputWriter().close();
+				} catch (CityGMLWriteException | SAXException | IOException e) {
+					throw new CityGMLExportException("Failed to write CityGML file.", e);
+				}
 
-					eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
-				} finally {
-					// clean up
-					if (xlinkExporterPool != null && !xlinkExporterPool.isTerminated())
-						xlinkExporterPool.shutdownNow();
+				eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
+			} finally {
+				synchronized (tileExporters) {
+					tileExporters.remove(this);
+				}
 
-					if (dbWorkerPool != null && !dbWorkerPool.isTerminated())
-						dbWorkerPool.shutdownNow();
+				// clean up
+				if (tileContext != null)
+					closeExporterManagers();
 
-					if (ioWriterPool != null && !ioWriterPool.isTerminated())
-						ioWriterPool.shutdownNow();
+				if (xlinkExporterPool != null && !xlinkExporterPool.isTerminated())
+					xlinkExporterPool.shutdownNow();
 
-					try {
-						eventDispatcher.flushEvents();
-					} catch (InterruptedException e) {
-						//
-					}
+				if (ioWriterPool != null && !ioWriterPool.isTerminated())
+					ioWriterPool.shutdownNow();
 
+				try {
+					eventDispatcher.flushEvents();
+				} catch (InterruptedException e) {
+					//
+				}
+
+				if (uidCacheManager != null) {
 					try {
 						uidCacheManager.shutdownAll();
 					} catch (SQLException e) {
 						throw new CityGMLExportException("Failed to clean gml:id caches.", e);
 					}
+				}
 
+				if (cacheTableManager != null) {
 					try {
 						LOG.info("Cleaning temporary cache.");
 						cacheTableManager.dropAll();
 						cacheTableManager = null;
 					} catch (SQLException e) {
 						throw new CityGMLExportException("Failed to clean temporary cache.", e);
-					}					
-				}
-
-				// show exported features
-				if (!featureCounterMap.isEmpty()) {
-					LOG.info("Exported CityGML features:");
-					for (CityGMLClass type : featureCounterMap.keySet())
-						LOG.info(type + ": " + featureCounterMap.get(type));
+					}
 				}
-
-				long geometryObjects = 0;
-				for (GMLClass type : geometryCounterMap.keySet())
-					geometryObjects += geometryCounterMap.get(type);
-
-				if (geometryObjects != 0)
-					LOG.info("Processed geometry objects: " + geometryObjects);
-
-				featureCounterMap.clear();
-				geometryCounterMap.clear();
 			}
-		}
 
-		// show totally exported features
-		if (useTiling && (rows > 1 || columns > 1)) {
-			if (!totalFeatureCounterMap.isEmpty()) {
-				LOG.info("Totally exported CityGML features:");
-				for (CityGMLClass type : totalFeatureCounterMap.keySet())
-					LOG.info(type + ": " + totalFeatureCounterMap.get(type));
+			// show exported features
+			if (!featureCounterMap.isEmpty()) {
+				LOG.info("Exported CityGML features" + (isConcurrentTiling ? " to " + tileContext.getFile().getName() : "") + ":");
+				for (CityGMLClass type : featureCounterMap.keySet())
+					LOG.info(type + ": " + featureCounterMap.get(type));
 			}
 
 			long geometryObjects = 0;
-			for (GMLClass type : totalGeometryCounterMap.keySet())
-				geometryObjects += totalGeometryCounterMap.get(type);
+			for (GMLClass type : geometryCounterMap.keySet())
+				geometryObjects += geometryCounterMap.get(type);
 
 			if (geometryObjects != 0)
-				LOG.info("Total processed geometry objects: " + geometryObjects);
+				LOG.info("Processed geometry objects: " + geometryObjects);
 		}
 
-		if (shouldRun)
-			LOG.info("Total export time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
-
-		return shouldRun;
-	}
-
-	@Override
-	public void handleEvent(Event e) throws Exception {
-		if (e.getEventType() == EventType.FEATURE_COUNTER) {
-			HashMap<CityGMLClass, Long> counterMap = ((FeatureCounterEvent)e).getCounter();
-
-			for (CityGMLClass type : counterMap.keySet()) {
-				Long update = counterMap.get(type);
-
-				Long counter = featureCounterMap.get(type);
-				featureCounterMap.put(type, counter == null ? update : counter + update);
+		private void closeExporterManagers() {
+			// all work items of this tile have been processed, so the
+			// exporter managers of the shared workers are idle
+			Collection<DBExporterManager> exporterManagers = tileContext.removeExporterManagers();
+			if (exporterManagers.isEmpty())
+				return;
 
-				if (useTiling) {
-					counter = totalFeatureCounterMap.get(type);
-					totalFeatureCounterMap.put(type, counter == null ? update : counter + update);
+			for (DBExporterManager exporterManager : exporterManagers) {
+				try {
+					exporterManager.close();
+				} catch (SQLException e) {
+					//
 				}
-			}
-		}
 
-		else if (e.getEventType() == EventType.GEOMETRY_COUNTER) {
-			HashMap<GMLClass, Long> counterMap = ((GeometryCounterEvent)e).getCounter();
-
-			for (GMLClass type : counterMap.keySet()) {
-				Long update = counterMap.get(type);
-
-				Long counter = geometryCounterMap.get(type);
-				geometryCounterMap.put(type, counter == null ? update : counter + update);
-
-				if (useTiling) {
-					counter = totalGeometryCounterMap.get(type);
-					totalGeometryCounterMap.put(type, counter == null ? update : counter + update);
+				for (Entry<CityGMLClass, Long> entry : exporterManager.getFeatureCounter().entrySet()) {
+					Long counter = featureCounterMap.get(entry.getKey());
+					featureCounterMap.put(entry.getKey(), counter == null ? entry.getValue() : counter + entry.getValue());
 				}
-			}
-		}
-
-		else if (e.getEventType() == EventType.INTERRUPT) {
-			if (isInterrupted.compareAndSet(false, true)) {
-				shouldRun = false;
-				InterruptEvent interruptEvent = (InterruptEvent)e;
-
-				if (interruptEvent.getCause() != null) {
-					Throwable cause = interruptEvent.getCause();
 
-					if (cause instanceof SQLException) {
-						Iterator<Throwable> iter = ((SQLException)cause).iterator();
-						LOG.error("A SQL error occured: " + iter.next().getMessage().trim());
-						while (iter.hasNext())
-							LOG.error("Cause: " + iter.next().getMessage().trim());
-					} else {
-						LOG.error("An error occured: " + cause.getMessage().trim());
-						while ((cause = cause.getCause()) != null)
-							LOG.error("Cause: " + cause.getMessage().trim());
-					}
+				for (Entry<GMLClass, Long> entry : exporterManager.getGeometryCounter().entrySet()) {
+					Long counter = geometryCounterMap.get(entry.getKey());
+					geometryCounterMap.put(entry.getKey(), counter == null ? entry.getValue() : counter + entry.getValue());
 				}
+			}
 
-				String log = interruptEvent.getLogMessage();
-				if (log != null)
-					LOG.log(interruptEvent.getLogLevelType(), log);
-
-				if (dbSplitter != null)
-					dbSplitter.shutdown();
+			eventDispatcher.triggerEvent(new FeatureCounterEvent(featureCounterMap, this));
+			eventDispatcher.triggerEvent(new GeometryCounterEvent(geometryCounterMap, this));
+		}
 
-				if (dbWorkerPool != null)
-					dbWorkerPool.drainWorkQueue();
+		private void interrupt() {
+			if (dbSplitter != null)
+				dbSplitter.shutdown();
 
-				if (xlinkExporterPool != null)
-					xlinkExporterPool.drainWorkQueue();
-			}
+			if (xlinkExporterPool != null)
+				xlinkExporterPool.drainWorkQueue();
 		}
 	}
 }
+
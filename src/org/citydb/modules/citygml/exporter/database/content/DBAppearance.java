@@ -106,7 +106,7 @@ public class DBAppearance implements DBExporter {
 		noOfBuckets = config.getProject().getExporter().getAppearances().getTexturePath().getNoOfBuckets(); 
 		useBuckets = config.getProject().getExporter().getAppearances().getTexturePath().isUseBuckets() && noOfBuckets > 0;
 
-		texturePath = config.getInternal().getExportTextureFilePath();
+		texturePath = dbExporterManager.getExportTextureFilePath();
 		pathSeparator = config.getProject().getExporter().getAppearances().getTexturePath().isAbsolute() ? File.separator : "/";
 
 		useXLink = config.getProject().getExporter().getXlink().getFeature().isModeXLink();
@@ -113,7 +113,7 @@ public class DBBridgeThematicSurface implements DBExporter {
 			appendOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetAppendId();
 			keepOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetKeepGmlIdAsExternalReference();
 			gmlIdPrefix = config.getProject().getExporter().getXlink().getFeature().getIdPrefix();
-			infoSys = config.getInternal().getExportFileName();
+			infoSys = dbExporterManager.getExportFileName();
 		}	
 
 		if (!config.getInternal().isTransformCoordinates()) {
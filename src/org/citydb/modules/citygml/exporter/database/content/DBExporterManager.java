@@ -48,6 +48,7 @@ import org.citydb.modules.citygml.common.database.uid.UIDCache;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.common.xal.AddressExportFactory;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessException;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessor;
 import org.citydb.modules.common.filter.ExportFilter;
@@ -69,6 +70,7 @@ public class DBExporterManager {
 	private final CacheTableManager cacheTableManager;
 	private final ExportFilter exportFilter;
 	private final Config config;
+	private final ExportTileContext tileContext;
 	private final EventDispatcher eventDispatcher;
 
 	private final JAXBUnmarshaller jaxbUnmarshaller;
@@ -86,6 +88,7 @@ public class DBExporterManager {
 			CacheTableManager cacheTableManager,
 			ExportFilter exportFilter,
 			Config config,
+			ExportTileContext tileContext,
 			EventDispatcher eventDispatcher) throws SAXException {
 		this.connection = connection;
 		this.databaseAdapter = databaseAdapter;
@@ -96,6 +99,7 @@ public class DBExporterManager {
 		this.cacheTableManager = cacheTableManager;
 		this.exportFilter = exportFilter;
 		this.config = config;
+		this.tileContext = tileContext;
 		this.eventDispatcher = eventDispatcher;
 
 		dbExporterMap = new EnumMap<DBExporterEnum, DBExporter>(DBExporterEnum.class);
@@ -297,6 +301,22 @@ public class DBExporterManager {
 		return geometryCounterMap;
 	}
 	
+	public ExportTileContext getExportTileContext() {
+		return tileContext;
+	}
+
+	public String getExportFileName() {
+		return tileContext != null ? tileContext.getExportFileName() : config.getInternal().getExportFileName();
+	}
+
+	public String getExportPath() {
+		return tileContext != null ? tileContext.getExportPath() : config.getInternal().getExportPath();
+	}
+
+	public String getExportTextureFilePath() {
+		return tileContext != null ? tileContext.getExportTextureFilePath() : config.getInternal().getExportTextureFilePath();
+	}
+
 	public AbstractDatabaseAdapter getDatabaseAdapter() {
 		return databaseAdapter;
 	}
@@ -99,7 +99,7 @@ public class DBReliefFeature implements DBExporter {
 			appendOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetAppendId();
 			keepOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetKeepGmlIdAsExternalReference();
 			gmlIdPrefix = config.getProject().getExporter().getXlink().getFeature().getIdPrefix();
-			infoSys = config.getInternal().getExportFileName();
+			infoSys = dbExporterManager.getExportFileName();
 		}	
 
 		if (!config.getInternal().isTransformCoordinates()) {	
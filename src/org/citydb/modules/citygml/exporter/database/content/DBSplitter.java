@@ -50,7 +50,10 @@ import org.citydb.modules.citygml.common.database.cache.CacheTable;
 import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
 import org.citydb.modules.citygml.common.database.cache.model.CacheTableModelEnum;
 import org.citydb.modules.citygml.common.database.uid.UIDCache;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
+import org.citydb.modules.common.event.ProgressBarEventType;
 import org.citydb.modules.common.event.StatusDialogMessage;
+import org.citydb.modules.common.event.StatusDialogProgressBar;
 import org.citydb.modules.common.filter.ExportFilter;
 import org.citydb.modules.common.filter.feature.BoundingBoxFilter;
 import org.citydb.modules.common.filter.feature.FeatureClassFilter;
@@ -65,6 +68,7 @@ public class DBSplitter {
 
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final WorkerPool<DBSplittingResult> dbWorkerPool;
+	private final ExportTileContext tileContext;
 	private final UIDCache featureGmlIdCache;
 	private final CacheTableManager cacheTableManager;
 	private final Config config;
@@ -88,22 +92,23 @@ public class DBSplitter {
 	private BoundingBoxFilter boundingBoxFilter;
 
 	private ExportFilterConfig expFilterConfig;
+	private int fetchSize;
+	private boolean estimateCount;
 
 	public DBSplitter(DatabaseConnectionPool dbConnectionPool, 
 			WorkerPool<DBSplittingResult> dbWorkerPool, 
-			ExportFilter exportFilter, 
-			UIDCache featureGmlIdCache,
-			CacheTableManager cacheTableManager,
+			ExportTileContext tileContext,
 			EventDispatcher eventDispatcher, 
 			Config config) throws SQLException {
 		this.dbConnectionPool = dbConnectionPool;
 		this.dbWorkerPool = dbWorkerPool;
-		this.featureGmlIdCache = featureGmlIdCache;
-		this.cacheTableManager = cacheTableManager;
+		this.tileContext = tileContext;
+		this.featureGmlIdCache = tileContext.getUIDCacheManager().getCache(CityGMLClass.ABSTRACT_CITY_OBJECT);
+		this.cacheTableManager = tileContext.getCacheTableManager();
 		this.eventDispatcher = eventDispatcher;
 		this.config = config;
 
-		init(exportFilter, cacheTableManager);
+		init(tileContext.getExportFilter(), cacheTableManager);
 	}
 
 	private void init(ExportFilter exportFilter, CacheTableManager cacheTableManager) throws SQLException {
@@ -136,6 +141,8 @@ public class DBSplitter {
 		boundingBoxFilter = exportFilter.getBoundingBoxFilter();
 
 		expFilterConfig = config.getProject().getExporter().getFilter();
+		fetchSize = config.getProject().getExporter().getFeatureQuery().getFetchSize();
+		estimateCount = config.getProject().getExporter().getFeatureQuery().isSetEstimateCount();
 	}
 
 	private void initFilter() throws SQLException {
@@ -190,6 +197,18 @@ public class DBSplitter {
 		shouldRun = false;
 	}
 
+	public void setEstimateCount(boolean estimateCount) {
+		this.estimateCount = estimateCount;
+	}
+
+	private void addWork(DBSplittingResult splitter) {
+		// the worker pool is shared by all tiles, so we track
+		// the pending work of our tile ourselves
+		splitter.setTileContext(tileContext);
+		tileContext.addPendingWork();
+		dbWorkerPool.addWork(splitter);
+	}
+
 	public void startQuery() throws SQLException {
 		try {
 			initFilter();
@@ -197,7 +216,7 @@ public class DBSplitter {
 
 			if (shouldRun) {
 				try {
-					dbWorkerPool.join();
+					tileContext.join();
 				} catch (InterruptedException e) {
 					//
 				}
@@ -208,7 +227,7 @@ public class DBSplitter {
 
 				if (shouldRun) {
 					try {
-						dbWorkerPool.join();
+						tileContext.join();
 					} catch (InterruptedException e) {
 						//
 					}
@@ -237,14 +256,15 @@ public class DBSplitter {
 
 		// build query string...
 		StringBuilder query = new StringBuilder();
+		String hint = "";
 
 		if (expFilterConfig.isSetSimpleFilter()) {
-			query.append("select co.ID, co.OBJECTCLASS_ID from CITYOBJECT co where co.OBJECTCLASS_ID <> ").append(Util.cityObject2classId(CityGMLClass.CITY_OBJECT_GROUP)).append(" ");
+			query.append("co.OBJECTCLASS_ID <> ").append(Util.cityObject2classId(CityGMLClass.CITY_OBJECT_GROUP)).append(" ");
 			if (gmlIdFilter != null)
 				query.append("and ").append(gmlIdFilter);
 
 		} else {
-			query.append("select ").append(optimizerHint).append(" co.ID, co.OBJECTCLASS_ID from CITYOBJECT co where ");
+			hint = optimizerHint;
 
 			List<Integer> classIds = new ArrayList<Integer>();
 			List<CityGMLClass> allowedFeature = featureClassFilter.getNotFilterState();
@@ -266,18 +286,31 @@ public class DBSplitter {
 
 			if (bboxFilter != null)
 				query.append("and ").append(bboxFilter);
-
-			if (featureCounterFilter.isActive())
-				query.append("order by ID");
 		}
 
+		if (estimateCount)
+			initProgressBar(hint, query.toString());
+
+		query.insert(0, "select " + hint + " co.ID, co.OBJECTCLASS_ID from CITYOBJECT co where ");
+		if (!expFilterConfig.isSetSimpleFilter() && featureCounterFilter.isActive())
+			query.append("order by ID");
+
 		Statement stmt = null;
 		ResultSet rs = null;
+		boolean autoCommit = connection.getAutoCommit();
 
 		try {
-			stmt = connection.createStatement();
+			// PostgreSQL only streams the result set through a cursor if
+			// autocommit is disabled. otherwise, the driver reads all rows
+			// into memory before returning the first one
+			if (autoCommit)
+				connection.setAutoCommit(false);
+
+			stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(fetchSize);
 			rs = stmt.executeQuery(query.toString());
 
+			int progress = 0;
 			while (rs.next() && shouldRun) {
 				elementCounter++;
 
@@ -293,9 +326,17 @@ public class DBSplitter {
 
 				// set initial context...
 				DBSplittingResult splitter = new DBSplittingResult(primaryKey, cityObjectType);
-				dbWorkerPool.addWork(splitter);
+				addWork(splitter);
+
+				if (estimateCount && ++progress == 100) {
+					eventDispatcher.triggerEvent(new StatusDialogProgressBar(ProgressBarEventType.UPDATE, progress, this));
+					progress = 0;
+				}
 			}
 
+			if (estimateCount && progress > 0)
+				eventDispatcher.triggerEvent(new StatusDialogProgressBar(ProgressBarEventType.UPDATE, progress, this));
+
 		} catch (SQLException sqlEx) {
 			throw sqlEx;
 		} finally {
@@ -318,6 +359,40 @@ public class DBSplitter {
 
 				stmt = null;
 			}
+
+			if (autoCommit) {
+				try {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				} catch (SQLException sqlEx) {
+					//
+				}
+			}
+		}
+	}
+
+	private void initProgressBar(String hint, String predicate) throws SQLException {
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+			stmt = connection.createStatement();
+			rs = stmt.executeQuery("select " + hint + " count(*) from CITYOBJECT co where " + predicate);
+
+			long count = rs.next() ? rs.getLong(1) : 0;
+			if (lastElement != null)
+				count = Math.min(count, lastElement);
+
+			if (firstElement != null)
+				count = Math.max(count - firstElement + 1, 0);
+
+			eventDispatcher.triggerEvent(new StatusDialogProgressBar(ProgressBarEventType.INIT, (int)Math.min(count, Integer.MAX_VALUE), this));
+		} finally {
+			if (rs != null)
+				rs.close();
+
+			if (stmt != null)
+				stmt.close();
 		}
 	}
 
@@ -330,6 +405,8 @@ public class DBSplitter {
 
 		LOG.info("Processing CityObjectGroup features.");
 		eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.group.msg"), this));
+		if (estimateCount)
+			eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
 
 		StringBuilder groupQuery = new StringBuilder();
 		String classIdsString = "";
@@ -435,7 +512,7 @@ public class DBSplitter {
 						// set initial context...
 						DBSplittingResult splitter = new DBSplittingResult(gmlId, memberId, cityObjectType);
 						splitter.setCheckIfAlreadyExported(true);
-						dbWorkerPool.addWork(splitter);
+						addWork(splitter);
 					} 
 
 					rs.close();
@@ -445,7 +522,7 @@ public class DBSplitter {
 
 				// wait for jobs to be done...
 				try {
-					dbWorkerPool.join();
+					tileContext.join();
 				} catch (InterruptedException e) {
 					//
 				}
@@ -459,7 +536,7 @@ public class DBSplitter {
 					break;
 
 				DBSplittingResult splitter = new DBSplittingResult(groupId, CityGMLClass.CITY_OBJECT_GROUP);
-				dbWorkerPool.addWork(splitter);
+				addWork(splitter);
 			}
 
 		} catch (SQLException sqlEx) {
@@ -527,7 +604,7 @@ public class DBSplitter {
 
 				// send appearance to export workers
 				DBSplittingResult splitter = new DBSplittingResult(appearanceId, CityGMLClass.APPEARANCE);
-				dbWorkerPool.addWork(splitter);
+				addWork(splitter);
 			}
 
 		} catch (SQLException sqlEx) {
@@ -27,6 +27,7 @@
  */
 package org.citydb.modules.citygml.exporter.database.content;
 
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
 import org.citygml4j.model.citygml.CityGMLClass;
 
 public class DBSplittingResult {
@@ -35,6 +36,7 @@ public class DBSplittingResult {
 	private final String gmlId;
 	
 	private boolean checkIfAlreadyExported = false;
+	private ExportTileContext tileContext;
 
 	public DBSplittingResult(long primaryKey, CityGMLClass cityObjectType) {
 		this(null, primaryKey, cityObjectType);
@@ -65,5 +67,13 @@ public class DBSplittingResult {
 	public void setCheckIfAlreadyExported(boolean checkIfAlreadyExported) {
 		this.checkIfAlreadyExported = checkIfAlreadyExported;
 	}
+
+	public ExportTileContext getTileContext() {
+		return tileContext;
+	}
+
+	public void setTileContext(ExportTileContext tileContext) {
+		this.tileContext = tileContext;
+	}
 	
 }
@@ -31,9 +31,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
@@ -86,6 +88,12 @@ public class DBSurfaceGeometry implements DBExporter {
 	private int commitAfter;
 	private int batchCounter;
 
+	private HashMap<Long, List<GeometryNode>> prefetchCache;
+	private String prefetchSelect;
+	private long prefetchQueries;
+	private long prefetchHits;
+	private long prefetchMisses;
+
 	public DBSurfaceGeometry(Connection connection, CacheTable tempTable, Config config, DBExporterManager dbExporterManager) throws SQLException {
 		this.connection = connection;
 		this.tempTable = tempTable;
@@ -133,9 +141,130 @@ public class DBSurfaceGeometry implements DBExporter {
 			.append("IMPLICIT_GEOMETRY from SURFACE_GEOMETRY where ROOT_ID = ?");
 			psTransformSurfaceGeometry = connection.prepareStatement(query.toString());
 		}
+
+		if (config.getProject().getExporter().getGeometryPrefetch().isSetUsePrefetch()) {
+			prefetchCache = new HashMap<Long, List<GeometryNode>>();
+
+			query = new StringBuilder("select sg.ROOT_ID, sg.ID, sg.GMLID, sg.PARENT_ID, sg.IS_SOLID, sg.IS_COMPOSITE, sg.IS_TRIANGULATED, sg.IS_XLINK, sg.IS_REVERSE, ");
+			if (applyTransformation) {
+				int srid = config.getInternal().getExportTargetSRS().getSrid();
+				String transformOrNull = dbExporterManager.getDatabaseAdapter().getSQLAdapter().resolveDatabaseOperationName("citydb_srs.transform_or_null");
+				query.append(transformOrNull).append("(sg.GEOMETRY, ").append(srid).append(") AS GEOMETRY ");
+			} else
+				query.append("sg.GEOMETRY ");
+
+			query.append("from SURFACE_GEOMETRY sg where sg.CITYOBJECT_ID in (");
+			prefetchSelect = query.toString();
+		}
+	}
+
+	public void prefetch(List<DBSplittingResult> work) throws SQLException {
+		if (prefetchCache == null || work.size() < 2)
+			return;
+
+		// group the top-level features by the query that
+		// collects the ids of their geometry owners
+		Map<CityGMLClass, List<Long>> ids = new HashMap<CityGMLClass, List<Long>>();
+		for (DBSplittingResult splitter : work) {
+			CityGMLClass type = getPrefetchGroup(splitter.getCityObjectType());
+			if (type == CityGMLClass.UNDEFINED)
+				continue;
+
+			List<Long> group = ids.get(type);
+			if (group == null) {
+				group = new ArrayList<Long>();
+				ids.put(type, group);
+			}
+
+			group.add(splitter.getPrimaryKey());
+		}
+
+		for (Map.Entry<CityGMLClass, List<Long>> entry : ids.entrySet()) {
+			String query = prefetchSelect + getCityObjectIdQuery(entry.getKey(), Util.collection2string(entry.getValue(), ",")) + ")";
+			Statement stmt = null;
+			ResultSet rs = null;
+
+			try {
+				stmt = connection.createStatement();
+				rs = stmt.executeQuery(query);
+				prefetchQueries++;
+
+				while (rs.next()) {
+					long rootId = rs.getLong(1);
+
+					List<GeometryNode> geomNodes = prefetchCache.get(rootId);
+					if (geomNodes == null) {
+						geomNodes = new ArrayList<GeometryNode>();
+						prefetchCache.put(rootId, geomNodes);
+					}
+
+					geomNodes.add(readGeometryNode(rs, 2, 10));
+				}
+			} finally {
+				if (rs != null)
+					rs.close();
+
+				if (stmt != null)
+					stmt.close();
+			}
+		}
+	}
+
+	public void clearPrefetchCache() {
+		if (prefetchCache != null)
+			prefetchCache.clear();
+	}
+
+	private CityGMLClass getPrefetchGroup(CityGMLClass type) {
+		switch (type) {
+		case TRANSPORTATION_COMPLEX:
+		case TRACK:
+		case RAILWAY:
+		case ROAD:
+		case SQUARE:
+			return CityGMLClass.TRANSPORTATION_COMPLEX;
+		case APPEARANCE:
+			return CityGMLClass.UNDEFINED;
+		default:
+			return type;
+		}
+	}
+
+	private String getCityObjectIdQuery(CityGMLClass type, String ids) {
+		switch (type) {
+		case BUILDING:
+			return new StringBuilder("select ID from BUILDING where BUILDING_ROOT_ID in (").append(ids).append(") ")
+			.append("union all select ts.ID from THEMATIC_SURFACE ts, BUILDING b where ts.BUILDING_ID = b.ID and b.BUILDING_ROOT_ID in (").append(ids).append(")").toString();
+		case BRIDGE:
+			return new StringBuilder("select ID from BRIDGE where BRIDGE_ROOT_ID in (").append(ids).append(") ")
+			.append("union all select ts.ID from BRIDGE_THEMATIC_SURFACE ts, BRIDGE b where ts.BRIDGE_ID = b.ID and b.BRIDGE_ROOT_ID in (").append(ids).append(")").toString();
+		case TUNNEL:
+			return new StringBuilder("select ID from TUNNEL where TUNNEL_ROOT_ID in (").append(ids).append(") ")
+			.append("union all select ts.ID from TUNNEL_THEMATIC_SURFACE ts, TUNNEL t where ts.TUNNEL_ID = t.ID and t.TUNNEL_ROOT_ID in (").append(ids).append(")").toString();
+		case TRANSPORTATION_COMPLEX:
+			return new StringBuilder(ids).append(") or sg.CITYOBJECT_ID in (")
+			.append("select ID from TRAFFIC_AREA where TRANSPORTATION_COMPLEX_ID in (").append(ids).append(")").toString();
+		case WATER_BODY:
+			return new StringBuilder(ids).append(") or sg.CITYOBJECT_ID in (")
+			.append("select WATERBOUNDARY_SURFACE_ID from WATERBOD_TO_WATERBND_SRF where WATERBODY_ID in (").append(ids).append(")").toString();
+		default:
+			return ids;
+		}
 	}
 
 	public DBSurfaceGeometryResult read(long rootId) throws SQLException {
+		// prototype geometries are never prefetched since they
+		// must not be transformed
+		if (prefetchCache != null && !isImplicit) {
+			List<GeometryNode> geomNodes = prefetchCache.remove(rootId);
+			if (geomNodes != null) {
+				prefetchHits++;
+				return rebuildGeometry(geomNodes);
+			}
+
+			prefetchMisses++;
+		}
+
 		ResultSet rs = null;
 
 		try {
@@ -147,56 +276,68 @@ public class DBSurfaceGeometry implements DBExporter {
 				rs = psTransformSurfaceGeometry.executeQuery();
 			}
 
-			GeometryTree geomTree = new GeometryTree();
-
-			// firstly, read the geometry entries into a
-			// flat geometry tree structure
-			while (rs.next()) {
-				long id = rs.getLong(1);
-				
-				// constructing a geometry node
-				GeometryNode geomNode = new GeometryNode();
-				geomNode.id = id;				
-				geomNode.gmlId = rs.getString(2);
-				geomNode.parentId = rs.getLong(3);
-				geomNode.isSolid = rs.getBoolean(4);
-				geomNode.isComposite = rs.getBoolean(5);
-				geomNode.isTriangulated = rs.getBoolean(6);
-				geomNode.isXlink = rs.getBoolean(7);
-				geomNode.isReverse = rs.getBoolean(8);
-
-				GeometryObject geometry = null;
-				Object object = rs.getObject(!isImplicit ? 9 : 10);
-				if (!rs.wasNull() && object != null) {
-					try {
-						geometry = dbExporterManager.getDatabaseAdapter().getGeometryConverter().getPolygon(object);
-					} catch (IllegalArgumentException e) {
-						StringBuilder msg = new StringBuilder("Skipping ").append(Util.getGeometrySignature(
-								GMLClass.POLYGON, 
-								geomNode.gmlId));
-						msg.append(": ").append(e.getMessage());
-
-						LOG.error(msg.toString());
-						continue;
-					}
-				}
+			List<GeometryNode> geomNodes = new ArrayList<GeometryNode>();
+			while (rs.next())
+				geomNodes.add(readGeometryNode(rs, 1, !isImplicit ? 9 : 10));
 
-				geomNode.geometry = geometry;
+			return rebuildGeometry(geomNodes);
+		} finally {
+			if (rs != null)
+				rs.close();
+		}
+	}
 
-				// put it into our geometry tree
-				geomTree.insertNode(geomNode, geomNode.parentId);
+	private GeometryNode readGeometryNode(ResultSet rs, int offset, int geometryColumn) throws SQLException {
+		// constructing a geometry node
+		GeometryNode geomNode = new GeometryNode();
+		geomNode.id = rs.getLong(offset);
+		geomNode.gmlId = rs.getString(offset + 1);
+		geomNode.parentId = rs.getLong(offset + 2);
+		geomNode.isSolid = rs.getBoolean(offset + 3);
+		geomNode.isComposite = rs.getBoolean(offset + 4);
+		geomNode.isTriangulated = rs.getBoolean(offset + 5);
+		geomNode.isXlink = rs.getBoolean(offset + 6);
+		geomNode.isReverse = rs.getBoolean(offset + 7);
+
+		Object object = rs.getObject(geometryColumn);
+		if (!rs.wasNull() && object != null) {
+			try {
+				geomNode.geometry = dbExporterManager.getDatabaseAdapter().getGeometryConverter().getPolygon(object);
+			} catch (IllegalArgumentException e) {
+				// the error is reported when the geometry is rebuilt
+				geomNode.conversionError = e.getMessage();
 			}
+		}
 
-			// interpret geometry tree as a single abstract geometry
-			if (geomTree.root != 0)
-				return rebuildGeometry(geomTree.getNode(geomTree.root), false, false);
-			else {
-				LOG.error("Failed to interpret geometry object.");
-				return null;
+		return geomNode;
+	}
+
+	private DBSurfaceGeometryResult rebuildGeometry(List<GeometryNode> geomNodes) throws SQLException {
+		GeometryTree geomTree = new GeometryTree();
+
+		// firstly, read the geometry entries into a
+		// flat geometry tree structure
+		for (GeometryNode geomNode : geomNodes) {
+			if (geomNode.conversionError != null) {
+				StringBuilder msg = new StringBuilder("Skipping ").append(Util.getGeometrySignature(
+						GMLClass.POLYGON, 
+						geomNode.gmlId));
+				msg.append(": ").append(geomNode.conversionError);
+
+				LOG.error(msg.toString());
+				continue;
 			}
-		} finally {
-			if (rs != null)
-				rs.close();
+
+			// put it into our geometry tree
+			geomTree.insertNode(geomNode, geomNode.parentId);
+		}
+
+		// interpret geometry tree as a single abstract geometry
+		if (geomTree.root != 0)
+			return rebuildGeometry(geomTree.getNode(geomTree.root), false, false);
+		else {
+			LOG.error("Failed to interpret geometry object.");
+			return null;
 		}
 	}
 	
@@ -650,6 +791,12 @@ public class DBSurfaceGeometry implements DBExporter {
 
 	@Override
 	public void close() throws SQLException {
+		if (prefetchQueries > 0) {
+			LOG.debug("Geometry prefetch: " + prefetchQueries + " batch queries, " 
+					+ prefetchHits + " geometries served from cache, " 
+					+ prefetchMisses + " single geometry queries.");
+		}
+
 		psSurfaceGeometry.close();
 
 		if (psTransformSurfaceGeometry != null)
@@ -676,6 +823,7 @@ public class DBSurfaceGeometry implements DBExporter {
 		protected boolean isXlink;
 		protected boolean isReverse;
 		protected GeometryObject geometry;
+		protected String conversionError;
 		protected List<GeometryNode> childNodes;
 
 		public GeometryNode() {
@@ -111,7 +111,7 @@ public class DBThematicSurface implements DBExporter {
 			appendOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetAppendId();
 			keepOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetKeepGmlIdAsExternalReference();
 			gmlIdPrefix = config.getProject().getExporter().getXlink().getFeature().getIdPrefix();
-			infoSys = config.getInternal().getExportFileName();
+			infoSys = dbExporterManager.getExportFileName();
 		}	
 
 		if (!config.getInternal().isTransformCoordinates()) {
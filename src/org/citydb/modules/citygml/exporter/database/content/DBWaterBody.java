@@ -93,7 +93,7 @@ public class DBWaterBody implements DBExporter {
 			appendOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetAppendId();
 			keepOldGmlId = config.getProject().getExporter().getXlink().getFeature().isSetKeepGmlIdAsExternalReference();
 			gmlIdPrefix = config.getProject().getExporter().getXlink().getFeature().getIdPrefix();
-			infoSys = config.getInternal().getExportFileName();
+			infoSys = dbExporterManager.getExportFileName();
 		}	
 
 		if (!config.getInternal().isTransformCoordinates()) {		
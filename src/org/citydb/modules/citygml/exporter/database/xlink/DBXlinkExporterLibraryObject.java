@@ -59,7 +59,7 @@ public class DBXlinkExporterLibraryObject implements DBXlinkExporter {
 	}
 
 	private void init() throws SQLException {
-		localPath = config.getInternal().getExportPath();
+		localPath = xlinkExporterManager.getExportPath();
 
 		blobExportAdapter = xlinkExporterManager.getDatabaseAdapter().getSQLAdapter().getBlobExportAdapter(connection, BlobType.LIBRARY_OBJECT);
 	}
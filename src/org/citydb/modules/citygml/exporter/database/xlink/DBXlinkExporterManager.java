@@ -35,19 +35,22 @@ import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
+import org.citydb.modules.citygml.exporter.util.ExportTileContext;
 
 public class DBXlinkExporterManager {
 	private final Connection connection;
 	private final AbstractDatabaseAdapter databaseAdapter;
 	private final Config config;
+	private final ExportTileContext tileContext;
 	private final EventDispatcher eventDispatcher;
 
 	private HashMap<DBXlinkExporterEnum, DBXlinkExporter> dbExporterMap;
 
-	public DBXlinkExporterManager(Connection connection, AbstractDatabaseAdapter databaseAdapter, Config config, EventDispatcher eventDispatcher) {
+	public DBXlinkExporterManager(Connection connection, AbstractDatabaseAdapter databaseAdapter, Config config, ExportTileContext tileContext, EventDispatcher eventDispatcher) {
 		this.connection = connection;
 		this.databaseAdapter = databaseAdapter;
 		this.config = config;
+		this.tileContext = tileContext;
 		this.eventDispatcher = eventDispatcher;
 
 		dbExporterMap = new HashMap<DBXlinkExporterEnum, DBXlinkExporter>();
@@ -73,6 +76,14 @@ public class DBXlinkExporterManager {
 		return dbExporter;
 	}
 	
+	public String getExportPath() {
+		return tileContext != null ? tileContext.getExportPath() : config.getInternal().getExportPath();
+	}
+
+	public String getExportTextureFilePath() {
+		return tileContext != null ? tileContext.getExportTextureFilePath() : config.getInternal().getExportTextureFilePath();
+	}
+
 	public AbstractDatabaseAdapter getDatabaseAdapter() {
 		return databaseAdapter;
 	}
@@ -66,9 +66,9 @@ public class DBXlinkExporterTextureImage implements DBXlinkExporter {
 	}
 
 	private void init() throws SQLException {
-		localPath = config.getInternal().getExportPath();
+		localPath = xlinkExporterManager.getExportPath();
 		texturePathIsLocal = config.getProject().getExporter().getAppearances().getTexturePath().isRelative();
-		texturePath = config.getInternal().getExportTextureFilePath();
+		texturePath = xlinkExporterManager.getExportTextureFilePath();
 		overwriteTextureImage = config.getProject().getExporter().getAppearances().isSetOverwriteTextureFiles();
 		counter = new CounterEvent(CounterType.TEXTURE_IMAGE, 1, this);
 		useBuckets = config.getProject().getExporter().getAppearances().getTexturePath().isUseBuckets() &&
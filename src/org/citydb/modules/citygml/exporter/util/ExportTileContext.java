@@ -0,0 +1,148 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.citydb.api.concurrent.WorkerPool;
+import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
+import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
+import org.citydb.modules.citygml.common.database.xlink.DBXlink;
+import org.citydb.modules.citygml.exporter.database.content.DBExporterManager;
+import org.citydb.modules.common.filter.ExportFilter;
+
+public class ExportTileContext {
+	private final File file;
+	private final ExportFilter exportFilter;
+	private final ConcurrentHashMap<Object, DBExporterManager> exporterManagers;
+
+	private String exportTextureFilePath;
+	private FeatureProcessorFactory featureProcessorFactory;
+	private WorkerPool<DBXlink> xlinkExporterPool;
+	private UIDCacheManager uidCacheManager;
+	private CacheTableManager cacheTableManager;
+
+	private long pendingWork;
+
+	public ExportTileContext(File file, ExportFilter exportFilter) {
+		this.file = file;
+		this.exportFilter = exportFilter;
+
+		exporterManagers = new ConcurrentHashMap<Object, DBExporterManager>();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getExportFileName() {
+		return file.getAbsolutePath();
+	}
+
+	public String getExportPath() {
+		return file.getAbsoluteFile().getParent();
+	}
+
+	public String getExportTextureFilePath() {
+		return exportTextureFilePath;
+	}
+
+	public void setExportTextureFilePath(String exportTextureFilePath) {
+		this.exportTextureFilePath = exportTextureFilePath;
+	}
+
+	public ExportFilter getExportFilter() {
+		return exportFilter;
+	}
+
+	public FeatureProcessorFactory getFeatureProcessorFactory() {
+		return featureProcessorFactory;
+	}
+
+	public void setFeatureProcessorFactory(FeatureProcessorFactory featureProcessorFactory) {
+		this.featureProcessorFactory = featureProcessorFactory;
+	}
+
+	public WorkerPool<DBXlink> getXlinkExporterPool() {
+		return xlinkExporterPool;
+	}
+
+	public void setXlinkExporterPool(WorkerPool<DBXlink> xlinkExporterPool) {
+		this.xlinkExporterPool = xlinkExporterPool;
+	}
+
+	public UIDCacheManager getUIDCacheManager() {
+		return uidCacheManager;
+	}
+
+	public void setUIDCacheManager(UIDCacheManager uidCacheManager) {
+		this.uidCacheManager = uidCacheManager;
+	}
+
+	public CacheTableManager getCacheTableManager() {
+		return cacheTableManager;
+	}
+
+	public void setCacheTableManager(CacheTableManager cacheTableManager) {
+		this.cacheTableManager = cacheTableManager;
+	}
+
+	public DBExporterManager getExporterManager(Object worker) {
+		return exporterManagers.get(worker);
+	}
+
+	public void putExporterManager(Object worker, DBExporterManager exporterManager) {
+		exporterManagers.put(worker, exporterManager);
+	}
+
+	public Collection<DBExporterManager> removeExporterManagers() {
+		Collection<DBExporterManager> managers = new ArrayList<DBExporterManager>(exporterManagers.values());
+		exporterManagers.clear();
+		return managers;
+	}
+
+	public synchronized void addPendingWork() {
+		pendingWork++;
+	}
+
+	public synchronized void releasePendingWork() {
+		if (--pendingWork <= 0)
+			notifyAll();
+	}
+
+	public synchronized void join() throws InterruptedException {
+		// the export workers are shared between tiles, so we cannot
+		// wait for the worker pool to become idle
+		while (pendingWork > 0)
+			wait();
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class FeatureBuffer extends OutputStream {
+	private byte[] buf;
+	private int count;
+
+	public FeatureBuffer(int initialSize) {
+		buf = new byte[initialSize];
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity(count + 1);
+		buf[count++] = (byte)b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(count + len);
+		System.arraycopy(b, off, buf, count, len);
+		count += len;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int capacity() {
+		return buf.length;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public void reset() {
+		count = 0;
+	}
+
+	public String getLineBreak() {
+		return new String(buf, 0, getLineBreakLength());
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		// the encoded feature starts with the line break that precedes
+		// its start tag. we move it behind the end tag so that the document 
+		// end tag is written on a new line
+		int lineBreak = getLineBreakLength();
+		out.write(buf, lineBreak, count - lineBreak);
+		out.write(buf, 0, lineBreak);
+	}
+
+	private int getLineBreakLength() {
+		int length = 0;
+		while (length < count && (buf[length] == '\r' || buf[length] == '\n'))
+			length++;
+
+		return length;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > buf.length)
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, minCapacity));
+	}
+
+}
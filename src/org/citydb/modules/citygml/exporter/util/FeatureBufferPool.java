@@ -0,0 +1,56 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class FeatureBufferPool {
+	private final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	private final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private final ArrayBlockingQueue<FeatureBuffer> buffers;
+
+	public FeatureBufferPool(int poolSize) {
+		buffers = new ArrayBlockingQueue<FeatureBuffer>(poolSize);
+	}
+
+	public FeatureBuffer acquire() {
+		FeatureBuffer buffer = buffers.poll();
+		return buffer != null ? buffer : new FeatureBuffer(INITIAL_BUFFER_SIZE);
+	}
+
+	public void release(FeatureBuffer buffer) {
+		// do not keep buffers that have grown for exceptionally large features
+		if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE)
+			return;
+
+		buffer.reset();
+		buffers.offer(buffer);
+	}
+
+}
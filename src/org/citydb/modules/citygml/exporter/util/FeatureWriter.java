@@ -27,6 +27,9 @@
  */
 package org.citydb.modules.citygml.exporter.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -36,6 +39,8 @@ import org.citydb.config.Config;
 import org.citydb.util.Util;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.citygml4j.builder.jaxb.marshal.JAXBMarshaller;
+import org.citygml4j.builder.jaxb.xml.io.writer.JAXBModelWriter;
+import org.citygml4j.builder.jaxb.xml.io.writer.JAXBOutputFactory;
 import org.citygml4j.model.citygml.appearance.Appearance;
 import org.citygml4j.model.citygml.appearance.AppearanceMember;
 import org.citygml4j.model.citygml.core.AbstractCityObject;
@@ -43,22 +48,58 @@ import org.citygml4j.model.citygml.core.CityObjectMember;
 import org.citygml4j.model.gml.feature.AbstractFeature;
 import org.citygml4j.model.gml.feature.FeatureMember;
 import org.citygml4j.model.gml.feature.FeatureProperty;
+import org.citygml4j.model.module.ModuleContext;
+import org.citygml4j.model.module.citygml.CityGMLModuleType;
 import org.citygml4j.model.module.citygml.CityGMLVersion;
 import org.citygml4j.util.xml.SAXEventBuffer;
+import org.citygml4j.util.xml.SAXWriter;
+import org.citygml4j.xml.io.writer.CityGMLWriteException;
+import org.citygml4j.xml.io.writer.CityModelInfo;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 public class FeatureWriter implements FeatureProcessor {
-	private final WorkerPool<SAXEventBuffer> ioWriterPool;
 	private final JAXBBuilder jaxbBuilder;
 	private final JAXBMarshaller jaxbMarshaller;
-	
+	private Marshaller marshaller;
+
+	private WorkerPool<SAXEventBuffer> ioWriterPool;
+
+	// pre-encoding mode
+	private WorkerPool<FeatureBuffer> bufferWriterPool;
+	private FeatureBufferPool bufferPool;
+	private SAXWriterFactory saxWriterFactory;
+	private ModuleContext moduleContext;
+	private BufferOutputStream bufferOutputStream;
+	private SAXWriter saxWriter;
+
 	public FeatureWriter(WorkerPool<SAXEventBuffer> ioWriterPool, JAXBBuilder jaxbBuilder, Config config) {
+		this(jaxbBuilder, config);
 		this.ioWriterPool = ioWriterPool;
+	}
+
+	public FeatureWriter(WorkerPool<FeatureBuffer> bufferWriterPool, 
+			FeatureBufferPool bufferPool, 
+			SAXWriterFactory saxWriterFactory, 
+			ModuleContext moduleContext, 
+			JAXBBuilder jaxbBuilder, 
+			Config config) {
+		this(jaxbBuilder, config);
+		this.bufferWriterPool = bufferWriterPool;
+		this.bufferPool = bufferPool;
+		this.saxWriterFactory = saxWriterFactory;
+		this.moduleContext = moduleContext;
+
+		bufferOutputStream = new BufferOutputStream();
+	}
+
+	private FeatureWriter(JAXBBuilder jaxbBuilder, Config config) {
 		this.jaxbBuilder = jaxbBuilder;
-				
+
 		CityGMLVersion version = Util.toCityGMLVersion(config.getProject().getExporter().getCityGMLVersion());
 		jaxbMarshaller = jaxbBuilder.createJAXBMarshaller(version);
 	}
-	
+
 	@Override
 	public void process(AbstractFeature abstractFeature) throws FeatureProcessException {
 		FeatureProperty<? extends AbstractFeature> member = null;
@@ -80,20 +121,115 @@ public class FeatureWriter implements FeatureProcessor {
 		}
 
 		if (member != null) {
-			try {
-				SAXEventBuffer buffer = new SAXEventBuffer();
-				Marshaller marshaller = jaxbBuilder.getJAXBContext().createMarshaller();
-				marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-
-				JAXBElement<?> jaxbElement = jaxbMarshaller.marshalJAXBElement(member);
-				if (jaxbElement != null)
-					marshaller.marshal(jaxbElement, buffer);
-
-				if (!buffer.isEmpty())
-					ioWriterPool.addWork(buffer);
-			} catch (JAXBException e) {
-				throw new FeatureProcessException("Caused by: ", e);
+			JAXBElement<?> jaxbElement = jaxbMarshaller.marshalJAXBElement(member);
+			if (jaxbElement == null)
+				return;
+
+			// feature writers are created per worker thread, so the 
+			// marshaller can be reused for all features of this thread
+			if (marshaller == null) {
+				try {
+					marshaller = jaxbBuilder.getJAXBContext().createMarshaller();
+					marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+				} catch (JAXBException e) {
+					throw new FeatureProcessException("Failed to create JAXB marshaller.", e);
+				}
 			}
+
+			if (bufferWriterPool != null)
+				encode(jaxbElement);
+			else
+				buffer(jaxbElement);
+		}
+	}
+
+	private void buffer(JAXBElement<?> jaxbElement) throws FeatureProcessException {
+		try {
+			SAXEventBuffer buffer = new SAXEventBuffer();
+			marshaller.marshal(jaxbElement, buffer);
+
+			if (!buffer.isEmpty())
+				ioWriterPool.addWork(buffer);
+		} catch (JAXBException e) {
+			throw new FeatureProcessException("Caused by: ", e);
+		}
+	}
+
+	private void encode(JAXBElement<?> jaxbElement) throws FeatureProcessException {
+		if (saxWriter == null)
+			saxWriter = createSAXWriter();
+
+		FeatureBuffer buffer = bufferPool.acquire();
+		bufferOutputStream.buffer = buffer;
+
+		try {
+			marshaller.marshal(jaxbElement, saxWriter);
+			saxWriter.flush();
+		} catch (JAXBException | SAXException e) {
+			// the writer state is undefined after a failure
+			saxWriter = null;
+			bufferPool.release(buffer);
+			throw new FeatureProcessException("Caused by: ", e);
+		} finally {
+			bufferOutputStream.buffer = null;
+		}
+
+		if (!buffer.isEmpty())
+			bufferWriterPool.addWork(buffer);
+		else
+			bufferPool.release(buffer);
+	}
+
+	private SAXWriter createSAXWriter() throws FeatureProcessException {
+		SAXWriter saxWriter = saxWriterFactory.createSAXWriter();
+		saxWriter.setWriteXMLDecl(false);
+
+		try {
+			saxWriter.setOutput(bufferOutputStream, "UTF-8");
+		} catch (IOException e) {
+			throw new FeatureProcessException("Failed to create SAX writer.", e);
+		}
+
+		// features are encoded within the same root element as in the target 
+		// document. thus, namespace declarations and indentation of the encoded 
+		// features match the target document and the bytes can be copied as is. 
+		// the root element and a dummy child element are written to a 
+		// discarded buffer
+		bufferOutputStream.buffer = new FeatureBuffer(1024);
+
+		try {
+			JAXBModelWriter writer = new JAXBModelWriter(
+					saxWriter, 
+					(JAXBOutputFactory)jaxbBuilder.createCityGMLOutputFactory(moduleContext), 
+					moduleContext, 
+					new CityModelInfo());
+
+			writer.writeStartDocument();
+
+			String namespaceURI = moduleContext.getModule(CityGMLModuleType.CORE).getNamespaceURI();
+			saxWriter.startElement(namespaceURI, "dummy", "dummy", new AttributesImpl());
+			saxWriter.endElement(namespaceURI, "dummy", "dummy");
+			saxWriter.flush();
+		} catch (CityGMLWriteException | SAXException e) {
+			throw new FeatureProcessException("Failed to create SAX writer.", e);
+		} finally {
+			bufferOutputStream.buffer = null;
+		}
+
+		return saxWriter;
+	}
+
+	private static final class BufferOutputStream extends OutputStream {
+		private FeatureBuffer buffer;
+
+		@Override
+		public void write(int b) {
+			buffer.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buffer.write(b, off, len);
 		}
 	}
 
@@ -30,12 +30,19 @@ package org.citydb.modules.citygml.exporter.util;
 import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.config.Config;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
+import org.citygml4j.model.module.ModuleContext;
 import org.citygml4j.util.xml.SAXEventBuffer;
 
 public class FeatureWriterFactory implements FeatureProcessorFactory {
-	private final WorkerPool<SAXEventBuffer> ioWriterPool;
 	private final JAXBBuilder jaxbBuilder;
 	private final Config config;
+
+	private WorkerPool<SAXEventBuffer> ioWriterPool;
+
+	private WorkerPool<FeatureBuffer> bufferWriterPool;
+	private FeatureBufferPool bufferPool;
+	private SAXWriterFactory saxWriterFactory;
+	private ModuleContext moduleContext;
 	
 	public FeatureWriterFactory(WorkerPool<SAXEventBuffer> ioWriterPool, JAXBBuilder jaxbBuilder, Config config) {
 		this.ioWriterPool = ioWriterPool;
@@ -43,9 +50,26 @@ public class FeatureWriterFactory implements FeatureProcessorFactory {
 		this.config = config;
 	}
 
+	public FeatureWriterFactory(WorkerPool<FeatureBuffer> bufferWriterPool, 
+			FeatureBufferPool bufferPool, 
+			SAXWriterFactory saxWriterFactory, 
+			ModuleContext moduleContext, 
+			JAXBBuilder jaxbBuilder, 
+			Config config) {
+		this.bufferWriterPool = bufferWriterPool;
+		this.bufferPool = bufferPool;
+		this.saxWriterFactory = saxWriterFactory;
+		this.moduleContext = moduleContext;
+		this.jaxbBuilder = jaxbBuilder;
+		this.config = config;
+	}
+
 	@Override
 	public FeatureProcessor createFeatureProcessor() {
-		return new FeatureWriter(ioWriterPool, jaxbBuilder, config);
+		if (bufferWriterPool != null)
+			return new FeatureWriter(bufferWriterPool, bufferPool, saxWriterFactory, moduleContext, jaxbBuilder, config);
+		else
+			return new FeatureWriter(ioWriterPool, jaxbBuilder, config);
 	}
 
 }
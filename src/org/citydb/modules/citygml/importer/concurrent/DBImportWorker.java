@@ -30,6 +30,9 @@ package org.citydb.modules.citygml.importer.concurrent;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.api.concurrent.Worker;
@@ -39,6 +42,7 @@ import org.citydb.api.event.EventDispatcher;
 import org.citydb.api.event.EventHandler;
 import org.citydb.api.log.LogLevel;
 import org.citydb.config.Config;
+import org.citydb.config.internal.Internal;
 import org.citydb.config.project.database.Database;
 import org.citydb.config.project.database.Workspace;
 import org.citydb.database.DatabaseConnectionPool;
@@ -56,10 +60,13 @@ import org.citydb.modules.citygml.importer.database.content.DBImporterManager;
 import org.citydb.modules.citygml.importer.database.content.DBLandUse;
 import org.citydb.modules.citygml.importer.database.content.DBPlantCover;
 import org.citydb.modules.citygml.importer.database.content.DBReliefFeature;
+import org.citydb.modules.citygml.importer.database.content.DBSequenceCache;
+import org.citydb.modules.citygml.importer.database.content.ImplicitGeometryRegistry;
 import org.citydb.modules.citygml.importer.database.content.DBSolitaryVegetatObject;
 import org.citydb.modules.citygml.importer.database.content.DBTransportationComplex;
 import org.citydb.modules.citygml.importer.database.content.DBTunnel;
 import org.citydb.modules.citygml.importer.database.content.DBWaterBody;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.modules.citygml.importer.util.ImportLogger;
 import org.citydb.modules.citygml.importer.util.ImportLogger.ImportLogEntry;
 import org.citydb.modules.common.event.CounterEvent;
@@ -92,6 +99,7 @@ import org.citygml4j.model.citygml.vegetation.PlantCover;
 import org.citygml4j.model.citygml.vegetation.SolitaryVegetationObject;
 import org.citygml4j.model.citygml.waterbody.WaterBody;
 import org.citygml4j.model.common.base.ModelType;
+import org.citygml4j.model.gml.base.AbstractGML;
 import org.citygml4j.model.gml.basicTypes.Code;
 import org.citygml4j.model.gml.geometry.primitives.Envelope;
 
@@ -105,13 +113,14 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 	private final JAXBBuilder jaxbBuilder;
 	private final WorkerPool<DBXlink> tmpXlinkPool;
 	private final UIDCacheManager uidCacheManager;
+	private final DBSequenceCache sequenceCache;
+	private final ImplicitGeometryRegistry implicitGeometryRegistry;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
 	private final ImportFilter importFilter;
-	private final ImportLogger importLogger;
+	private final HashMap<ImportFileContext, FileImporter> fileImporters;
 
 	private Connection batchConn;
-	private DBImporterManager dbImporterManager;
 	private int updateCounter = 0;
 	private int commitAfter = 20;
 
@@ -124,19 +133,23 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 			JAXBBuilder jaxbBuilder,
 			WorkerPool<DBXlink> tmpXlinkPool,
 			UIDCacheManager uidCacheManager,
+			DBSequenceCache sequenceCache,
+			ImplicitGeometryRegistry implicitGeometryRegistry,
 			ImportFilter importFilter,
-			ImportLogger importLogger,
 			Config config,
 			EventDispatcher eventDispatcher) throws SQLException {
 		this.dbConnectionPool = dbConnectionPool;
 		this.jaxbBuilder = jaxbBuilder;
 		this.tmpXlinkPool = tmpXlinkPool;
 		this.uidCacheManager = uidCacheManager;
+		this.sequenceCache = sequenceCache;
+		this.implicitGeometryRegistry = implicitGeometryRegistry;
 		this.importFilter = importFilter;
-		this.importLogger = importLogger;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
+		fileImporters = new HashMap<ImportFileContext, FileImporter>();
+
 		init();
 	}
 
@@ -157,15 +170,6 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 		featureGmlIdFilter = importFilter.getGmlIdFilter();
 		featureGmlNameFilter = importFilter.getGmlNameFilter();		
 
-		dbImporterManager = new DBImporterManager(
-				batchConn,
-				dbConnectionPool.getActiveDatabaseAdapter(),
-				jaxbBuilder,
-				config,
-				tmpXlinkPool,
-				uidCacheManager,
-				eventDispatcher);
-
 		Integer commitAfterProp = database.getUpdateBatching().getFeatureBatchValue();
 		if (commitAfterProp != null && commitAfterProp > 0)
 			commitAfter = commitAfterProp;
@@ -212,7 +216,7 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 
 			try {
 				if (shouldWork) {
-					dbImporterManager.executeBatch();
+					executeBatch();
 					batchConn.commit();
 					updateImportContext();
 				}
@@ -229,10 +233,12 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 			}
 
 		} finally {
-			try {
-				dbImporterManager.close();
-			} catch (SQLException e) {
-				// 
+			for (FileImporter fileImporter : fileImporters.values()) {
+				try {
+					fileImporter.dbImporterManager.close();
+				} catch (SQLException e) {
+					// 
+				}
 			}
 
 			try {
@@ -254,6 +260,16 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 			if (!shouldWork)
 				return;
 
+			// features are routed through the importers of their source file
+			// so that gml:id codespaces and import logs are attributed correctly
+			ImportFileContext fileContext = null;
+			if (work instanceof AbstractGML)
+				fileContext = (ImportFileContext)((AbstractGML)work).unsetLocalProperty(Internal.IMPORT_FILE_CONTEXT);
+
+			FileImporter fileImporter = getFileImporter(fileContext);
+			DBImporterManager dbImporterManager = fileImporter.dbImporterManager;
+			fileImporter.processedFeatures++;
+
 			long id = 0;
 
 			if (work.getCityGMLClass() == CityGMLClass.APPEARANCE) {
@@ -402,7 +418,7 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 				updateCounter++;
 
 			if (updateCounter == commitAfter) {
-				dbImporterManager.executeBatch();
+				executeBatch();
 				batchConn.commit();
 				updateImportContext();
 			}
@@ -425,17 +441,65 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 		}
 	}
 
-	private void updateImportContext() throws IOException {
-		eventDispatcher.triggerEvent(new FeatureCounterEvent(dbImporterManager.getAndResetFeatureCounter(), this));
-		eventDispatcher.triggerEvent(new GeometryCounterEvent(dbImporterManager.getAndResetGeometryCounter(), this));
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, updateCounter, this));
-		updateCounter = 0;
+	private FileImporter getFileImporter(ImportFileContext fileContext) throws SQLException {
+		FileImporter fileImporter = fileImporters.get(fileContext);
+		if (fileImporter == null) {
+			fileImporter = new FileImporter(new DBImporterManager(
+					batchConn,
+					dbConnectionPool.getActiveDatabaseAdapter(),
+					jaxbBuilder,
+					config,
+					tmpXlinkPool,
+					uidCacheManager,
+					sequenceCache,
+					implicitGeometryRegistry,
+					fileContext,
+					eventDispatcher));
+
+			fileImporters.put(fileContext, fileImporter);
+		}
+
+		return fileImporter;
+	}
+
+	private void executeBatch() throws SQLException {
+		for (FileImporter fileImporter : fileImporters.values())
+			fileImporter.dbImporterManager.executeBatch();
+	}
+
+	private void updateImportContext() throws IOException, SQLException {
+		Iterator<Map.Entry<ImportFileContext, FileImporter>> iter = fileImporters.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<ImportFileContext, FileImporter> entry = iter.next();
+			ImportFileContext fileContext = entry.getKey();
+			FileImporter fileImporter = entry.getValue();
+			DBImporterManager dbImporterManager = fileImporter.dbImporterManager;
+
+			eventDispatcher.triggerEvent(new FeatureCounterEvent(dbImporterManager.getAndResetFeatureCounter(), this));
+			eventDispatcher.triggerEvent(new GeometryCounterEvent(dbImporterManager.getAndResetGeometryCounter(), this));
+
+			// log imported top-level features
+			ImportLogger importLogger = fileContext != null ? fileContext.getImportLogger() : null;
+			for (ImportLogEntry logEntry : dbImporterManager.getAndResetImportedFeatures()) {
+				if (importLogger != null)
+					importLogger.write(logEntry);
+			}
+
+			if (fileContext != null) {
+				fileContext.releasePendingFeatures(fileImporter.processedFeatures);
+
+				// free the importers of files that have been completely parsed
+				if (fileContext.isParsed()) {
+					dbImporterManager.close();
+					iter.remove();
+				}
+			}
 
-		// log imported top-level features
-		if (importLogger != null) {
-			for (ImportLogEntry entry : dbImporterManager.getAndResetImportedFeatures())
-				importLogger.write(entry);
+			fileImporter.processedFeatures = 0;
 		}
+
+		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, updateCounter, this));
+		updateCounter = 0;
 	}
 
 	@Override
@@ -444,4 +508,13 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 			shouldWork = false;
 	}
 
+	private static final class FileImporter {
+		private final DBImporterManager dbImporterManager;
+		private int processedFeatures;
+
+		private FileImporter(DBImporterManager dbImporterManager) {
+			this.dbImporterManager = dbImporterManager;
+		}
+	}
+
 }
@@ -38,7 +38,8 @@ import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
-import org.citydb.modules.citygml.importer.util.ImportLogger;
+import org.citydb.modules.citygml.importer.database.content.DBSequenceCache;
+import org.citydb.modules.citygml.importer.database.content.ImplicitGeometryRegistry;
 import org.citydb.modules.common.filter.ImportFilter;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.citygml4j.model.citygml.CityGML;
@@ -50,8 +51,9 @@ public class DBImportWorkerFactory implements WorkerFactory<CityGML> {
 	private final JAXBBuilder jaxbBuilder;
 	private final WorkerPool<DBXlink> xlinkWorkerPool;
 	private final UIDCacheManager uidCacheManager;
+	private final DBSequenceCache sequenceCache;
+	private final ImplicitGeometryRegistry implicitGeometryRegistry;
 	private final ImportFilter importFilter;
-	private final ImportLogger importLogger;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
 
@@ -59,16 +61,18 @@ public class DBImportWorkerFactory implements WorkerFactory<CityGML> {
 			JAXBBuilder jaxbBuilder,
 			WorkerPool<DBXlink> xlinkWorkerPool,
 			UIDCacheManager uidCacheManager,
+			DBSequenceCache sequenceCache,
+			ImplicitGeometryRegistry implicitGeometryRegistry,
 			ImportFilter importFilter,
-			ImportLogger importLogger,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.dbConnectionPool = dbConnectionPool;
 		this.jaxbBuilder = jaxbBuilder;
 		this.xlinkWorkerPool = xlinkWorkerPool;
 		this.uidCacheManager = uidCacheManager;
+		this.sequenceCache = sequenceCache;
+		this.implicitGeometryRegistry = implicitGeometryRegistry;
 		this.importFilter = importFilter;
-		this.importLogger = importLogger;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 	}
@@ -82,8 +86,9 @@ public class DBImportWorkerFactory implements WorkerFactory<CityGML> {
 					jaxbBuilder,
 					xlinkWorkerPool, 
 					uidCacheManager,
+					sequenceCache,
+					implicitGeometryRegistry,
 					importFilter,
-					importLogger,
 					config, 
 					eventDispatcher);
 		} catch (SQLException e) {
@@ -27,6 +27,7 @@
  */
 package org.citydb.modules.citygml.importer.concurrent;
 
+import java.io.IOException;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.api.concurrent.Worker;
@@ -35,8 +36,13 @@ import org.citydb.api.event.EventDispatcher;
 import org.citydb.api.log.LogLevel;
 import org.citydb.config.Config;
 import org.citydb.log.Logger;
+import org.citydb.modules.citygml.importer.util.ImportFileChunk;
+import org.citydb.modules.citygml.importer.util.XMLChunkFilter;
+import org.citydb.modules.common.event.CounterEvent;
+import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
+import org.citydb.modules.common.filter.ImportFilter;
 import org.citygml4j.model.citygml.CityGML;
 import org.citygml4j.xml.io.reader.MissingADESchemaException;
 import org.citygml4j.xml.io.reader.UnmarshalException;
@@ -49,14 +55,18 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 
 	private final WorkerPool<CityGML> dbWorkerPool;
 	private final EventDispatcher eventDispatcher;
+	private final XMLChunkFilter chunkFilter;
 	private final boolean useValidation;
+	private long skippedChunks;
 
 	public FeatureReaderWorker(WorkerPool<CityGML> dbWorkerPool,
+			ImportFilter importFilter,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.dbWorkerPool = dbWorkerPool;
 		this.eventDispatcher = eventDispatcher;
 
+		chunkFilter = new XMLChunkFilter(importFilter);
 		useValidation = config.getProject().getImporter().getXMLValidation().isSetUseXMLValidation();
 	}
 	
@@ -95,6 +105,9 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 				// re-check state
 			}
 		}
+
+		if (skippedChunks > 0)
+			eventDispatcher.triggerEvent(new CounterEvent(CounterType.SKIPPED_CHUNK, skippedChunks, this));
 	}
 
 	private void doWork(XMLChunk work) {
@@ -102,10 +115,19 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 		runLock.lock();
 
 		try {
+			boolean isForwarded = false;
+
 			try {
-				CityGML cityGML = work.unmarshal();
-				if (!useValidation || work.hasPassedXMLValidation())
-					dbWorkerPool.addWork(cityGML);
+				// drop city objects that do not pass the import filters before unmarshalling them
+				if (chunkFilter.isActive() && !chunkFilter.accept(work))
+					skippedChunks++;
+				else {
+					CityGML cityGML = work.unmarshal();
+					if (!useValidation || work.hasPassedXMLValidation()) {
+						dbWorkerPool.addWork(cityGML);
+						isForwarded = true;
+					}
+				}
 			} catch (UnmarshalException e) {
 				if (!useValidation || work.hasPassedXMLValidation()) {
 					StringBuilder msg = new StringBuilder();				
@@ -118,6 +140,15 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 				// this is to catch general exceptions that may occur during the import
 				eventDispatcher.triggerEvent(new InterruptEvent(InterruptReason.UNKNOWN_ERROR, "Aborting due to an unexpected " + e.getClass().getName() + " error.", LogLevel.ERROR, e, eventChannel, this));
 			}
+
+			// chunks that do not reach the import workers are finished for their file
+			if (!isForwarded && work instanceof ImportFileChunk) {
+				try {
+					((ImportFileChunk)work).getImportFileContext().releasePendingFeatures(1);
+				} catch (IOException e) {
+					eventDispatcher.triggerEvent(new InterruptEvent(InterruptReason.IMPORT_LOG_ERROR, "Aborting import due I/O errors.", LogLevel.WARN, e, eventChannel, this));
+				}
+			}
 		} finally {
 			runLock.unlock();
 		}
@@ -32,24 +32,28 @@ import org.citydb.api.concurrent.WorkerFactory;
 import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
+import org.citydb.modules.common.filter.ImportFilter;
 import org.citygml4j.model.citygml.CityGML;
 import org.citygml4j.xml.io.reader.XMLChunk;
 
 public class FeatureReaderWorkerFactory implements WorkerFactory<XMLChunk> {
 	private final WorkerPool<CityGML> dbWorkerPool;
+	private final ImportFilter importFilter;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
 
 	public FeatureReaderWorkerFactory(WorkerPool<CityGML> dbWorkerPool,
+			ImportFilter importFilter,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.dbWorkerPool = dbWorkerPool;
+		this.importFilter = importFilter;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 	}
 
 	@Override
 	public Worker<XMLChunk> createWorker() {
-		return new FeatureReaderWorker(dbWorkerPool, config, eventDispatcher);
+		return new FeatureReaderWorker(dbWorkerPool, importFilter, config, eventDispatcher);
 	}
 }
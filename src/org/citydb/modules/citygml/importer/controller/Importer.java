@@ -29,12 +29,21 @@ package org.citydb.modules.citygml.importer.controller;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.xml.bind.ValidationEvent;
 import javax.xml.bind.ValidationEventHandler;
@@ -42,6 +51,7 @@ import javax.xml.namespace.QName;
 
 import org.citydb.api.concurrent.PoolSizeAdaptationStrategy;
 import org.citydb.api.concurrent.WorkerPool;
+import org.citydb.api.database.DatabaseType;
 import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.api.event.EventHandler;
@@ -66,6 +76,7 @@ import org.citydb.io.DirectoryScanner;
 import org.citydb.io.DirectoryScanner.CityGMLFilenameFilter;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
+import org.citydb.modules.citygml.common.database.uid.OffHeapStore;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheType;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
@@ -73,11 +84,15 @@ import org.citydb.modules.citygml.importer.concurrent.DBImportWorkerFactory;
 import org.citydb.modules.citygml.importer.concurrent.DBImportXlinkResolverWorkerFactory;
 import org.citydb.modules.citygml.importer.concurrent.DBImportXlinkWorkerFactory;
 import org.citydb.modules.citygml.importer.concurrent.FeatureReaderWorkerFactory;
+import org.citydb.modules.citygml.importer.database.content.DBSequenceCache;
+import org.citydb.modules.citygml.importer.database.content.ImplicitGeometryRegistry;
 import org.citydb.modules.citygml.importer.database.uid.FeatureGmlIdCache;
 import org.citydb.modules.citygml.importer.database.uid.GeometryGmlIdCache;
 import org.citydb.modules.citygml.importer.database.uid.TextureImageCache;
 import org.citydb.modules.citygml.importer.database.xlink.resolver.DBXlinkSplitter;
 import org.citydb.modules.citygml.importer.util.AffineTransformer;
+import org.citydb.modules.citygml.importer.util.ImportFileChunk;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.modules.citygml.importer.util.ImportLogger;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
@@ -120,7 +135,13 @@ public class Importer implements EventHandler {
 	private EnumMap<CityGMLClass, Long> featureCounterMap;
 	private EnumMap<GMLClass, Long> geometryCounterMap;
 	private DirectoryScanner directoryScanner;
-	private long xmlValidationErrorCounter;
+	private CityGMLInputFilter inputFilter;
+	private FeatureCounterFilter counterFilter;
+	private Long counterFirstElement;
+	private Long counterLastElement;
+	private long elementCounter;
+	private long skippedChunks;
+	private List<ImportFileContext> fileContexts;
 
 	public Importer(JAXBBuilder jaxbBuilder, 
 			DatabaseConnectionPool dbPool, 
@@ -143,6 +164,7 @@ public class Importer implements EventHandler {
 		// adding listeners
 		eventDispatcher.addEventHandler(EventType.FEATURE_COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.GEOMETRY_COUNTER, this);
+		eventDispatcher.addEventHandler(EventType.COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 
 		// get config shortcuts
@@ -151,7 +173,6 @@ public class Importer implements EventHandler {
 		Internal internalConfig = config.getInternal();		
 		ImportResources resourcesConfig = importerConfig.getResources();
 		Index indexConfig = importerConfig.getIndexes();
-		ImportGmlId gmlIdConfig = importerConfig.getGmlId();
 
 		// worker pool settings 
 		int minThreads = resourcesConfig.getThreadPool().getDefaultPool().getMinThreads();
@@ -194,6 +215,14 @@ public class Importer implements EventHandler {
 			}
 		}
 
+		// bulk load mode
+		if (shouldRun && importerConfig.getBulkLoad().isSetUseBulkLoad()) {
+			if (dbPool.getActiveDatabaseAdapter().getDatabaseType() == DatabaseType.POSTGIS)
+				LOG.info("Using bulk load mode for database import.");
+			else
+				LOG.warn("Bulk load mode is not supported by the database. Using batched inserts instead.");
+		}
+
 		// build list of import files
 		LOG.info("Creating list of CityGML files to be imported...");	
 		directoryScanner = new DirectoryScanner(true);
@@ -210,32 +239,11 @@ public class Importer implements EventHandler {
 		LOG.info("List of import files successfully created.");
 		LOG.info(remainingFiles + " file(s) will be imported.");
 
-		// prepare CityGML input factory
-		CityGMLInputFactory in = null;
-		try {
-			in = jaxbBuilder.createCityGMLInputFactory();
-			in.setProperty(CityGMLInputFactory.FEATURE_READ_MODE, FeatureReadMode.SPLIT_PER_COLLECTION_MEMBER);
-			in.setProperty(CityGMLInputFactory.FAIL_ON_MISSING_ADE_SCHEMA, false);
-			in.setProperty(CityGMLInputFactory.PARSE_SCHEMA, false);
-			in.setProperty(CityGMLInputFactory.SPLIT_AT_FEATURE_PROPERTY, new QName("generalizesTo"));
-			in.setProperty(CityGMLInputFactory.EXCLUDE_FROM_SPLITTING, CityModel.class);
-		} catch (CityGMLReadException e) {
-			throw new CityGMLImportException("Failed to initialize CityGML parser. Aborting.", e);
-		}
-
 		// prepare XML validation 
 		XMLValidation xmlValidation = importerConfig.getXMLValidation();
-		if (xmlValidation.isSetUseXMLValidation()) {
+		if (xmlValidation.isSetUseXMLValidation())
 			LOG.info("Using XML validation during database import.");
 
-			in.setProperty(CityGMLInputFactory.USE_VALIDATION, true);
-			in.setProperty(CityGMLInputFactory.PARSE_SCHEMA, true);
-
-			ValidationErrorHandler validationHandler = new ValidationErrorHandler();
-			validationHandler.allErrors = !xmlValidation.isSetReportOneErrorPerFeature();
-			in.setValidationEventHandler(validationHandler);
-		}
-
 		// affine transformation
 		AffineTransformation affineTransformation = importerConfig.getAffineTransformation();
 		if (affineTransformation.isSetUseAffineTransformation()) {
@@ -249,73 +257,71 @@ public class Importer implements EventHandler {
 		}
 
 		// prepare counter filter
-		FeatureCounterFilter counterFilter = new FeatureCounterFilter(config, FilterMode.IMPORT);
-		Long counterFirstElement = counterFilter.getFilterState().get(0);
-		Long counterLastElement = counterFilter.getFilterState().get(1);
-		long elementCounter = 0;
+		counterFilter = new FeatureCounterFilter(config, FilterMode.IMPORT);
+		counterFirstElement = counterFilter.getFilterState().get(0);
+		counterLastElement = counterFilter.getFilterState().get(1);
+		elementCounter = 0;
+		skippedChunks = 0;
+
+		// number of files to be parsed concurrently
+		int concurrentFiles = Math.min(resourcesConfig.getConcurrentFiles(), importFiles.size());
+		if (concurrentFiles > 1 && counterFilter.isActive()) {
+			LOG.warn("The feature counter filter requires a sequential import. Concurrent file parsing is disabled.");
+			concurrentFiles = 1;
+		}
+
+		if (concurrentFiles > 1)
+			LOG.info("Parsing up to " + concurrentFiles + " files concurrently.");
 
 		// prepare feature filter
 		final ImportFilter importFilter = new ImportFilter(config);
-		CityGMLInputFilter inputFilter = new CityGMLInputFilter() {
+		inputFilter = new CityGMLInputFilter() {
 			public boolean accept(CityGMLClass type) {
 				return type != CityGMLClass.APPEARANCE ? 
 						!importFilter.getFeatureClassFilter().filter(type) : importerConfig.getAppearances().isSetImportAppearance();
 			}
 		};
 
+		// the parser of the sequential import is reused for all files
+		FileParser fileParser = concurrentFiles == 1 ? new FileParser(false) : null;
+
+		// library objects already stored in the database are registered once per import
+		ImplicitGeometryRegistry implicitGeometryRegistry = new ImplicitGeometryRegistry();
+		Connection conn = null;
+		try {
+			conn = dbPool.getConnection();
+			implicitGeometryRegistry.loadLibraryObjects(conn);
+		} catch (SQLException e) {
+			throw new CityGMLImportException("SQL error while loading implicit geometry library objects.", e);
+		} finally {
+			if (conn != null)
+				try { conn.close(); } catch (SQLException e) {}
+		}
+
 		CacheTableManager cacheTableManager = null;
 		UIDCacheManager uidCacheManager = null;
+		DBSequenceCache sequenceCache = null;
 		WorkerPool<CityGML> dbWorkerPool = null;
 		WorkerPool<XMLChunk> featureWorkerPool = null;
 		WorkerPool<DBXlink> tmpXlinkPool = null;
 		WorkerPool<DBXlink> xlinkResolverPool = null;
 		DBXlinkSplitter tmpSplitter = null;
-		ImportLogger importLogger = null;
 		long start = System.currentTimeMillis();
 
 		while (shouldRun && fileCounter < importFiles.size()) {
+			// in concurrent mode, all files are imported using the same caches and 
+			// worker pools, and XLinks are resolved once after all files have been parsed 
+			List<File> files = concurrentFiles > 1 ? 
+					importFiles.subList(fileCounter, importFiles.size()) : importFiles.subList(fileCounter, fileCounter + 1);
+
+			fileCounter += files.size();
+			fileContexts = new ArrayList<ImportFileContext>(files.size());
+
 			try {
 				// check whether we reached the counter limit
 				if (counterLastElement != null && elementCounter > counterLastElement)
 					break;
 
-				File file = importFiles.get(fileCounter++);
-				internalConfig.setImportPath(file.getParent());
-				internalConfig.setCurrentImportFile(file);
-
-				eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
-				eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("import.dialog.cityObj.msg"), this));
-				eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
-				eventDispatcher.triggerEvent(new CounterEvent(CounterType.FILE, --remainingFiles, this));
-				LOG.info("Importing file: " + file.toString());	
-
-				// set gml:id codespace starting from version 3.1
-				if (dbPool.getActiveDatabaseAdapter().getConnectionMetaData().getCityDBVersion().compareTo(3, 1, 0) >= 0) {
-					if (gmlIdConfig.isSetNoneCodeSpaceMode())
-						internalConfig.setCurrentGmlIdCodespace(null);
-					else if (gmlIdConfig.isSetRelativeCodeSpaceMode())
-						internalConfig.setCurrentGmlIdCodespace(file.getName());
-					else if (gmlIdConfig.isSetAbsoluteCodeSpaceMode())
-						internalConfig.setCurrentGmlIdCodespace(file.getAbsolutePath());
-					else if (gmlIdConfig.isSetUserCodeSpaceMode()) {
-						String codespace = gmlIdConfig.getCodeSpace();
-						if (codespace != null && codespace.length() > 0)
-							internalConfig.setCurrentGmlIdCodespace(codespace);
-					}
-				} else
-					internalConfig.setCurrentGmlIdCodespace(null);
-				
-				// create import logger
-				if (importerConfig.getImportLog().isSetLogImportedFeatures()) {
-					try {
-						String logPath = importerConfig.getImportLog().isSetLogPath() ? importerConfig.getImportLog().getLogPath() : Internal.DEFAULT_IMPORT_LOG_PATH;
-						importLogger = new ImportLogger(logPath, file, databaseConfig.getActiveConnection());
-						LOG.info("Log file of imported top-level features: " + importLogger.getLogFilePath().toString());
-					} catch (IOException e) {
-						throw new CityGMLImportException("Failed to create log file for imported top-level features. Aborting.", e);
-					}
-				}
-
 				// create instance of the cache table manager
 				try {
 					cacheTableManager = new CacheTableManager(dbPool, maxThreads, config);
@@ -327,40 +333,66 @@ public class Importer implements EventHandler {
 
 				// create instance of gml:id lookup server manager...
 				uidCacheManager = new UIDCacheManager();
+				implicitGeometryRegistry.clearRelativeGeometries();
 
 				// ...and start servers
-				try {
-					uidCacheManager.initCache(
-							UIDCacheType.GEOMETRY,
-							new GeometryGmlIdCache(cacheTableManager, 
-									resourcesConfig.getGmlIdCache().getGeometry().getPartitions(), 
-									lookupCacheBatchSize),
-									resourcesConfig.getGmlIdCache().getGeometry().getCacheSize(),
-									resourcesConfig.getGmlIdCache().getGeometry().getPageFactor(),
-									maxThreads);
-
-					uidCacheManager.initCache(
-							UIDCacheType.FEATURE,
-							new FeatureGmlIdCache(cacheTableManager, 
-									resourcesConfig.getGmlIdCache().getFeature().getPartitions(),
-									lookupCacheBatchSize),
-									resourcesConfig.getGmlIdCache().getFeature().getCacheSize(),
-									resourcesConfig.getGmlIdCache().getFeature().getPageFactor(),
-									maxThreads);
-
-					if (config.getProject().getImporter().getAppearances().isSetImportAppearance() &&
-							config.getProject().getImporter().getAppearances().isSetImportTextureFiles()) {
+				if (config.getProject().getGlobal().getCache().isUseOffHeap()) {
+					try {
+						OffHeapStore offHeapStore = new OffHeapStore(cacheTableManager.getLocalCacheDirectory(), 
+								config.getProject().getGlobal().getCache().getOffHeapMemory() * 1024L * 1024L);
+
+						uidCacheManager.initCache(UIDCacheType.GEOMETRY, offHeapStore, resourcesConfig.getGmlIdCache().getGeometry().getCacheSize(), maxThreads);
+						uidCacheManager.initCache(UIDCacheType.FEATURE, offHeapStore, resourcesConfig.getGmlIdCache().getFeature().getCacheSize(), maxThreads);
+
+						if (config.getProject().getImporter().getAppearances().isSetImportAppearance() &&
+								config.getProject().getImporter().getAppearances().isSetImportTextureFiles())
+							uidCacheManager.initCache(UIDCacheType.TEX_IMAGE, offHeapStore, resourcesConfig.getTexImageCache().getCacheSize(), maxThreads);
+					} catch (IOException e) {
+						throw new CityGMLImportException("I/O error while initializing off-heap gml:id caches.", e);
+					}
+				} else {
+					try {
 						uidCacheManager.initCache(
-								UIDCacheType.TEX_IMAGE,
-								new TextureImageCache(cacheTableManager, 
-										resourcesConfig.getTexImageCache().getPartitions(),
+								UIDCacheType.GEOMETRY,
+								new GeometryGmlIdCache(cacheTableManager, 
+										resourcesConfig.getGmlIdCache().getGeometry().getPartitions(), 
 										lookupCacheBatchSize),
-										resourcesConfig.getTexImageCache().getCacheSize(),
-										resourcesConfig.getTexImageCache().getPageFactor(),
+										resourcesConfig.getGmlIdCache().getGeometry().getCacheSize(),
+										resourcesConfig.getGmlIdCache().getGeometry().getPageFactor(),
 										maxThreads);
+
+						uidCacheManager.initCache(
+								UIDCacheType.FEATURE,
+								new FeatureGmlIdCache(cacheTableManager, 
+										resourcesConfig.getGmlIdCache().getFeature().getPartitions(),
+										lookupCacheBatchSize),
+										resourcesConfig.getGmlIdCache().getFeature().getCacheSize(),
+										resourcesConfig.getGmlIdCache().getFeature().getPageFactor(),
+										maxThreads);
+
+						if (config.getProject().getImporter().getAppearances().isSetImportAppearance() &&
+								config.getProject().getImporter().getAppearances().isSetImportTextureFiles()) {
+							uidCacheManager.initCache(
+									UIDCacheType.TEX_IMAGE,
+									new TextureImageCache(cacheTableManager, 
+											resourcesConfig.getTexImageCache().getPartitions(),
+											lookupCacheBatchSize),
+											resourcesConfig.getTexImageCache().getCacheSize(),
+											resourcesConfig.getTexImageCache().getPageFactor(),
+											maxThreads);
+						}
+					} catch (SQLException e) {
+						throw new CityGMLImportException("SQL error while initializing database import.", e);
 					}
+				}
+
+				// create sequence cache for primary key values
+				try {
+					sequenceCache = new DBSequenceCache(dbPool.getConnection(), 
+							dbPool.getActiveDatabaseAdapter(), 
+							resourcesConfig.getSequenceCache());
 				} catch (SQLException e) {
-					throw new CityGMLImportException("SQL error while initializing database import.", e);
+					throw new CityGMLImportException("SQL error while initializing sequence cache.", e);
 				}
 
 				// creating worker pools needed for data import
@@ -384,8 +416,9 @@ public class Importer implements EventHandler {
 								jaxbBuilder,
 								tmpXlinkPool, 
 								uidCacheManager, 
+								sequenceCache,
+								implicitGeometryRegistry,
 								importFilter,
-								importLogger,
 								config, 
 								eventDispatcher),
 								queueSize,
@@ -397,7 +430,7 @@ public class Importer implements EventHandler {
 						minThreads,
 						maxThreads,
 						PoolSizeAdaptationStrategy.AGGRESSIVE,
-						new FeatureReaderWorkerFactory(dbWorkerPool, config, eventDispatcher),
+						new FeatureReaderWorkerFactory(dbWorkerPool, importFilter, config, eventDispatcher),
 						queueSize,
 						false);
 
@@ -412,41 +445,27 @@ public class Importer implements EventHandler {
 					return false;
 				}
 
-				// ok, preparation done. start parsing the input file
-				CityGMLReader reader = null;
-				try {
-					reader = in.createFilteredCityGMLReader(in.createCityGMLReader(file), inputFilter);	
-
-					while (shouldRun && reader.hasNext()) {
-						XMLChunk chunk = reader.nextChunk();
-
-						if (counterFilter.isActive()) {
-							elementCounter++;
-
-							if (counterFirstElement != null && elementCounter < counterFirstElement)
-								continue;
-
-							if (counterLastElement != null && elementCounter > counterLastElement)
-								break;
-						}
-
-						featureWorkerPool.addWork(chunk);
-					}					
-				} catch (CityGMLReadException e) {
-					throw new CityGMLImportException("Failed to parse CityGML file. Aborting.", e);
+				// ok, preparation done. start parsing the input files
+				if (concurrentFiles == 1) {
+					File file = files.get(0);
+					internalConfig.setImportPath(file.getParent());
+					internalConfig.setCurrentImportFile(file);
+					internalConfig.setCurrentGmlIdCodespace(getGmlIdCodespace(file));
+
+					fileParser.parse(file, featureWorkerPool, --remainingFiles);
+				} else {
+					parseConcurrently(files, concurrentFiles, featureWorkerPool, remainingFiles);
+					remainingFiles = 0;
 				}
 
 				// we are done with parsing. so shutdown the workers.
 				// the xlink pool is not shutdown because we need it afterwards
 				try {
 					featureWorkerPool.shutdownAndWait();
-					reader.close();
 					dbWorkerPool.shutdownAndWait();
 					tmpXlinkPool.join();
 				} catch (InterruptedException e) {
 					throw new CityGMLImportException("Failed to shutdown worker pools.", e);
-				} catch (CityGMLReadException e) {
-					throw new CityGMLImportException("Failed to close CityGML reader.", e);
 				}
 
 				if (shouldRun) {
@@ -498,12 +517,6 @@ public class Importer implements EventHandler {
 
 				eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("import.dialog.finish.msg"), this));
 				eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
-
-				// show XML validation errors
-				if (xmlValidation.isSetUseXMLValidation() && xmlValidationErrorCounter > 0)
-					LOG.warn(xmlValidationErrorCounter + " error(s) encountered while validating the document.");
-
-				xmlValidationErrorCounter = 0;
 			} finally {
 				// clean up
 				if (featureWorkerPool != null && !featureWorkerPool.isTerminated())
@@ -533,6 +546,15 @@ public class Importer implements EventHandler {
 					}
 				}
 
+				if (sequenceCache != null) {
+					try {
+						sequenceCache.shutdown();
+						sequenceCache = null;
+					} catch (SQLException e) {
+						LOG.error("Failed to shutdown sequence cache: " + e.getMessage());
+					}
+				}
+
 				if (cacheTableManager != null) {
 					try {
 						LOG.info("Cleaning temporary cache.");
@@ -544,16 +566,23 @@ public class Importer implements EventHandler {
 					}
 				}
 
-				if (importLogger != null) {
-					if (interruptReason != InterruptReason.IMPORT_LOG_ERROR) {
-						try {
-							importLogger.close(shouldRun);
-						} catch (IOException e) {
-							LOG.error("Failed to finish logging of imported top-level features.");
-							LOG.warn("The feature import log is most likely corrupt.");
-						}
-					} else
-						LOG.warn("The feature import log is most likely corrupt.");
+				boolean isImportLogCorrupt = false;
+				for (ImportFileContext fileContext : fileContexts) {
+					try {
+						fileContext.close(shouldRun);
+					} catch (IOException e) {
+						isImportLogCorrupt = true;
+					}
+
+					if (fileContext.getImportLogger() != null && interruptReason == InterruptReason.IMPORT_LOG_ERROR)
+						isImportLogCorrupt = true;
+				}
+
+				if (isImportLogCorrupt) {
+					if (interruptReason != InterruptReason.IMPORT_LOG_ERROR)
+						LOG.error("Failed to finish logging of imported top-level features.");
+
+					LOG.warn("The feature import log is most likely corrupt.");
 				}
 			}
 		} 
@@ -589,12 +618,84 @@ public class Importer implements EventHandler {
 		if (geometryObjects != 0)
 			LOG.info("Processed geometry objects: " + geometryObjects);
 
+		if (skippedChunks != 0)
+			LOG.info("Skipped features not passing the import filter: " + skippedChunks);
+
 		if (shouldRun)
 			LOG.info("Total import time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
 
 		return shouldRun;
 	}
 
+	private void parseConcurrently(List<File> files, int concurrentFiles, final WorkerPool<XMLChunk> featureWorkerPool, int remainingFiles) throws CityGMLImportException {
+		final ConcurrentLinkedQueue<File> fileQueue = new ConcurrentLinkedQueue<File>(files);
+		final AtomicInteger remainingFileCounter = new AtomicInteger(remainingFiles);
+		final AtomicReference<CityGMLImportException> parserException = new AtomicReference<CityGMLImportException>();
+
+		ExecutorService service = Executors.newFixedThreadPool(concurrentFiles, new ThreadFactory() {
+			private final AtomicInteger threadCounter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "citygml_file_parser-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		// every parser thread uses its own input factory and pulls 
+		// files from the queue until all files have been parsed
+		for (int i = 0; i < concurrentFiles; i++) {
+			service.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// the files share the same gml:id caches
+						FileParser fileParser = new FileParser(true);
+
+						File file = null;
+						while (shouldRun && (file = fileQueue.poll()) != null)
+							fileParser.parse(file, featureWorkerPool, remainingFileCounter.decrementAndGet());
+					} catch (CityGMLImportException e) {
+						if (parserException.compareAndSet(null, e))
+							shouldRun = false;
+					}
+				}
+			});
+		}
+
+		service.shutdown();
+		try {
+			service.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			service.shutdownNow();
+			throw new CityGMLImportException("Failed to shutdown file parsers.", e);
+		}
+
+		if (parserException.get() != null)
+			throw parserException.get();
+	}
+
+	private String getGmlIdCodespace(File file) {
+		ImportGmlId gmlIdConfig = config.getProject().getImporter().getGmlId();
+		String gmlIdCodespace = null;
+
+		// set gml:id codespace starting from version 3.1
+		if (dbPool.getActiveDatabaseAdapter().getConnectionMetaData().getCityDBVersion().compareTo(3, 1, 0) >= 0) {
+			if (gmlIdConfig.isSetRelativeCodeSpaceMode())
+				gmlIdCodespace = file.getName();
+			else if (gmlIdConfig.isSetAbsoluteCodeSpaceMode())
+				gmlIdCodespace = file.getAbsolutePath();
+			else if (gmlIdConfig.isSetUserCodeSpaceMode()) {
+				String codespace = gmlIdConfig.getCodeSpace();
+				if (codespace != null && codespace.length() > 0)
+					gmlIdCodespace = codespace;
+			}
+		}
+
+		return gmlIdCodespace;
+	}
+
 	private void manageIndexes(boolean enable, boolean workOnSpatialIndexes) throws SQLException {
 		AbstractUtilAdapter utilAdapter = dbPool.getActiveDatabaseAdapter().getUtil();
 		LOG.info((enable ? "Activating " : "Deactivating ") + (workOnSpatialIndexes ? "spatial" : "normal") + " indexes...");
@@ -648,6 +749,12 @@ public class Importer implements EventHandler {
 			}
 		}
 
+		else if (e.getEventType() == EventType.COUNTER) {
+			CounterEvent counterEvent = (CounterEvent)e;
+			if (counterEvent.getType() == CounterType.SKIPPED_CHUNK)
+				skippedChunks += counterEvent.getCounter();
+		}
+
 		else if (e.getEventType() == EventType.INTERRUPT) {
 			if (isInterrupted.compareAndSet(false, true)) {
 				shouldRun = false;
@@ -679,6 +786,99 @@ public class Importer implements EventHandler {
 		}
 	}
 
+	private final class FileParser {
+		private final CityGMLInputFactory in;
+		private final ValidationErrorHandler validationHandler;
+		private final boolean scopeGmlIds;
+
+		private FileParser(boolean scopeGmlIds) throws CityGMLImportException {
+			this.scopeGmlIds = scopeGmlIds;
+
+			// prepare CityGML input factory
+			try {
+				in = jaxbBuilder.createCityGMLInputFactory();
+				in.setProperty(CityGMLInputFactory.FEATURE_READ_MODE, FeatureReadMode.SPLIT_PER_COLLECTION_MEMBER);
+				in.setProperty(CityGMLInputFactory.FAIL_ON_MISSING_ADE_SCHEMA, false);
+				in.setProperty(CityGMLInputFactory.PARSE_SCHEMA, false);
+				in.setProperty(CityGMLInputFactory.SPLIT_AT_FEATURE_PROPERTY, new QName("generalizesTo"));
+				in.setProperty(CityGMLInputFactory.EXCLUDE_FROM_SPLITTING, CityModel.class);
+			} catch (CityGMLReadException e) {
+				throw new CityGMLImportException("Failed to initialize CityGML parser. Aborting.", e);
+			}
+
+			// prepare XML validation 
+			XMLValidation xmlValidation = config.getProject().getImporter().getXMLValidation();
+			if (xmlValidation.isSetUseXMLValidation()) {
+				in.setProperty(CityGMLInputFactory.USE_VALIDATION, true);
+				in.setProperty(CityGMLInputFactory.PARSE_SCHEMA, true);
+
+				validationHandler = new ValidationErrorHandler();
+				validationHandler.allErrors = !xmlValidation.isSetReportOneErrorPerFeature();
+				in.setValidationEventHandler(validationHandler);
+			} else
+				validationHandler = null;
+		}
+
+		private void parse(File file, WorkerPool<XMLChunk> featureWorkerPool, int remainingFiles) throws CityGMLImportException {
+			org.citydb.config.project.importer.Importer importerConfig = config.getProject().getImporter();
+
+			eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), Importer.this));
+			eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("import.dialog.cityObj.msg"), Importer.this));
+			eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, Importer.this));
+			eventDispatcher.triggerEvent(new CounterEvent(CounterType.FILE, remainingFiles, Importer.this));
+			LOG.info("Importing file: " + file.toString());	
+
+			// create import logger
+			ImportLogger importLogger = null;
+			if (importerConfig.getImportLog().isSetLogImportedFeatures()) {
+				try {
+					String logPath = importerConfig.getImportLog().isSetLogPath() ? importerConfig.getImportLog().getLogPath() : Internal.DEFAULT_IMPORT_LOG_PATH;
+					importLogger = new ImportLogger(logPath, file, config.getProject().getDatabase().getActiveConnection());
+					LOG.info("Log file of imported top-level features: " + importLogger.getLogFilePath().toString());
+				} catch (IOException e) {
+					throw new CityGMLImportException("Failed to create log file for imported top-level features. Aborting.", e);
+				}
+			}
+
+			// the file context is attached to every chunk so that the import
+			// workers can attribute features to their source file
+			String gmlIdCodespace = getGmlIdCodespace(file);
+			ImportFileContext fileContext = null;
+			synchronized (fileContexts) {
+				fileContext = new ImportFileContext(file, gmlIdCodespace, importLogger, scopeGmlIds ? fileContexts.size() : -1);
+				fileContexts.add(fileContext);
+			}
+
+			try {
+				CityGMLReader reader = in.createFilteredCityGMLReader(in.createCityGMLReader(file), inputFilter);
+				fileContext.setReader(reader);
+
+				while (shouldRun && reader.hasNext()) {
+					XMLChunk chunk = reader.nextChunk();
+
+					if (counterFilter.isActive()) {
+						elementCounter++;
+
+						if (counterFirstElement != null && elementCounter < counterFirstElement)
+							continue;
+
+						if (counterLastElement != null && elementCounter > counterLastElement)
+							break;
+					}
+
+					fileContext.addPendingFeature();
+					featureWorkerPool.addWork(new ImportFileChunk(chunk, fileContext));
+				}
+
+				fileContext.setParsed();
+			} catch (CityGMLReadException e) {
+				throw new CityGMLImportException("Failed to parse CityGML file. Aborting.", e);
+			} catch (IOException e) {
+				throw new CityGMLImportException("Failed to finish logging of imported top-level features.", e);
+			}
+		}
+	}
+
 	private final class ValidationErrorHandler implements ValidationEventHandler {
 		boolean allErrors = false;
 
@@ -704,7 +904,11 @@ public class Importer implements EventHandler {
 			msg.append(": ").append(event.getMessage());
 			LOG.log(type, msg.toString());
 
-			xmlValidationErrorCounter++;
+			// count the error for the file of the feature being unmarshalled
+			ImportFileContext fileContext = ImportFileContext.getCurrentContext();
+			if (fileContext != null)
+				fileContext.addValidationError();
+
 			return allErrors;
 		}
 	}
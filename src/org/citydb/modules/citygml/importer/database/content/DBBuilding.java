@@ -29,7 +29,6 @@ package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
 import java.sql.Date;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -37,6 +36,7 @@ import java.util.List;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.database.TableEnum;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkBasic;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkSurfaceGeometry;
@@ -67,7 +67,7 @@ public class DBBuilding implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psBuilding;
+	private InsertRowWriter psBuilding;
 	private DBCityObject cityObjectImporter;
 	private DBSurfaceGeometry surfaceGeometryImporter;
 	private DBThematicSurface thematicSurfaceImporter;
@@ -77,8 +77,7 @@ public class DBBuilding implements DBImporter {
 	private DBOtherGeometry otherGeometryImporter;
 
 	private int batchCounter;
-	private int nullGeometryType;
-	private String nullGeometryTypeName;	
+	private int maxBatchSize;
 
 	public DBBuilding(Connection batchConn, DBImporterManager dbImporterManager) throws SQLException {
 		this.batchConn = batchConn;
@@ -88,17 +87,27 @@ public class DBBuilding implements DBImporter {
 	}
 
 	private void init() throws SQLException {
-		nullGeometryType = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType();
-		nullGeometryTypeName = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName();
-
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into BUILDING (ID, BUILDING_PARENT_ID, BUILDING_ROOT_ID, CLASS, CLASS_CODESPACE, FUNCTION, FUNCTION_CODESPACE, USAGE, USAGE_CODESPACE, YEAR_OF_CONSTRUCTION, YEAR_OF_DEMOLITION, ")
-		.append("ROOF_TYPE, ROOF_TYPE_CODESPACE, MEASURED_HEIGHT, MEASURED_HEIGHT_UNIT, STOREYS_ABOVE_GROUND, STOREYS_BELOW_GROUND, STOREY_HEIGHTS_ABOVE_GROUND, STOREY_HEIGHTS_AG_UNIT, STOREY_HEIGHTS_BELOW_GROUND, STOREY_HEIGHTS_BG_UNIT, ")
-		.append("LOD1_TERRAIN_INTERSECTION, LOD2_TERRAIN_INTERSECTION, LOD3_TERRAIN_INTERSECTION, LOD4_TERRAIN_INTERSECTION, LOD2_MULTI_CURVE, LOD3_MULTI_CURVE, LOD4_MULTI_CURVE, ")
-		.append("LOD0_FOOTPRINT_ID, LOD0_ROOFPRINT_ID, LOD1_MULTI_SURFACE_ID, LOD2_MULTI_SURFACE_ID, LOD3_MULTI_SURFACE_ID, LOD4_MULTI_SURFACE_ID, ")
-		.append("LOD1_SOLID_ID, LOD2_SOLID_ID, LOD3_SOLID_ID, LOD4_SOLID_ID) values ")
-		.append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-		psBuilding = batchConn.prepareStatement(stmt.toString());
+
+		psBuilding = dbImporterManager.getBulkInsertWriter("BUILDING", "ID", "BUILDING_PARENT_ID", "BUILDING_ROOT_ID", "CLASS", "CLASS_CODESPACE", "FUNCTION", "FUNCTION_CODESPACE", 
+				"USAGE", "USAGE_CODESPACE", "YEAR_OF_CONSTRUCTION", "YEAR_OF_DEMOLITION", "ROOF_TYPE", "ROOF_TYPE_CODESPACE", "MEASURED_HEIGHT", "MEASURED_HEIGHT_UNIT", 
+				"STOREYS_ABOVE_GROUND", "STOREYS_BELOW_GROUND", "STOREY_HEIGHTS_ABOVE_GROUND", "STOREY_HEIGHTS_AG_UNIT", "STOREY_HEIGHTS_BELOW_GROUND", "STOREY_HEIGHTS_BG_UNIT", 
+				"LOD1_TERRAIN_INTERSECTION", "LOD2_TERRAIN_INTERSECTION", "LOD3_TERRAIN_INTERSECTION", "LOD4_TERRAIN_INTERSECTION", "LOD2_MULTI_CURVE", "LOD3_MULTI_CURVE", "LOD4_MULTI_CURVE", 
+				"LOD0_FOOTPRINT_ID", "LOD0_ROOFPRINT_ID", "LOD1_MULTI_SURFACE_ID", "LOD2_MULTI_SURFACE_ID", "LOD3_MULTI_SURFACE_ID", "LOD4_MULTI_SURFACE_ID", 
+				"LOD1_SOLID_ID", "LOD2_SOLID_ID", "LOD3_SOLID_ID", "LOD4_SOLID_ID");
+
+		if (psBuilding != null)
+			maxBatchSize = dbImporterManager.getBulkLoadBatchSize();
+		else {
+			StringBuilder stmt = new StringBuilder()
+			.append("insert into BUILDING (ID, BUILDING_PARENT_ID, BUILDING_ROOT_ID, CLASS, CLASS_CODESPACE, FUNCTION, FUNCTION_CODESPACE, USAGE, USAGE_CODESPACE, YEAR_OF_CONSTRUCTION, YEAR_OF_DEMOLITION, ")
+			.append("ROOF_TYPE, ROOF_TYPE_CODESPACE, MEASURED_HEIGHT, MEASURED_HEIGHT_UNIT, STOREYS_ABOVE_GROUND, STOREYS_BELOW_GROUND, STOREY_HEIGHTS_ABOVE_GROUND, STOREY_HEIGHTS_AG_UNIT, STOREY_HEIGHTS_BELOW_GROUND, STOREY_HEIGHTS_BG_UNIT, ")
+			.append("LOD1_TERRAIN_INTERSECTION, LOD2_TERRAIN_INTERSECTION, LOD3_TERRAIN_INTERSECTION, LOD4_TERRAIN_INTERSECTION, LOD2_MULTI_CURVE, LOD3_MULTI_CURVE, LOD4_MULTI_CURVE, ")
+			.append("LOD0_FOOTPRINT_ID, LOD0_ROOFPRINT_ID, LOD1_MULTI_SURFACE_ID, LOD2_MULTI_SURFACE_ID, LOD3_MULTI_SURFACE_ID, LOD4_MULTI_SURFACE_ID, ")
+			.append("LOD1_SOLID_ID, LOD2_SOLID_ID, LOD3_SOLID_ID, LOD4_SOLID_ID) values ")
+			.append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			psBuilding = dbImporterManager.getInsertWriter(stmt.toString());
+			maxBatchSize = dbImporterManager.getDatabaseAdapter().getMaxBatchSize();
+		}
 
 		surfaceGeometryImporter = (DBSurfaceGeometry)dbImporterManager.getDBImporter(DBImporterEnum.SURFACE_GEOMETRY);
 		cityObjectImporter = (DBCityObject)dbImporterManager.getDBImporter(DBImporterEnum.CITYOBJECT);
@@ -298,10 +307,9 @@ public class DBBuilding implements DBImporter {
 			}
 
 			if (multiLine != null) {
-				Object multiLineObj = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(multiLine, batchConn);
-				psBuilding.setObject(22 + i, multiLineObj);
+				psBuilding.setGeometry(22 + i, multiLine);
 			} else
-				psBuilding.setNull(22 + i, nullGeometryType, nullGeometryTypeName);
+				psBuilding.setNullGeometry(22 + i);
 		}
 
 		// lodXMultiCurve
@@ -327,10 +335,9 @@ public class DBBuilding implements DBImporter {
 			}
 
 			if (multiLine != null) {
-				Object multiLineObj = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(multiLine, batchConn);
-				psBuilding.setObject(26 + i, multiLineObj);
+				psBuilding.setGeometry(26 + i, multiLine);
 			} else
-				psBuilding.setNull(26 + i, nullGeometryType, nullGeometryTypeName);
+				psBuilding.setNullGeometry(26 + i);
 		}
 
 		// lod0FootPrint and lod0RoofEdge
@@ -458,8 +465,8 @@ public class DBBuilding implements DBImporter {
 				psBuilding.setNull(35 + i, Types.NULL);
 		}
 
-		psBuilding.addBatch();
-		if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+		psBuilding.endRow();
+		if (++batchCounter == maxBatchSize)
 			dbImporterManager.executeBatch(DBImporterEnum.BUILDING);
 
 		// BoundarySurfaces
@@ -29,10 +29,10 @@ package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
-import java.util.ArrayList;
 import java.util.GregorianCalendar;
 import java.util.List;
 
@@ -42,6 +42,7 @@ import org.citydb.config.project.importer.CreationDateMode;
 import org.citydb.config.project.importer.TerminationDateMode;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.database.TableEnum;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkBasic;
 import org.citydb.modules.citygml.importer.util.LocalGeometryXlinkResolver;
@@ -64,7 +65,7 @@ public class DBCityObject implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psCityObject;
+	private InsertRowWriter psCityObject;
 	private DBCityObjectGenericAttrib genericAttributeImporter;
 	private DBExternalReference externalReferenceImporter;
 	private DBAppearance appearanceImporter;
@@ -83,12 +84,15 @@ public class DBCityObject implements DBImporter {
 	private CreationDateMode creationDateMode;
 	private TerminationDateMode terminationDateMode;
 	private int batchCounter;
+	private int maxBatchSize;
+	private PreparedStatement psCurrentTimestamp;
+	private boolean isBulkLoad;
 
 	public DBCityObject(Connection batchConn, Config config, DBImporterManager dbImporterManager) throws SQLException {
 		this.batchConn = batchConn;
 		this.dbImporterManager = dbImporterManager;
 
-		gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
+		gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
 		replaceGmlId = config.getProject().getImporter().getGmlId().isUUIDModeReplace();
 		rememberGmlId = config.getProject().getImporter().getGmlId().isSetKeepGmlIdAsExternalReference();
 		affineTransformation = config.getProject().getImporter().getAffineTransformation().isSetUseAffineTransformation();
@@ -99,46 +103,62 @@ public class DBCityObject implements DBImporter {
 		creationDateMode = config.getProject().getImporter().getContinuation().getCreationDateMode();
 		terminationDateMode = config.getProject().getImporter().getContinuation().getTerminationDateMode();
 
-		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
-			gmlIdCodespace = "'" + gmlIdCodespace + "', ";
-		else
+		if (gmlIdCodespace == null || gmlIdCodespace.length() == 0)
 			gmlIdCodespace = null;
 		
 		if (replaceGmlId && rememberGmlId)
-			importFileName = config.getInternal().getCurrentImportFile().getAbsolutePath();
+			importFileName = dbImporterManager.getImportFile().getAbsolutePath();
 
 		if (config.getProject().getImporter().getContinuation().isUpdatingPersonModeDatabase())
 			updatingPerson = config.getProject().getDatabase().getActiveConnection().getUser();
 		else
 			updatingPerson = config.getProject().getImporter().getContinuation().getUpdatingPerson();
 
-		if (reasonForUpdate != null && reasonForUpdate.length() > 0)
-			reasonForUpdate = "'" + reasonForUpdate + "'";
-		else
+		if (reasonForUpdate == null || reasonForUpdate.length() == 0)
 			reasonForUpdate = null;
 
-		if (lineage != null && lineage.length() > 0)
-			lineage = "'" + lineage + "'";
-		else
+		if (lineage == null || lineage.length() == 0)
 			lineage = null;
 
-		if (updatingPerson != null && updatingPerson.length() > 0)
-			updatingPerson = "'" + updatingPerson + "'";
-		else
+		if (updatingPerson == null || updatingPerson.length() == 0)
 			updatingPerson = null;
 
 		init();
 	}
 
-	private void init() throws SQLException {
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into CITYOBJECT (ID, OBJECTCLASS_ID, GMLID, ").append(gmlIdCodespace != null ? "GMLID_CODESPACE, " : "").append("NAME, NAME_CODESPACE, DESCRIPTION, ENVELOPE, CREATION_DATE, TERMINATION_DATE, ")
-		.append("RELATIVE_TO_TERRAIN, RELATIVE_TO_WATER, LAST_MODIFICATION_DATE, UPDATING_PERSON, REASON_FOR_UPDATE, LINEAGE, XML_SOURCE) values ")
-		.append("(?, ?, ?, ").append(gmlIdCodespace != null ? gmlIdCodespace : "").append("?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, ")
-		.append(updatingPerson).append(", ")
-		.append(reasonForUpdate).append(", ")
-		.append(lineage).append(", null)");
-		psCityObject = batchConn.prepareStatement(stmt.toString());
+	private void init() throws SQLException {
+		// try to stream city objects using the bulk load mode of the database
+		if (gmlIdCodespace != null)
+			psCityObject = dbImporterManager.getBulkInsertWriter("CITYOBJECT", "ID", "OBJECTCLASS_ID", "GMLID", "NAME", "NAME_CODESPACE", "DESCRIPTION", "ENVELOPE", "CREATION_DATE", "TERMINATION_DATE", 
+					"RELATIVE_TO_TERRAIN", "RELATIVE_TO_WATER", "LAST_MODIFICATION_DATE", "UPDATING_PERSON", "REASON_FOR_UPDATE", "LINEAGE", "XML_SOURCE", "GMLID_CODESPACE");
+		else
+			psCityObject = dbImporterManager.getBulkInsertWriter("CITYOBJECT", "ID", "OBJECTCLASS_ID", "GMLID", "NAME", "NAME_CODESPACE", "DESCRIPTION", "ENVELOPE", "CREATION_DATE", "TERMINATION_DATE", 
+					"RELATIVE_TO_TERRAIN", "RELATIVE_TO_WATER", "LAST_MODIFICATION_DATE", "UPDATING_PERSON", "REASON_FOR_UPDATE", "LINEAGE", "XML_SOURCE");
+
+		if (psCityObject != null) {
+			// constant values are bound once. CURRENT_TIMESTAMP cannot be used in COPY 
+			// statements, so the modification date is queried once per batch instead
+			psCurrentTimestamp = batchConn.prepareStatement("select CURRENT_TIMESTAMP");
+			psCityObject.setString(13, updatingPerson);
+			psCityObject.setString(14, reasonForUpdate);
+			psCityObject.setString(15, lineage);
+			psCityObject.setNull(16, Types.CLOB);
+			if (gmlIdCodespace != null)
+				psCityObject.setString(17, gmlIdCodespace);
+
+			isBulkLoad = true;
+			maxBatchSize = dbImporterManager.getBulkLoadBatchSize();
+		} else {
+			StringBuilder stmt = new StringBuilder()
+			.append("insert into CITYOBJECT (ID, OBJECTCLASS_ID, GMLID, ").append(gmlIdCodespace != null ? "GMLID_CODESPACE, " : "").append("NAME, NAME_CODESPACE, DESCRIPTION, ENVELOPE, CREATION_DATE, TERMINATION_DATE, ")
+			.append("RELATIVE_TO_TERRAIN, RELATIVE_TO_WATER, LAST_MODIFICATION_DATE, UPDATING_PERSON, REASON_FOR_UPDATE, LINEAGE, XML_SOURCE) values ")
+			.append("(?, ?, ?, ").append(gmlIdCodespace != null ? "'" + gmlIdCodespace + "', " : "").append("?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, ")
+			.append(updatingPerson != null ? "'" + updatingPerson + "'" : null).append(", ")
+			.append(reasonForUpdate != null ? "'" + reasonForUpdate + "'" : null).append(", ")
+			.append(lineage != null ? "'" + lineage + "'" : null).append(", null)");
+			psCityObject = dbImporterManager.getInsertWriter(stmt.toString());
+			maxBatchSize = dbImporterManager.getDatabaseAdapter().getMaxBatchSize();
+		}
 
 		genericAttributeImporter = (DBCityObjectGenericAttrib)dbImporterManager.getDBImporter(DBImporterEnum.CITYOBJECT_GENERICATTRIB);
 		externalReferenceImporter = (DBExternalReference)dbImporterManager.getDBImporter(DBImporterEnum.EXTERNAL_REFERENCE);
@@ -225,35 +245,36 @@ public class DBCityObject implements DBImporter {
 		}
 
 		if (cityObject.isSetBoundedBy()) {			
-			List<Double> points = new ArrayList<Double>(6);
-			points.addAll(cityObject.getBoundedBy().getEnvelope().getLowerCorner().getValue());
-			points.addAll(cityObject.getBoundedBy().getEnvelope().getUpperCorner().getValue());
+			List<Double> lowerCorner = cityObject.getBoundedBy().getEnvelope().getLowerCorner().getValue();
+			List<Double> upperCorner = cityObject.getBoundedBy().getEnvelope().getUpperCorner().getValue();
+			double[] points = new double[]{
+					lowerCorner.get(0), lowerCorner.get(1), lowerCorner.get(2),
+					upperCorner.get(0), upperCorner.get(1), upperCorner.get(2)};
 
 			if (affineTransformation)
 				dbImporterManager.getAffineTransformer().transformCoordinates(points);
 
 			double[] coordinates = new double[15];
-			coordinates[0] = points.get(0);
-			coordinates[1] = points.get(1);
-			coordinates[2] = points.get(2);
-			coordinates[3] = points.get(3);
-			coordinates[4] = points.get(1);
-			coordinates[5] = points.get(2);
-			coordinates[6] = points.get(3);
-			coordinates[7] = points.get(4);
-			coordinates[8] = points.get(5);
-			coordinates[9] = points.get(0);
-			coordinates[10] = points.get(4);
-			coordinates[11] = points.get(5);
-			coordinates[12] = points.get(0);
-			coordinates[13] = points.get(1);
-			coordinates[14] = points.get(2);
+			coordinates[0] = points[0];
+			coordinates[1] = points[1];
+			coordinates[2] = points[2];
+			coordinates[3] = points[3];
+			coordinates[4] = points[1];
+			coordinates[5] = points[2];
+			coordinates[6] = points[3];
+			coordinates[7] = points[4];
+			coordinates[8] = points[5];
+			coordinates[9] = points[0];
+			coordinates[10] = points[4];
+			coordinates[11] = points[5];
+			coordinates[12] = points[0];
+			coordinates[13] = points[1];
+			coordinates[14] = points[2];
 
 			GeometryObject envelope = GeometryObject.createPolygon(coordinates, 3, dbSrid);
-			psCityObject.setObject(7, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(envelope, batchConn));
+			psCityObject.setGeometry(7, envelope);
 		} else {
-			psCityObject.setNull(7, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType(), 
-					dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName());
+			psCityObject.setNullGeometry(7);
 		}
 
 		// creationDate (null is not allowed)
@@ -318,8 +339,12 @@ public class DBCityObject implements DBImporter {
 			}
 		}
 
-		psCityObject.addBatch();
-		if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+		// LAST_MODIFICATION_DATE
+		if (isBulkLoad && batchCounter == 0)
+			psCityObject.setTimestamp(12, getCurrentTimestamp());
+
+		psCityObject.endRow();
+		if (++batchCounter == maxBatchSize)
 			dbImporterManager.executeBatch(DBImporterEnum.CITYOBJECT);
 
 		// genericAttributes
@@ -410,6 +435,19 @@ public class DBCityObject implements DBImporter {
 		}
 	}
 
+	private Timestamp getCurrentTimestamp() throws SQLException {
+		// rows of a batch are written in the same transaction as this
+		// query, so they get the same value as batched inserts
+		ResultSet rs = null;
+		try {
+			rs = psCurrentTimestamp.executeQuery();
+			return rs.next() ? rs.getTimestamp(1) : null;
+		} finally {
+			if (rs != null)
+				rs.close();
+		}
+	}
+
 	@Override
 	public void executeBatch() throws SQLException {
 		psCityObject.executeBatch();
@@ -419,6 +457,9 @@ public class DBCityObject implements DBImporter {
 	@Override
 	public void close() throws SQLException {
 		psCityObject.close();
+
+		if (psCurrentTimestamp != null)
+			psCurrentTimestamp.close();
 	}
 
 	@Override
@@ -28,12 +28,12 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 
 import org.citydb.api.geometry.GeometryObject;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.model.citygml.generics.AbstractGenericAttribute;
 import org.citygml4j.model.citygml.generics.DateAttribute;
@@ -48,10 +48,12 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psAtomicGenericAttribute;
-	private PreparedStatement psGenericAttributeSet;
-	private PreparedStatement psGenericAttributeMember;
+	private InsertRowWriter psAtomicGenericAttribute;
+	private InsertRowWriter psGenericAttributeSet;
+	private InsertRowWriter psGenericAttributeMember;
 	private int batchCounter;
+	private int maxBatchSize;
+	private boolean isBulkLoad;
 
 	public DBCityObjectGenericAttrib(Connection batchConn, DBImporterManager dbImporterManager) throws SQLException {
 		this.batchConn = batchConn;
@@ -61,19 +63,44 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 	}
 
 	private void init() throws SQLException {
+		// try to stream generic attributes using the bulk load mode of the database. since the
+		// sequence cannot be used in COPY statements, the ids of atomic attributes and of members
+		// of attribute sets are bound as additional parameters after the common ones
+		psGenericAttributeSet = dbImporterManager.getBulkInsertWriter("CITYOBJECT_GENERICATTRIB", "ID", "PARENT_GENATTRIB_ID", "ROOT_GENATTRIB_ID", "ATTRNAME", "DATATYPE", 
+				"GENATTRIBSET_CODESPACE", "CITYOBJECT_ID");
+
+		if (psGenericAttributeSet != null) {
+			psGenericAttributeMember = dbImporterManager.getBulkInsertWriter("CITYOBJECT_GENERICATTRIB", "ATTRNAME", "DATATYPE", "STRVAL", "INTVAL", "REALVAL", "URIVAL", 
+					"DATEVAL", "UNIT", "GEOMVAL", "CITYOBJECT_ID", "PARENT_GENATTRIB_ID", "ROOT_GENATTRIB_ID", "ID");
+			psAtomicGenericAttribute = dbImporterManager.getBulkInsertWriter("CITYOBJECT_GENERICATTRIB", "ATTRNAME", "DATATYPE", "STRVAL", "INTVAL", "REALVAL", "URIVAL", 
+					"DATEVAL", "UNIT", "GEOMVAL", "CITYOBJECT_ID", "ID", "ROOT_GENATTRIB_ID");
+
+			if (psGenericAttributeMember != null && psAtomicGenericAttribute != null) {
+				isBulkLoad = true;
+				maxBatchSize = dbImporterManager.getBulkLoadBatchSize();
+				return;
+			}
+
+			psGenericAttributeSet.close();
+			if (psGenericAttributeMember != null)
+				psGenericAttributeMember.close();
+		}
+
 		StringBuilder stmt = new StringBuilder()
 		.append("insert into CITYOBJECT_GENERICATTRIB (ID, PARENT_GENATTRIB_ID, ROOT_GENATTRIB_ID, ATTRNAME, DATATYPE, GENATTRIBSET_CODESPACE, CITYOBJECT_ID) values ")
 		.append("(?, ?, ?, ?, ?, ?, ?)");
-		psGenericAttributeSet = batchConn.prepareStatement(stmt.toString());		
+		psGenericAttributeSet = dbImporterManager.getInsertWriter(stmt.toString());		
 
 		stmt = new StringBuilder()
 		.append("insert into CITYOBJECT_GENERICATTRIB (ID, ATTRNAME, DATATYPE, STRVAL, INTVAL, REALVAL, URIVAL, DATEVAL, UNIT, GEOMVAL, CITYOBJECT_ID, PARENT_GENATTRIB_ID, ROOT_GENATTRIB_ID) values ")
 		.append("(").append(dbImporterManager.getDatabaseAdapter().getSQLAdapter().getNextSequenceValue(DBSequencerEnum.CITYOBJECT_GENERICATTRIB_ID_SEQ))
 		.append(", ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ");
 		
-		psGenericAttributeMember = batchConn.prepareStatement(new StringBuilder(stmt).append("?, ?)").toString());		
-		psAtomicGenericAttribute = batchConn.prepareStatement(new StringBuilder(stmt).append("null, ")
+		psGenericAttributeMember = dbImporterManager.getInsertWriter(new StringBuilder(stmt).append("?, ?)").toString());		
+		psAtomicGenericAttribute = dbImporterManager.getInsertWriter(new StringBuilder(stmt).append("null, ")
 		.append(dbImporterManager.getDatabaseAdapter().getSQLAdapter().getCurrentSequenceValue(DBSequencerEnum.CITYOBJECT_GENERICATTRIB_ID_SEQ)).append(")").toString());
+
+		maxBatchSize = dbImporterManager.getDatabaseAdapter().getMaxBatchSize();
 	}
 
 	public void insert(AbstractGenericAttribute genericAttribute, long cityObjectId) throws SQLException {
@@ -110,8 +137,8 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 			else
 				psGenericAttributeSet.setNull(2, Types.NULL);
 			
-			psGenericAttributeSet.addBatch();
-			if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+			psGenericAttributeSet.endRow();
+			if (++batchCounter == maxBatchSize)
 				dbImporterManager.executeBatch(DBImporterEnum.CITYOBJECT_GENERICATTRIB);
 			
 			// insert members of the attribute set
@@ -119,8 +146,7 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 				insert(attribute, attributeSetId, rootId, cityObjectId);			
 		
 		} else {
-			@SuppressWarnings("resource")
-			PreparedStatement ps = rootId == 0 ? psAtomicGenericAttribute : psGenericAttributeMember;
+			InsertRowWriter ps = rootId == 0 ? psAtomicGenericAttribute : psGenericAttributeMember;
 			ps.setString(1, genericAttribute.getName());
 
 			switch (genericAttribute.getCityGMLClass()) {
@@ -220,8 +246,7 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 				ps.setNull(2, Types.NUMERIC);
 			}
 
-			ps.setNull(9, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType(),
-					dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName());
+			ps.setNullGeometry(9);
 			ps.setLong(10, cityObjectId);
 			
 			if (rootId != 0) {
@@ -229,8 +254,11 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 				ps.setLong(12, rootId);
 			}
 
-			ps.addBatch();
-			if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+			if (isBulkLoad)
+				setBulkLoadId(ps, rootId);
+
+			ps.endRow();
+			if (++batchCounter == maxBatchSize)
 				dbImporterManager.executeBatch(DBImporterEnum.CITYOBJECT_GENERICATTRIB);
 		}
 	}
@@ -247,14 +275,28 @@ public class DBCityObjectGenericAttrib implements DBImporter {
 		psAtomicGenericAttribute.setNull(6, Types.VARCHAR);
 		psAtomicGenericAttribute.setNull(7, Types.DATE);
 		psAtomicGenericAttribute.setNull(8, Types.VARCHAR);	
-		psAtomicGenericAttribute.setObject(9, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(geometry, batchConn));
+		psAtomicGenericAttribute.setGeometry(9, geometry);
 		psAtomicGenericAttribute.setLong(10, cityObjectId);
 
-		psAtomicGenericAttribute.addBatch();
-		if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+		if (isBulkLoad)
+			setBulkLoadId(psAtomicGenericAttribute, 0);
+
+		psAtomicGenericAttribute.endRow();
+		if (++batchCounter == maxBatchSize)
 			dbImporterManager.executeBatch(DBImporterEnum.CITYOBJECT_GENERICATTRIB);
 	}
 
+	private void setBulkLoadId(InsertRowWriter ps, long rootId) throws SQLException {
+		long id = dbImporterManager.getDBId(DBSequencerEnum.CITYOBJECT_GENERICATTRIB_ID_SEQ);
+
+		if (rootId == 0) {
+			// an atomic attribute is its own root
+			ps.setLong(11, id);
+			ps.setLong(12, id);
+		} else
+			ps.setLong(13, id);
+	}
+
 	@Override
 	public void executeBatch() throws SQLException {
 		psAtomicGenericAttribute.executeBatch();
@@ -29,10 +29,8 @@ package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.internal.Internal;
@@ -40,7 +38,6 @@ import org.citydb.database.TableEnum;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkLibraryObject;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkSurfaceGeometry;
-import org.citydb.modules.citygml.importer.util.ConcurrentLockManager;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.model.citygml.core.ImplicitGeometry;
@@ -48,15 +45,14 @@ import org.citygml4j.model.gml.geometry.AbstractGeometry;
 import org.citygml4j.model.gml.geometry.GeometryProperty;
 
 public class DBImplicitGeometry implements DBImporter {
-	private final ConcurrentLockManager lockManager = ConcurrentLockManager.getInstance(DBImplicitGeometry.class);
 	private final Logger LOG = Logger.getInstance();
 
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
+	private final ImplicitGeometryRegistry implicitGeometryRegistry;
 
 	private PreparedStatement psImplicitGeometry;
 	private PreparedStatement psUpdateImplicitGeometry;
-	private PreparedStatement psSelectLibraryObject;
 
 	private DBSurfaceGeometry surfaceGeometryImporter;
 	private DBOtherGeometry otherGeometryImporter;
@@ -66,13 +62,13 @@ public class DBImplicitGeometry implements DBImporter {
 	public DBImplicitGeometry(Connection batchConn, DBImporterManager dbImporterManager) throws SQLException {
 		this.batchConn = batchConn;
 		this.dbImporterManager = dbImporterManager;
+		implicitGeometryRegistry = dbImporterManager.getImplicitGeometryRegistry();
 		init();
 	}
 
 	private void init() throws SQLException {
 		psImplicitGeometry = batchConn.prepareStatement("insert into IMPLICIT_GEOMETRY (ID, REFERENCE_TO_LIBRARY) values (?, ?)");
 		psUpdateImplicitGeometry = batchConn.prepareStatement("update IMPLICIT_GEOMETRY set MIME_TYPE=?, RELATIVE_BREP_ID=?, RELATIVE_OTHER_GEOM=? where ID=?");
-		psSelectLibraryObject = batchConn.prepareStatement("select ID from IMPLICIT_GEOMETRY where REFERENCE_TO_LIBRARY=?");
 
 		surfaceGeometryImporter = (DBSurfaceGeometry)dbImporterManager.getDBImporter(DBImporterEnum.SURFACE_GEOMETRY);
 		otherGeometryImporter = (DBOtherGeometry)dbImporterManager.getDBImporter(DBImporterEnum.OTHER_GEOMETRY);
@@ -112,26 +108,29 @@ public class DBImplicitGeometry implements DBImporter {
 			}
 		}
 
-		// synchronize concurrent processing of the same implicit geometry
-		// different implicit geometries however may be processed concurrently
-		ReentrantLock lock = lockManager.putAndGetLock(gmlId != null ? gmlId : libraryURI);
-		lock.lock();
+		// concurrent workers processing the same implicit geometry wait until the 
+		// worker that has reserved it in the registry has committed the entry
+		boolean isLibraryObject = libraryURI != null && !libraryURI.isEmpty();
+		boolean isReserved = false;
 
-		ResultSet rs = null;
 		try {
-			if (libraryURI != null && !libraryURI.isEmpty()) {
+			if (isLibraryObject) {
 				// check if we have the same library object in database
-				psSelectLibraryObject.setString(1, libraryURI);
-				rs = psSelectLibraryObject.executeQuery();
-				if (rs.next())
-					implicitGeometryId = rs.getLong(1);
-				else
+				implicitGeometryId = implicitGeometryRegistry.lookupOrReserveLibraryObject(libraryURI);
+				if (implicitGeometryId == 0) {
+					isReserved = true;
 					updateTable = true;
+				}
 			} 
 
 			// check relative geometry reference
-			else if (gmlId != null)
-				implicitGeometryId = dbImporterManager.getDBId(gmlId, CityGMLClass.ABSTRACT_CITY_OBJECT);				
+			else if (gmlId != null) {
+				implicitGeometryId = implicitGeometryRegistry.lookupOrReserveRelativeGeometry(dbImporterManager.scopeGmlId(gmlId));
+				if (implicitGeometryId == 0) {
+					isReserved = true;
+					implicitGeometryId = dbImporterManager.getDBId(gmlId, CityGMLClass.ABSTRACT_CITY_OBJECT);
+				}
+			}
 
 			if (implicitGeometryId == 0) {
 				implicitGeometryId = dbImporterManager.getDBId(DBSequencerEnum.IMPLICIT_GEOMETRY_ID_SEQ);
@@ -159,7 +158,7 @@ public class DBImplicitGeometry implements DBImporter {
 					// propagate the link to the library object
 					dbImporterManager.propagateXlink(new DBXlinkLibraryObject(
 							implicitGeometryId,
-							libraryURI
+							dbImporterManager.getAbsoluteFileURI(libraryURI)
 							));
 				} else
 					psUpdateImplicitGeometry.setNull(1, Types.VARCHAR);
@@ -206,19 +205,22 @@ public class DBImplicitGeometry implements DBImporter {
 				batchCounter = 0;
 			}
 
-		} finally {
-			if (rs != null) {
-				try {
-					rs.close();
-				} catch (SQLException e) {
-					//
-				}
+			if (isReserved) {
+				if (isLibraryObject)
+					implicitGeometryRegistry.publishLibraryObject(libraryURI, implicitGeometryId);
+				else
+					implicitGeometryRegistry.publishRelativeGeometry(dbImporterManager.scopeGmlId(gmlId), implicitGeometryId);
 
-				rs = null;
+				isReserved = false;
 			}
 
-			lockManager.releaseLock(gmlId != null ? gmlId : libraryURI);
-			lock.unlock();
+		} finally {
+			if (isReserved) {
+				if (isLibraryObject)
+					implicitGeometryRegistry.cancelLibraryObject(libraryURI);
+				else
+					implicitGeometryRegistry.cancelRelativeGeometry(dbImporterManager.scopeGmlId(gmlId));
+			}
 		}
 
 		if (isXLink && !dbImporterManager.lookupAndPutUID("#xlink#" + gmlId, 1, CityGMLClass.IMPLICIT_GEOMETRY)) {
@@ -243,8 +245,6 @@ public class DBImplicitGeometry implements DBImporter {
 	public void close() throws SQLException {
 		psImplicitGeometry.close();
 		psUpdateImplicitGeometry.close();
-		psSelectLibraryObject.close();
-		lockManager.clear();
 	}
 
 	@Override
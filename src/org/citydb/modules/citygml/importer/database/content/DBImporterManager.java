@@ -28,7 +28,10 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -44,11 +47,17 @@ import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
+import org.citydb.database.adapter.InsertRowWriter;
+import org.citydb.database.adapter.InsertRowWriterImpl;
+import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.uid.UIDCache;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheEntry;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
+import org.citydb.modules.citygml.common.database.xlink.DBXlinkTextureCoordList;
+import org.citydb.modules.citygml.common.database.xlink.DBXlinkTextureParam;
 import org.citydb.modules.citygml.importer.util.AffineTransformer;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.modules.citygml.importer.util.ImportLogger.ImportLogEntry;
 import org.citydb.modules.citygml.importer.util.LocalTextureCoordinatesResolver;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
@@ -62,11 +71,15 @@ import org.citygml4j.xml.CityGMLNamespaceContext;
 import org.xml.sax.SAXException;
 
 public class DBImporterManager {
+	private final Logger LOG = Logger.getInstance();
 	private final Connection batchConn;
 	private final AbstractDatabaseAdapter databaseAdapter;
 	private final JAXBBuilder jaxbBuilder;
 	private final WorkerPool<DBXlink> tmpXlinkPool;
 	private final UIDCacheManager uidCacheManager;
+	private final DBSequenceCache sequenceCache;
+	private final ImplicitGeometryRegistry implicitGeometryRegistry;
+	private final ImportFileContext fileContext;
 	private final EventDispatcher eventDipatcher;
 	private final Config config;
 
@@ -82,6 +95,8 @@ public class DBImporterManager {
 	private JAXBMarshaller jaxbMarshaller;
 	private SAXWriter saxWriter;
 	private boolean isLogImportedFeatures;
+	private boolean useBulkLoad;
+	private int bulkLoadBatchSize;
 
 	public DBImporterManager(Connection batchConn,
 			AbstractDatabaseAdapter databaseAdapter,
@@ -89,12 +104,18 @@ public class DBImporterManager {
 			Config config,
 			WorkerPool<DBXlink> tmpXlinkPool,
 			UIDCacheManager uidCacheManager,
+			DBSequenceCache sequenceCache,
+			ImplicitGeometryRegistry implicitGeometryRegistry,
+			ImportFileContext fileContext,
 			EventDispatcher eventDipatcher) throws SQLException {
 		this.batchConn = batchConn;
 		this.databaseAdapter = databaseAdapter;
 		this.jaxbBuilder = jaxbBuilder;
 		this.config = config;
 		this.uidCacheManager = uidCacheManager;
+		this.sequenceCache = sequenceCache;
+		this.implicitGeometryRegistry = implicitGeometryRegistry;
+		this.fileContext = fileContext;
 		this.tmpXlinkPool = tmpXlinkPool;
 		this.eventDipatcher = eventDipatcher;
 
@@ -117,6 +138,57 @@ public class DBImporterManager {
 		}
 		
 		isLogImportedFeatures = config.getProject().getImporter().getImportLog().isSetLogImportedFeatures();
+		useBulkLoad = config.getProject().getImporter().getBulkLoad().isSetUseBulkLoad();
+		bulkLoadBatchSize = config.getProject().getImporter().getBulkLoad().getBatchSize();
+	}
+
+	public InsertRowWriter getBulkInsertWriter(String tableName, String... columns) throws SQLException {
+		if (!useBulkLoad)
+			return null;
+
+		InsertRowWriter writer = databaseAdapter.getSQLAdapter().getBulkInsertWriter(batchConn, tableName, columns);
+		if (writer == null)
+			LOG.debug("Bulk load is not available for table " + tableName + ". Using batched inserts instead.");
+
+		return writer;
+	}
+
+	public InsertRowWriter getInsertWriter(String insertStatement) throws SQLException {
+		return new InsertRowWriterImpl(batchConn, insertStatement, databaseAdapter.getGeometryConverter());
+	}
+
+	public int getBulkLoadBatchSize() {
+		return bulkLoadBatchSize;
+	}
+
+	public ImportFileContext getImportFileContext() {
+		return fileContext;
+	}
+
+	public String getGmlIdCodespace() {
+		return fileContext != null ? fileContext.getGmlIdCodespace() : config.getInternal().getCurrentGmlIdCodespace();
+	}
+
+	public File getImportFile() {
+		return fileContext != null ? fileContext.getFile() : config.getInternal().getCurrentImportFile();
+	}
+
+	public String getImportPath() {
+		return fileContext != null ? fileContext.getImportPath() : config.getInternal().getImportPath();
+	}
+
+	public String scopeGmlId(String gmlId) {
+		return fileContext != null ? fileContext.scopeGmlId(gmlId) : gmlId;
+	}
+
+	public String getAbsoluteFileURI(String fileURI) {
+		try {
+			new URL(fileURI);
+			return fileURI;
+		} catch (MalformedURLException e) {
+			File file = new File(fileURI);
+			return file.isAbsolute() ? fileURI : new File(getImportPath(), file.getPath()).getPath();
+		}
 	}
 
 	public DBImporter getDBImporter(DBImporterEnum dbImporterType) throws SQLException {
@@ -288,13 +360,21 @@ public class DBImporterManager {
 	}
 
 	public long getDBId(DBSequencerEnum sequence) throws SQLException {
-		return dbSequencer.getDBId(sequence);
+		return sequenceCache != null ? sequenceCache.getDBId(sequence) : dbSequencer.getDBId(sequence);
+	}
+
+	public boolean isSetSequenceCache() {
+		return sequenceCache != null;
+	}
+
+	public ImplicitGeometryRegistry getImplicitGeometryRegistry() {
+		return implicitGeometryRegistry;
 	}
 
 	public void putUID(String gmlId, long id, long rootId, boolean reverse, String mapping, CityGMLClass type) {
 		UIDCache cache = uidCacheManager.getCache(type);
 		if (cache != null)
-			cache.put(gmlId, id, rootId, reverse, mapping, type);
+			cache.put(getUIDKey(gmlId, type), id, rootId, reverse, mapping, type);
 	}
 
 	public void putUID(String gmlId, long id, CityGMLClass type) {
@@ -305,7 +385,7 @@ public class DBImporterManager {
 		UIDCache cache = uidCacheManager.getCache(type);
 
 		if (cache != null)
-			return cache.lookupAndPut(gmlId, id, type);
+			return cache.lookupAndPut(getUIDKey(gmlId, type), id, type);
 		else
 			return false;
 	}
@@ -314,7 +394,7 @@ public class DBImporterManager {
 		UIDCache cache = uidCacheManager.getCache(type);
 
 		if (cache != null) {
-			UIDCacheEntry entry = cache.get(gmlId);
+			UIDCacheEntry entry = cache.get(getUIDKey(gmlId, type));
 			if (entry != null && entry.getId() > 0)
 				return entry.getId();
 		}
@@ -326,7 +406,7 @@ public class DBImporterManager {
 		UIDCache cache = uidCacheManager.getCache(type);
 
 		if (cache != null) {
-			UIDCacheEntry entry = cache.getFromMemory(gmlId);
+			UIDCacheEntry entry = cache.getFromMemory(getUIDKey(gmlId, type));
 			if (entry != null && entry.getId() > 0)
 				return entry.getId();
 		}
@@ -334,7 +414,36 @@ public class DBImporterManager {
 		return 0;
 	}
 
+	private String getUIDKey(String gmlId, CityGMLClass type) {
+		// texture images are identified by their absolute file URI 
+		// and may therefore be shared between import files
+		return type != CityGMLClass.ABSTRACT_TEXTURE ? scopeGmlId(gmlId) : gmlId;
+	}
+
 	public void propagateXlink(DBXlink xlink) {
+		if (fileContext != null && fileContext.isSetGmlIdScope()) {
+			// the gml:ids of the xlink must match the keys of the gml:id caches
+			switch (xlink.getXlinkType()) {
+			case TEXTURE_FILE:
+			case LIBRARY_OBJECT:
+			case SOLID_GEOMETRY:
+			case SURFACE_DATA_TO_TEX_IMAGE:
+				break;
+			case TEXTURE_COORD_LIST:
+				DBXlinkTextureCoordList texCoordList = (DBXlinkTextureCoordList)xlink;
+				texCoordList.setTexParamGmlId(fileContext.scopeGmlId(texCoordList.getTexParamGmlId()));
+				xlink.setGmlId(fileContext.scopeGmlId(xlink.getGmlId()));
+				break;
+			case TEXTUREPARAM:
+				DBXlinkTextureParam texParam = (DBXlinkTextureParam)xlink;
+				texParam.setTexParamGmlId(fileContext.scopeGmlId(texParam.getTexParamGmlId()));
+				xlink.setGmlId(fileContext.scopeGmlId(xlink.getGmlId()));
+				break;
+			default:
+				xlink.setGmlId(fileContext.scopeGmlId(xlink.getGmlId()));
+			}
+		}
+
 		tmpXlinkPool.addWork(xlink);
 	}
 
@@ -29,7 +29,6 @@ package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.citydb.api.database.DatabaseType;
@@ -432,15 +431,15 @@ public class DBOtherGeometry implements DBImporter {
 	}
 
 	private double[] convertPrimitive(List<Double> pointList) {
-		if (affineTransformation)
-			dbImporterManager.getAffineTransformer().transformCoordinates(pointList);
-
 		double[] result = new double[pointList.size()];
 
 		int i = 0;
 		for (Double point : pointList)
 			result[i++] = point.doubleValue();
 
+		if (affineTransformation)
+			dbImporterManager.getAffineTransformer().transformCoordinates(result);
+
 		return result;
 	}
 
@@ -448,15 +447,15 @@ public class DBOtherGeometry implements DBImporter {
 		double[][] result = new double[pointList.size()][];
 		int i = 0;
 		for (List<Double> points : pointList) {
-			if (affineTransformation)
-				dbImporterManager.getAffineTransformer().transformCoordinates(points);
-
 			double[] coords = new double[points.size()];
 
 			int j = 0;
 			for (Double coord : points)
 				coords[j++] = coord.doubleValue();
 
+			if (affineTransformation)
+				dbImporterManager.getAffineTransformer().transformCoordinates(coords);
+
 			result[i++] = coords;					
 		}
 
@@ -475,9 +474,9 @@ public class DBOtherGeometry implements DBImporter {
 		GeometryObject polygonGeom = null;
 
 		if (polygon != null) {
-			List<List<Double>> pointList = generatePointList(polygon, is2d, false);
+			List<double[]> pointList = generateRings(polygon, is2d, false);
 			if (pointList != null && !pointList.isEmpty())
-				polygonGeom = GeometryObject.createPolygon(convertAggregate(pointList), is2d ? 2 : 3, dbSrid);
+				polygonGeom = GeometryObject.createPolygon(pointList.toArray(new double[pointList.size()][]), is2d ? 2 : 3, dbSrid);
 		}
 
 		return polygonGeom;
@@ -491,52 +490,56 @@ public class DBOtherGeometry implements DBImporter {
 		return polygonProperty != null ? getPolygon(polygonProperty.getPolygon()) : null;
 	}
 
-	private List<List<Double>> generatePointList(Polygon polygon, boolean is2d, boolean reverse) {
-		List<List<Double>> pointList = new ArrayList<>();
+	private List<double[]> generateRings(Polygon polygon, boolean is2d, boolean reverse) {
+		List<double[]> pointList = new ArrayList<>();
 
 		if (polygon.isSetExterior()) {
 			AbstractRing exteriorAbstractRing = polygon.getExterior().getRing();
 			if (exteriorAbstractRing instanceof LinearRing) {
-				LinearRing exteriorLinearRing = (LinearRing)exteriorAbstractRing;
-				if (!ringValidator.validate(exteriorLinearRing, polygon.getId()))
+				double[] coords = getRing((LinearRing)exteriorAbstractRing, polygon.getId(), is2d, reverse);
+				if (coords == null)
 					return null;
 
-				pointList.add(exteriorLinearRing.toList3d(reverse));
+				pointList.add(coords);
 
 				if (polygon.isSetInterior()) {
 					for (AbstractRingProperty abstractRingProperty : polygon.getInterior()) {
 						AbstractRing interiorAbstractRing = abstractRingProperty.getRing();
 						if (interiorAbstractRing instanceof LinearRing) {
-							LinearRing interiorLinearRing = (LinearRing)interiorAbstractRing;
-							if (!ringValidator.validate(interiorLinearRing, polygon.getId()))
+							coords = getRing((LinearRing)interiorAbstractRing, polygon.getId(), is2d, reverse);
+							if (coords == null)
 								return null;
 
-							pointList.add(interiorLinearRing.toList3d(reverse));
+							pointList.add(coords);
 						}
 					}
 				}
 			}
+		}
 
-			if (is2d) {
-				// if we have to return a 2d polygon we first have to correct the
-				// double lists we retrieved from citygml4j as they are always 3d
-				for (List<Double> coordsList : pointList) {							
-					Iterator<Double> iter = coordsList.iterator();
+		return pointList;
+	}
 
-					int count = 0;							
-					while (iter.hasNext()) {
-						iter.next();
+	private double[] getRing(LinearRing linearRing, String parentGmlId, boolean is2d, boolean reverse) {
+		double[] coords = ringValidator.getCoordinates(linearRing, parentGmlId, reverse);
+		if (coords == null)
+			return null;
 
-						if (count++ == 2) {
-							count = 0;	
-							iter.remove();
-						}
-					}
-				}						
+		if (affineTransformation)
+			dbImporterManager.getAffineTransformer().transformCoordinates(coords);
+
+		if (is2d) {
+			// coordinates retrieved from citygml4j are always 3d
+			double[] coords2d = new double[coords.length / 3 * 2];
+			for (int i = 0, j = 0; i < coords.length; i += 3) {
+				coords2d[j++] = coords[i];
+				coords2d[j++] = coords[i + 1];
 			}
+
+			coords = coords2d;
 		}
 
-		return pointList;
+		return coords;
 	}
 
 	public GeometryObject getSolid(Solid solid) {
@@ -546,7 +549,7 @@ public class DBOtherGeometry implements DBImporter {
 		GeometryObject solidGeom = null;
 
 		if (solid != null) {
-			final List<List<Double>> pointList = new ArrayList<>();
+			final List<double[]> pointList = new ArrayList<>();
 			final List<Integer> rings = new ArrayList<>();
 
 			solid.accept(new GeometryWalker() {
@@ -573,7 +576,7 @@ public class DBOtherGeometry implements DBImporter {
 				}
 
 				public void visit(Polygon polygon) {
-					List<List<Double>> points = generatePointList(polygon, false, reverse);
+					List<double[]> points = generateRings(polygon, false, reverse);
 					if (points == null || points.isEmpty()) {
 						setShouldWalk(false);
 						pointList.clear();
@@ -587,8 +590,8 @@ public class DBOtherGeometry implements DBImporter {
 
 				public void visit(LinearRing linearRing) {
 					// required to handle surface patches such as triangles and rectangles
-					if (ringValidator.validate(linearRing, null)) {
-						List<Double> points = linearRing.toList3d(reverse);
+					double[] points = getRing(linearRing, null, false, reverse);
+					if (points != null) {
 						pointList.add(points);
 						rings.add(ringNo);
 						ringNo++;
@@ -604,7 +607,7 @@ public class DBOtherGeometry implements DBImporter {
 				for (Integer ringNo : rings)
 					exteriorRings[i++] = ringNo.intValue();
 
-				solidGeom = GeometryObject.createSolid(convertAggregate(pointList), exteriorRings, dbSrid);
+				solidGeom = GeometryObject.createSolid(pointList.toArray(new double[pointList.size()][]), exteriorRings, dbSrid);
 			}
 		}
 
@@ -0,0 +1,289 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.database.content;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.citydb.config.project.resources.SequenceCacheConfig;
+import org.citydb.database.adapter.AbstractDatabaseAdapter;
+import org.citydb.log.Logger;
+
+/**
+ * Hands out sequence values from ranges that are prefetched from the database 
+ * using {@link org.citydb.database.adapter.AbstractSQLAdapter#getNextSequenceValuesQuery(DBSequencerEnum)}.
+ * One instance is shared by all import workers. Sequence values are served from memory 
+ * without locking, and the next range is fetched by a background thread as soon as the
+ * configured fraction of the current range has been consumed. Values of ranges that
+ * are not fully consumed when the cache is shut down are lost, leaving gaps in the
+ * sequence.
+ */
+public class DBSequenceCache {
+	private final Logger LOG = Logger.getInstance();
+
+	private final Connection connection;
+	private final AbstractDatabaseAdapter databaseAdapter;
+	private final int rangeSize;
+	private final int refillIndex;
+	private final ExecutorService refillService;
+	private final EnumMap<DBSequencerEnum, SequenceRanges> sequences;
+	private final EnumMap<DBSequencerEnum, PreparedStatement> psNextSeqValues;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder refills = new LongAdder();
+	private final LongAdder blockingRefills = new LongAdder();
+	private volatile boolean isShutdown;
+
+	public DBSequenceCache(Connection connection, AbstractDatabaseAdapter databaseAdapter, SequenceCacheConfig config) {
+		this.connection = connection;
+		this.databaseAdapter = databaseAdapter;
+
+		rangeSize = config.getRangeSize();
+		refillIndex = Math.min((int)(rangeSize * config.getRefillFactor()), rangeSize - 1);
+
+		sequences = new EnumMap<DBSequencerEnum, SequenceRanges>(DBSequencerEnum.class);
+		for (DBSequencerEnum sequence : DBSequencerEnum.values())
+			sequences.put(sequence, new SequenceRanges(sequence));
+
+		psNextSeqValues = new EnumMap<DBSequencerEnum, PreparedStatement>(DBSequencerEnum.class);
+		refillService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "sequence_cache_refill");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public long getDBId(DBSequencerEnum sequence) throws SQLException {
+		if (sequence == null)
+			return 0;
+
+		return sequences.get(sequence).nextId();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getRefills() {
+		return refills.sum();
+	}
+
+	public long getBlockingRefills() {
+		return blockingRefills.sum();
+	}
+
+	public void shutdown() throws SQLException {
+		isShutdown = true;
+		for (SequenceRanges ranges : sequences.values())
+			ranges.cancelPrefetch();
+
+		// let a running prefetch complete instead of interrupting the thread 
+		// while it uses the connection
+		refillService.shutdown();
+
+		try {
+			if (!refillService.awaitTermination(60, TimeUnit.SECONDS))
+				cancelStatements();
+		} catch (InterruptedException e) {
+			cancelStatements();
+			Thread.currentThread().interrupt();
+		}
+
+		LOG.debug("Sequence cache: " + getHits() + " sequence value(s) served from memory, " 
+				+ getRefills() + " range(s) fetched from database, " 
+				+ getBlockingRefills() + " of them while blocking an import worker.");
+
+		synchronized (connection) {
+			try {
+				for (PreparedStatement ps : psNextSeqValues.values())
+					ps.close();
+			} finally {
+				psNextSeqValues.clear();
+				connection.close();
+			}
+		}
+	}
+
+	private void cancelStatements() {
+		for (PreparedStatement ps : psNextSeqValues.values()) {
+			try {
+				ps.cancel();
+			} catch (SQLException e) {
+				//
+			}
+		}
+	}
+
+	private long[] fetchRange(DBSequencerEnum sequence) throws SQLException {
+		synchronized (connection) {
+			if (isShutdown)
+				throw new SQLException("The sequence cache has already been shut down.");
+
+			PreparedStatement ps = psNextSeqValues.get(sequence);
+			if (ps == null) {
+				ps = connection.prepareStatement(databaseAdapter.getSQLAdapter().getNextSequenceValuesQuery(sequence));
+				psNextSeqValues.put(sequence, ps);
+			}
+
+			ResultSet rs = null;
+			try {
+				ps.setInt(1, rangeSize);
+				rs = ps.executeQuery();
+
+				long[] ids = new long[rangeSize];
+				int i = 0;
+
+				while (rs.next() && i < rangeSize)
+					ids[i++] = rs.getLong(1);
+
+				if (i == 0)
+					throw new SQLException("Failed to retrieve values for sequence " + sequence + ".");
+
+				refills.increment();
+				return i == rangeSize ? ids : Arrays.copyOf(ids, i);
+			} finally {
+				if (rs != null) {
+					try {
+						rs.close();
+					} catch (SQLException e) {
+						//
+					}
+				}
+			}
+		}
+	}
+
+	private static final class IdRange {
+		private final long[] ids;
+		private final AtomicInteger index = new AtomicInteger();
+
+		private IdRange(long[] ids) {
+			this.ids = ids;
+		}
+	}
+
+	private final class SequenceRanges {
+		private final DBSequencerEnum sequence;
+		private final AtomicReference<IdRange> current;
+		private Future<long[]> prefetch;
+
+		private SequenceRanges(DBSequencerEnum sequence) {
+			this.sequence = sequence;
+			current = new AtomicReference<IdRange>(new IdRange(new long[0]));
+		}
+
+		private long nextId() throws SQLException {
+			while (true) {
+				IdRange range = current.get();
+				int index = range.index.getAndIncrement();
+
+				if (index < range.ids.length) {
+					if (index == refillIndex)
+						schedulePrefetch();
+
+					hits.increment();
+					return range.ids[index];
+				}
+
+				switchRange(range);
+			}
+		}
+
+		private synchronized void schedulePrefetch() {
+			if (prefetch == null && !isShutdown) {
+				try {
+					prefetch = refillService.submit(new Callable<long[]>() {
+						public long[] call() throws Exception {
+							return fetchRange(sequence);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// the cache is being shut down
+				}
+			}
+		}
+
+		private synchronized void switchRange(IdRange exhausted) throws SQLException {
+			// another thread might have already installed a new range
+			if (current.get() != exhausted)
+				return;
+
+			long[] ids = null;
+			if (prefetch != null) {
+				try {
+					ids = prefetch.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof SQLException)
+						throw (SQLException)e.getCause();
+
+					throw new SQLException("Failed to prefetch values for sequence " + sequence + ".", e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for values of sequence " + sequence + ".", e);
+				} catch (CancellationException e) {
+					// fall back to fetching the range ourselves
+				} finally {
+					prefetch = null;
+				}
+			}
+
+			if (ids == null) {
+				ids = fetchRange(sequence);
+				blockingRefills.increment();
+			}
+
+			current.set(new IdRange(ids));
+		}
+
+		private synchronized void cancelPrefetch() {
+			if (prefetch != null) {
+				prefetch.cancel(false);
+				prefetch = null;
+			}
+		}
+	}
+
+}
@@ -101,7 +101,7 @@ public class DBSurfaceData implements DBImporter {
 		nullGeometryType = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType();
 		nullGeometryTypeName = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName();
 
-		String gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
+		String gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
 		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
 			gmlIdCodespace = "'" + gmlIdCodespace + "', ";
 		else
@@ -511,10 +511,11 @@ public class DBSurfaceData implements DBImporter {
 						List<Double> coords = point.toList3d();
 
 						if (coords != null && !coords.isEmpty()) {
+							double[] coordinates = new double[]{coords.get(0), coords.get(1), coords.get(2)};
 							if (affineTransformation)
-								dbImporterManager.getAffineTransformer().transformCoordinates(coords);
+								dbImporterManager.getAffineTransformer().transformCoordinates(coordinates);
 
-							geom = GeometryObject.createPoint(new double[]{coords.get(0), coords.get(1)}, 2, dbSrid);
+							geom = GeometryObject.createPoint(new double[]{coordinates[0], coordinates[1]}, 2, dbSrid);
 						}
 					} else {
 						// xlink is not supported...	
@@ -35,11 +35,11 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.citydb.api.database.DatabaseType;
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
 import org.citydb.config.internal.Internal;
 import org.citydb.database.DatabaseConnectionPool;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkLinearRing;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkSolidGeometry;
@@ -92,7 +92,7 @@ public class DBSurfaceGeometry implements DBImporter {
 	private final Config config;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psGeomElem;
+	private InsertRowWriter psGeomElem;
 	private PreparedStatement psNextSeqValues;
 	private DBDeprecatedMaterialModel materialModelImporter;
 	private DBOtherGeometry otherGeometryImporter;
@@ -104,8 +104,7 @@ public class DBSurfaceGeometry implements DBImporter {
 	private boolean applyTransformation;
 	private boolean isImplicit;
 	private int batchCounter;
-	private int nullGeometryType;
-	private String nullGeometryTypeName;
+	private int maxBatchSize;
 	private LocalTextureCoordinatesResolver localTexCoordResolver;
 	private RingValidator ringValidator;
 
@@ -122,30 +121,29 @@ public class DBSurfaceGeometry implements DBImporter {
 		dbSrid = DatabaseConnectionPool.getInstance().getActiveDatabaseAdapter().getConnectionMetaData().getReferenceSystem().getSrid();
 		importAppearance = config.getProject().getImporter().getAppearances().isSetImportAppearance();
 		applyTransformation = config.getProject().getImporter().getAffineTransformation().isSetUseAffineTransformation();
-		nullGeometryType = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType();
-		nullGeometryTypeName = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName();
 
-		String gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
-		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
-			gmlIdCodespace = "'" + gmlIdCodespace + "', ";
-		else
-			gmlIdCodespace = null;		
+		String gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
+		if (gmlIdCodespace == null || gmlIdCodespace.length() == 0)
+			gmlIdCodespace = null;
 
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into SURFACE_GEOMETRY (ID, GMLID, ").append(gmlIdCodespace != null ? "GMLID_CODESPACE, " : "").append("PARENT_ID, ROOT_ID, IS_SOLID, IS_COMPOSITE, IS_TRIANGULATED, IS_XLINK, IS_REVERSE, GEOMETRY, SOLID_GEOMETRY, IMPLICIT_GEOMETRY, CITYOBJECT_ID) values ")
-		.append("(?, ?, ").append(gmlIdCodespace != null ? gmlIdCodespace : "").append("?, ?, ?, ?, ?, ?, ?, ?, ");
+		// try to stream geometries using the bulk load mode of the database
+		if (gmlIdCodespace != null)
+			psGeomElem = dbImporterManager.getBulkInsertWriter("SURFACE_GEOMETRY", "ID", "GMLID", "PARENT_ID", "ROOT_ID", "IS_SOLID", "IS_COMPOSITE", "IS_TRIANGULATED", 
+					"IS_XLINK", "IS_REVERSE", "GEOMETRY", "SOLID_GEOMETRY", "IMPLICIT_GEOMETRY", "CITYOBJECT_ID", "GMLID_CODESPACE");
+		else
+			psGeomElem = dbImporterManager.getBulkInsertWriter("SURFACE_GEOMETRY", "ID", "GMLID", "PARENT_ID", "ROOT_ID", "IS_SOLID", "IS_COMPOSITE", "IS_TRIANGULATED", 
+					"IS_XLINK", "IS_REVERSE", "GEOMETRY", "SOLID_GEOMETRY", "IMPLICIT_GEOMETRY", "CITYOBJECT_ID");
 
-		if (dbImporterManager.getDatabaseAdapter().getDatabaseType() == DatabaseType.POSTGIS) {
-			// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
-			// thus, we have to use the database function ST_GeomFromEWKT to insert such geometries
-			// TODO: rework as soon as the JDBC driver supports PolyhedralSurface
-			stmt.append("ST_GeomFromEWKT(?), ");	
-		} else
-			stmt.append("?, ");
+		if (psGeomElem != null) {
+			if (gmlIdCodespace != null)
+				psGeomElem.setString(14, gmlIdCodespace);
 
-		stmt.append("?, ?)");
+			maxBatchSize = dbImporterManager.getBulkLoadBatchSize();
+		} else {
+			psGeomElem = dbImporterManager.getInsertWriter(getInsertStatement(gmlIdCodespace != null ? "'" + gmlIdCodespace + "', " : null));
+			maxBatchSize = dbImporterManager.getDatabaseAdapter().getMaxBatchSize();
+		}
 
-		psGeomElem = batchConn.prepareStatement(stmt.toString());
 		psNextSeqValues = batchConn.prepareStatement(dbImporterManager.getDatabaseAdapter().getSQLAdapter().getNextSequenceValuesQuery(DBSequencerEnum.SURFACE_GEOMETRY_ID_SEQ));
 
 		materialModelImporter = (DBDeprecatedMaterialModel)dbImporterManager.getDBImporter(DBImporterEnum.DEPRECATED_MATERIAL_MODEL);
@@ -155,6 +153,18 @@ public class DBSurfaceGeometry implements DBImporter {
 		ringValidator = new RingValidator();
 	}
 
+	private String getInsertStatement(String gmlIdCodespace) {
+		StringBuilder stmt = new StringBuilder()
+		.append("insert into SURFACE_GEOMETRY (ID, GMLID, ").append(gmlIdCodespace != null ? "GMLID_CODESPACE, " : "").append("PARENT_ID, ROOT_ID, IS_SOLID, IS_COMPOSITE, IS_TRIANGULATED, IS_XLINK, IS_REVERSE, GEOMETRY, SOLID_GEOMETRY, IMPLICIT_GEOMETRY, CITYOBJECT_ID) values ")
+		.append("(?, ?, ").append(gmlIdCodespace != null ? gmlIdCodespace : "").append("?, ?, ?, ?, ?, ?, ?, ?, ");
+
+		// PostGIS requires a database function to insert solid geometries
+		stmt.append(dbImporterManager.getDatabaseAdapter().getSQLAdapter().getSolidGeometryParameter()).append(", ");
+
+		stmt.append("?, ?)");
+		return stmt.toString();
+	}
+
 	public boolean isSurfaceGeometry(AbstractGeometry abstractGeometry) {
 		switch (abstractGeometry.getGMLClass()) {
 		case LINEAR_RING:
@@ -284,12 +294,12 @@ public class DBSurfaceGeometry implements DBImporter {
 		// a single linearRing
 		if (surfaceGeometryType == GMLClass.LINEAR_RING) {
 			LinearRing linearRing = (LinearRing)surfaceGeometry;
-			if (!ringValidator.validate(linearRing, origGmlId))
+			double[] coordinates = ringValidator.getCoordinates(linearRing, origGmlId, reverse);
+			if (coordinates == null)
 				return;
 
-			List<Double> points = linearRing.toList3d(reverse);
 			if (applyTransformation)
-				dbImporterManager.getAffineTransformer().transformCoordinates(points);
+				dbImporterManager.getAffineTransformer().transformCoordinates(coordinates);
 
 			// well, taking care about geometry is not enough... this ring could
 			// be referenced by a <textureCoordinates> element. since we cannot store
@@ -308,14 +318,7 @@ public class DBSurfaceGeometry implements DBImporter {
 				}
 			}
 
-			double[] coordinates = new double[points.size()];
-
-			int i = 0;
-			for (Double point : points)
-				coordinates[i++] = point.doubleValue();
-
 			GeometryObject geomObj = GeometryObject.createPolygon(coordinates, 3, dbSrid);
-			Object obj = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(geomObj, batchConn);
 
 			if (origGmlId != null && !isCopy)
 				dbImporterManager.putUID(origGmlId, surfaceGeometryId, rootId, reverse, gmlId, CityGMLClass.ABSTRACT_GML_GEOMETRY);
@@ -328,7 +331,7 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(11);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -336,11 +339,11 @@ public class DBSurfaceGeometry implements DBImporter {
 				psGeomElem.setNull(3, Types.NULL);
 
 			if (!isImplicit) {
-				psGeomElem.setObject(10, obj);
-				psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+				psGeomElem.setGeometry(10, geomObj);
+				psGeomElem.setNullGeometry(12);
 			} else {
-				psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-				psGeomElem.setObject(12, obj);
+				psGeomElem.setNullGeometry(10);
+				psGeomElem.setGeometry(12, geomObj);
 			}
 
 			if (cityObjectId != 0) 
@@ -356,14 +359,14 @@ public class DBSurfaceGeometry implements DBImporter {
 			Polygon polygon = (Polygon)surfaceGeometry;
 
 			if (polygon.isSetExterior()) {
-				List<List<Double>> pointList = new ArrayList<List<Double>>();
+				List<double[]> pointList = new ArrayList<double[]>();
 				AbstractRing exteriorAbstractRing = polygon.getExterior().getRing();
 				if (exteriorAbstractRing instanceof LinearRing) {
 					LinearRing exteriorLinearRing = (LinearRing)exteriorAbstractRing;
-					if (!ringValidator.validate(exteriorLinearRing, origGmlId))
+					double[] points = ringValidator.getCoordinates(exteriorLinearRing, origGmlId, reverse);
+					if (points == null)
 						return;
 
-					List<Double> points = exteriorLinearRing.toList3d(reverse);
 					if (applyTransformation)
 						dbImporterManager.getAffineTransformer().transformCoordinates(points);
 
@@ -393,10 +396,10 @@ public class DBSurfaceGeometry implements DBImporter {
 							AbstractRing interiorAbstractRing = abstractRingProperty.getRing();
 							if (interiorAbstractRing instanceof LinearRing) {								
 								LinearRing interiorLinearRing = (LinearRing)interiorAbstractRing;
-								if (!ringValidator.validate(interiorLinearRing, origGmlId))
+								double[] interiorPoints = ringValidator.getCoordinates(interiorLinearRing, origGmlId, reverse);
+								if (interiorPoints == null)
 									continue;
 
-								List<Double> interiorPoints = interiorLinearRing.toList3d(reverse);
 								if (applyTransformation)
 									dbImporterManager.getAffineTransformer().transformCoordinates(interiorPoints);
 
@@ -429,24 +432,10 @@ public class DBSurfaceGeometry implements DBImporter {
 						}
 					}
 
-					double[][] coordinates = new double[pointList.size()][];
-					int i = 0;
-					for (List<Double> coordsList : pointList) {
-						double[] coords = new double[coordsList.size()];
-
-						int j = 0;
-						for (Double coord : coordsList) {
-							coords[j] = coord.doubleValue();
-							j++;
-						}
-
-						coordinates[i] = coords;	
-						i++;
-					}
+					double[][] coordinates = pointList.toArray(new double[pointList.size()][]);
 
 					GeometryObject geomObj = GeometryObject.createPolygon(coordinates, 3, dbSrid);
-					Object obj = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(geomObj, batchConn);
-
+		
 					if (origGmlId != null && !isCopy)
 						dbImporterManager.putUID(origGmlId, surfaceGeometryId, rootId, reverse, gmlId, CityGMLClass.ABSTRACT_GML_GEOMETRY);
 
@@ -458,7 +447,7 @@ public class DBSurfaceGeometry implements DBImporter {
 					psGeomElem.setInt(7, 0);
 					psGeomElem.setInt(8, isXlink ? 1 : 0);
 					psGeomElem.setInt(9, reverse ? 1 : 0);
-					psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
+					psGeomElem.setNullGeometry(11);
 
 					if (parentId != 0)
 						psGeomElem.setLong(3, parentId);
@@ -466,11 +455,11 @@ public class DBSurfaceGeometry implements DBImporter {
 						psGeomElem.setNull(3, Types.NULL);
 
 					if (!isImplicit) {
-						psGeomElem.setObject(10, obj);
-						psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+						psGeomElem.setGeometry(10, geomObj);
+						psGeomElem.setNullGeometry(12);
 					} else {
-						psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-						psGeomElem.setObject(12, obj);
+						psGeomElem.setNullGeometry(10);
+						psGeomElem.setGeometry(12, geomObj);
 					}
 
 					if (cityObjectId != 0) 
@@ -712,9 +701,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(11);
+			psGeomElem.setNullGeometry(12);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -790,9 +779,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(11);
+			psGeomElem.setNullGeometry(12);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -858,9 +847,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 1);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(11);
+			psGeomElem.setNullGeometry(12);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -910,15 +899,15 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(12);
 
 			// create solid geometry object
-			Object solidObj = null;
+			GeometryObject solidObj = null;
 			if (surfaceGeometryId == rootId) {
 				GeometryObject geomObj = otherGeometryImporter.getSolid(solid);
 				if (geomObj != null) 
-					solidObj = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(geomObj, batchConn);
+					solidObj = geomObj;
 				else {
 					// we cannot build the solid geometry in main memory 
 					// possibly the solid references surfaces from another feature per xlink
@@ -928,9 +917,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			}
 
 			if (solidObj != null)
-				psGeomElem.setObject(11, solidObj);
+				psGeomElem.setGeometry(11, solidObj);
 			else
-				psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
+				psGeomElem.setNullGeometry(11);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -1002,15 +991,15 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(12);
 
 			// create composite solid geometry object
-			Object compositeSolidObj = null;
+			GeometryObject compositeSolidObj = null;
 			if (surfaceGeometryId == rootId) {
 				GeometryObject geomObj = otherGeometryImporter.getCompositeSolid(compositeSolid);
 				if (geomObj != null) 
-					compositeSolidObj = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(geomObj, batchConn);
+					compositeSolidObj = geomObj;
 				else {
 					// we cannot build the solid geometry in main memory 
 					// possibly the solid references surfaces from another feature per xlink
@@ -1020,9 +1009,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			}
 
 			if (compositeSolidObj != null)
-				psGeomElem.setObject(11, compositeSolidObj);
+				psGeomElem.setGeometry(11, compositeSolidObj);
 			else
-				psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
+				psGeomElem.setNullGeometry(11);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -1079,9 +1068,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(11);
+			psGeomElem.setNullGeometry(12);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -1138,9 +1127,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(11);
+			psGeomElem.setNullGeometry(12);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -1241,9 +1230,9 @@ public class DBSurfaceGeometry implements DBImporter {
 			psGeomElem.setInt(7, 0);
 			psGeomElem.setInt(8, isXlink ? 1 : 0);
 			psGeomElem.setInt(9, reverse ? 1 : 0);
-			psGeomElem.setNull(10, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(11, nullGeometryType, nullGeometryTypeName);
-			psGeomElem.setNull(12, nullGeometryType, nullGeometryTypeName);
+			psGeomElem.setNullGeometry(10);
+			psGeomElem.setNullGeometry(11);
+			psGeomElem.setNullGeometry(12);
 
 			if (parentId != 0)
 				psGeomElem.setLong(3, parentId);
@@ -1324,8 +1313,8 @@ public class DBSurfaceGeometry implements DBImporter {
 	}
 
 	private void addBatch() throws SQLException {
-		psGeomElem.addBatch();
-		if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+		psGeomElem.endRow();
+		if (++batchCounter == maxBatchSize)
 			dbImporterManager.executeBatch(DBImporterEnum.SURFACE_GEOMETRY);
 	}
 
@@ -1391,6 +1380,15 @@ public class DBSurfaceGeometry implements DBImporter {
 			if (count == 0)
 				return false;
 
+			// serve sequence values from memory if possible
+			if (dbImporterManager.isSetSequenceCache()) {
+				ids = new long[count];
+				for (int i = 0; i < count; i++)
+					ids[i] = dbImporterManager.getDBId(DBSequencerEnum.SURFACE_GEOMETRY_ID_SEQ);
+
+				return true;
+			}
+
 			// retrieve sequence values
 			ResultSet rs = null;
 			try {
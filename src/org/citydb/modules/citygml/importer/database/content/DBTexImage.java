@@ -28,6 +28,7 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
@@ -64,7 +65,7 @@ public class DBTexImage implements DBImporter {
 	}
 
 	private void init() throws SQLException {
-		localPath = config.getInternal().getImportPath();
+		localPath = importerManager.getImportPath();
 		replacePathSeparator = File.separatorChar == '/';
 		importTextureImage = config.getProject().getImporter().getAppearances().isSetImportTextureFiles();
 
@@ -84,8 +85,12 @@ public class DBTexImage implements DBImporter {
 		if (imageURI.isEmpty())
 			return 0;
 		
+		// relative image URIs from different import files may point to different 
+		// texture images, so the absolute file URI identifies the texture image
+		String absoluteImageURI = importerManager.getAbsoluteFileURI(imageURI);
+
 		long texImageId = 0;
-		String md5URI = toHexString(md5.digest(imageURI.getBytes()));
+		String md5URI = toHexString(md5.digest(absoluteImageURI.getBytes(StandardCharsets.UTF_8)));
 		boolean insertIntoTexImage = false;
 
 		// synchronize concurrent processing of the same texture image
@@ -130,7 +135,7 @@ public class DBTexImage implements DBImporter {
 				// propagte xlink to import the texture file itself
 				importerManager.propagateXlink(new DBXlinkTextureFile(
 						texImageId,
-						imageURI,
+						absoluteImageURI,
 						false));
 
 				// do we have a world file?!
@@ -138,7 +143,7 @@ public class DBTexImage implements DBImporter {
 						!((GeoreferencedTexture)abstractTexture).isSetOrientation() && !((GeoreferencedTexture)abstractTexture).isSetReferencePoint()) {
 					importerManager.propagateXlink(new DBXlinkTextureFile(
 							surfaceDataId,
-							imageURI,
+							absoluteImageURI,
 							true));
 				}
 			}
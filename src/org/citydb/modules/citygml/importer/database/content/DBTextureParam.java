@@ -28,18 +28,19 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.modules.citygml.importer.util.LocalTextureCoordinatesResolver.SurfaceGeometryTarget;
 
 public class DBTextureParam implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psTextureParam;
+	private InsertRowWriter psTextureParam;
 	private int batchCounter;
+	private int maxBatchSize;
 
 	public DBTextureParam(Connection batchConn, DBImporterManager dbImporterManager) throws SQLException {
 		this.batchConn = batchConn;
@@ -49,17 +50,24 @@ public class DBTextureParam implements DBImporter {
 	}
 
 	private void init() throws SQLException {		
-		StringBuilder texCoordListStmt = new StringBuilder()
-		.append("insert into TEXTUREPARAM (SURFACE_GEOMETRY_ID, IS_TEXTURE_PARAMETRIZATION, WORLD_TO_TEXTURE, TEXTURE_COORDINATES, SURFACE_DATA_ID) values ")
-		.append("(?, ?, ?, ?, ?)");
-		psTextureParam = batchConn.prepareStatement(texCoordListStmt.toString());
+		psTextureParam = dbImporterManager.getBulkInsertWriter("TEXTUREPARAM", "SURFACE_GEOMETRY_ID", "IS_TEXTURE_PARAMETRIZATION", "WORLD_TO_TEXTURE", "TEXTURE_COORDINATES", "SURFACE_DATA_ID");
+
+		if (psTextureParam != null)
+			maxBatchSize = dbImporterManager.getBulkLoadBatchSize();
+		else {
+			StringBuilder texCoordListStmt = new StringBuilder()
+			.append("insert into TEXTUREPARAM (SURFACE_GEOMETRY_ID, IS_TEXTURE_PARAMETRIZATION, WORLD_TO_TEXTURE, TEXTURE_COORDINATES, SURFACE_DATA_ID) values ")
+			.append("(?, ?, ?, ?, ?)");
+			psTextureParam = dbImporterManager.getInsertWriter(texCoordListStmt.toString());
+			maxBatchSize = dbImporterManager.getDatabaseAdapter().getMaxBatchSize();
+		}
 	}
 
 	public void insert(SurfaceGeometryTarget target, long surfaceDataId) throws SQLException {
 		psTextureParam.setLong(1, target.getSurfaceGeometryId());
 		psTextureParam.setInt(2, 1);
 		psTextureParam.setNull(3, Types.VARCHAR);
-		psTextureParam.setObject(4, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getDatabaseObject(target.compileTextureCoordinates(), batchConn));
+		psTextureParam.setGeometry(4, target.compileTextureCoordinates());
 		psTextureParam.setLong(5, surfaceDataId);
 
 		addBatch();
@@ -69,8 +77,7 @@ public class DBTextureParam implements DBImporter {
 		psTextureParam.setLong(1, surfaceGeometryId);
 		psTextureParam.setInt(2, 1);
 		psTextureParam.setString(3, worldToTexture);
-		psTextureParam.setNull(4, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType(),
-				dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName());
+		psTextureParam.setNullGeometry(4);
 		psTextureParam.setLong(5, surfaceDataId);
 
 		addBatch();
@@ -80,16 +87,15 @@ public class DBTextureParam implements DBImporter {
 		psTextureParam.setLong(1, surfaceGeometryId);
 		psTextureParam.setInt(2, 0);
 		psTextureParam.setNull(3, Types.VARCHAR);
-		psTextureParam.setNull(4, dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType(),
-				dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName());
+		psTextureParam.setNullGeometry(4);
 		psTextureParam.setLong(5, surfaceDataId);
 
 		addBatch();
 	}
 
 	private void addBatch() throws SQLException {
-		psTextureParam.addBatch();
-		if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+		psTextureParam.endRow();
+		if (++batchCounter == maxBatchSize)
 			dbImporterManager.executeBatch(DBImporterEnum.TEXTURE_PARAM);		
 	}
 
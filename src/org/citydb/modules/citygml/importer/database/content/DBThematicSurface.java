@@ -28,11 +28,11 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 
 import org.citydb.database.TableEnum;
+import org.citydb.database.adapter.InsertRowWriter;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkBasic;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkSurfaceGeometry;
@@ -49,12 +49,13 @@ public class DBThematicSurface implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psThematicSurface;
+	private InsertRowWriter psThematicSurface;
 	private DBCityObject cityObjectImporter;
 	private DBSurfaceGeometry surfaceGeometryImporter;
 	private DBOpening openingImporter;
 
 	private int batchCounter;
+	private int maxBatchSize;
 
 	public DBThematicSurface(Connection batchConn, DBImporterManager dbImporterManager) throws SQLException {
 		this.batchConn = batchConn;
@@ -64,10 +65,18 @@ public class DBThematicSurface implements DBImporter {
 	}
 
 	private void init() throws SQLException {
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into THEMATIC_SURFACE (ID, OBJECTCLASS_ID, BUILDING_ID, ROOM_ID, BUILDING_INSTALLATION_ID, LOD2_MULTI_SURFACE_ID, LOD3_MULTI_SURFACE_ID, LOD4_MULTI_SURFACE_ID) values ")
-		.append("(?, ?, ?, ?, ?, ?, ?, ?)");
-		psThematicSurface = batchConn.prepareStatement(stmt.toString());
+		psThematicSurface = dbImporterManager.getBulkInsertWriter("THEMATIC_SURFACE", "ID", "OBJECTCLASS_ID", "BUILDING_ID", "ROOM_ID", "BUILDING_INSTALLATION_ID", 
+				"LOD2_MULTI_SURFACE_ID", "LOD3_MULTI_SURFACE_ID", "LOD4_MULTI_SURFACE_ID");
+
+		if (psThematicSurface != null)
+			maxBatchSize = dbImporterManager.getBulkLoadBatchSize();
+		else {
+			StringBuilder stmt = new StringBuilder()
+			.append("insert into THEMATIC_SURFACE (ID, OBJECTCLASS_ID, BUILDING_ID, ROOM_ID, BUILDING_INSTALLATION_ID, LOD2_MULTI_SURFACE_ID, LOD3_MULTI_SURFACE_ID, LOD4_MULTI_SURFACE_ID) values ")
+			.append("(?, ?, ?, ?, ?, ?, ?, ?)");
+			psThematicSurface = dbImporterManager.getInsertWriter(stmt.toString());
+			maxBatchSize = dbImporterManager.getDatabaseAdapter().getMaxBatchSize();
+		}
 
 		surfaceGeometryImporter = (DBSurfaceGeometry)dbImporterManager.getDBImporter(DBImporterEnum.SURFACE_GEOMETRY);
 		cityObjectImporter = (DBCityObject)dbImporterManager.getDBImporter(DBImporterEnum.CITYOBJECT);
@@ -157,8 +166,8 @@ public class DBThematicSurface implements DBImporter {
 				psThematicSurface.setNull(6 + i, Types.NULL);
 		}
 
-		psThematicSurface.addBatch();
-		if (++batchCounter == dbImporterManager.getDatabaseAdapter().getMaxBatchSize())
+		psThematicSurface.endRow();
+		if (++batchCounter == maxBatchSize)
 			dbImporterManager.executeBatch(DBImporterEnum.THEMATIC_SURFACE);
 
 		// Openings
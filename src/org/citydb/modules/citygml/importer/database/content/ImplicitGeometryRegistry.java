@@ -0,0 +1,156 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.database.content;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Maps library object URIs and gml:ids of relative geometries to the IDs of the 
+ * IMPLICIT_GEOMETRY entries created for them. One instance is shared by all import
+ * workers and is initialized with the library objects already stored in the database.
+ * The first worker asking for an unknown key reserves it and has to either publish
+ * the ID of the new entry once it has been committed or cancel the reservation. 
+ * Concurrent workers asking for the same key wait until then.
+ */
+public class ImplicitGeometryRegistry {
+	private final ConcurrentHashMap<String, Entry> libraryObjects;
+	private final ConcurrentHashMap<String, Entry> relativeGeometries;
+
+	public ImplicitGeometryRegistry() {
+		libraryObjects = new ConcurrentHashMap<String, Entry>();
+		relativeGeometries = new ConcurrentHashMap<String, Entry>();
+	}
+
+	public void loadLibraryObjects(Connection connection) throws SQLException {
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+			stmt = connection.createStatement();
+			rs = stmt.executeQuery("select ID, REFERENCE_TO_LIBRARY from IMPLICIT_GEOMETRY where REFERENCE_TO_LIBRARY is not null");
+
+			while (rs.next()) {
+				Entry entry = new Entry();
+				entry.publish(rs.getLong(1));
+				libraryObjects.putIfAbsent(rs.getString(2), entry);
+			}
+		} finally {
+			if (rs != null)
+				try { rs.close(); } catch (SQLException e) {}
+
+			if (stmt != null)
+				try { stmt.close(); } catch (SQLException e) {}
+		}
+	}
+
+	public long lookupOrReserveLibraryObject(String libraryURI) {
+		return lookupOrReserve(libraryObjects, libraryURI);
+	}
+
+	public void publishLibraryObject(String libraryURI, long id) {
+		libraryObjects.get(libraryURI).publish(id);
+	}
+
+	public void cancelLibraryObject(String libraryURI) {
+		cancel(libraryObjects, libraryURI);
+	}
+
+	public long lookupOrReserveRelativeGeometry(String gmlId) {
+		return lookupOrReserve(relativeGeometries, gmlId);
+	}
+
+	public void publishRelativeGeometry(String gmlId, long id) {
+		relativeGeometries.get(gmlId).publish(id);
+	}
+
+	public void cancelRelativeGeometry(String gmlId) {
+		cancel(relativeGeometries, gmlId);
+	}
+
+	public void clearRelativeGeometries() {
+		// gml:ids are only resolved within the scope of the gml:id caches
+		relativeGeometries.clear();
+	}
+
+	private long lookupOrReserve(ConcurrentHashMap<String, Entry> entries, String key) {
+		while (true) {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				Entry reservation = new Entry();
+				entry = entries.putIfAbsent(key, reservation);
+				if (entry == null)
+					return 0;
+			}
+
+			long id = entry.await();
+			if (id != 0)
+				return id;
+
+			// the reservation has been cancelled, so try again
+		}
+	}
+
+	private void cancel(ConcurrentHashMap<String, Entry> entries, String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null)
+			entry.publish(0);
+	}
+
+	private static final class Entry {
+		private final CountDownLatch published = new CountDownLatch(1);
+		private volatile long id;
+
+		private void publish(long id) {
+			this.id = id;
+			published.countDown();
+		}
+
+		private long await() {
+			boolean isInterrupted = false;
+			try {
+				while (true) {
+					try {
+						published.await();
+						return id;
+					} catch (InterruptedException e) {
+						isInterrupted = true;
+					}
+				}
+			} finally {
+				if (isInterrupted)
+					Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
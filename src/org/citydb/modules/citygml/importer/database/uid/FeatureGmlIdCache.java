@@ -54,6 +54,7 @@ public class FeatureGmlIdCache implements UIDCachingModel {
 
 	private CacheTable[] backUpTables;
 	private PreparedStatement[] psLookupIds;
+	private PreparedStatement[] psLookupGmlIds;
 	private PreparedStatement[] psDrains;
 	private ReentrantLock[] locks;
 	private boolean[] isIndexed;
@@ -69,6 +70,7 @@ public class FeatureGmlIdCache implements UIDCachingModel {
 		cacheTableModel = CacheTableModelEnum.GMLID_FEATURE;
 		backUpTables = new CacheTable[partitions];
 		psLookupIds = new PreparedStatement[partitions];
+		psLookupGmlIds = new PreparedStatement[partitions];
 		psDrains = new PreparedStatement[partitions];
 		locks = new ReentrantLock[partitions];
 		isIndexed = new boolean[partitions];
@@ -194,7 +196,46 @@ public class FeatureGmlIdCache implements UIDCachingModel {
 
 	@Override
 	public String lookupDB(long id, CityGMLClass type) throws SQLException {
-		// nothing to do here 
+		// since we cannot determine the partition by id we have to check all of them
+		for (int i = 0; i < partitions; i++) {
+			if (backUpTables[i] == null)
+				continue;
+
+			// enable indexes upon first lookup
+			if (!isIndexed[i])
+				enableIndexesOnCacheTable(i);
+
+			final ReentrantLock tableLock = locks[i];
+			tableLock.lock();
+
+			try {
+				ResultSet rs = null;
+
+				try {
+					psLookupGmlIds[i].setLong(1, id);
+					rs = psLookupGmlIds[i].executeQuery();
+
+					while (rs.next()) {
+						CityGMLClass dbType = CityGMLClass.fromInt(rs.getInt(2));
+						if (dbType.isInstance(type))
+							return rs.getString(1);
+					}
+				} finally {
+					if (rs != null) {
+						try {
+							rs.close();
+						} catch (SQLException sqlEx) {
+							//
+						}
+
+						rs = null;
+					}
+				}
+			} finally {
+				tableLock.unlock();
+			}
+		}
+
 		return null;
 	}
 
@@ -203,6 +244,14 @@ public class FeatureGmlIdCache implements UIDCachingModel {
 		for (PreparedStatement ps : psDrains)
 			if (ps != null)
 				ps.close();
+
+		for (PreparedStatement ps : psLookupIds)
+			if (ps != null)
+				ps.close();
+
+		for (PreparedStatement ps : psLookupGmlIds)
+			if (ps != null)
+				ps.close();
 	}
 
 	@Override
@@ -249,6 +298,7 @@ public class FeatureGmlIdCache implements UIDCachingModel {
 
 					backUpTables[partition] = tempTable;
 					psLookupIds[partition] = conn.prepareStatement("select ID, MAPPING, TYPE from " + backUpTables[partition].getTableName() + " where GMLID=?");
+					psLookupGmlIds[partition] = conn.prepareStatement("select GMLID, TYPE from " + tableName + " where ID=?");
 					psDrains[partition] = conn.prepareStatement("insert into " + tableName + " (GMLID, ID, MAPPING, TYPE) values (?, ?, ?, ?)");
 				}
 			} finally {
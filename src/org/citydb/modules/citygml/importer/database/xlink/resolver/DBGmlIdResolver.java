@@ -36,6 +36,7 @@ import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.uid.UIDCache;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheEntry;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 
@@ -81,6 +82,8 @@ public class DBGmlIdResolver {
 			else if (forceCityObjectDatabaseLookup) {
 				if (entry != null)
 					gmlId = entry.getMapping();
+				else
+					gmlId = ImportFileContext.unscopeGmlId(gmlId);
 				
 				entry = dbCityObjectLookup(gmlId);
 			}
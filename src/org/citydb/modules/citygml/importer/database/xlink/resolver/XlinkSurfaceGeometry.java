@@ -38,7 +38,6 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.locks.ReentrantLock;
 
-import org.citydb.api.database.DatabaseType;
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.database.TableEnum;
 import org.citydb.modules.citygml.common.database.cache.CacheTable;
@@ -86,13 +85,8 @@ public class XlinkSurfaceGeometry implements DBXlinkResolver {
 		StringBuilder parentElemStmt = new StringBuilder("insert into SURFACE_GEOMETRY (ID, GMLID, PARENT_ID, ROOT_ID, IS_SOLID, IS_COMPOSITE, IS_TRIANGULATED, IS_XLINK, IS_REVERSE, GEOMETRY, SOLID_GEOMETRY, CITYOBJECT_ID) values ")
 				.append("(?, ?, ?, ?, ?, ?, ?, 1, ?, ?, ");
 
-		if (resolverManager.getDatabaseAdapter().getDatabaseType() == DatabaseType.POSTGIS) {
-			// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
-			// thus, we have to use the database function ST_GeomFromEWKT to insert such geometries
-			// TODO: rework as soon as the JDBC driver supports PolyhedralSurface
-			parentElemStmt.append("ST_GeomFromEWKT(?), ");	
-		} else
-			parentElemStmt.append("?, ");
+		// PostGIS requires a database function to insert solid geometries
+		parentElemStmt.append(resolverManager.getDatabaseAdapter().getSQLAdapter().getSolidGeometryParameter()).append(", ");
 
 		parentElemStmt.append("?)");
 		psParentElem = batchConn.prepareStatement(parentElemStmt.toString());
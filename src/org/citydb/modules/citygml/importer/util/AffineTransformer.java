@@ -27,8 +27,6 @@
  */
 package org.citydb.modules.citygml.importer.util;
 
-import java.util.List;
-
 import org.citydb.config.Config;
 import org.citydb.config.project.general.TransformationMatrix;
 import org.citygml4j.geometry.Matrix;
@@ -38,12 +36,21 @@ public class AffineTransformer {
 	private final Matrix matrix3x4;
 	private final Matrix inverse4x4;
 	private final Matrix inverse2x2;
+
+	// matrix3x4 unrolled for transforming coordinates
+	private final double m00, m01, m02, m03;
+	private final double m10, m11, m12, m13;
+	private final double m20, m21, m22, m23;
 	
 	public AffineTransformer(Config config) throws Exception {
 		matrix4x4 = toMatrix4x4(config.getProject().getImporter().getAffineTransformation().getTransformationMatrix());
 		matrix3x4 = matrix4x4.getMatrix(3, 4);
 		inverse4x4 = matrix4x4.inverse();
 		inverse2x2 = inverse4x4.getMatrix(2, 2);
+
+		m00 = matrix3x4.get(0, 0); m01 = matrix3x4.get(0, 1); m02 = matrix3x4.get(0, 2); m03 = matrix3x4.get(0, 3);
+		m10 = matrix3x4.get(1, 0); m11 = matrix3x4.get(1, 1); m12 = matrix3x4.get(1, 2); m13 = matrix3x4.get(1, 3);
+		m20 = matrix3x4.get(2, 0); m21 = matrix3x4.get(2, 1); m22 = matrix3x4.get(2, 2); m23 = matrix3x4.get(2, 3);
 		
 		// remove translation from matrix4x4 since it is used only
 		// in the context of implicit geometries for which translation
@@ -53,15 +60,21 @@ public class AffineTransformer {
 		matrix4x4.set(2, 3, 0);
 	}
 	
-	public void transformCoordinates(List<Double> points) {
-		for (int i = 0; i < points.size(); i += 3) {
-			double[] vals = new double[]{ points.get(i), points.get(i+1), points.get(i+2), 1};
-			Matrix v = new Matrix(vals, 4);
+	public void transformCoordinates(double[] coordinates) {
+		transformCoordinates(coordinates, 0, coordinates.length);
+	}
+
+	public void transformCoordinates(double[] coordinates, int offset, int length) {
+		// transforms the 3d coordinates in place
+		int end = offset + length - 2;
+		for (int i = offset; i < end; i += 3) {
+			double x = coordinates[i];
+			double y = coordinates[i+1];
+			double z = coordinates[i+2];
 
-			v = matrix3x4.times(v);
-			points.set(i, v.get(0, 0));
-			points.set(i+1, v.get(1, 0));
-			points.set(i+2, v.get(2, 0));
+			coordinates[i] = m00 * x + m01 * y + m02 * z + m03;
+			coordinates[i+1] = m10 * x + m11 * y + m12 * z + m13;
+			coordinates[i+2] = m20 * x + m21 * y + m22 * z + m23;
 		}
 	}
 	
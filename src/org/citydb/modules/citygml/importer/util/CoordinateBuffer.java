@@ -0,0 +1,141 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.citygml4j.model.gml.geometry.primitives.DirectPositionList;
+import org.citygml4j.model.gml.geometry.primitives.LinearRing;
+
+/**
+ * Reusable buffer for the 3d coordinates of a single linear ring. The buffer
+ * grows on demand and is meant to be owned by one importer instance, so that
+ * rings are read, closed and reversed without allocating per ring. Only 
+ * {@link #toArray()} creates a new array, which is handed over to the caller.
+ */
+public class CoordinateBuffer {
+	private double[] buffer;
+	private int size;
+
+	public CoordinateBuffer() {
+		buffer = new double[3 * 64];
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getNumPoints() {
+		return size / 3;
+	}
+
+	public void setRing(LinearRing ring) {
+		size = 0;
+
+		if (ring.isSetPosList() && !ring.isSetPosOrPointPropertyOrPointRep() 
+				&& !ring.isSetCoord() && !ring.isSetCoordinates()) {
+			// read the values of a gml:posList directly
+			DirectPositionList posList = ring.getPosList();
+			if (posList.isSetValue()) {
+				List<Double> values = posList.getValue();
+				if (posList.isSetSrsDimension() && posList.getSrsDimension() == 2) {
+					int points = (values.size() + 1) / 2;
+					ensureCapacity(points * 3);
+					for (int i = 0; i < points; i++) {
+						buffer[size++] = values.get(2 * i);
+						buffer[size++] = 2 * i + 1 < values.size() ? values.get(2 * i + 1) : 0;
+						buffer[size++] = 0;
+					}
+				} else {
+					ensureCapacity(values.size() + 2);
+					for (Double value : values)
+						buffer[size++] = value;
+
+					while (size % 3 != 0)
+						buffer[size++] = 0;
+				}
+			}
+		} else {
+			List<Double> values = ring.toList3d();
+			ensureCapacity(values.size());
+			for (Double value : values)
+				buffer[size++] = value;
+		}
+	}
+
+	public boolean isClosed() {
+		return size >= 3 && 
+				buffer[0] == buffer[size - 3] &&
+				buffer[1] == buffer[size - 2] &&
+				buffer[2] == buffer[size - 1];
+	}
+
+	public void close() {
+		if (size >= 3) {
+			ensureCapacity(size + 3);
+			buffer[size] = buffer[0];
+			buffer[size + 1] = buffer[1];
+			buffer[size + 2] = buffer[2];
+			size += 3;
+		}
+	}
+
+	public void reverse() {
+		for (int i = 0, j = size - 3; i < j; i += 3, j -= 3) {
+			for (int k = 0; k < 3; k++) {
+				double tmp = buffer[i + k];
+				buffer[i + k] = buffer[j + k];
+				buffer[j + k] = tmp;
+			}
+		}
+	}
+
+	public double[] toArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+
+	public List<Double> toList() {
+		List<Double> values = new ArrayList<Double>(size);
+		for (int i = 0; i < size; i++)
+			values.add(buffer[i]);
+
+		return values;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+	}
+
+}
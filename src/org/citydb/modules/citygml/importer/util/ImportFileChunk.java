@@ -0,0 +1,98 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import org.citydb.config.internal.Internal;
+import org.citygml4j.model.citygml.CityGML;
+import org.citygml4j.model.citygml.CityGMLClass;
+import org.citygml4j.model.gml.base.AbstractGML;
+import org.citygml4j.xml.io.reader.MissingADESchemaException;
+import org.citygml4j.xml.io.reader.ParentInfo;
+import org.citygml4j.xml.io.reader.UnmarshalException;
+import org.citygml4j.xml.io.reader.XMLChunk;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+public class ImportFileChunk implements XMLChunk {
+	private final XMLChunk chunk;
+	private final ImportFileContext context;
+
+	public ImportFileChunk(XMLChunk chunk, ImportFileContext context) {
+		this.chunk = chunk;
+		this.context = context;
+	}
+
+	public ImportFileContext getImportFileContext() {
+		return context;
+	}
+
+	@Override
+	public CityGML unmarshal() throws UnmarshalException, MissingADESchemaException {
+		// XML validation errors are reported for the file of the chunk
+		CityGML cityGML = null;
+		ImportFileContext.setCurrentContext(context);
+		try {
+			cityGML = chunk.unmarshal();
+		} finally {
+			ImportFileContext.setCurrentContext(null);
+		}
+
+		// attach the file context so that import workers can 
+		// attribute the feature to its source file
+		if (cityGML instanceof AbstractGML)
+			((AbstractGML)cityGML).setLocalProperty(Internal.IMPORT_FILE_CONTEXT, context);
+
+		return cityGML;
+	}
+
+	@Override
+	public CityGMLClass getCityGMLClass() {
+		return chunk.getCityGMLClass();
+	}
+
+	@Override
+	public boolean isSetParentInfo() {
+		return chunk.isSetParentInfo();
+	}
+
+	@Override
+	public ParentInfo getParentInfo() {
+		return chunk.getParentInfo();
+	}
+
+	@Override
+	public boolean hasPassedXMLValidation() {
+		return chunk.hasPassedXMLValidation();
+	}
+
+	@Override
+	public void send(ContentHandler handler, boolean release) throws SAXException {
+		chunk.send(handler, release);
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.citydb.log.Logger;
+import org.citydb.util.Util;
+
+import org.citygml4j.xml.io.reader.CityGMLReadException;
+import org.citygml4j.xml.io.reader.CityGMLReader;
+
+public class ImportFileContext {
+	private static final Pattern GML_ID_SCOPE = Pattern.compile("^(#?)[0-9]+:");
+	private static final ThreadLocal<ImportFileContext> currentContext = new ThreadLocal<ImportFileContext>();
+
+	private final Logger LOG = Logger.getInstance();
+
+	private final File file;
+	private final String gmlIdCodespace;
+	private final ImportLogger importLogger;
+	private final String gmlIdScope;
+	private final AtomicLong validationErrors = new AtomicLong();
+
+	private CityGMLReader reader;
+	private long pendingFeatures;
+	private boolean isParsed;
+	private boolean isClosed;
+
+	public ImportFileContext(File file, String gmlIdCodespace, ImportLogger importLogger, int scopeId) {
+		this.file = file;
+		this.gmlIdCodespace = gmlIdCodespace != null && gmlIdCodespace.length() > 0 ? gmlIdCodespace : null;
+		this.importLogger = importLogger;
+
+		// gml:ids are only unique within a file. if several files share the
+		// same gml:id caches, the cache keys are prefixed with a scope id that 
+		// cannot occur in a gml:id, since an NCName must not start with a digit
+		gmlIdScope = scopeId >= 0 ? scopeId + ":" : null;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getImportPath() {
+		return file.getParent();
+	}
+
+	public String getGmlIdCodespace() {
+		return gmlIdCodespace;
+	}
+
+	public ImportLogger getImportLogger() {
+		return importLogger;
+	}
+
+	public static ImportFileContext getCurrentContext() {
+		return currentContext.get();
+	}
+
+	static void setCurrentContext(ImportFileContext context) {
+		if (context != null)
+			currentContext.set(context);
+		else
+			currentContext.remove();
+	}
+
+	public void addValidationError() {
+		validationErrors.incrementAndGet();
+	}
+
+	public long getValidationErrors() {
+		return validationErrors.get();
+	}
+
+	public boolean isSetGmlIdScope() {
+		return gmlIdScope != null;
+	}
+
+	public String scopeGmlId(String gmlId) {
+		if (gmlIdScope == null || gmlId == null)
+			return gmlId;
+
+		// remote references are not bound to this file
+		if (gmlId.indexOf(':') != -1 && Util.isRemoteXlink(gmlId))
+			return gmlId;
+
+		return gmlId.startsWith("#") ? "#" + gmlIdScope + gmlId.substring(1) : gmlIdScope + gmlId;
+	}
+
+	public static String unscopeGmlId(String gmlId) {
+		return gmlId != null ? GML_ID_SCOPE.matcher(gmlId).replaceFirst("$1") : null;
+	}
+
+	public synchronized void setReader(CityGMLReader reader) {
+		this.reader = reader;
+	}
+
+	public synchronized void addPendingFeature() {
+		pendingFeatures++;
+	}
+
+	public void releasePendingFeatures(int count) throws IOException {
+		synchronized (this) {
+			pendingFeatures -= count;
+		}
+
+		closeIfDone();
+	}
+
+	public void setParsed() throws IOException {
+		synchronized (this) {
+			isParsed = true;
+		}
+
+		closeIfDone();
+	}
+
+	public synchronized boolean isParsed() {
+		return isParsed;
+	}
+
+	public synchronized boolean isDone() {
+		return isParsed && pendingFeatures <= 0;
+	}
+
+	public void close(boolean success) throws IOException {
+		synchronized (this) {
+			if (isClosed)
+				return;
+
+			isClosed = true;
+		}
+
+		// XML chunks refer to their reader until they are unmarshalled,
+		// so the reader is kept open until all features have been imported
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (CityGMLReadException e) {
+				//
+			}
+		}
+
+		// XML validation happens while the import workers unmarshal the features
+		long errors = validationErrors.get();
+		if (errors > 0)
+			LOG.warn(errors + " error(s) encountered while validating the document '" + file.getName() + "'.");
+
+		if (importLogger != null)
+			importLogger.close(success);
+	}
+
+	private void closeIfDone() throws IOException {
+		// the file is finished as soon as all of its features
+		// have been committed by the import workers
+		if (isDone())
+			close(true);
+	}
+
+}
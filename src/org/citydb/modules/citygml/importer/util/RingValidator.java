@@ -27,8 +27,6 @@
  */
 package org.citydb.modules.citygml.importer.util;
 
-import java.util.List;
-
 import org.citydb.config.internal.Internal;
 import org.citydb.log.Logger;
 import org.citydb.util.Util;
@@ -38,14 +36,15 @@ import org.citygml4j.model.gml.geometry.primitives.LinearRing;
 
 public class RingValidator {
 	private final Logger LOG = Logger.getInstance();
+	private final CoordinateBuffer buffer = new CoordinateBuffer();
 
-	public boolean validate(LinearRing ring, String parentGmlId) {
+	public double[] getCoordinates(LinearRing ring, String parentGmlId, boolean reverse) {
 		if (ring.hasLocalProperty(Internal.GEOMETRY_INVALID))
-			return false;
+			return null;
 
-		List<Double> coords = ring.toList3d();
+		buffer.setRing(ring);
 
-		if (coords == null || coords.isEmpty()) {
+		if (buffer.size() == 0) {
 			StringBuilder msg = new StringBuilder(Util.getGeometrySignature(
 					GMLClass.LINEAR_RING, 
 					parentGmlId));
@@ -53,20 +52,21 @@ public class RingValidator {
 			LOG.error(msg.toString());
 			
 			ring.setLocalProperty(Internal.GEOMETRY_INVALID, "Too few coordinates");			
-			return false;
+			return null;
 		}
 		
 		// check closedness
-		if (!isClosed(coords, ring)) {
+		if (!buffer.isClosed()) {
 			StringBuilder msg = new StringBuilder(Util.getGeometrySignature(
 					GMLClass.LINEAR_RING, 
 					parentGmlId));
 			msg.append(": Linear ring is not closed. Appending first coordinate to fix it.");
 			LOG.warn(msg.toString());
+			repair(ring);
 		}
 		
 		// check for minimum number of coordinates
-		if (coords.size() / 3 < 4) {
+		if (buffer.getNumPoints() < 4) {
 			StringBuilder msg = new StringBuilder(Util.getGeometrySignature(
 					GMLClass.LINEAR_RING, 
 					parentGmlId));
@@ -74,39 +74,27 @@ public class RingValidator {
 			LOG.error(msg.toString());
 			
 			ring.setLocalProperty(Internal.GEOMETRY_INVALID, "Too few coordinates");			
-			return false;
+			return null;
 		}
 		
-		return true;
+		// the returned array is owned by the caller
+		if (reverse)
+			buffer.reverse();
+
+		return buffer.toArray();
 	}
 	
-	private boolean isClosed(List<Double> coords, LinearRing ring) {
-		Double x = coords.get(0);
-		Double y = coords.get(1);
-		Double z = coords.get(2);
-
-		int nrOfPoints = coords.size();
-
-		if (!x.equals(coords.get(nrOfPoints - 3)) ||
-				!y.equals(coords.get(nrOfPoints - 2)) ||
-				!z.equals(coords.get(nrOfPoints - 1))) {
-			// repair unclosed ring...
-			coords.add(x);
-			coords.add(y);
-			coords.add(z);
+	private void repair(LinearRing ring) {
+		// close the ring in the buffer and in the model
+		buffer.close();
 
-			DirectPositionList posList = new DirectPositionList();
-			posList.setValue(coords);
-			ring.setPosList(posList);
+		DirectPositionList posList = new DirectPositionList();
+		posList.setValue(buffer.toList());
+		ring.setPosList(posList);
 
-			ring.unsetCoord();
-			ring.unsetCoordinates();
-			ring.unsetPosOrPointPropertyOrPointRep();
-			
-			return false;
-		}
-		
-		return true;
+		ring.unsetCoord();
+		ring.unsetCoordinates();
+		ring.unsetPosOrPointPropertyOrPointRep();
 	}
 
 }
@@ -0,0 +1,211 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.citydb.modules.common.filter.ImportFilter;
+import org.citydb.modules.common.filter.feature.BoundingBoxFilter;
+import org.citydb.modules.common.filter.feature.GmlIdFilter;
+import org.citydb.modules.common.filter.feature.GmlNameFilter;
+import org.citygml4j.model.citygml.CityGMLClass;
+import org.citygml4j.model.gml.geometry.primitives.DirectPosition;
+import org.citygml4j.model.gml.geometry.primitives.Envelope;
+import org.citygml4j.xml.io.reader.XMLChunk;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Evaluates the gml:id, gml:name and bounding box filters of the import on the 
+ * buffered SAX events of an XML chunk, so that city objects which do not pass 
+ * the filters are dropped before they are unmarshalled. Only the attributes and 
+ * the leading gml:name and gml:boundedBy properties of the root element are read. 
+ * Chunks without an envelope given by lower and upper corner are accepted and 
+ * left to the import workers. Instances are not thread-safe.
+ */
+public class XMLChunkFilter extends DefaultHandler {
+	private static final String GML_NAMESPACE = "http://www.opengis.net/gml";
+	private static final SAXException STOP_PARSING = new SAXException("Stopped reading XML chunk.");
+
+	private final GmlIdFilter gmlIdFilter;
+	private final GmlNameFilter gmlNameFilter;
+	private final BoundingBoxFilter boundingBoxFilter;
+	private final boolean isActive;
+
+	private final List<String> names = new ArrayList<String>();
+	private final StringBuilder buffer = new StringBuilder();
+	private String gmlId;
+	private List<Double> lowerCorner;
+	private List<Double> upperCorner;
+	private boolean isBoundedBy;
+	private boolean isCharacters;
+	private int depth;
+
+	public XMLChunkFilter(ImportFilter importFilter) {
+		gmlIdFilter = importFilter.getGmlIdFilter();
+		gmlNameFilter = importFilter.getGmlNameFilter();
+		boundingBoxFilter = importFilter.getBoundingBoxFilter();
+
+		isActive = gmlIdFilter.isActive() || gmlNameFilter.isActive() || boundingBoxFilter.isActive();
+	}
+
+	public boolean isActive() {
+		return isActive;
+	}
+
+	public boolean accept(XMLChunk chunk) throws SAXException {
+		if (!isActive)
+			return true;
+
+		// filters are only applied to city objects
+		CityGMLClass type = chunk.getCityGMLClass();
+		if (type == null || !type.isInstance(CityGMLClass.ABSTRACT_CITY_OBJECT))
+			return true;
+
+		reset();
+		try {
+			chunk.send(this, false);
+		} catch (SAXException e) {
+			if (e != STOP_PARSING)
+				throw e;
+		}
+
+		// gml:id filter
+		if (gmlIdFilter.isActive() && (gmlId == null || gmlIdFilter.filter(gmlId)))
+			return false;
+
+		// gml:name filter
+		if (gmlNameFilter.isActive()) {
+			boolean success = false;
+			for (String name : names) {
+				if (!gmlNameFilter.filter(name)) {
+					success = true;
+					break;
+				}
+			}
+
+			if (!success)
+				return false;
+		}
+
+		// bounding box filter
+		if (boundingBoxFilter.isActive() && lowerCorner != null && upperCorner != null) {
+			Envelope envelope = new Envelope();
+			DirectPosition lower = new DirectPosition();
+			lower.setValue(lowerCorner);
+			envelope.setLowerCorner(lower);
+			DirectPosition upper = new DirectPosition();
+			upper.setValue(upperCorner);
+			envelope.setUpperCorner(upper);
+
+			if (boundingBoxFilter.filter(envelope))
+				return false;
+		}
+
+		return true;
+	}
+
+	private void reset() {
+		names.clear();
+		buffer.setLength(0);
+		gmlId = null;
+		lowerCorner = null;
+		upperCorner = null;
+		isBoundedBy = false;
+		isCharacters = false;
+		depth = 0;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+		depth++;
+
+		if (depth == 1) {
+			gmlId = attributes.getValue(GML_NAMESPACE, "id");
+			return;
+		}
+
+		boolean isGML = GML_NAMESPACE.equals(uri);
+		if (depth == 2) {
+			isBoundedBy = false;
+			if (isGML) {
+				if (localName.equals("name"))
+					isCharacters = true;
+				else if (localName.equals("boundedBy"))
+					isBoundedBy = true;
+				else if (!localName.equals("metaDataProperty") && !localName.equals("description"))
+					throw STOP_PARSING;
+			} else
+				throw STOP_PARSING;
+		} else if (depth == 4 && isBoundedBy && isGML)
+			isCharacters = localName.equals("lowerCorner") || localName.equals("upperCorner");
+
+		buffer.setLength(0);
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		if (isCharacters) {
+			if (depth == 2)
+				names.add(buffer.toString());
+			else if (localName.equals("lowerCorner"))
+				lowerCorner = getCoordinates(buffer);
+			else
+				upperCorner = getCoordinates(buffer);
+
+			isCharacters = false;
+		}
+
+		if (depth == 2 && isBoundedBy)
+			throw STOP_PARSING;
+
+		depth--;
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		if (isCharacters)
+			buffer.append(ch, start, length);
+	}
+
+	private List<Double> getCoordinates(CharSequence value) {
+		List<Double> coordinates = new ArrayList<Double>(3);
+		for (String token : value.toString().trim().split("\\s+")) {
+			try {
+				coordinates.add(Double.parseDouble(token));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		return coordinates.size() >= 2 ? coordinates : null;
+	}
+
+}
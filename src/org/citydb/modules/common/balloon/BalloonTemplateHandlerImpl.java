@@ -34,15 +34,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.citydb.api.database.BalloonTemplateHandler;
 import org.citydb.api.geometry.GeometryObject;
@@ -1118,12 +1123,40 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			"  </body>\n" +
 			"</html>";
 
+	private static final int MAX_CACHED_STATEMENTS = 64;
+	private static final int MAX_CACHED_TEMPLATES = 64;
+	private static final int MAX_RESOLVED_STATEMENTS = 256;
+	private static final Pattern BATCH_PARAMETER_PATTERN = Pattern.compile("(?:WHERE|AND)\\s+(\\w+\\.\\w+)\\s*=\\s*\\?$");
+
 	private final AbstractDatabaseAdapter databaseAdapter;
 	private CityGMLClass cityGMLClassForBalloonHandler = null;
 
 	List<BalloonStatement> statementList = null;
 	List<String> htmlChunkList = null;
-	
+
+	private Connection cachedConnection;
+	private final LinkedHashMap<String, CachedStatement> cachedStatements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+			if (size() > MAX_CACHED_STATEMENTS) {
+				eldest.getValue().close();
+				return true;
+			}
+
+			return false;
+		}
+	};
+
+	private final LinkedHashMap<String, CompiledTemplate> compiledTemplates = new LinkedHashMap<String, CompiledTemplate>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+			return size() > MAX_CACHED_TEMPLATES;
+		}
+	};
+
+	private final HashMap<Long, CityGMLClass> prefetchedObjectClasses = new HashMap<Long, CityGMLClass>();
+	private final HashMap<BalloonStatement, HashMap<Long, String>> prefetchedResults = new HashMap<BalloonStatement, HashMap<Long, String>>();
+
 	public BalloonTemplateHandlerImpl(File templateFile, AbstractDatabaseAdapter databaseAdapter) {
 		this.databaseAdapter = databaseAdapter;
 		setTemplate(templateFile);
@@ -1159,7 +1192,7 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 		}
 		String template = new String(buffer);
 		try {
-			fillStatementAndHtmlChunkList(template);
+			fillStatementAndHtmlChunkList(template, statementList, htmlChunkList);
 		}
 		catch (Exception e) {
 			Logger.getInstance().warn("Following message applies to file: " + templateFile.getAbsolutePath());
@@ -1174,7 +1207,7 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 		if (templateString == null) return; // it was a dummy call
 
 		try {
-			fillStatementAndHtmlChunkList(templateString);
+			fillStatementAndHtmlChunkList(templateString, statementList, htmlChunkList);
 		}
 		catch (Exception e) {
 			Logger.getInstance().warn(e.getMessage());
@@ -1188,10 +1221,16 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 		String balloonContent = "";
 		List<BalloonStatement> statementListBackup = statementList;
 		List<String> htmlChunkListBackup = htmlChunkList;
-		statementList = new ArrayList<BalloonStatement>();
-		htmlChunkList = new ArrayList<String>();
 		try {
-			fillStatementAndHtmlChunkList(template);
+			CompiledTemplate compiledTemplate = compiledTemplates.get(template);
+			if (compiledTemplate == null) {
+				compiledTemplate = new CompiledTemplate();
+				fillStatementAndHtmlChunkList(template, compiledTemplate.statementList, compiledTemplate.htmlChunkList);
+				compiledTemplates.put(template, compiledTemplate);
+			}
+
+			statementList = compiledTemplate.statementList;
+			htmlChunkList = compiledTemplate.htmlChunkList;
 			balloonContent = getBalloonContent(id, lod, connection);
 		}
 		catch (Exception e) {
@@ -1219,12 +1258,11 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			long id = -1;
 
 			ResultSet rs = null;
-			PreparedStatement query = null;
 			try {
-				query = connection.prepareStatement("SELECT id, objectclass_id FROM CITYOBJECT WHERE gmlid = ?");
+				PreparedStatement query = getCachedStatement("SELECT id, objectclass_id FROM CITYOBJECT WHERE gmlid = ?", connection).preparedStatement;
 				query.setString(1, gmlId);
 				rs = query.executeQuery();
-				
+
 				if (rs.next()) {
 					cityObjectTypeForGmlId = Util.classId2cityObject(rs.getInt("objectclass_id"));
 					id = rs.getLong("id");
@@ -1236,34 +1274,9 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 					try { rs.close(); }	catch (SQLException sqlEx) {}
 					rs = null;
 				}
-
-				if (query != null) {
-					try { query.close(); } catch (SQLException sqlEx) {}
-					query = null;
-				}
 			}
 
-			if (cityGMLClassForBalloonHandler != cityObjectTypeForGmlId) {
-				for (BalloonStatement statement: statementList) {
-					statement.setConversionTried(false);
-				}
-				cityGMLClassForBalloonHandler = cityObjectTypeForGmlId;
-			}
-
-			List<String> resultList = new ArrayList<String>();
-			for (BalloonStatement statement: statementList) {
-				resultList.add(executeStatement(statement, id, lod, connection));
-			}
-
-			Iterator<String> htmlChunkIterator = htmlChunkList.iterator();
-			Iterator<String> resultIterator = resultList.iterator();
-
-			while (htmlChunkIterator.hasNext()) {
-				balloonContent.append(htmlChunkIterator.next());
-				if (resultIterator.hasNext()) {
-					balloonContent.append(resultIterator.next());
-				}
-			}
+			fillBalloonContent(balloonContent, cityObjectTypeForGmlId, id, lod, connection);
 		}
 		return balloonContent.toString();
 	}
@@ -1280,174 +1293,210 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			// otherwise it avoids problems from lousy initialization of BalloonTemplateHandlers in threads
 			// at the cost of performance
 
-			CityGMLClass cityObjectTypeForId = null;
+			CityGMLClass cityObjectTypeForId = prefetchedObjectClasses.get(id);
 
-			ResultSet rs = null;
-			PreparedStatement query = null;
+			if (cityObjectTypeForId == null) {
+				ResultSet rs = null;
+				try {
+					PreparedStatement query = getCachedStatement("SELECT objectclass_id FROM CITYOBJECT WHERE id = ?", connection).preparedStatement;
+					query.setLong(1, id);
+					rs = query.executeQuery();
+
+					if (rs.next()) {
+						cityObjectTypeForId = Util.classId2cityObject(rs.getInt("objectclass_id"));
+					}
+				}
+				catch (SQLException sqlEx) {}
+				finally {
+					if (rs != null) {
+						try { rs.close(); }	catch (SQLException sqlEx) {}
+						rs = null;
+					}
+				}
+			}
+
+			fillBalloonContent(balloonContent, cityObjectTypeForId, id, lod, connection);
+		}
+		return balloonContent.toString();
+	}
+
+	@Override
+	public void prefetch(List<Long> ids, Connection connection) throws SQLException {
+		if (connection == null) throw new SQLException("Null or invalid connection");
+
+		prefetchedObjectClasses.clear();
+		prefetchedResults.clear();
+		if (ids.isEmpty() || statementList == null) return;
+
+		String parameters = getBatchParameters(ids.size());
+		ResultSet rs = null;
+		Savepoint savepoint = setSavepoint(connection);
+		try {
+			rs = executeBatchQuery("SELECT id, objectclass_id FROM CITYOBJECT WHERE id IN (" + parameters + ")", ids, connection);
+			while (rs.next()) {
+				prefetchedObjectClasses.put(rs.getLong(1), Util.classId2cityObject(rs.getInt(2)));
+			}
+
+			releaseSavepoint(savepoint, connection);
+		}
+		catch (SQLException sqlEx) {
+			rollbackToSavepoint(savepoint, connection);
+			throw sqlEx;
+		}
+		finally {
+			if (rs != null) {
+				try { rs.close(); }	catch (SQLException sqlEx) {}
+				rs = null;
+			}
+		}
+
+		// only statements that have already been converted for a single object can be
+		// prefetched, all others are executed per object as usual
+		for (BalloonStatement statement: statementList) {
+			if (statement.isNested() || !statement.isConverted() || statement.getBatchSQLPrefix() == null) {
+				continue;
+			}
+
+			HashMap<Long, String> results = new HashMap<Long, String>();
+			savepoint = setSavepoint(connection);
 			try {
-				query = connection.prepareStatement("SELECT gmlid, objectclass_id FROM CITYOBJECT WHERE id = ?");
-				query.setLong(1, id);
-				rs = query.executeQuery();
+				rs = executeBatchQuery(statement.getBatchSQLPrefix() + parameters + statement.getBatchSQLSuffix(), ids, connection);
 
-				if (rs.next()) {
-					cityObjectTypeForId = Util.classId2cityObject(rs.getInt("objectclass_id"));
+				StringBuilder result = null;
+				long currentId = 0;
+				int rowNumber = 0;
+				while (rs.next()) {
+					long id = rs.getLong(1);
+					if (result == null || id != currentId) {
+						if (result != null) {
+							results.put(currentId, result.toString());
+						}
+
+						result = new StringBuilder();
+						currentId = id;
+						rowNumber = 0;
+					}
+
+					rowNumber++;
+					if (statement.isForeach()) {
+						appendForeachBody(result, statement, rs, rowNumber, 2);
+					}
+					else {
+						if (rowNumber > 1) {
+							result.append(", ");
+						}
+						appendColumnValue(result, rs, 2);
+					}
+				}
+
+				if (result != null) {
+					results.put(currentId, result.toString());
 				}
+
+				releaseSavepoint(savepoint, connection);
+			}
+			catch (SQLException sqlEx) {
+				// the batched query is not supported for this statement, so undo the
+				// failed query and execute the statement per object from now on
+				rollbackToSavepoint(savepoint, connection);
+				statement.disableBatchSQL();
+				Logger.getInstance().warn("Failed to prefetch balloon content. Querying per object instead: " + sqlEx.getMessage());
+				continue;
 			}
-			catch (SQLException sqlEx) {}
 			finally {
 				if (rs != null) {
 					try { rs.close(); }	catch (SQLException sqlEx) {}
 					rs = null;
 				}
-
-				if (query != null) {
-					try { query.close(); } catch (SQLException sqlEx) {}
-					query = null;
-				}
 			}
 
-			if (cityGMLClassForBalloonHandler != cityObjectTypeForId) {
-				for (BalloonStatement statement: statementList) {
-					statement.setConversionTried(false);
+			for (Long id: ids) {
+				if (!results.containsKey(id)) {
+					results.put(id, statement.isCountAggregate() ? "0" : "");
 				}
-				cityGMLClassForBalloonHandler = cityObjectTypeForId;
 			}
 
-			List<String> resultList = new ArrayList<String>();
+			prefetchedResults.put(statement, results);
+		}
+	}
+
+	@Override
+	public void close() {
+		closeStatements();
+		prefetchedObjectClasses.clear();
+		prefetchedResults.clear();
+	}
+
+	private void fillBalloonContent(StringBuilder balloonContent, CityGMLClass cityObjectType, long id, int lod, Connection connection) {
+		if (cityGMLClassForBalloonHandler != cityObjectType) {
 			for (BalloonStatement statement: statementList) {
-				resultList.add(executeStatement(statement, id, lod, connection));
+				statement.setConversionTried(false);
+				statement.resetNestedStatements();
 			}
+			cityGMLClassForBalloonHandler = cityObjectType;
+		}
 
-			Iterator<String> htmlChunkIterator = htmlChunkList.iterator();
-			Iterator<String> resultIterator = resultList.iterator();
+		List<String> resultList = new ArrayList<String>();
+		for (BalloonStatement statement: statementList) {
+			resultList.add(executeStatement(statement, id, lod, connection));
+		}
 
-			while (htmlChunkIterator.hasNext()) {
-				balloonContent.append(htmlChunkIterator.next());
-				if (resultIterator.hasNext()) {
-					balloonContent.append(resultIterator.next());
-				}
+		Iterator<String> htmlChunkIterator = htmlChunkList.iterator();
+		Iterator<String> resultIterator = resultList.iterator();
+
+		while (htmlChunkIterator.hasNext()) {
+			balloonContent.append(htmlChunkIterator.next());
+			if (resultIterator.hasNext()) {
+				balloonContent.append(resultIterator.next());
 			}
 		}
-		return balloonContent.toString();
 	}
 
 	private String executeStatement(BalloonStatement statement, long id, int lod, Connection connection) {
-		String result = "";
-		
+		StringBuilder result = new StringBuilder();
+
 		if (statement != null) {
-			PreparedStatement preparedStatement = null;
+			String prefetchedResult = getPrefetchedResult(statement, id);
+			if (prefetchedResult != null) {
+				return prefetchedResult;
+			}
+
+			if (statement.isForeach()) {
+				return executeForeachStatement(statement, id, lod, connection);
+			}
+
 			ResultSet rs = null;
 			try {
-				if (statement.isForeach()) {
-					return executeForeachStatement(statement, id, lod, connection);
-				}
-
+				String sqlStatement = null;
 				if (statement.isNested()) {
-					String rawStatement = statement.getRawStatement();
-					List<String> textBetweenNestedStatements = new ArrayList<String>();
-					List<BalloonStatement> nestedStatementList = new ArrayList<BalloonStatement>();
-					int nestingLevel = 0;
-					int lastIndex = 0;
-					int index = 0;
-					int beginOfSubexpression = 0;
-
-					while (nestingLevel > 0 || rawStatement.indexOf(END_TAG, index) > -1) {
-						int indexOfNextStart = rawStatement.indexOf(START_TAG, index);
-						int indexOfNextEnd = rawStatement.indexOf(END_TAG, index);
-						if (indexOfNextStart != -1 && indexOfNextStart < indexOfNextEnd) {
-							nestingLevel++;
-							if (nestingLevel == 1) {
-								textBetweenNestedStatements.add(rawStatement.substring(lastIndex, indexOfNextStart));
-								beginOfSubexpression = indexOfNextStart + START_TAG.length();
-							}
-							index = indexOfNextStart + START_TAG.length();
-						}
-						else {
-							nestingLevel--;
-							index = indexOfNextEnd;
-							if (nestingLevel == 0) {
-								String originalNestedStatement = rawStatement.substring(beginOfSubexpression, index);
-								BalloonStatement nestedStatement = new BalloonStatement(originalNestedStatement);
-								nestedStatement.setNested(originalNestedStatement.contains(START_TAG));
-								nestedStatementList.add(nestedStatement);
-								lastIndex = index + END_TAG.length();
-							}
-							index = index + END_TAG.length();
-						}
-					}
-					textBetweenNestedStatements.add(rawStatement.substring(index));
+					Iterator<String> textIterator = statement.getTextBetweenNestedStatements().iterator();
+					Iterator<BalloonStatement> nestedStatementIterator = statement.getNestedStatements().iterator();
 
 					StringBuilder notNestedAnymore = new StringBuilder();
-					if (nestedStatementList != null) {
-						List<String> resultList = new ArrayList<String>();
-						for (BalloonStatement nestedStatement: nestedStatementList) {
-							resultList.add(executeStatement(nestedStatement, id, lod, connection));
-						}
-
-						Iterator<String> textIterator = textBetweenNestedStatements.iterator();
-						Iterator<String> resultIterator = resultList.iterator();
-
-						while (textIterator.hasNext()) {
-							notNestedAnymore.append(textIterator.next());
-							if (resultIterator.hasNext()) {
-								notNestedAnymore.append(resultIterator.next());
-							}
+					while (textIterator.hasNext()) {
+						notNestedAnymore.append(textIterator.next());
+						if (nestedStatementIterator.hasNext()) {
+							notNestedAnymore.append(executeStatement(nestedStatementIterator.next(), id, lod, connection));
 						}
 					}
 
-					BalloonStatement dummy = new BalloonStatement(notNestedAnymore.toString());
-					preparedStatement = connection.prepareStatement(dummy.getProperSQLStatement(lod));
+					sqlStatement = statement.getResolvedStatement(notNestedAnymore.toString()).getProperSQLStatement(lod);
 				}
 				else { // not nested
-					if (statement.getProperSQLStatement(lod) == null) {
+					sqlStatement = statement.getProperSQLStatement(lod);
+					if (sqlStatement == null) {
 						// malformed expression between proper START_TAG and END_TAG
-						return result; // skip db call, rs and preparedStatement are currently null
+						return result.toString(); // skip db call
 					}
-					preparedStatement = connection.prepareStatement(statement.getProperSQLStatement(lod));
 				}
 
-				for (int i = 1; i <= preparedStatement.getParameterMetaData().getParameterCount(); i++) {
-					preparedStatement.setLong(i, id);
-				}
-				rs = preparedStatement.executeQuery();
+				rs = executeQuery(sqlStatement, id, connection);
+				int rowNumber = 0;
 				while (rs.next()) {
-					if (rs.getRow() > 1) {
-						result = result + ", ";
-					}
-					Object object = rs.getObject(1);
-					if (!rs.wasNull() && object != null) {
-						GeometryObject geomObj = databaseAdapter.getGeometryConverter().getGeometry(object);
-						if (geomObj != null) {
-							int dimension = geomObj.getDimension();
-
-							result = result + "(";
-							for (int ringNo = 0; ringNo < geomObj.getNumElements(); ringNo++) {
-								double[] ring = geomObj.getCoordinates(ringNo);
-
-								for (int i = 0; i < ring.length; i = i + dimension) {
-									for (int j = 0; j < dimension; j++) {
-										result = result + ring[i+j];
-										if (j < dimension - 1) 
-											result = result + ",";
-									}
-
-									if (i+dimension < ring.length)
-										result = result + " ";
-								}	
-
-								if (ringNo < geomObj.getNumElements() - 1)
-									result = result + " ";
-							}
-							result = result + ")";
-						}
-						else {
-							String tmp = rs.getObject(1).toString();
-							if (tmp.indexOf("oracle.sql.TIMESTAMPTZ") >= 0) {
-								tmp =  rs.getTimestamp(1).toString();
-							}
-							result = result + tmp.replaceAll("\"", "&quot;"); // workaround, the JAXB KML marshaler does not escape " properly;
-						}
+					if (++rowNumber > 1) {
+						result.append(", ");
 					}
+					appendColumnValue(result, rs, 1);
 				}
 			}
 			catch (Exception e) {
@@ -1456,69 +1505,23 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			finally {
 				try {
 					if (rs != null) rs.close();
-					if (preparedStatement != null) preparedStatement.close();
 				}
 				catch (Exception e2) {}
 			}
 		}
-		return result;
+		return result.toString();
 	}
 
 	private String executeForeachStatement(BalloonStatement statement, long id, int lod, Connection connection) {
-		String resultBody = "";
-		
-		PreparedStatement preparedStatement = null;
+		StringBuilder resultBody = new StringBuilder();
+
 		ResultSet rs = null;
 		try {
 			if (statement != null && statement.getProperSQLStatement(lod) != null) {
-				preparedStatement = connection.prepareStatement(statement.getProperSQLStatement(lod));
-				for (int i = 1; i <= preparedStatement.getParameterMetaData().getParameterCount(); i++) {
-					preparedStatement.setLong(i, id);
-				}
-
-				rs = preparedStatement.executeQuery();
+				rs = executeQuery(statement.getProperSQLStatement(lod), id, connection);
+				int rowNumber = 0;
 				while (rs.next()) {
-					String iterationBody = statement.getForeachBody();
-					for (int n = 0; n <= statement.getColumnAmount(); n++) {
-						String columnValue = "";
-						if (n == 0) {
-							columnValue = String.valueOf(rs.getRow());
-						}
-						else {
-							Object object = rs.getObject(n);
-							if (!rs.wasNull() && object != null) {
-								GeometryObject geomObj = databaseAdapter.getGeometryConverter().getGeometry(object);
-								if (geomObj != null) {
-									int dimension = geomObj.getDimension();
-
-									columnValue = columnValue + "(";
-									for (int ringNo = 0; ringNo < geomObj.getNumElements(); ringNo++) {
-										double[] ring = geomObj.getCoordinates(ringNo);
-
-										for (int i = 0; i < ring.length; i = i + dimension) {
-											for (int j = 0; j < dimension; j++) {
-												columnValue = columnValue + ring[i+j];
-												if (j < dimension - 1) 
-													columnValue = columnValue + ",";
-											}
-
-											if (i+dimension < ring.length)
-												columnValue = columnValue + " ";
-										}	
-
-										if (ringNo < geomObj.getNumElements() - 1)
-											columnValue = columnValue + " ";
-									}
-									columnValue = columnValue + ")";
-								}
-								else {
-									columnValue = rs.getObject(n).toString().replaceAll("\"", "&quot;"); // workaround, the JAXB KML marshaler does not escape " properly
-								}
-							}
-						}
-						iterationBody = iterationBody.replaceAll("%" + n, columnValue);
-					}
-					resultBody = resultBody + iterationBody;
+					appendForeachBody(resultBody, statement, rs, ++rowNumber, 1);
 				}
 			}
 		}
@@ -1528,14 +1531,157 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 		finally {
 			try {
 				if (rs != null) rs.close();
-				if (preparedStatement != null) preparedStatement.close();
 			}
 			catch (Exception e2) {}
 		}
-		return resultBody;
+		return resultBody.toString();
 	}
 
-	private void fillStatementAndHtmlChunkList(String template) throws Exception {
+	private void appendForeachBody(StringBuilder resultBody, BalloonStatement statement, ResultSet rs, int rowNumber, int firstColumn) throws SQLException {
+		List<String> foreachChunks = statement.getForeachChunks();
+		List<Integer> foreachColumns = statement.getForeachColumns();
+		String[] columnValues = new String[statement.getColumnAmount() + 1];
+		columnValues[0] = String.valueOf(rowNumber);
+
+		for (int i = 0; i < foreachColumns.size(); i++) {
+			resultBody.append(foreachChunks.get(i));
+
+			int n = foreachColumns.get(i);
+			if (columnValues[n] == null) {
+				StringBuilder columnValue = new StringBuilder();
+				appendColumnValue(columnValue, rs, firstColumn + n - 1);
+				columnValues[n] = columnValue.toString();
+			}
+			resultBody.append(columnValues[n]);
+		}
+		resultBody.append(foreachChunks.get(foreachColumns.size()));
+	}
+
+	private void appendColumnValue(StringBuilder result, ResultSet rs, int column) throws SQLException {
+		Object object = rs.getObject(column);
+		if (rs.wasNull() || object == null) {
+			return;
+		}
+
+		GeometryObject geomObj = databaseAdapter.getGeometryConverter().getGeometry(object);
+		if (geomObj != null) {
+			int dimension = geomObj.getDimension();
+
+			result.append('(');
+			for (int ringNo = 0; ringNo < geomObj.getNumElements(); ringNo++) {
+				double[] ring = geomObj.getCoordinates(ringNo);
+
+				for (int i = 0; i < ring.length; i = i + dimension) {
+					for (int j = 0; j < dimension; j++) {
+						result.append(ring[i+j]);
+						if (j < dimension - 1)
+							result.append(',');
+					}
+
+					if (i+dimension < ring.length)
+						result.append(' ');
+				}
+
+				if (ringNo < geomObj.getNumElements() - 1)
+					result.append(' ');
+			}
+			result.append(')');
+		}
+		else {
+			String tmp = object.toString();
+			if (tmp.indexOf("oracle.sql.TIMESTAMPTZ") >= 0) {
+				tmp = rs.getTimestamp(column).toString();
+			}
+			result.append(tmp.replace("\"", "&quot;")); // workaround, the JAXB KML marshaler does not escape " properly
+		}
+	}
+
+	private String getPrefetchedResult(BalloonStatement statement, long id) {
+		if (prefetchedResults.isEmpty()) {
+			return null;
+		}
+
+		HashMap<Long, String> results = prefetchedResults.get(statement);
+		return results != null ? results.get(id) : null;
+	}
+
+	private ResultSet executeQuery(String sqlStatement, long id, Connection connection) throws SQLException {
+		CachedStatement cachedStatement = getCachedStatement(sqlStatement, connection);
+		for (int i = 1; i <= cachedStatement.parameterCount; i++) {
+			cachedStatement.preparedStatement.setLong(i, id);
+		}
+
+		return cachedStatement.preparedStatement.executeQuery();
+	}
+
+	private ResultSet executeBatchQuery(String sqlStatement, List<Long> ids, Connection connection) throws SQLException {
+		PreparedStatement preparedStatement = getCachedStatement(sqlStatement, connection).preparedStatement;
+		for (int i = 0; i < ids.size(); i++) {
+			preparedStatement.setLong(i + 1, ids.get(i));
+		}
+
+		return preparedStatement.executeQuery();
+	}
+
+	private Savepoint setSavepoint(Connection connection) throws SQLException {
+		// a failed query aborts the whole transaction on some databases
+		return connection.getAutoCommit() ? null : connection.setSavepoint();
+	}
+
+	private void releaseSavepoint(Savepoint savepoint, Connection connection) {
+		if (savepoint != null) {
+			try { connection.releaseSavepoint(savepoint); } catch (SQLException sqlEx) {}
+		}
+	}
+
+	private void rollbackToSavepoint(Savepoint savepoint, Connection connection) throws SQLException {
+		if (savepoint != null) {
+			connection.rollback(savepoint);
+		}
+	}
+
+	private String getBatchParameters(int size) {
+		StringBuilder parameters = new StringBuilder("?");
+		for (int i = 1; i < size; i++) {
+			parameters.append(",?");
+		}
+
+		return parameters.toString();
+	}
+
+	private CachedStatement getCachedStatement(String sqlStatement, Connection connection) throws SQLException {
+		if (connection != cachedConnection) {
+			closeStatements();
+			cachedConnection = connection;
+		}
+
+		CachedStatement cachedStatement = cachedStatements.get(sqlStatement);
+		if (cachedStatement == null) {
+			PreparedStatement preparedStatement = connection.prepareStatement(sqlStatement);
+			try {
+				cachedStatement = new CachedStatement(preparedStatement, preparedStatement.getParameterMetaData().getParameterCount());
+			}
+			catch (SQLException sqlEx) {
+				preparedStatement.close();
+				throw sqlEx;
+			}
+
+			cachedStatements.put(sqlStatement, cachedStatement);
+		}
+
+		return cachedStatement;
+	}
+
+	private void closeStatements() {
+		for (CachedStatement cachedStatement: cachedStatements.values()) {
+			cachedStatement.close();
+		}
+
+		cachedStatements.clear();
+		cachedConnection = null;
+	}
+
+	private void fillStatementAndHtmlChunkList(String template, List<BalloonStatement> statementList, List<String> htmlChunkList) throws Exception {
 		// parse like it's 1999
 		int lastIndex = 0;
 		int index = 0;
@@ -1563,6 +1709,9 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 						BalloonStatement statement = new BalloonStatement(originalStatement);
 						statement.setNested(originalStatement.contains(START_TAG));
 						statement.setForeach(originalStatement.toUpperCase().startsWith(FOREACH_TAG));
+						if (statement.isNested()) {
+							statement.parseNestedStatements();
+						}
 						if (statement.isForeach()) {
 							// look for END FOREACH statement
 							index = index + END_TAG.length();
@@ -1601,6 +1750,15 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 		private String tableShortId;
 		private boolean orderByColumnAllowed = true;
 
+		private List<BalloonStatement> nestedStatements;
+		private List<String> textBetweenNestedStatements;
+		private HashMap<String, BalloonStatement> resolvedStatements;
+		private List<String> foreachChunks;
+		private List<Integer> foreachColumns;
+		private String batchSQLPrefix;
+		private String batchSQLSuffix;
+		private boolean countAggregate;
+
 		BalloonStatement (String rawStatement) {
 			this.setRawStatement(rawStatement);
 		}
@@ -1621,18 +1779,115 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			return nested;
 		}
 
+		private void parseNestedStatements() {
+			nestedStatements = new ArrayList<BalloonStatement>();
+			textBetweenNestedStatements = new ArrayList<String>();
+			resolvedStatements = new HashMap<String, BalloonStatement>();
+
+			int nestingLevel = 0;
+			int lastIndex = 0;
+			int index = 0;
+			int beginOfSubexpression = 0;
+
+			while (nestingLevel > 0 || rawStatement.indexOf(END_TAG, index) > -1) {
+				int indexOfNextStart = rawStatement.indexOf(START_TAG, index);
+				int indexOfNextEnd = rawStatement.indexOf(END_TAG, index);
+				if (indexOfNextStart != -1 && indexOfNextStart < indexOfNextEnd) {
+					nestingLevel++;
+					if (nestingLevel == 1) {
+						textBetweenNestedStatements.add(rawStatement.substring(lastIndex, indexOfNextStart));
+						beginOfSubexpression = indexOfNextStart + START_TAG.length();
+					}
+					index = indexOfNextStart + START_TAG.length();
+				}
+				else {
+					nestingLevel--;
+					index = indexOfNextEnd;
+					if (nestingLevel == 0) {
+						String originalNestedStatement = rawStatement.substring(beginOfSubexpression, index);
+						BalloonStatement nestedStatement = new BalloonStatement(originalNestedStatement);
+						nestedStatement.setNested(originalNestedStatement.contains(START_TAG));
+						if (nestedStatement.isNested()) {
+							nestedStatement.parseNestedStatements();
+						}
+						nestedStatements.add(nestedStatement);
+						lastIndex = index + END_TAG.length();
+					}
+					index = index + END_TAG.length();
+				}
+			}
+			textBetweenNestedStatements.add(rawStatement.substring(index));
+		}
+
+		private List<BalloonStatement> getNestedStatements() {
+			return nestedStatements;
+		}
+
+		private List<String> getTextBetweenNestedStatements() {
+			return textBetweenNestedStatements;
+		}
+
+		private BalloonStatement getResolvedStatement(String statement) {
+			// the same nested results lead to the same statement, so its conversion is reused
+			BalloonStatement resolvedStatement = resolvedStatements.get(statement);
+			if (resolvedStatement == null) {
+				if (resolvedStatements.size() >= MAX_RESOLVED_STATEMENTS) {
+					resolvedStatements.clear();
+				}
+
+				resolvedStatement = new BalloonStatement(statement);
+				resolvedStatements.put(statement, resolvedStatement);
+			}
+
+			return resolvedStatement;
+		}
+
+		private void resetNestedStatements() {
+			if (nested) {
+				resolvedStatements.clear();
+				for (BalloonStatement nestedStatement: nestedStatements) {
+					nestedStatement.setProperSQLStatement(null);
+					nestedStatement.setConversionTried(false);
+					nestedStatement.resetNestedStatements();
+				}
+			}
+		}
+
 		private void setProperSQLStatement(String properSQLStatement) {
 			this.properSQLStatement = properSQLStatement;
 		}
 
 		private String getProperSQLStatement(int lod) throws Exception {
 			if (!conversionTried && properSQLStatement == null) {
+				foreachChunks = null;
+				foreachColumns = null;
 				this.convertStatementToProperSQL(lod);
 				conversionTried = true;
 			}
 			return properSQLStatement;
 		}
 
+		private boolean isConverted() {
+			return properSQLStatement != null;
+		}
+
+		private String getBatchSQLPrefix() {
+			return batchSQLPrefix;
+		}
+
+		private String getBatchSQLSuffix() {
+			return batchSQLSuffix;
+		}
+
+		private void disableBatchSQL() {
+			batchSQLPrefix = null;
+			batchSQLSuffix = null;
+		}
+
+		private boolean isCountAggregate() {
+			return countAggregate;
+		}
+
 		private void setConversionTried(boolean conversionTried) {
 			this.conversionTried = conversionTried;
 		}
@@ -1653,6 +1908,64 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			this.foreachBody = foreachBody;
 		}
 
+		private List<String> getForeachChunks() {
+			if (foreachChunks == null) {
+				tokenizeForeachBody();
+			}
+			return foreachChunks;
+		}
+
+		private List<Integer> getForeachColumns() {
+			if (foreachColumns == null) {
+				tokenizeForeachBody();
+			}
+			return foreachColumns;
+		}
+
+		private void tokenizeForeachBody() {
+			// split the body at %n placeholders, n being the row number (0) or a column index
+			List<String> chunks = new ArrayList<String>();
+			List<Integer> columns = new ArrayList<Integer>();
+
+			int lastIndex = 0;
+			int index = 0;
+			while ((index = foreachBody.indexOf('%', index)) != -1) {
+				int column = -1;
+				int end = index + 1;
+				int value = 0;
+				for (int i = index + 1; i < foreachBody.length(); i++) {
+					char c = foreachBody.charAt(i);
+					if (c < '0' || c > '9') {
+						break;
+					}
+
+					value = value * 10 + (c - '0');
+					if (value > columnAmount) {
+						break;
+					}
+
+					column = value;
+					end = i + 1;
+					if (value == 0) {
+						break;
+					}
+				}
+
+				if (column == -1) {
+					index++;
+					continue;
+				}
+
+				chunks.add(foreachBody.substring(lastIndex, index));
+				columns.add(column);
+				lastIndex = index = end;
+			}
+			chunks.add(foreachBody.substring(lastIndex));
+
+			foreachChunks = chunks;
+			foreachColumns = columns;
+		}
+
 		private int getColumnAmount() {
 			return columnAmount;
 		}
@@ -1668,6 +1981,9 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			String aggregateFunction = null;
 			List<String> columns = null;
 			String condition = null;
+			batchSQLPrefix = null;
+			batchSQLSuffix = null;
+			countAggregate = false;
 
 			int index = rawStatement.indexOf('/');
 			if (index == -1) {
@@ -1846,10 +2162,13 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 					try {
 						rownum = Integer.parseInt(condition);
 					}
-					catch (Exception e) { // not a number, but a logical condition 
+					catch (Exception e) { // not a number, but a logical condition
 						sqlStatement = sqlStatement + " AND " + tableShortId + "." + condition;
 					}
-				}				
+				}
+				if (aggregateFunction == null || (aggregateString.length() > 0 && rownum == 0)) {
+					prepareBatchStatement(sqlStatement, aggregateFunction, columns.get(0));
+				}
 				if (aggregateFunction == null) {
 					if (orderByColumnAllowed) {
 						sqlStatement = sqlStatement + " ORDER by " + tableShortId + "." + columns.get(0);
@@ -1919,6 +2238,43 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			setProperSQLStatement(sqlStatement);
 		}
 
+		private void prepareBatchStatement(String sqlStatement, String aggregateFunction, String orderByColumn) {
+			// rewrite statements selecting by a single object id into an IN (...) query
+			// that returns the object id as first column
+			int parameter = sqlStatement.indexOf('?');
+			if (parameter == -1 || sqlStatement.indexOf('?', parameter + 1) != -1 ||
+					!sqlStatement.startsWith("SELECT ") ||
+					sqlStatement.toUpperCase().contains(" UNION")) {
+				return;
+			}
+
+			int depth = 0;
+			for (int i = 0; i < parameter; i++) {
+				if (sqlStatement.charAt(i) == '(') depth++;
+				else if (sqlStatement.charAt(i) == ')') depth--;
+			}
+
+			Matcher matcher = BATCH_PARAMETER_PATTERN.matcher(sqlStatement.substring(0, parameter + 1));
+			if (depth != 0 || !matcher.find()) {
+				return;
+			}
+
+			String idColumn = matcher.group(1);
+			batchSQLPrefix = "SELECT " + idColumn + ", " + sqlStatement.substring("SELECT ".length(), matcher.start(1)) + idColumn + " IN (";
+			batchSQLSuffix = ")" + sqlStatement.substring(parameter + 1);
+
+			if (aggregateFunction != null) {
+				batchSQLSuffix = batchSQLSuffix + " GROUP BY " + idColumn;
+				countAggregate = COUNT.equalsIgnoreCase(aggregateFunction);
+			}
+			else {
+				batchSQLSuffix = batchSQLSuffix + " ORDER by " + idColumn;
+				if (orderByColumnAllowed) {
+					batchSQLSuffix = batchSQLSuffix + ", " + tableShortId + "." + orderByColumn;
+				}
+			}
+		}
+
 		private String sqlStatementForBuilding(String table,
 				List<String> columns,
 				String aggregateString,
@@ -3305,6 +3661,28 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 
 	}
 	
+	private static class CachedStatement {
+		private final PreparedStatement preparedStatement;
+		private final int parameterCount;
+
+		private CachedStatement(PreparedStatement preparedStatement, int parameterCount) {
+			this.preparedStatement = preparedStatement;
+			this.parameterCount = parameterCount;
+		}
+
+		private void close() {
+			try {
+				preparedStatement.close();
+			}
+			catch (SQLException sqlEx) {}
+		}
+	}
+
+	private static class CompiledTemplate {
+		private final List<BalloonStatement> statementList = new ArrayList<BalloonStatement>();
+		private final List<String> htmlChunkList = new ArrayList<String>();
+	}
+
 	private String getCentroidInWGS84ById() {
 		int srid = databaseAdapter.getConnectionMetaData().getReferenceSystem().is3D() ? databaseAdapter.getUtil().getWGS843D().getSrid() : 4326;
 		switch (databaseAdapter.getDatabaseType()) {
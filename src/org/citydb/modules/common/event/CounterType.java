@@ -31,5 +31,7 @@ public enum CounterType {
 	TEXTURE_IMAGE,
 	TOPLEVEL_FEATURE,
 	FILE,
-	REMAINING_TILES
+	REMAINING_TILES,
+	COLLADA_QUERY,
+	SKIPPED_CHUNK
 }
@@ -30,7 +30,10 @@ package org.citydb.modules.kml.concurrent;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.xml.bind.JAXBContext;
@@ -56,25 +59,33 @@ import org.citydb.modules.kml.database.Building;
 import org.citydb.modules.kml.database.CityFurniture;
 import org.citydb.modules.kml.database.CityObjectGroup;
 import org.citydb.modules.kml.database.ColladaBundle;
+import org.citydb.modules.kml.database.ColladaGeometryBatch;
+import org.citydb.modules.kml.database.ElevationProvider;
 import org.citydb.modules.kml.database.ElevationServiceHandler;
 import org.citydb.modules.kml.database.GenericCityObject;
+import org.citydb.modules.kml.database.GoogleElevationProvider;
 import org.citydb.modules.kml.database.KmlExporterManager;
 import org.citydb.modules.kml.database.KmlGenericObject;
 import org.citydb.modules.kml.database.KmlSplittingResult;
 import org.citydb.modules.kml.database.LandUse;
 import org.citydb.modules.kml.database.PlantCover;
 import org.citydb.modules.kml.database.Relief;
+import org.citydb.modules.kml.database.ReliefElevationProvider;
 import org.citydb.modules.kml.database.SolitaryVegetationObject;
 import org.citydb.modules.kml.database.Transportation;
 import org.citydb.modules.kml.database.Tunnel;
 import org.citydb.modules.kml.database.WaterBody;
 import org.citydb.modules.kml.util.ExportTracker;
+import org.citydb.modules.kml.util.TextureAtlasGenerator;
+import org.citydb.modules.kml.util.TextureImageCache;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.util.xml.SAXEventBuffer;
 
 import net.opengis.kml._2.ObjectFactory;
 
 public class KmlExportWorker extends Worker<KmlSplittingResult> {
+	private static final int BALLOON_PREFETCH_SIZE = 100;
+
 	private final ReentrantLock runLock = new ReentrantLock();
 	private volatile boolean shouldRun = true;
 
@@ -87,26 +98,37 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 	private Connection connection;
 	private ExportFilterConfig filterConfig;
 	private KmlExporterManager kmlExporterManager;
+	private TextureAtlasGenerator textureAtlasGenerator;
 	private KmlGenericObject singleObject = null;
+	private final boolean prefetchBalloonContent;
+	private final int colladaBatchSize;
+	private final ColladaGeometryBatch colladaGeometryBatch;
 
 	private EnumMap<CityGMLClass, Integer>objectGroupCounter = new EnumMap<CityGMLClass, Integer>(CityGMLClass.class);
 	private EnumMap<CityGMLClass, Integer>objectGroupSize = new EnumMap<CityGMLClass, Integer>(CityGMLClass.class);
 	private EnumMap<CityGMLClass, KmlGenericObject>objectGroup = new EnumMap<CityGMLClass, KmlGenericObject>(CityGMLClass.class);
 	private EnumMap<CityGMLClass, BalloonTemplateHandler>balloonTemplateHandler = new EnumMap<CityGMLClass, BalloonTemplateHandler>(CityGMLClass.class);
 
+	private ElevationProvider elevationProvider;
 	private ElevationServiceHandler elevationServiceHandler;
 
 	public KmlExportWorker(JAXBContext jaxbKmlContext,
 			JAXBContext jaxbColladaContext,
 			DatabaseConnectionPool dbConnectionPool,
 			WorkerPool<SAXEventBuffer> ioWriterPool,
+			TextureAtlasGenerator textureAtlasGenerator,
+			TextureImageCache textureImageCache,
+			ElevationProvider sharedElevationProvider,
 			ExportTracker tracker,
 			ObjectFactory kmlFactory,
 			Config config,
 			EventDispatcher eventDispatcher) throws SQLException {
+		this.textureAtlasGenerator = textureAtlasGenerator;
 		this.kmlFactory = kmlFactory;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
+		prefetchBalloonContent = config.getProject().getKmlExporter().isPrefetchBalloonContent();
+		colladaBatchSize = Math.max(1, config.getProject().getKmlExporter().getColladaBatchSize());
 
 		connection = dbConnectionPool.getConnection();
 		connection.setAutoCommit(false);
@@ -119,6 +141,7 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 		
 		databaseAdapter = dbConnectionPool.getActiveDatabaseAdapter();
 		textureExportAdapter = databaseAdapter.getSQLAdapter().getBlobExportAdapter(connection, BlobType.TEXTURE_IMAGE);
+		colladaGeometryBatch = new ColladaGeometryBatch(connection, eventDispatcher);
 
 		kmlExporterManager = new KmlExporterManager(jaxbKmlContext,
 				jaxbColladaContext,
@@ -126,10 +149,24 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 				tracker,
 				kmlFactory,
 				textureExportAdapter,
+				textureImageCache,
 				eventDispatcher,
 				config);
 		
-		elevationServiceHandler = new ElevationServiceHandler();
+		// a shared elevation grid is owned by the controller
+		switch (config.getProject().getKmlExporter().getElevationSource()) {
+		case DATABASE_RELIEF:
+			elevationProvider = new ReliefElevationProvider(connection, databaseAdapter);
+			break;
+		case GOOGLE_ELEVATION_API:
+			elevationProvider = new GoogleElevationProvider();
+			break;
+		default:
+			break;
+		}
+
+		elevationServiceHandler = new ElevationServiceHandler(elevationProvider != null ? elevationProvider : sharedElevationProvider,
+				connection, databaseAdapter.getSQLAdapter());
 		
 		filterConfig = config.getProject().getKmlExporter().getFilter();
 		ColladaOptions colladaOptions = null; 
@@ -258,15 +295,30 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 	public void run() {
 		try {
 			if (firstWork != null) {
-				doWork(firstWork);
+				List<KmlSplittingResult> works = new ArrayList<KmlSplittingResult>();
+				works.add(firstWork);
+				doWork(works);
 				firstWork = null;
 			}
 
+			// several works are taken at once so that their balloon contents
+			// and COLLADA geometries can be fetched together
+			int maxWorks = Math.max(prefetchBalloonContent ? BALLOON_PREFETCH_SIZE : 1, colladaBatchSize);
+
 			KmlSplittingResult work = null; 
 			while (shouldRun) {
 				try {
 					work = workQueue.take();
-					doWork(work);
+					List<KmlSplittingResult> works = new ArrayList<KmlSplittingResult>();
+					works.add(work);
+					while (works.size() < maxWorks && (work = workQueue.poll()) != null) {
+						works.add(work);
+					}
+
+					if (prefetchBalloonContent)
+						prefetchBalloonContent(works);
+
+					doWork(works);
 				}
 				catch (InterruptedException ie) {
 					// re-check state
@@ -293,6 +345,14 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 			eventDispatcher.triggerEvent(new FeatureCounterEvent(kmlExporterManager.getFeatureCounter(), this));
 		}
 		finally {
+			for (BalloonTemplateHandler currentBalloonTemplateHandler: balloonTemplateHandler.values()) {
+				currentBalloonTemplateHandler.close();
+			}
+
+			elevationServiceHandler.close();
+			if (elevationProvider != null)
+				elevationProvider.close();
+
 			if (textureExportAdapter != null) {
 				try {
 					textureExportAdapter.close();
@@ -313,173 +373,209 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 		}
 	}
 
-	private void doWork(KmlSplittingResult work) {
+	private void doWork(List<KmlSplittingResult> works) {
 		final ReentrantLock runLock = this.runLock;
 		runLock.lock();
 
-		CityGMLClass featureClass = work.getCityObjectType();
 		try {
-			switch (featureClass) {
-			case BUILDING:
-				singleObject = new Building(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case WATER_BODY:
-			case WATER_CLOSURE_SURFACE:
-			case WATER_GROUND_SURFACE:
-			case WATER_SURFACE:
-				singleObject = new WaterBody(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case LAND_USE:
-				singleObject = new LandUse(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case SOLITARY_VEGETATION_OBJECT:
-				singleObject = new SolitaryVegetationObject(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case PLANT_COVER:
-				singleObject = new PlantCover(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case TRAFFIC_AREA:
-			case AUXILIARY_TRAFFIC_AREA:
-			case TRANSPORTATION_COMPLEX:
-			case TRACK:
-			case RAILWAY:
-			case ROAD:
-			case SQUARE:
-				singleObject = new Transportation(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-				
-			case RELIEF_FEATURE:
-				singleObject = new Relief(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case GENERIC_CITY_OBJECT:
-				singleObject = new GenericCityObject(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case CITY_FURNITURE:
-				singleObject = new CityFurniture(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case CITY_OBJECT_GROUP:
-				singleObject = new CityObjectGroup(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-			case BRIDGE:
-				singleObject = new Bridge(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-			case TUNNEL:
-				singleObject = new Tunnel(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-			default:
-				break;
-
+			List<KmlSplittingResult> readWorks = new ArrayList<KmlSplittingResult>();
+			List<KmlGenericObject> readObjects = new ArrayList<KmlGenericObject>();
+
+			for (KmlSplittingResult work: works) {
+				readObject(work);
+				readWorks.add(work);
+				readObjects.add(singleObject);
+
+				if (readObjects.size() == colladaBatchSize) {
+					groupObjects(readWorks, readObjects);
+					readWorks.clear();
+					readObjects.clear();
+				}
 			}
 
-			singleObject.read(work);
+			groupObjects(readWorks, readObjects);
+		}
+		finally {
+			runLock.unlock();
+		}
+	}
+
+	private void readObject(KmlSplittingResult work) {
+		CityGMLClass featureClass = work.getCityObjectType();
+		switch (featureClass) {
+		case BUILDING:
+			singleObject = new Building(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case WATER_BODY:
+		case WATER_CLOSURE_SURFACE:
+		case WATER_GROUND_SURFACE:
+		case WATER_SURFACE:
+			singleObject = new WaterBody(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case LAND_USE:
+			singleObject = new LandUse(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case SOLITARY_VEGETATION_OBJECT:
+			singleObject = new SolitaryVegetationObject(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case PLANT_COVER:
+			singleObject = new PlantCover(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case TRAFFIC_AREA:
+		case AUXILIARY_TRAFFIC_AREA:
+		case TRANSPORTATION_COMPLEX:
+		case TRACK:
+		case RAILWAY:
+		case ROAD:
+		case SQUARE:
+			singleObject = new Transportation(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+			
+		case RELIEF_FEATURE:
+			singleObject = new Relief(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case GENERIC_CITY_OBJECT:
+			singleObject = new GenericCityObject(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case CITY_FURNITURE:
+			singleObject = new CityFurniture(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case CITY_OBJECT_GROUP:
+			singleObject = new CityObjectGroup(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+		case BRIDGE:
+			singleObject = new Bridge(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+		case TUNNEL:
+			singleObject = new Tunnel(connection,
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+		default:
+			break;
+
+		}
+
+		if (work.getDisplayForm().getForm() == DisplayForm.COLLADA)
+			singleObject.setColladaGeometryBatch(colladaGeometryBatch);
+
+		singleObject.read(work);
+	}
+
+	private void groupObjects(List<KmlSplittingResult> works, List<KmlGenericObject> objects) {
+		// fetch the COLLADA geometries of all objects read so far
+		colladaGeometryBatch.execute();
+
+		for (int i = 0; i < works.size(); i++) {
+			KmlSplittingResult work = works.get(i);
+			KmlGenericObject currentObject = objects.get(i);
+			CityGMLClass featureClass = work.getCityObjectType();
 
 			if (!work.isCityObjectGroup() && 
 					work.getDisplayForm().getForm() == DisplayForm.COLLADA &&
-					singleObject.getGmlId() != null) { // object is filled
+					currentObject.getGmlId() != null) { // object is filled
 
 				// correction for some CityGML Types exported together
 				if (featureClass == CityGMLClass.PLANT_COVER) featureClass = CityGMLClass.SOLITARY_VEGETATION_OBJECT;
@@ -497,11 +593,11 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 
 				KmlGenericObject currentObjectGroup = objectGroup.get(featureClass);
 				if (currentObjectGroup == null) {
-					currentObjectGroup = singleObject;
+					currentObjectGroup = currentObject;
 					objectGroup.put(featureClass, currentObjectGroup);
 				}
 				else {
-					currentObjectGroup.appendObject(singleObject);
+					currentObjectGroup.appendObject(currentObject);
 				}
 
 				objectGroupCounter.put(featureClass, objectGroupCounter.get(featureClass).intValue() + 1);
@@ -513,9 +609,6 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 				}
 			}
 		}
-		finally {
-			runLock.unlock();
-		}
 	}
 
 	private void sendGroupToFile(KmlGenericObject objectGroup) {
@@ -531,20 +624,22 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 				if (colladaOptions.isScaleImages()) {
 					imageScaleFactor = colladaOptions.getImageScaleFactor();
 				}
-				objectGroup.createTextureAtlas(colladaOptions.getPackingAlgorithm(),
+				objectGroup.createTextureAtlas(textureAtlasGenerator,
+						colladaOptions.getPackingAlgorithm(),
 						imageScaleFactor,
 						colladaOptions.isTextureAtlasPots());
 			}
 			else if (colladaOptions.isScaleImages()) {
 				imageScaleFactor = colladaOptions.getImageScaleFactor();
 				if (imageScaleFactor < 1) {
-					objectGroup.resizeAllImagesByFactor(imageScaleFactor);
+					objectGroup.resizeAllImagesByFactor(textureAtlasGenerator, imageScaleFactor);
 				}
 			}
 
 			ColladaBundle colladaBundle = new ColladaBundle();
 			colladaBundle.setCollada(objectGroup.generateColladaTree());
 			colladaBundle.setTexImages(objectGroup.getTexImages());
+			colladaBundle.setTexImageSources(objectGroup.getTexImageSources());
 			colladaBundle.setUnsupportedTexImageIds(objectGroup.getUnsupportedTexImageIds());
 			colladaBundle.setPlacemark(objectGroup.createPlacemarkForColladaModel());
 			colladaBundle.setGmlId(objectGroup.getGmlId());
@@ -564,11 +659,17 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 
 		if (currentBalloonTemplateHandler == null) {
 			Balloon balloonSettings = getBalloonSettings(cityObjectType);
-			if (balloonSettings != null &&	balloonSettings.isIncludeDescription() &&
-					balloonSettings.getBalloonContentMode() != BalloonContentMode.GEN_ATTRIB) {
-				String balloonTemplateFilename = balloonSettings.getBalloonContentTemplateFile();
-				if (balloonTemplateFilename != null && balloonTemplateFilename.length() > 0) {
-					currentBalloonTemplateHandler = databaseAdapter.getBalloonTemplateHandler(new File(balloonTemplateFilename));
+			if (balloonSettings != null &&	balloonSettings.isIncludeDescription()) {
+				if (balloonSettings.getBalloonContentMode() != BalloonContentMode.GEN_ATTRIB) {
+					String balloonTemplateFilename = balloonSettings.getBalloonContentTemplateFile();
+					if (balloonTemplateFilename != null && balloonTemplateFilename.length() > 0) {
+						currentBalloonTemplateHandler = databaseAdapter.getBalloonTemplateHandler(new File(balloonTemplateFilename));
+						balloonTemplateHandler.put(cityObjectType, currentBalloonTemplateHandler);
+					}
+				}
+				else {
+					// templates from generic attributes are compiled and cached by the handler
+					currentBalloonTemplateHandler = databaseAdapter.getBalloonTemplateHandler((String)null);
 					balloonTemplateHandler.put(cityObjectType, currentBalloonTemplateHandler);
 				}
 			}
@@ -577,6 +678,30 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 		return currentBalloonTemplateHandler;
 	}
 
+	private void prefetchBalloonContent(List<KmlSplittingResult> works) {
+		EnumMap<CityGMLClass, List<Long>> ids = new EnumMap<CityGMLClass, List<Long>>(CityGMLClass.class);
+		for (KmlSplittingResult work: works) {
+			List<Long> featureIds = ids.get(work.getCityObjectType());
+			if (featureIds == null) {
+				featureIds = new ArrayList<Long>();
+				ids.put(work.getCityObjectType(), featureIds);
+			}
+			featureIds.add(work.getId());
+		}
+
+		for (Entry<CityGMLClass, List<Long>> entry: ids.entrySet()) {
+			BalloonTemplateHandler currentBalloonTemplateHandler = getBalloonTemplateHandler(entry.getKey());
+			if (currentBalloonTemplateHandler != null) {
+				try {
+					currentBalloonTemplateHandler.prefetch(entry.getValue(), connection);
+				}
+				catch (SQLException e) {
+					// balloons are filled per object
+				}
+			}
+		}
+	}
+
 	private Balloon getBalloonSettings(CityGMLClass cityObjectType) {
 		Balloon balloonSettings = null;
 		switch (cityObjectType) {
@@ -40,8 +40,11 @@ import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.log.Logger;
+import org.citydb.modules.kml.database.ElevationProvider;
 import org.citydb.modules.kml.database.KmlSplittingResult;
 import org.citydb.modules.kml.util.ExportTracker;
+import org.citydb.modules.kml.util.TextureAtlasGenerator;
+import org.citydb.modules.kml.util.TextureImageCache;
 import org.citygml4j.util.xml.SAXEventBuffer;
 
 public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult> {
@@ -51,6 +54,9 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 	private final JAXBContext jaxbColladaContext;
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final WorkerPool<SAXEventBuffer> ioWriterPool;
+	private final TextureAtlasGenerator textureAtlasGenerator;
+	private final TextureImageCache textureImageCache;
+	private final ElevationProvider elevationProvider;
 	private final ExportTracker tracker;
 	private final ObjectFactory kmlFactory;
 	private final Config config;
@@ -61,6 +67,9 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 			JAXBContext jaxbColladaContext,
 			DatabaseConnectionPool dbConnectionPool,
 			WorkerPool<SAXEventBuffer> ioWriterPool,
+			TextureAtlasGenerator textureAtlasGenerator,
+			TextureImageCache textureImageCache,
+			ElevationProvider elevationProvider,
 			ExportTracker tracker,
 			ObjectFactory kmlFactory,
 			Config config,
@@ -69,6 +78,9 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 		this.jaxbColladaContext = jaxbColladaContext;
 		this.dbConnectionPool = dbConnectionPool;
 		this.ioWriterPool = ioWriterPool;
+		this.textureAtlasGenerator = textureAtlasGenerator;
+		this.textureImageCache = textureImageCache;
+		this.elevationProvider = elevationProvider;
 		this.tracker = tracker;
 		this.kmlFactory = kmlFactory;
 		this.config = config;
@@ -85,6 +97,9 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 					jaxbColladaContext,
 					dbConnectionPool,
 					ioWriterPool,
+					textureAtlasGenerator,
+					textureImageCache,
+					elevationProvider,
 					tracker,
 					kmlFactory,
 					config,
@@ -28,20 +28,17 @@
 package org.citydb.modules.kml.controller;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -68,6 +65,7 @@ import org.citydb.config.project.filter.TilingMode;
 import org.citydb.config.project.kmlExporter.Balloon;
 import org.citydb.config.project.kmlExporter.BalloonContentMode;
 import org.citydb.config.project.kmlExporter.DisplayForm;
+import org.citydb.config.project.kmlExporter.ElevationSource;
 import org.citydb.config.project.kmlExporter.PointAndCurve;
 import org.citydb.config.project.kmlExporter.PointDisplayMode;
 import org.citydb.database.DatabaseConnectionPool;
@@ -87,18 +85,26 @@ import org.citydb.modules.kml.database.Bridge;
 import org.citydb.modules.kml.database.Building;
 import org.citydb.modules.kml.database.CityFurniture;
 import org.citydb.modules.kml.database.CityObjectGroup;
+import org.citydb.modules.kml.database.ElevationProvider;
 import org.citydb.modules.kml.database.GenericCityObject;
+import org.citydb.modules.kml.database.GridElevationProvider;
 import org.citydb.modules.kml.database.KmlSplitter;
 import org.citydb.modules.kml.database.KmlSplittingResult;
 import org.citydb.modules.kml.database.LandUse;
 import org.citydb.modules.kml.database.Relief;
 import org.citydb.modules.kml.database.SolitaryVegetationObject;
+import org.citydb.modules.kml.database.TileChangeDetector;
 import org.citydb.modules.kml.database.Transportation;
 import org.citydb.modules.kml.database.Tunnel;
 import org.citydb.modules.kml.database.WaterBody;
 import org.citydb.modules.kml.datatype.TypeAttributeValueEnum;
 import org.citydb.modules.kml.util.CityObject4JSON;
 import org.citydb.modules.kml.util.ExportTracker;
+import org.citydb.modules.kml.util.KmzArchiveWriter;
+import org.citydb.modules.kml.util.TextureAtlasGenerator;
+import org.citydb.modules.kml.util.TextureImageCache;
+import org.citydb.modules.kml.util.TileManifestReader;
+import org.citydb.modules.kml.util.TileManifestWriter;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.util.xml.SAXEventBuffer;
@@ -143,6 +149,9 @@ public class KmlExporter implements EventHandler {
 	private ObjectFactory kmlFactory; 
 	private WorkerPool<KmlSplittingResult> kmlWorkerPool;
 	private SingleWorkerPool<SAXEventBuffer> ioWriterPool;
+	private TextureAtlasGenerator textureAtlasGenerator;
+	private TextureImageCache textureImageCache;
+	private ElevationProvider elevationProvider;
 	private KmlSplitter kmlSplitter;
 
 	private volatile boolean shouldRun = true;
@@ -150,8 +159,6 @@ public class KmlExporter implements EventHandler {
 
 	private final String ENCODING = "UTF-8";
 	private final Charset CHARSET = Charset.forName(ENCODING);
-	private final String TEMP_FOLDER = "__temp";
-	private File lastTempFolder = null;
 	private GeometryObject globeWGS84BboxGeometry;
 	private BoundingBox globeWGS84Bbox; 
 	private int rows = 1;
@@ -160,6 +167,7 @@ public class KmlExporter implements EventHandler {
 	private EnumMap<CityGMLClass, Long> featureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
 	private EnumMap<CityGMLClass, Long> totalFeatureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
 	private long geometryCounter;
+	private long colladaQueryCounter;
 
 	public KmlExporter (JAXBContext jaxbKmlContext,
 			JAXBContext jaxbColladaContext,
@@ -183,6 +191,7 @@ public class KmlExporter implements EventHandler {
 		// adding listener
 		eventDispatcher.addEventHandler(EventType.FEATURE_COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.GEOMETRY_COUNTER, this);
+		eventDispatcher.addEventHandler(EventType.COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 
 		// checking workspace
@@ -239,7 +248,7 @@ public class KmlExporter implements EventHandler {
 			return false;	
 
 		// check collada2gltf tool
-		if (config.getProject().getKmlExporter().isCreateGltfModel()) {
+		if (config.getProject().getKmlExporter().isCreateGltfModel() && config.getProject().getKmlExporter().isUseGltfConverter()) {
 			File file = new File(config.getProject().getKmlExporter().getPathOfGltfConverter());
 
 			if (!file.exists())
@@ -302,6 +311,64 @@ public class KmlExporter implements EventHandler {
 			path = path.substring(0, path.lastIndexOf(File.separator));
 		}
 
+		// in incremental mode, tiles without changed city objects are kept from the previous export
+		boolean[][] affectedTiles = null;
+		TileManifestReader previousManifest = null;
+		TileManifestWriter manifestWriter = null;
+		if (isBBoxActive) {
+			File manifestFile = new File(path, fileName + ".manifest");
+
+			if (config.getProject().getKmlExporter().isIncrementalExport()) {
+				String settings = getManifestSettings(fileExtension);
+				TileChangeDetector tileChangeDetector = null;
+
+				try {
+					tileChangeDetector = new TileChangeDetector(dbPool, globeWGS84Bbox, rows, columns, config);
+					long lastModification = tileChangeDetector.getLastModificationDate();
+
+					if (manifestFile.exists()) {
+						try {
+							previousManifest = new TileManifestReader(manifestFile);
+							if (settings.equals(previousManifest.getSettings()))
+								affectedTiles = tileChangeDetector.getAffectedTiles(manifestFile);
+							else
+								LOG.info("Export settings differ from the previous export. All tiles will be generated.");
+						} catch (IOException e) {
+							LOG.warn("Failed to read manifest file " + manifestFile.getName() + ". All tiles will be generated.");
+						}
+					}
+
+					manifestWriter = new TileManifestWriter(manifestFile, settings, lastModification);
+				} catch (SQLException e) {
+					throw new KmlExportException("Failed to query changed city objects.", e);
+				} catch (IOException e) {
+					throw new KmlExportException("Failed to create manifest file " + manifestFile.getName() + ".", e);
+				} finally {
+					if (tileChangeDetector != null)
+						tileChangeDetector.close();
+
+					if (affectedTiles == null && previousManifest != null) {
+						try { previousManifest.close(); } catch (IOException e) {}
+						previousManifest = null;
+					}
+				}
+
+				if (affectedTiles != null) {
+					int unchangedTiles = 0;
+					for (int i = 0; i < rows; i++) {
+						for (int j = 0; j < columns; j++) {
+							if (!affectedTiles[i][j])
+								unchangedTiles++;
+						}
+					}
+
+					remainingTiles -= unchangedTiles * config.getProject().getKmlExporter().getActiveDisplayFormsAmount(config.getProject().getKmlExporter().getBuildingDisplayForms());
+					LOG.info(String.valueOf(rows * columns - unchangedTiles) + " of " + (rows * columns) + " tiles are affected by changed city objects.");
+				}
+			} else
+				manifestFile.delete();
+		}
+
 		// start writing KML master file if required
 		SAXWriter masterFileWriter = null;
 		if (isBBoxActive) {
@@ -330,296 +397,336 @@ public class KmlExporter implements EventHandler {
 
 		long start = System.currentTimeMillis();
 
-		// iterate over tiles
-		for (int i = 0; shouldRun && i < rows; i++) {
-			for (int j = 0; shouldRun && j < columns; j++) {
-
-				// track exported objects
-				ExportTracker tracker = new ExportTracker();
-
-				// set active tile and get tile extent in WGS84
-				GeometryObject wgs84Tile = null;
-				if (isBBoxActive && tiling.getMode() != TilingMode.NO_TILING) {
-					exportFilter.getBoundingBoxFilter().setActiveTile(i, j);
-					BoundingBox wgs84Bbox = exportFilter.getBoundingBoxFilter().getFilterState();
-					wgs84Tile = GeometryObject.createPolygon(new double[]{
-							wgs84Bbox.getLowerCorner().getX(), wgs84Bbox.getLowerCorner().getY(),
-							wgs84Bbox.getUpperCorner().getX(), wgs84Bbox.getLowerCorner().getY(),
-							wgs84Bbox.getUpperCorner().getX(), wgs84Bbox.getUpperCorner().getY(),
-							wgs84Bbox.getLowerCorner().getX(), wgs84Bbox.getUpperCorner().getY(),
-							wgs84Bbox.getLowerCorner().getX(), wgs84Bbox.getLowerCorner().getY(),
-					}, 2, 4326);
+		// texture atlases and image scaling are shared by all tiles and run on their own pool
+		textureAtlasGenerator = new TextureAtlasGenerator(
+				Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+						config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads())),
+				TextureAtlasGenerator.DEFAULT_CACHE_SIZE);
+
+		try {
+			// texture images are read and decoded once for all workers and tiles
+			textureImageCache = new TextureImageCache(TextureImageCache.DEFAULT_CACHE_SIZE);
+
+			// a local elevation grid is loaded once and shared by all workers
+			if (config.getProject().getKmlExporter().isCallGElevationService()
+					&& config.getProject().getKmlExporter().getElevationSource() == ElevationSource.ELEVATION_GRID) {
+				String gridFile = config.getProject().getKmlExporter().getElevationGridFile();
+				if (gridFile == null || gridFile.trim().length() == 0)
+					throw new KmlExportException("No elevation grid file specified.");
+
+				try {
+					GridElevationProvider gridElevationProvider = new GridElevationProvider(new File(gridFile.trim()));
+					int dbSrid = dbPool.getActiveDatabaseAdapter().getConnectionMetaData().getReferenceSystem().getSrid();
+					if (gridElevationProvider.getSrid() != 0 && gridElevationProvider.getSrid() != dbSrid)
+						LOG.warn("The elevation grid uses EPSG:" + gridElevationProvider.getSrid() + " but the database uses SRID " + dbSrid + ".");
+
+					elevationProvider = gridElevationProvider;
+				} catch (IOException e) {
+					throw new KmlExportException("Failed to read elevation grid file " + gridFile + ".", e);
 				}
+			}
 
-				// iterate over display forms
-				for (DisplayForm displayForm : config.getProject().getKmlExporter().getBuildingDisplayForms()) {
-					if (!displayForm.isActive()) 
-						continue;
+			// iterate over tiles
+			for (int i = 0; shouldRun && i < rows; i++) {
+				for (int j = 0; shouldRun && j < columns; j++) {
+
+					// track exported objects
+					ExportTracker tracker = new ExportTracker();
+
+					// set active tile and get tile extent in WGS84
+					GeometryObject wgs84Tile = null;
+					if (isBBoxActive && tiling.getMode() != TilingMode.NO_TILING) {
+						exportFilter.getBoundingBoxFilter().setActiveTile(i, j);
+						BoundingBox wgs84Bbox = exportFilter.getBoundingBoxFilter().getFilterState();
+						wgs84Tile = GeometryObject.createPolygon(new double[]{
+								wgs84Bbox.getLowerCorner().getX(), wgs84Bbox.getLowerCorner().getY(),
+								wgs84Bbox.getUpperCorner().getX(), wgs84Bbox.getLowerCorner().getY(),
+								wgs84Bbox.getUpperCorner().getX(), wgs84Bbox.getUpperCorner().getY(),
+								wgs84Bbox.getLowerCorner().getX(), wgs84Bbox.getUpperCorner().getY(),
+								wgs84Bbox.getLowerCorner().getX(), wgs84Bbox.getLowerCorner().getY(),
+						}, 2, 4326);
+					}
 
-					if (lastTempFolder != null && lastTempFolder.exists()) 
-						deleteFolder(lastTempFolder); // just in case
+					// unchanged tiles are neither queried nor written
+					boolean isUnchangedTile = affectedTiles != null && !affectedTiles[i][j];
 
-					File file = null;
-					ZipOutputStream zipOut = null;
-					String currentWorkingDirectoryPath = null;
-					try {
-						if (isBBoxActive && tiling.getMode() != TilingMode.NO_TILING) {
-							File tilesRootDirectory = new File(path, "Tiles");
-							tilesRootDirectory.mkdir();
-							File rowTilesDirectory = new File(tilesRootDirectory.getPath(),  String.valueOf(i));
-							rowTilesDirectory.mkdir();
-							File columnTilesDirectory = new File(rowTilesDirectory.getPath(),  String.valueOf(j));
-							columnTilesDirectory.mkdir();
-							file = new File(columnTilesDirectory.getPath() + File.separator + fileName + "_Tile_" + i + "_" + j + "_" + displayForm.getName() + fileExtension);
-							currentWorkingDirectoryPath = columnTilesDirectory.getPath();
-						} else {
-							file = new File(path + File.separator + fileName + "_" + displayForm.getName() + fileExtension);
-							currentWorkingDirectoryPath = path;
-						}
-						tracker.setCurrentWorkingDirectoryPath(currentWorkingDirectoryPath);
+					// iterate over display forms
+					for (DisplayForm displayForm : config.getProject().getKmlExporter().getBuildingDisplayForms()) {
+						if (!displayForm.isActive() || isUnchangedTile) 
+							continue;
 
-						eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("kmlExport.dialog.writingToFile"), this));
-						eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
-						eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, --remainingTiles, this));
-						
-						// open file for writing
+						File file = null;
+						KmzArchiveWriter kmzWriter = null;
+						String currentWorkingDirectoryPath = null;
 						try {
-							OutputStreamWriter fileWriter = null;
-							if (config.getProject().getKmlExporter().isExportAsKmz()) {
-								zipOut = new ZipOutputStream(new FileOutputStream(file));
-								ZipEntry zipEntry = new ZipEntry("doc.kml");
-								zipOut.putNextEntry(zipEntry);
-								fileWriter = new OutputStreamWriter(zipOut, CHARSET);
-							} else
-								fileWriter = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
-
-							// set output for SAXWriter
-							saxWriter.setOutput(fileWriter);	
-						} catch (IOException e) {
-							throw new KmlExportException("Failed to open file '" + file.getName() + "' for writing.", e);
-						}
+							if (isBBoxActive && tiling.getMode() != TilingMode.NO_TILING) {
+								File tilesRootDirectory = new File(path, "Tiles");
+								tilesRootDirectory.mkdir();
+								File rowTilesDirectory = new File(tilesRootDirectory.getPath(),  String.valueOf(i));
+								rowTilesDirectory.mkdir();
+								File columnTilesDirectory = new File(rowTilesDirectory.getPath(),  String.valueOf(j));
+								columnTilesDirectory.mkdir();
+								file = new File(columnTilesDirectory.getPath() + File.separator + fileName + "_Tile_" + i + "_" + j + "_" + displayForm.getName() + fileExtension);
+								currentWorkingDirectoryPath = columnTilesDirectory.getPath();
+							} else {
+								file = new File(path + File.separator + fileName + "_" + displayForm.getName() + fileExtension);
+								currentWorkingDirectoryPath = path;
+							}
+							tracker.setCurrentWorkingDirectoryPath(currentWorkingDirectoryPath);
+							tracker.setKmzArchiveWriter(null);
 
-						// create worker pools
-						// here we have an open issue: queue sizes are fix...
-						ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
-								"kml_writer_pool",
-								new IOWriterWorkerFactory(saxWriter),
-								100,
-								true);
-
-						kmlWorkerPool = new WorkerPool<KmlSplittingResult>(
-								"db_exporter_pool",
-								config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
-								config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
-								PoolSizeAdaptationStrategy.AGGRESSIVE,
-								new KmlExportWorkerFactory(
-										jaxbKmlContext,
-										jaxbColladaContext,
-										dbPool,
-										ioWriterPool,
-										tracker,
-										kmlFactory,
-										config,
-										eventDispatcher),
-								300,
-								false);
-
-						// prestart pool workers
-						ioWriterPool.prestartCoreWorkers();
-						kmlWorkerPool.prestartCoreWorkers();
-
-						// fail if we could not start a single import worker
-						if (kmlWorkerPool.getPoolSize() == 0)
-							throw new KmlExportException("Failed to start database export worker pool. Check the database connection pool settings.");
-
-						// create file header writer
-						SAXFragmentWriter fragmentWriter = new SAXFragmentWriter(kmlFactory.createDocument(null).getName(), saxWriter);
-
-						// ok, preparations done. inform user...
-						LOG.info("Exporting to file: " + file.getAbsolutePath());
-
-						// create kml root element
-						KmlType kmlType = kmlFactory.createKmlType();
-						JAXBElement<KmlType> kml = kmlFactory.createKml(kmlType);
-
-						DocumentType document = kmlFactory.createDocumentType();
-						if (isBBoxActive &&	tiling.getMode() != TilingMode.NO_TILING)
-							document.setName(fileName + "_Tile_" + i + "_" + j + "_" + displayForm.getName());
-						else 
-							document.setName(fileName + "_" + displayForm.getName());
-
-						document.setOpen(false);
-						kmlType.setAbstractFeatureGroup(kmlFactory.createDocument(document));
-
-						// write file header
-						Marshaller marshaller = null;
-						try {
-							marshaller = jaxbKmlContext.createMarshaller();
-							fragmentWriter.setWriteMode(WriteMode.HEAD);
-							marshaller.marshal(kml, fragmentWriter);
-
-							if (isBBoxActive 
-									&&	tiling.getMode() != TilingMode.NO_TILING 
-									&& config.getProject().getKmlExporter().getFilter().isSetComplexFilter() 
-									&& config.getProject().getKmlExporter().isShowTileBorders())
-								addBorder(wgs84Tile, null, saxWriter);
-
-							saxWriter.flush();
-						} catch (JAXBException | SAXException e) {
-							throw new KmlExportException("Failed to write output file.", e);
-						}
+							eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("kmlExport.dialog.writingToFile"), this));
+							eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
+							eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, --remainingTiles, this));
+						
+							// open file for writing
+							try {
+								OutputStreamWriter fileWriter = null;
+								if (config.getProject().getKmlExporter().isExportAsKmz()) {
+									kmzWriter = new KmzArchiveWriter(file);
+									fileWriter = new OutputStreamWriter(kmzWriter.openDocument("doc.kml"), CHARSET);
+								} else
+									fileWriter = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
+
+								// set output for SAXWriter
+								saxWriter.setOutput(fileWriter);
+								tracker.setKmzArchiveWriter(kmzWriter);	
+							} catch (IOException e) {
+								throw new KmlExportException("Failed to open file '" + file.getName() + "' for writing.", e);
+							}
 
-						// get database splitter and start query
-						try {
-							kmlSplitter = new KmlSplitter(
-									dbPool,
-									kmlWorkerPool,
-									exportFilter,
-									displayForm,
-									config);
-
-							if (shouldRun)
-								kmlSplitter.startQuery();
-						} catch (SQLException e) {
-							throw new KmlExportException("Failed to query the database.", e);
-						}
+							// create worker pools
+							// here we have an open issue: queue sizes are fix...
+							ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
+									"kml_writer_pool",
+									new IOWriterWorkerFactory(saxWriter),
+									100,
+									true);
+
+							kmlWorkerPool = new WorkerPool<KmlSplittingResult>(
+									"db_exporter_pool",
+									config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
+									config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
+									PoolSizeAdaptationStrategy.AGGRESSIVE,
+									new KmlExportWorkerFactory(
+											jaxbKmlContext,
+											jaxbColladaContext,
+											dbPool,
+											ioWriterPool,
+											textureAtlasGenerator,
+											textureImageCache,
+											elevationProvider,
+											tracker,
+											kmlFactory,
+											config,
+											eventDispatcher),
+									300,
+									false);
+
+							// prestart pool workers
+							ioWriterPool.prestartCoreWorkers();
+							kmlWorkerPool.prestartCoreWorkers();
+
+							// fail if we could not start a single import worker
+							if (kmlWorkerPool.getPoolSize() == 0)
+								throw new KmlExportException("Failed to start database export worker pool. Check the database connection pool settings.");
+
+							// create file header writer
+							SAXFragmentWriter fragmentWriter = new SAXFragmentWriter(kmlFactory.createDocument(null).getName(), saxWriter);
+
+							// ok, preparations done. inform user...
+							LOG.info("Exporting to file: " + file.getAbsolutePath());
+
+							// create kml root element
+							KmlType kmlType = kmlFactory.createKmlType();
+							JAXBElement<KmlType> kml = kmlFactory.createKml(kmlType);
+
+							DocumentType document = kmlFactory.createDocumentType();
+							if (isBBoxActive &&	tiling.getMode() != TilingMode.NO_TILING)
+								document.setName(fileName + "_Tile_" + i + "_" + j + "_" + displayForm.getName());
+							else 
+								document.setName(fileName + "_" + displayForm.getName());
+
+							document.setOpen(false);
+							kmlType.setAbstractFeatureGroup(kmlFactory.createDocument(document));
+
+							// write file header
+							Marshaller marshaller = null;
+							try {
+								marshaller = jaxbKmlContext.createMarshaller();
+								fragmentWriter.setWriteMode(WriteMode.HEAD);
+								marshaller.marshal(kml, fragmentWriter);
+
+								if (isBBoxActive 
+										&&	tiling.getMode() != TilingMode.NO_TILING 
+										&& config.getProject().getKmlExporter().getFilter().isSetComplexFilter() 
+										&& config.getProject().getKmlExporter().isShowTileBorders())
+									addBorder(wgs84Tile, null, saxWriter);
 
-						// shutdown worker pools
-						try {
-							kmlWorkerPool.shutdownAndWait();
-							ioWriterPool.shutdownAndWait();
-						} catch (InterruptedException e) {
-							throw new KmlExportException("Failed to shutdown worker pools.", e);
-						}
+								saxWriter.flush();
+							} catch (JAXBException | SAXException e) {
+								throw new KmlExportException("Failed to write output file.", e);
+							}
 
-						try {
-							// add styles
-							if (!featureCounterMap.isEmpty() &&
-									(!config.getProject().getKmlExporter().isOneFilePerObject() ||
-											config.getProject().getKmlExporter().getFilter().isSetSimpleFilter())) {
-								for (CityGMLClass type : featureCounterMap.keySet()) {
-									if (featureCounterMap.get(type) > 0)
-										addStyle(displayForm, type, saxWriter);
-								}
+							// get database splitter and start query
+							try {
+								kmlSplitter = new KmlSplitter(
+										dbPool,
+										kmlWorkerPool,
+										exportFilter,
+										displayForm,
+										config);
+
+								if (shouldRun)
+									kmlSplitter.startQuery();
+							} catch (SQLException e) {
+								throw new KmlExportException("Failed to query the database.", e);
 							}
-						} catch (JAXBException e) {
-							throw new KmlExportException("Failed to write styles.", e);
-						}
 
-						// write footer element
-						try {
-							fragmentWriter.setWriteMode(WriteMode.TAIL);
-							marshaller.marshal(kml, fragmentWriter);
-						} catch (JAXBException e) {
-							throw new KmlExportException("Failed to write output file.", e);
-						}
+							// shutdown worker pools
+							try {
+								kmlWorkerPool.shutdownAndWait();
+								ioWriterPool.shutdownAndWait();
+							} catch (InterruptedException e) {
+								throw new KmlExportException("Failed to shutdown worker pools.", e);
+							}
 
-						// flush sax writer and close file
-						try {
-							if (!featureCounterMap.isEmpty()) {
-								saxWriter.flush();
-								if (config.getProject().getKmlExporter().isExportAsKmz()) {
-									zipOut.closeEntry();
-
-									List<File> filesToZip = new ArrayList<File>();
-									File tempFolder = new File(currentWorkingDirectoryPath, TEMP_FOLDER);
-									lastTempFolder = tempFolder;
-									int indexOfZipFilePath = tempFolder.getCanonicalPath().length() + 1;
-
-									if (tempFolder.exists()) { // !config.getProject().getKmlExporter().isOneFilePerObject()
-										LOG.info("Zipping to kmz archive from temporary folder...");
-										getAllFiles(tempFolder, filesToZip);
-										for (File fileToZip : filesToZip) {
-											if (!fileToZip.isDirectory()) {
-												FileInputStream inputStream = new FileInputStream(fileToZip);
-												String zipEntryName = fileToZip.getCanonicalPath().substring(indexOfZipFilePath);
-												zipEntryName = zipEntryName.replace(File.separator, "/"); // MUST
-												ZipEntry zipEntry = new ZipEntry(zipEntryName);
-												zipOut.putNextEntry(zipEntry);
-
-												byte[] bytes = new byte[64*1024]; // 64K should be enough for most
-												int length;
-												while ((length = inputStream.read(bytes)) >= 0) {
-													zipOut.write(bytes, 0, length);
-												}
-												inputStream.close();
-												zipOut.closeEntry();
-											}
-										}
-										LOG.info("Removing temporary folder...");
-										deleteFolder(tempFolder);
+							try {
+								// add styles
+								if (!featureCounterMap.isEmpty() &&
+										(!config.getProject().getKmlExporter().isOneFilePerObject() ||
+												config.getProject().getKmlExporter().getFilter().isSetSimpleFilter())) {
+									for (CityGMLClass type : featureCounterMap.keySet()) {
+										if (featureCounterMap.get(type) > 0)
+											addStyle(displayForm, type, saxWriter);
 									}
-									zipOut.close();
 								}
+							} catch (JAXBException e) {
+								throw new KmlExportException("Failed to write styles.", e);
 							}
-						} catch (Exception e) {
-							throw new KmlExportException("Failed to write output file.", e);
-						}
 
-						try {
-							saxWriter.close();
-						} catch (Exception e) {
-							throw new KmlExportException("Failed to close output file.", e);
-						}
+							// write footer element
+							try {
+								fragmentWriter.setWriteMode(WriteMode.TAIL);
+								marshaller.marshal(kml, fragmentWriter);
+							} catch (JAXBException e) {
+								throw new KmlExportException("Failed to write output file.", e);
+							}
 
-						// delete empty tile file if requested
-						if (isBBoxActive && featureCounterMap.isEmpty() && !config.getProject().getKmlExporter().isExportEmptyTiles()) {
-							LOG.debug("Tile_" + exportFilter.getBoundingBoxFilter().getTileRow()
-									+ "_" + exportFilter.getBoundingBoxFilter().getTileColumn() + " is empty. Deleting file " + file.getName() + ".");
-							file.delete();
-						}
+							// flush sax writer and close file
+							try {
+								saxWriter.flush();
+								if (kmzWriter != null)
+									kmzWriter.close();
+							} catch (Exception e) {
+								throw new KmlExportException("Failed to write output file.", e);
+							}
+
+							try {
+								saxWriter.close();
+							} catch (Exception e) {
+								throw new KmlExportException("Failed to close output file.", e);
+							}
+
+							// delete empty tile file if requested
+							if (isBBoxActive && featureCounterMap.isEmpty() && !config.getProject().getKmlExporter().isExportEmptyTiles()) {
+								LOG.debug("Tile_" + exportFilter.getBoundingBoxFilter().getTileRow()
+										+ "_" + exportFilter.getBoundingBoxFilter().getTileColumn() + " is empty. Deleting file " + file.getName() + ".");
+								file.delete();
+							}
 
-						eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
-					} finally {
-						// clean up
-						if (ioWriterPool != null && !ioWriterPool.isTerminated())
-							ioWriterPool.shutdownNow();
+							eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
+						} finally {
+							// clean up
+							if (ioWriterPool != null && !ioWriterPool.isTerminated())
+								ioWriterPool.shutdownNow();
 
-						if (kmlWorkerPool != null && !kmlWorkerPool.isTerminated())
-							kmlWorkerPool.shutdownNow();
+							if (kmzWriter != null)
+								try { kmzWriter.close(); } catch (IOException e) {}
 
-						try {
-							eventDispatcher.flushEvents();
-						} catch (InterruptedException e) {
-							//
+							if (kmlWorkerPool != null && !kmlWorkerPool.isTerminated())
+								kmlWorkerPool.shutdownNow();
+
+							try {
+								eventDispatcher.flushEvents();
+							} catch (InterruptedException e) {
+								//
+							}
 						}
 					}
-				}
 
-				// create reference to tile file in master file
-				if (masterFileWriter != null && !featureCounterMap.isEmpty()) {
+					// get the city objects of the tile and track them in the manifest
+					Map<Long, CityObject4JSON> cityObjects = tracker.getCityObjects();
 					try {
-						writeMasterFileTileReference(fileName, i, j, wgs84Tile, masterFileWriter);
-					} catch (JAXBException e) {
-						if (jsonFileWriter != null) try { jsonFileWriter.close(); } catch (IOException ioe) { }
-						throw new KmlExportException("Failed to write tile reference to master file.", e);
+						if (isUnchangedTile)
+							cityObjects = previousManifest.readCityObjects(i, j);
+
+						if (manifestWriter != null && shouldRun)
+							manifestWriter.writeTile(i, j, cityObjects);
+					} catch (IOException e) {
+						throw new KmlExportException("Failed to update manifest file.", e);
 					}
-				}
 
-				// fill cityobject JSON file after tile has been processed
-				if (jsonFileWriter != null && !featureCounterMap.isEmpty()) {
-					try {
-						Iterator<CityObject4JSON> iter = tracker.values().iterator();
-						if (iter.hasNext()) {
-							if (jsonHasContent)
-								jsonFileWriter.write(",\n".getBytes(CHARSET));
-							else
-								jsonHasContent = true;
+					boolean hasContent = isUnchangedTile ? !cityObjects.isEmpty() : !featureCounterMap.isEmpty();
+
+					// create reference to tile file in master file
+					if (masterFileWriter != null && hasContent) {
+						try {
+							writeMasterFileTileReference(fileName, i, j, wgs84Tile, masterFileWriter);
+						} catch (JAXBException e) {
+							if (jsonFileWriter != null) try { jsonFileWriter.close(); } catch (IOException ioe) { }
+							throw new KmlExportException("Failed to write tile reference to master file.", e);
 						}
+					}
 
-						while (iter.hasNext()) {
-							jsonFileWriter.write(iter.next().toString().getBytes(CHARSET));
-							if (iter.hasNext())
-								jsonFileWriter.write(",\n".getBytes(CHARSET));
+					// fill cityobject JSON file after tile has been processed
+					if (jsonFileWriter != null && hasContent) {
+						try {
+							Iterator<CityObject4JSON> iter = cityObjects.values().iterator();
+							if (iter.hasNext()) {
+								if (jsonHasContent)
+									jsonFileWriter.write(",\n".getBytes(CHARSET));
+								else
+									jsonHasContent = true;
+							}
+
+							while (iter.hasNext()) {
+								jsonFileWriter.write(iter.next().toString().getBytes(CHARSET));
+								if (iter.hasNext())
+									jsonFileWriter.write(",\n".getBytes(CHARSET));
+							}
+						} catch (IOException e) {
+							if (jsonFileWriter != null) try { jsonFileWriter.close(); } catch (IOException ioe) { }
+							throw new KmlExportException("Failed to write JSON file.", e);
 						}
-					} catch (IOException e) {
-						if (jsonFileWriter != null) try { jsonFileWriter.close(); } catch (IOException ioe) { }
-						throw new KmlExportException("Failed to write JSON file.", e);
 					}
+
+					featureCounterMap.clear();
 				}
+			}
+		} finally {
+			textureAtlasGenerator.shutdown();
+		}
+
+		LOG.debug("Texture image cache: " + textureImageCache.getHits() + " hits, " + textureImageCache.getMisses() 
+				+ " misses, " + textureImageCache.getEvictions() + " evictions.");
+		textureImageCache.clear();
+		if (elevationProvider != null)
+			elevationProvider.close();
+
+		// replace the manifest of the previous export if all tiles have been processed
+		try {
+			if (previousManifest != null)
+				previousManifest.close();
 
-				featureCounterMap.clear();
+			if (manifestWriter != null) {
+				if (shouldRun)
+					manifestWriter.commit();
+				else
+					manifestWriter.close();
 			}
+		} catch (IOException e) {
+			throw new KmlExportException("Failed to write manifest file.", e);
 		}
 
 		// complete KML master file
@@ -663,9 +770,8 @@ public class KmlExporter implements EventHandler {
 		}
 
 		LOG.info("Processed geometry objects: " + geometryCounter);
-
-		if (lastTempFolder != null && lastTempFolder.exists()) 
-			deleteFolder(lastTempFolder); // just in case
+		if (colladaQueryCounter > 0)
+			LOG.debug("Database round trips for COLLADA geometries: " + colladaQueryCounter);
 
 		if (shouldRun)
 			LOG.info("Total export time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
@@ -673,6 +779,42 @@ public class KmlExporter implements EventHandler {
 		return shouldRun;
 	}
 
+	private String getManifestSettings(String fileExtension) {
+		// settings determining which city objects are exported to which tile files
+		StringBuilder settings = new StringBuilder()
+		.append("bbox=").append(globeWGS84Bbox.getLowerCorner().getX()).append(',').append(globeWGS84Bbox.getLowerCorner().getY())
+		.append(',').append(globeWGS84Bbox.getUpperCorner().getX()).append(',').append(globeWGS84Bbox.getUpperCorner().getY())
+		.append(";tiles=").append(rows).append('x').append(columns)
+		.append(";lod=").append(config.getProject().getKmlExporter().getLodToExportFrom())
+		.append(";format=").append(fileExtension)
+		.append(";oneFilePerObject=").append(config.getProject().getKmlExporter().isOneFilePerObject())
+		.append(";theme=").append(config.getProject().getKmlExporter().getAppearanceTheme())
+		.append(";displayForms=");
+
+		for (DisplayForm displayForm : config.getProject().getKmlExporter().getBuildingDisplayForms()) {
+			if (displayForm.isActive())
+				settings.append(displayForm.getName()).append(',');
+		}
+
+		settings.append(";featureClasses=");
+		if (config.getProject().getKmlExporter().getFilter().isSetComplexFilter()) {
+			FeatureClass featureClass = config.getProject().getKmlExporter().getFilter().getComplexFilter().getFeatureClass();
+			boolean[] featureClasses = new boolean[]{
+					featureClass.isSetBuilding(), featureClass.isSetBridge(), featureClass.isSetTunnel(),
+					featureClass.isSetWaterBody(), featureClass.isSetLandUse(), featureClass.isSetSolitaryVegetationObject(),
+					featureClass.isSetPlantCover(), featureClass.isSetTransportationComplex(), featureClass.isSetTrack(),
+					featureClass.isSetRailway(), featureClass.isSetRoad(), featureClass.isSetSquare(),
+					featureClass.isSetReliefFeature(), featureClass.isSetCityFurniture(), featureClass.isSetGenericCityObject(),
+					featureClass.isSetCityObjectGroup()
+			};
+
+			for (boolean isSet : featureClasses)
+				settings.append(isSet ? '1' : '0');
+		}
+
+		return settings.toString();
+	}
+
 	private int calculateRowsColumns() throws SQLException {
 		TiledBoundingBox bbox = config.getProject().getKmlExporter().getFilter().getComplexFilter().getTiledBoundingBox();
 		double autoTileSideLength = config.getProject().getKmlExporter().getAutoTileSideLength();
@@ -1534,29 +1676,6 @@ public class KmlExporter implements EventHandler {
 		return success;
 	}
 
-	private static void getAllFiles(File startFolder, List<File> fileList) {
-		File[] files = startFolder.listFiles();
-		for (File file : files) {
-			fileList.add(file);
-			if (file.isDirectory())
-				getAllFiles(file, fileList);
-		}
-	}
-
-	private static void deleteFolder(File folder) {
-		if (folder == null) return;
-		File[] files = folder.listFiles();
-		if (files != null) {
-			for (File f: files) {
-				if (f.isDirectory())
-					deleteFolder(f);
-				else
-					f.delete();
-			}
-		}
-		folder.delete();
-	}
-
 	@Override
 	public void handleEvent(Event e) throws Exception {
 		if (e.getEventType() == EventType.FEATURE_COUNTER) {
@@ -1581,6 +1700,11 @@ public class KmlExporter implements EventHandler {
 		else if (e.getEventType() == EventType.GEOMETRY_COUNTER) {
 			geometryCounter++;
 		}
+		else if (e.getEventType() == EventType.COUNTER) {
+			CounterEvent counterEvent = (CounterEvent)e;
+			if (counterEvent.getType() == CounterType.COLLADA_QUERY)
+				colladaQueryCounter += counterEvent.getCounter();
+		}
 		else if (e.getEventType() == EventType.INTERRUPT) {
 			if (isInterrupted.compareAndSet(false, true)) {
 				shouldRun = false;
@@ -1612,8 +1736,6 @@ public class KmlExporter implements EventHandler {
 
 				if (kmlWorkerPool != null)
 					kmlWorkerPool.drainWorkQueue();
-
-				if (lastTempFolder != null && lastTempFolder.exists()) deleteFolder(lastTempFolder); // just in case
 			}
 		}
 	}
@@ -27,7 +27,6 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -273,25 +272,7 @@ public class CityFurniture extends KmlGenericObject{
 					}
 					break;
 				case DisplayForm.COLLADA:
-					String currentgmlId = getGmlId();
-					setGmlId(work.getGmlId()); // must be set before fillGenericObjectForCollada
-					setId(work.getId());	   // due to implicit geometries randomized with gmlId.hashCode()
-					fillGenericObjectForCollada(rs, config.getProject().getKmlExporter().getCityFurnitureColladaOptions().isGenerateTextureAtlases());
-
-					if (currentgmlId != work.getGmlId() && getGeometryAmount() > GEOMETRY_AMOUNT_WARNING) {
-						Logger.getInstance().info("Object " + work.getGmlId() + " has more than " + GEOMETRY_AMOUNT_WARNING + " geometries. This may take a while to process...");
-					}
-
-					List<Point3d> anchorCandidates = getOrigins(); // setOrigins() called mainly for the side-effect
-					double zOffset = getZOffsetFromConfigOrDB(work.getId());
-					if (zOffset == Double.MAX_VALUE) {
-						if (transformation != null) {
-							anchorCandidates.clear();
-							anchorCandidates.add(new Point3d(0,0,0)); // will be turned into refPointX,Y,Z by convertToWGS84
-						}
-						zOffset = getZOffsetFromGEService(work.getId(), anchorCandidates);
-					}
-					setZOffset(zOffset);
+					fillGenericObjectForCollada(rs, work, config.getProject().getKmlExporter().getCityFurnitureColladaOptions().isGenerateTextureAtlases());
 
 					ColladaOptions colladaOptions = getColladaOptions();
 					setIgnoreSurfaceOrientation(colladaOptions.isIgnoreSurfaceOrientation());
@@ -477,13 +458,21 @@ public class CityFurniture extends KmlGenericObject{
 		return coords;
 	}*/
 
-	protected void fillGenericObjectForCollada(ResultSet rs, boolean generateTextureAtlas) throws SQLException {
+	protected boolean isImplicitGeometry() {
+		return transformation != null;
+	}
+
+	protected void fillGenericObjectForCollada(ResultSet rs, KmlSplittingResult work, boolean generateTextureAtlas) throws SQLException {
 
 		if (transformation == null) { // no implicit geometry
-			super.fillGenericObjectForCollada(rs, generateTextureAtlas);
+			super.fillGenericObjectForCollada(rs, work, generateTextureAtlas);
 			return;
 		}
 
+		String currentgmlId = getGmlId();
+		setGmlId(work.getGmlId()); // must be set before filling
+		setId(work.getId());	   // due to implicit geometries randomized with gmlId.hashCode()
+
 		String selectedTheme = config.getProject().getKmlExporter().getAppearanceTheme();
 		int texImageCounter = 0;
 
@@ -581,16 +570,15 @@ public class CityFurniture extends KmlGenericObject{
 									if ((getUnsupportedTexImageId(texImageUri) == -1) && (getTexImage(texImageUri) == null)) { 
 										// not already marked as wrapping texture && not already read in
 										TextureImage texImage = null;
+										byte[] imageBytes = null;
 										try {
-											byte[] imageBytes = textureExportAdapter.getInByteArray(textureImageId, texImageUri);
-											if (imageBytes != null) {
-												imageReader.setSupportRGB(generateTextureAtlas);
-												texImage = imageReader.read(new ByteArrayInputStream(imageBytes));
-											}																																
+											imageBytes = textureImageCache.getImageBytes(textureImageId, texImageUri, textureExportAdapter);
+											if (imageBytes != null)
+												texImage = textureImageCache.getTextureImage(textureImageId, imageBytes, generateTextureAtlas, imageReader);																																
 										} catch (IOException ioe) {}
 
 										if (texImage != null) { // image in JPEG, PNG or another usual format
-											addTexImage(texImageUri, texImage);
+											addTexImage(texImageUri, textureImageId, texImage, imageBytes);
 										}
 										else {
 											addUnsupportedTexImageId(texImageUri, textureImageId);
@@ -620,45 +608,7 @@ public class CityFurniture extends KmlGenericObject{
 						}
 
 						GeometryObject surface = applyTransformationMatrix(geometryConverterAdapter.getPolygon(buildingGeometryObj));
-						List<VertexInfo> vertexInfos = new ArrayList<VertexInfo>();
-
-						int ringCount = surface.getNumElements();
-						int[] vertexCount = new int[ringCount];
-
-						for (int i = 0; i < surface.getNumElements(); i++) {
-							double[] ordinatesArray = surface.getCoordinates(i);
-							int vertices = 0;
-
-							for (int j = 0; j < ordinatesArray.length - 3; j = j+3) {
-
-								// calculate origin and list of lowest points
-								updateOrigins(ordinatesArray[j], ordinatesArray[j + 1], ordinatesArray[j + 2]);
-
-								// get or create node in vertex info tree
-								VertexInfo vertexInfo = setVertexInfoForXYZ(surfaceId,
-										ordinatesArray[j],
-										ordinatesArray[j+1],
-										ordinatesArray[j+2]);
-
-								if (texCoordsTokenized != null && texCoordsTokenized.hasMoreTokens()) {
-									double s = Double.parseDouble(texCoordsTokenized.nextToken());
-									double t = Double.parseDouble(texCoordsTokenized.nextToken());
-									vertexInfo.addTexCoords(surfaceId, new TexCoords(s, t));
-								}
-
-								vertexInfos.add(vertexInfo);
-								vertices++;
-							}
-
-							vertexCount[i] = vertices;
-
-							if (texCoordsTokenized != null && texCoordsTokenized.hasMoreTokens()) {
-								texCoordsTokenized.nextToken(); // geometryInfo ignores last point in a polygon
-								texCoordsTokenized.nextToken(); // keep texture coordinates in sync
-							}
-						}
-
-						addSurfaceInfo(surfaceId, new SurfaceInfo(ringCount, vertexCount, vertexInfos));
+						addSurfaceInfo(surfaceId, createSurfaceInfo(surface, texCoordsTokenized));
 					}
 				}
 				catch (SQLException sqlEx) {
@@ -675,6 +625,7 @@ public class CityFurniture extends KmlGenericObject{
 
 		// count rest images
 		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
+		finishColladaFill(work, currentgmlId);
 	}
 
 	protected List<PlacemarkType> createPlacemarksForHighlighting(KmlSplittingResult work) throws SQLException {
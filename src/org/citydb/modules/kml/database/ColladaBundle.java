@@ -28,6 +28,7 @@
 package org.citydb.modules.kml.database;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 import org.citydb.textureAtlas.model.TextureImage;
 import org.collada._2005._11.colladaschema.COLLADA;
@@ -43,6 +44,9 @@ public class ColladaBundle {
 	// images or atlases in usual formats (like .jpg)
 	private HashMap<String, TextureImage> texImages;
 
+	// encoded images as read from the database, key is the unmodified image
+	private IdentityHashMap<TextureImage, byte[]> texImageSources;
+
 	private COLLADA collada;
 	private String colladaAsString;
 	private PlacemarkType placemark;
@@ -58,6 +62,14 @@ public class ColladaBundle {
 		return texImages;
 	}
 
+	public void setTexImageSources(IdentityHashMap<TextureImage, byte[]> texImageSources) {
+		this.texImageSources = texImageSources;
+	}
+
+	public IdentityHashMap<TextureImage, byte[]> getTexImageSources() {
+		return texImageSources;
+	}
+
 	public 	void setUnsupportedTexImageIds(HashMap<String, Long> unsupportedTexImageIds) {
 		this.unsupportedTexImageIds = unsupportedTexImageIds;
 	}
@@ -0,0 +1,163 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.citydb.api.event.EventDispatcher;
+import org.citydb.log.Logger;
+import org.citydb.modules.common.event.CounterEvent;
+import org.citydb.modules.common.event.CounterType;
+import org.citygml4j.model.citygml.appearance.X3DMaterial;
+
+/**
+ * Collects the surface root ids of several COLLADA objects and fetches
+ * their surfaces and appearances with a few root_id IN (...) queries.
+ * The rows are handed back to the owning objects by their root id.
+ */
+public class ColladaGeometryBatch {
+	private final Connection connection;
+	private final EventDispatcher eventDispatcher;
+	private final List<Fill> fills = new ArrayList<Fill>();
+
+	public ColladaGeometryBatch(Connection connection, EventDispatcher eventDispatcher) {
+		this.connection = connection;
+		this.eventDispatcher = eventDispatcher;
+	}
+
+	protected void addFill(Fill fill) {
+		fills.add(fill);
+	}
+
+	public boolean isEmpty() {
+		return fills.isEmpty();
+	}
+
+	public void execute() {
+		if (fills.isEmpty())
+			return;
+
+		try {
+			HashMap<Long, List<Fill>> fillsByRootId = new HashMap<Long, List<Fill>>();
+			List<Long> surfaceRootIds = new ArrayList<Long>();
+
+			for (Fill fill: fills) {
+				for (Long surfaceRootId: fill.surfaceRootIds) {
+					List<Fill> owners = fillsByRootId.get(surfaceRootId);
+					if (owners == null) {
+						owners = new ArrayList<Fill>(1);
+						fillsByRootId.put(surfaceRootId, owners);
+						surfaceRootIds.add(surfaceRootId);
+					}
+
+					owners.add(fill);
+				}
+			}
+
+			int queryCounter = 0;
+			for (int batchStart = 0; batchStart < surfaceRootIds.size(); batchStart += Queries.MAX_BATCH_SIZE) {
+				int batchEnd = Math.min(batchStart + Queries.MAX_BATCH_SIZE, surfaceRootIds.size());
+				for (String colladaQuery: Queries.COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_IDS(batchEnd - batchStart)) { // parent surfaces come first
+					PreparedStatement psQuery = null;
+					ResultSet rs = null;
+
+					try {
+						psQuery = connection.prepareStatement(colladaQuery);
+						for (int i = batchStart; i < batchEnd; i++)
+							psQuery.setLong(i - batchStart + 1, surfaceRootIds.get(i));
+
+						rs = psQuery.executeQuery();
+						queryCounter++;
+
+						while (rs.next()) {
+							List<Fill> owners = fillsByRootId.get(rs.getLong("root_id"));
+							if (owners != null) {
+								for (Fill fill: owners)
+									fill.object.fillColladaSurface(rs, fill);
+							}
+						}
+					}
+					catch (SQLException sqlEx) {
+						Logger.getInstance().error("SQL error while querying city objects: " + sqlEx.getMessage());
+					}
+					finally {
+						if (rs != null)
+							try { rs.close(); } catch (SQLException e) {}
+						if (psQuery != null)
+							try { psQuery.close(); } catch (SQLException e) {}
+					}
+				}
+			}
+
+			for (Fill fill: fills) {
+				// count rest images
+				eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, fill.texImageCounter, this));
+				fill.object.finishColladaFill(fill.work, fill.previousGmlId);
+			}
+
+			eventDispatcher.triggerEvent(new CounterEvent(CounterType.COLLADA_QUERY, queryCounter, this));
+		}
+		finally {
+			fills.clear();
+		}
+	}
+
+	protected static class Fill {
+		protected final KmlGenericObject object;
+		protected final KmlSplittingResult work;
+		protected final String previousGmlId;
+		protected final List<Long> surfaceRootIds;
+		protected final boolean generateTextureAtlas;
+		protected final X3DMaterial x3dWallMaterial;
+		protected final X3DMaterial x3dRoofMaterial;
+		protected int texImageCounter;
+
+		protected Fill(KmlGenericObject object,
+				KmlSplittingResult work,
+				String previousGmlId,
+				List<Long> surfaceRootIds,
+				boolean generateTextureAtlas,
+				X3DMaterial x3dWallMaterial,
+				X3DMaterial x3dRoofMaterial) {
+			this.object = object;
+			this.work = work;
+			this.previousGmlId = previousGmlId;
+			this.surfaceRootIds = surfaceRootIds;
+			this.generateTextureAtlas = generateTextureAtlas;
+			this.x3dWallMaterial = x3dWallMaterial;
+			this.x3dRoofMaterial = x3dRoofMaterial;
+		}
+	}
+
+}
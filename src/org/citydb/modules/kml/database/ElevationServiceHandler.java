@@ -27,207 +27,93 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.math.BigDecimal;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.StringTokenizer;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
-import org.citydb.log.Logger;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
+import org.citydb.database.adapter.AbstractSQLAdapter;
 
 public class ElevationServiceHandler {
+	private final ElevationProvider elevationProvider;
+	private final Connection connection;
+	private final AbstractSQLAdapter sqlAdapter;
+	private final SimpleDateFormat dateFormatter;
 
-	private static final ReentrantLock runLock = new ReentrantLock();
-
-	private static final String STATUS = "status";
-	private static final String LAT = "lat";
-	private static final String LNG = "lng";
-	private static final String ELEVATION = "elevation";
-	private static final String OK = "OK";
-
-	private static final double TOLERANCE = 0.000001;
-	private static final int POINTS_IN_A_URL = 55;
+	private PreparedStatement psSelectZOffset;
+	private PreparedStatement psInsertZOffset;
 
-	SAXParser saxParser = null;
-	String currentElement = "";
-	StringBuilder textBuffer = null;
+	public ElevationServiceHandler(ElevationProvider elevationProvider, Connection connection, AbstractSQLAdapter sqlAdapter) {
+		this.elevationProvider = elevationProvider;
+		this.connection = connection;
+		this.sqlAdapter = sqlAdapter;
 
-	String status = "";
-	double elevation = 0;
-
-	double minElevation = Double.MAX_VALUE;
-	int location = -1;
+		dateFormatter = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+	}
 
-	double minElevationLat = 0;
-	double minElevationLong = 0;
-	double lastLat = 0;
-	double lastLong = 0;
+	public boolean requiresWGS84Coordinates() {
+		return elevationProvider.requiresWGS84Coordinates();
+	}
 
-	
 	public double getZOffset(double[] candidateCoords) throws Exception {
+		double[] elevations = elevationProvider.getElevations(candidateCoords);
 
-		double zOffset = 0;
-		location = -1;
-		minElevation = Double.MAX_VALUE;
-
-		if (saxParser == null) {
-			// Use the default (non-validating) parser
-			SAXParserFactory factory = SAXParserFactory.newInstance();
-			try {
-				saxParser = factory.newSAXParser();
-			}
-			catch (Throwable t) {
-				t.printStackTrace();
-			}
-		}
-
-		List<String> elevationStringList = new ArrayList<String>();
-		int index = 0;
-		while (index < candidateCoords.length) { 
-			String elevationString = "http://maps.google.com/maps/api/elevation/xml?sensor=false&locations=";
-			for (int i = 0; i < POINTS_IN_A_URL; i++) { // URL length must be under 2048
-				String latitude = new BigDecimal(candidateCoords[index+1]).toPlainString();
-				if (latitude.length() > 15) latitude = latitude.substring(0, 15);
-				String longitude = new BigDecimal(candidateCoords[index]).toPlainString();
-				if (longitude.length() > 15) longitude = longitude.substring(0, 15);
-
-				elevationString = elevationString + latitude + "," + longitude + "|";
-				index = index + 3;
-				if (index >= candidateCoords.length) break;
-			}
-			elevationString = elevationString.substring(0, elevationString.length()-1); // remove last pipe
-			elevationStringList.add(elevationString);
-		}
-
-		for (String elevationString: elevationStringList) {
-			waitForAccess(); // avoid "OVER_QUERY_LIMIT" from elevation service; max 10 calls/sec are allowed
-			ElevationServiceCaller elevationServiceCaller = new ElevationServiceCaller(elevationString);
-			elevationServiceCaller.run();
-		}
-
-		if (!status.equalsIgnoreCase(OK)) {
-			if (status.length() > 0) {
-				Logger.getInstance().warn("Elevation API returned " + status);
-			}
-			throw new Exception("Elevation API returned " + status);
+		int location = -1;
+		for (int i = 0; i < elevations.length; i++) {
+			if (!Double.isNaN(elevations[i]) && (location == -1 || elevations[i] < elevations[location]))
+				location = i;
 		}
 
-		for (int i = 0; i < candidateCoords.length; i = i + 3) {
-			if (Math.abs(minElevationLong - candidateCoords[i]) > TOLERANCE) {
-				continue;
-			}
-			if (Math.abs(minElevationLat - candidateCoords[i+1]) > TOLERANCE) {
-				continue;
-			}
-			zOffset = minElevation - candidateCoords[i+2];
-			break;
-		}
-
-		return zOffset;
-	}
+		if (location == -1)
+			throw new Exception("No elevation available for the candidate points.");
 
-	private static void waitForAccess() {
-		try {
-			runLock.lock();
-			// pause interval: 100 millis should be enough, but experience says it is not!
-			Thread.sleep(200);
-		}
-		catch (Exception e) {}
-		finally {
-			runLock.unlock();
-		}
+		return elevations[location] - candidateCoords[location * 3 + 2];
 	}
-	
-	private class ElevationServiceCaller extends DefaultHandler implements Runnable {
 
-		private String elevationString;
+	public double getStoredZOffset(long id, int lod) throws SQLException {
+		if (psSelectZOffset == null)
+			psSelectZOffset = connection.prepareStatement(Queries.GET_STRVAL_GENERICATTRIB_FROM_ID);
 
-		private ElevationServiceCaller (String elevationString) {
-			this.elevationString = elevationString;
-		}
-		
-		public void run() {
-			try {
-				// for debugging purposes
-//				Thread.currentThread().setName(this.getClass().getSimpleName());
-//				SimpleDateFormat dateFormatter = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS");
-//				Logger.getInstance().info("ElevationServiceCaller started at " + dateFormatter.format(new Date(System.currentTimeMillis())));
-
-				URL elevationService = new URL(elevationString);
-				saxParser.parse(elevationService.openStream(), this);
-			}
-			catch (Throwable t) {
-				Logger.getInstance().error("Could not access Elevation API. Please check your network settings.");
-//				t.printStackTrace();
-			}
-		}
-
-		public void startDocument() throws SAXException	{}
-
-		public void endDocument() throws SAXException {}
+		psSelectZOffset.setLong(1, id);
+		psSelectZOffset.setString(2, "GE_LoD" + lod + "_zOffset");
 
-		public void startElement(String namespaceURI,
-				String sName, // simple name
-				String qName, // qualified name
-				Attributes attrs) throws SAXException {
-			String eName = sName; // element name
-			if ("".equals(eName)) {
-				eName = qName; // not namespace-aware
+		ResultSet rs = null;
+		try {
+			rs = psSelectZOffset.executeQuery();
+			if (rs.next()) {
+				String strVal = rs.getString(1);
+				if (strVal != null) {
+					StringTokenizer attributeTokenized = new StringTokenizer(strVal, "|");
+					attributeTokenized.nextToken(); // skip mode
+					return Double.parseDouble(attributeTokenized.nextToken());
+				}
 			}
-
-			currentElement = eName;
+		} finally {
+			if (rs != null)
+				rs.close();
 		}
 
-		public void endElement(String namespaceURI,
-				String sName, // simple name
-				String qName  // qualified name
-				) throws SAXException {
-			String eName = sName; // element name
-			if ("".equals(eName)) eName = qName; // not namespace-aware
-
-			String value = textBuffer.toString().trim();
-			if(!value.equals("")) {
-				if (currentElement.equalsIgnoreCase(STATUS)) {
-					status = value;
-				}
-
-				else if (currentElement.equalsIgnoreCase(LAT)) {
-					lastLat = Double.parseDouble(value);
-				}
-				else if (currentElement.equalsIgnoreCase(LNG)) {
-					lastLong = Double.parseDouble(value);
-				}
-				else if (currentElement.equalsIgnoreCase(ELEVATION)) {
-					elevation = Double.parseDouble(value);
-					location++;
-					if (elevation < minElevation) {
-						minElevation = elevation;
-						minElevationLat = lastLat;
-						minElevationLong = lastLong;
-					}
-				}
-			}
+		return Double.MAX_VALUE;
+	}
 
-			textBuffer = null; 
-		} 
+	public void storeZOffset(long id, int lod, double zOffset) throws SQLException {
+		if (psInsertZOffset == null)
+			psInsertZOffset = connection.prepareStatement(Queries.INSERT_GE_ZOFFSET(sqlAdapter));
 
+		psInsertZOffset.setString(1, "GE_LoD" + lod + "_zOffset");
+		psInsertZOffset.setString(2, "Auto|" + zOffset + "|" + dateFormatter.format(new Date(System.currentTimeMillis())));
+		psInsertZOffset.setLong(3, id);
+		psInsertZOffset.executeUpdate();
+	}
 
-		public void characters(char buf[], int offset, int len) throws SAXException
-		{
-			String s = new String(buf, offset, len);
-			if (textBuffer == null) {
-				textBuffer = new StringBuilder(s);
-			}
-			else {
-				textBuffer.append(s);
-			}
-		} 
+	public void close() {
+		if (psSelectZOffset != null)
+			try { psSelectZOffset.close(); } catch (SQLException e) {}
+		if (psInsertZOffset != null)
+			try { psInsertZOffset.close(); } catch (SQLException e) {}
 	}
 
 }
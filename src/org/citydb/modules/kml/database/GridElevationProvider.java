@@ -0,0 +1,422 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Samples terrain heights from a local digital elevation model. Supported are
+ * ESRI ASCII grids and uncompressed single band GeoTIFF files, which are memory-mapped
+ * and read strip by strip or tile by tile on demand. The grid has to use the
+ * reference system of the database. Instances are immutable after construction 
+ * and can be shared between export workers.
+ */
+public class GridElevationProvider implements ElevationProvider {
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	private final Grid grid;
+
+	public GridElevationProvider(File file) throws IOException {
+		String fileName = file.getName().toLowerCase(Locale.ENGLISH);
+		if (fileName.endsWith(".tif") || fileName.endsWith(".tiff"))
+			grid = new GeoTiffGrid(file);
+		else
+			grid = new AsciiGrid(file);
+	}
+
+	@Override
+	public boolean requiresWGS84Coordinates() {
+		return false;
+	}
+
+	@Override
+	public double[] getElevations(double[] coords) {
+		double[] elevations = new double[coords.length / 3];
+		for (int i = 0; i < elevations.length; i++)
+			elevations[i] = getElevation(coords[i * 3], coords[i * 3 + 1]);
+
+		return elevations;
+	}
+
+	public double getElevation(double x, double y) {
+		// pixel coordinates relative to the cell centers
+		double col = (x - grid.originX) / grid.cellSizeX - 0.5;
+		double row = (grid.originY - y) / grid.cellSizeY - 0.5;
+
+		int col0 = (int)Math.floor(col);
+		int row0 = (int)Math.floor(row);
+		double dx = col - col0;
+		double dy = row - row0;
+
+		double v00 = grid.getValue(col0, row0);
+		double v10 = grid.getValue(col0 + 1, row0);
+		double v01 = grid.getValue(col0, row0 + 1);
+		double v11 = grid.getValue(col0 + 1, row0 + 1);
+
+		if (Double.isNaN(v00) || Double.isNaN(v10) || Double.isNaN(v01) || Double.isNaN(v11))
+			return grid.getValue((int)Math.round(col), (int)Math.round(row));
+
+		return (v00 * (1 - dx) + v10 * dx) * (1 - dy) + (v01 * (1 - dx) + v11 * dx) * dy;
+	}
+
+	public int getSrid() {
+		return grid.srid;
+	}
+
+	@Override
+	public void close() {
+		// mapped buffers are released by the garbage collector
+	}
+
+	private static abstract class Grid {
+		int width;
+		int height;
+		double originX;
+		double originY;
+		double cellSizeX;
+		double cellSizeY;
+		double noData = Double.NaN;
+		int srid;
+
+		double getValue(int col, int row) {
+			if (col < 0 || row < 0 || col >= width || row >= height)
+				return Double.NaN;
+
+			double value = read(col, row);
+			return value == noData ? Double.NaN : value;
+		}
+
+		abstract double read(int col, int row);
+	}
+
+	private static final class AsciiGrid extends Grid {
+		private final float[] values;
+
+		AsciiGrid(File file) throws IOException {
+			InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+			try {
+				HashMap<String, String> header = new HashMap<String, String>();
+				String token;
+				while ((token = nextToken(in)) != null && Character.isLetter(token.charAt(0)))
+					header.put(token.toLowerCase(Locale.ENGLISH), nextToken(in));
+
+				width = Integer.parseInt(getHeaderValue(header, "ncols"));
+				height = Integer.parseInt(getHeaderValue(header, "nrows"));
+				if (header.containsKey("cellsize")) {
+					cellSizeX = cellSizeY = Double.parseDouble(header.get("cellsize"));
+				} else {
+					cellSizeX = Double.parseDouble(getHeaderValue(header, "dx"));
+					cellSizeY = Double.parseDouble(getHeaderValue(header, "dy"));
+				}
+
+				if (header.containsKey("xllcenter")) {
+					originX = Double.parseDouble(header.get("xllcenter")) - cellSizeX / 2;
+					originY = Double.parseDouble(getHeaderValue(header, "yllcenter")) - cellSizeY / 2 + height * cellSizeY;
+				} else {
+					originX = Double.parseDouble(getHeaderValue(header, "xllcorner"));
+					originY = Double.parseDouble(getHeaderValue(header, "yllcorner")) + height * cellSizeY;
+				}
+
+				if (header.containsKey("nodata_value"))
+					noData = (float)Double.parseDouble(header.get("nodata_value"));
+
+				if ((long)width * height > Integer.MAX_VALUE)
+					throw new IOException("The ASCII grid " + file.getName() + " is too large. Please convert it to GeoTIFF.");
+
+				values = new float[width * height];
+				for (int i = 0; i < values.length; i++) {
+					if (token == null)
+						throw new IOException("Unexpected end of ASCII grid " + file.getName() + ".");
+
+					values[i] = Float.parseFloat(token);
+					token = nextToken(in);
+				}
+			} catch (NumberFormatException e) {
+				throw new IOException("Failed to parse ASCII grid " + file.getName() + ".", e);
+			} finally {
+				in.close();
+			}
+		}
+
+		@Override
+		double read(int col, int row) {
+			return values[row * width + col];
+		}
+
+		private String getHeaderValue(HashMap<String, String> header, String key) throws IOException {
+			String value = header.get(key);
+			if (value == null)
+				throw new IOException("The ASCII grid header lacks the '" + key + "' entry.");
+
+			return value;
+		}
+
+		private String nextToken(InputStream in) throws IOException {
+			int c;
+			while ((c = in.read()) != -1 && Character.isWhitespace(c));
+			if (c == -1)
+				return null;
+
+			StringBuilder token = new StringBuilder();
+			do {
+				token.append((char)c);
+			} while ((c = in.read()) != -1 && !Character.isWhitespace(c));
+
+			return token.toString();
+		}
+	}
+
+	private static final class GeoTiffGrid extends Grid {
+		private final MappedByteBuffer[] segments;
+		private final int bytesPerSample;
+		private final int pixelStride;
+		private final int sampleFormat;
+		private final long[] chunkOffsets;
+		private final int chunkWidth;
+		private final int chunkHeight;
+		private final int chunksAcross;
+
+		GeoTiffGrid(File file) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				long size = channel.size();
+				segments = new MappedByteBuffer[(int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+				for (int i = 0; i < segments.length; i++) {
+					// segments overlap by a few bytes so that no sample spans two buffers
+					long position = i * SEGMENT_SIZE;
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE + 8, size - position));
+				}
+			} finally {
+				raf.close();
+			}
+
+			if (segments.length == 0)
+				throw new IOException("The GeoTIFF file " + file.getName() + " is empty.");
+
+			MappedByteBuffer header = segments[0];
+			if (header.get(0) == 'I' && header.get(1) == 'I')
+				header.order(ByteOrder.LITTLE_ENDIAN);
+			else if (header.get(0) == 'M' && header.get(1) == 'M')
+				header.order(ByteOrder.BIG_ENDIAN);
+			else
+				throw new IOException(file.getName() + " is not a TIFF file.");
+
+			for (MappedByteBuffer segment : segments)
+				segment.order(header.order());
+
+			if (readInt(2, 2) != 42)
+				throw new IOException("BigTIFF files are not supported.");
+
+			HashMap<Integer, long[]> entries = new HashMap<Integer, long[]>();
+			long ifd = readInt(4, 4);
+			int numberOfEntries = (int)readInt(ifd, 2);
+			for (int i = 0; i < numberOfEntries; i++) {
+				long entry = ifd + 2 + i * 12;
+				entries.put((int)readInt(entry, 2), new long[]{ readInt(entry + 2, 2), readInt(entry + 4, 4), entry + 8 });
+			}
+
+			if (getInteger(entries, 259, 1) != 1)
+				throw new IOException("Compressed GeoTIFF files are not supported.");
+
+			width = (int)getInteger(entries, 256, -1);
+			height = (int)getInteger(entries, 257, -1);
+			int bitsPerSample = (int)getInteger(entries, 258, -1);
+			int samplesPerPixel = (int)getInteger(entries, 277, 1);
+			sampleFormat = (int)getInteger(entries, 339, 1);
+			if (width <= 0 || height <= 0 || bitsPerSample % 8 != 0)
+				throw new IOException("Unsupported GeoTIFF sample layout.");
+
+			if (samplesPerPixel > 1 && getInteger(entries, 284, 1) != 1)
+				throw new IOException("Planar GeoTIFF files are not supported.");
+
+			bytesPerSample = bitsPerSample / 8;
+			pixelStride = bytesPerSample * samplesPerPixel;
+
+			if (entries.containsKey(324)) {
+				chunkWidth = (int)getInteger(entries, 322, -1);
+				chunkHeight = (int)getInteger(entries, 323, -1);
+				chunkOffsets = getValues(entries, 324);
+			} else {
+				chunkWidth = width;
+				chunkHeight = (int)Math.min(getInteger(entries, 278, height), height);
+				chunkOffsets = getValues(entries, 273);
+			}
+
+			chunksAcross = (width + chunkWidth - 1) / chunkWidth;
+
+			double[] pixelScale = getDoubles(entries, 33550);
+			double[] tiepoint = getDoubles(entries, 33922);
+			if (pixelScale == null || tiepoint == null || pixelScale.length < 2 || tiepoint.length < 6)
+				throw new IOException("The GeoTIFF file " + file.getName() + " lacks a georeference.");
+
+			cellSizeX = pixelScale[0];
+			cellSizeY = pixelScale[1];
+			originX = tiepoint[3] - tiepoint[0] * cellSizeX;
+			originY = tiepoint[4] + tiepoint[1] * cellSizeY;
+
+			long[] geoKeys = getValues(entries, 34735);
+			if (geoKeys != null) {
+				for (int i = 4; i + 3 < geoKeys.length; i += 4) {
+					if (geoKeys[i + 1] != 0)
+						continue;
+
+					if (geoKeys[i] == 1025 && geoKeys[i + 3] == 2) {
+						// PixelIsPoint
+						originX -= cellSizeX / 2;
+						originY += cellSizeY / 2;
+					} else if (geoKeys[i] == 3072 || (geoKeys[i] == 2048 && srid == 0))
+						srid = (int)geoKeys[i + 3];
+				}
+			}
+
+			if (entries.containsKey(42113)) {
+				String value = getString(entries, 42113).trim();
+				if (value.length() > 0)
+					noData = Double.parseDouble(value);
+			}
+		}
+
+		@Override
+		double read(int col, int row) {
+			int chunk = (row / chunkHeight) * chunksAcross + col / chunkWidth;
+			long offset = chunkOffsets[chunk] + ((long)(row % chunkHeight) * chunkWidth + col % chunkWidth) * pixelStride;
+			MappedByteBuffer segment = segments[(int)(offset / SEGMENT_SIZE)];
+			int position = (int)(offset % SEGMENT_SIZE);
+
+			switch (sampleFormat) {
+			case 3:
+				return bytesPerSample == 8 ? segment.getDouble(position) : segment.getFloat(position);
+			case 2:
+				switch (bytesPerSample) {
+				case 1: return segment.get(position);
+				case 2: return segment.getShort(position);
+				case 4: return segment.getInt(position);
+				default: return segment.getLong(position);
+				}
+			default:
+				switch (bytesPerSample) {
+				case 1: return segment.get(position) & 0xff;
+				case 2: return segment.getShort(position) & 0xffff;
+				case 4: return segment.getInt(position) & 0xffffffffL;
+				default: return segment.getLong(position);
+				}
+			}
+		}
+
+		private long readInt(long offset, int bytes) {
+			MappedByteBuffer segment = segments[(int)(offset / SEGMENT_SIZE)];
+			int position = (int)(offset % SEGMENT_SIZE);
+			switch (bytes) {
+			case 1: return segment.get(position) & 0xff;
+			case 2: return segment.getShort(position) & 0xffff;
+			default: return segment.getInt(position) & 0xffffffffL;
+			}
+		}
+
+		private long getValueOffset(long[] entry, int typeSize) {
+			return entry[1] * typeSize <= 4 ? entry[2] : readInt(entry[2], 4);
+		}
+
+		private int getTypeSize(long type) {
+			switch ((int)type) {
+			case 3: case 8: return 2;
+			case 4: case 9: case 11: return 4;
+			case 5: case 10: case 12: return 8;
+			default: return 1;
+			}
+		}
+
+		private long getInteger(HashMap<Integer, long[]> entries, int tag, long defaultValue) throws IOException {
+			long[] values = getValues(entries, tag);
+			if (values == null || values.length == 0) {
+				if (defaultValue < 0)
+					throw new IOException("Missing TIFF tag " + tag + ".");
+
+				return defaultValue;
+			}
+
+			return values[0];
+		}
+
+		private long[] getValues(HashMap<Integer, long[]> entries, int tag) {
+			long[] entry = entries.get(tag);
+			if (entry == null)
+				return null;
+
+			int typeSize = getTypeSize(entry[0]);
+			long offset = getValueOffset(entry, typeSize);
+			long[] values = new long[(int)entry[1]];
+			for (int i = 0; i < values.length; i++)
+				values[i] = readInt(offset + i * typeSize, typeSize);
+
+			return values;
+		}
+
+		private double[] getDoubles(HashMap<Integer, long[]> entries, int tag) {
+			long[] entry = entries.get(tag);
+			if (entry == null || entry[0] != 12)
+				return null;
+
+			long offset = getValueOffset(entry, 8);
+			double[] values = new double[(int)entry[1]];
+			for (int i = 0; i < values.length; i++) {
+				long position = offset + i * 8;
+				values[i] = segments[(int)(position / SEGMENT_SIZE)].getDouble((int)(position % SEGMENT_SIZE));
+			}
+
+			return values;
+		}
+
+		private String getString(HashMap<Integer, long[]> entries, int tag) {
+			long[] entry = entries.get(tag);
+			long offset = getValueOffset(entry, 1);
+			byte[] bytes = new byte[(int)entry[1]];
+			for (int i = 0; i < bytes.length; i++)
+				bytes[i] = (byte)readInt(offset + i, 1);
+
+			int length = bytes.length;
+			while (length > 0 && bytes[length - 1] == 0)
+				length--;
+
+			return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+		}
+	}
+
+}
@@ -27,7 +27,7 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -35,13 +35,16 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import javax.imageio.ImageIO;
 import javax.xml.bind.JAXBContext;
@@ -59,6 +62,10 @@ import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.kml.util.CityObject4JSON;
 import org.citydb.modules.kml.util.ExportTracker;
+import org.citydb.modules.kml.util.GltfWriter;
+import org.citydb.modules.kml.util.KmzArchiveWriter;
+import org.citydb.modules.kml.util.TextureImageCache;
+import org.citydb.textureAtlas.model.TextureImage;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.util.xml.SAXEventBuffer;
 
@@ -80,16 +87,17 @@ public class KmlExporterManager {
 	private final ExportTracker tracker;
 	private final ObjectFactory kmlFactory; 
 	private final BlobExportAdapter textureExportAdapter;
+	private final TextureImageCache textureImageCache;
 	private final EventDispatcher eventDispatcher;
 	private final Config config;
 	
+	private GltfWriter gltfWriter;
 	private boolean isBBoxActive;
 	private String mainFilename;
 	private HashMap<CityGMLClass, Long> featureCounterMap;
 	
 	private final String ENCODING = "UTF-8";
 	private final Charset CHARSET = Charset.forName(ENCODING);
-	private final String TEMP_FOLDER = "__temp";
 
 	public KmlExporterManager(JAXBContext jaxbKmlContext,
 							  JAXBContext jaxbColladaContext,
@@ -97,6 +105,7 @@ public class KmlExporterManager {
 							  ExportTracker tracker,
 							  ObjectFactory kmlFactory,
 							  BlobExportAdapter textureExportAdapter,
+							  TextureImageCache textureImageCache,
 							  EventDispatcher eventDispatcher,
 							  Config config) {
 		this.jaxbKmlContext = jaxbKmlContext;
@@ -105,6 +114,7 @@ public class KmlExporterManager {
 		this.tracker = tracker;
 		this.kmlFactory = kmlFactory;
 		this.textureExportAdapter = textureExportAdapter;
+		this.textureImageCache = textureImageCache;
 		this.eventDispatcher = eventDispatcher;
 		this.config = config;
 
@@ -125,6 +135,11 @@ public class KmlExporterManager {
 		}
 		mainFilename = mainFilename + ".kml";
 		
+		if (config.getProject().getKmlExporter().isCreateGltfModel() && !config.getProject().getKmlExporter().isUseGltfConverter()) {
+			gltfWriter = new GltfWriter(config.getProject().getKmlExporter().isCreateGltfBinary(), 
+					config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles());
+		}
+
 		featureCounterMap = new HashMap<CityGMLClass, Long>();
 	}
 	
@@ -147,6 +162,10 @@ public class KmlExporterManager {
 		return this.tracker;
 	}
 
+	public TextureImageCache getTextureImageCache() {
+		return textureImageCache;
+	}
+
 	public void print(List<PlacemarkType> placemarkList,
 					  KmlSplittingResult work,
 					  boolean balloonInSeparateFile) throws JAXBException {
@@ -167,7 +186,7 @@ public class KmlExporterManager {
 		String placemarkDescription = null;
 		KmlType kmlType = null;
 		DocumentType document = null;
-		ZipOutputStream zipOut = null;
+		KmzArchiveWriter kmzWriter = null;
 		OutputStreamWriter fileWriter = null;
 		
 		String path = tracker.getCurrentWorkingDirectoryPath();
@@ -193,12 +212,8 @@ public class KmlExporterManager {
         					
 							if (config.getProject().getKmlExporter().isExportAsKmz()) {
 								if (!isBBoxActive || !config.getProject().getKmlExporter().isOneFilePerObject()) {
-        							// export temporarily as kml, it will be later added to kmz if needed
-    								directory = new File(path, TEMP_FOLDER);
-    								if (!directory.exists()) {
-    									Logger.getInstance().info("Creating temporary folder...");
-    									directory.mkdir();
-    								}
+									// streamed directly into the kmz file of the tile
+									tracker.getKmzArchiveWriter().addEntry(BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + work.getGmlId() + '-' + work.getId() + ".html", placemarkDescription);
     							}
 							}
 							else { // export as kml
@@ -210,7 +225,7 @@ public class KmlExporterManager {
     							}
     						}
 
-    						if (!isBBoxActive || !config.getProject().getKmlExporter().isOneFilePerObject() || !config.getProject().getKmlExporter().isExportAsKmz()) {
+    						if (!config.getProject().getKmlExporter().isExportAsKmz()) {
 	       						try {
 	       							File balloonsDirectory = new File(directory, BalloonTemplateHandlerImpl.balloonDirectoryName);
 	       							if (!balloonsDirectory.exists()) {
@@ -259,10 +274,8 @@ public class KmlExporterManager {
 							if (config.getProject().getKmlExporter().isExportAsKmz()) {
 								fileExtension = ".kmz";
 								File placemarkFile = new File(placemarkDirectory, filename + ".kmz");
-								zipOut = new ZipOutputStream(new FileOutputStream(placemarkFile));
-								ZipEntry zipEntry = new ZipEntry("doc.kml");
-								zipOut.putNextEntry(zipEntry);
-								fileWriter = new OutputStreamWriter(zipOut, CHARSET);
+								kmzWriter = new KmzArchiveWriter(placemarkFile);
+								fileWriter = new OutputStreamWriter(kmzWriter.openDocument("doc.kml"), CHARSET);
 							}
 							else {
 								File placemarkFile = new File(placemarkDirectory, filename + ".kml");
@@ -327,23 +340,14 @@ public class KmlExporterManager {
         	if (isBBoxActive && config.getProject().getKmlExporter().isOneFilePerObject() && kmlType != null) { // some Placemarks ARE null
 				if (config.getProject().getKmlExporter().isExportAsKmz()) {
     				kmlMarshaller.marshal(kmlFactory.createKml(kmlType), fileWriter);
-					zipOut.closeEntry();
-
-					if (balloonInSeparateFile) {
-						for (PlacemarkType placemark: placemarkList) {
-							if (placemark != null) {
-								ZipEntry zipEntry = new ZipEntry(BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + work.getGmlId() + '-' + work.getId() + ".html");
-								if (placemarkDescription != null) {
-									zipOut.putNextEntry(zipEntry);
-									zipOut.write(placemarkDescription.getBytes(CHARSET));
-									zipOut.closeEntry();
-									break; // only once since gmlId is the same for all placemarks
-								}
-							}
-						}
+					fileWriter.flush();
+
+					if (balloonInSeparateFile && placemarkDescription != null) {
+						// only once since gmlId is the same for all placemarks
+						kmzWriter.addEntry(BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + work.getGmlId() + '-' + work.getId() + ".html", placemarkDescription);
 					}
 
-					zipOut.close();
+					kmzWriter.close();
 				}
 				else {
     				kmlMarshaller.marshal(kmlFactory.createKml(kmlType), fileWriter);
@@ -365,7 +369,7 @@ public class KmlExporterManager {
 														  	FileNotFoundException,
 														  	IOException,
 														  	SQLException {
-		ZipOutputStream zipOut = null;
+		KmzArchiveWriter kmzWriter = null;
 		OutputStreamWriter fileWriter = null;
 		SAXEventBuffer buffer = new SAXEventBuffer();
 
@@ -422,12 +426,10 @@ public class KmlExporterManager {
 					if (config.getProject().getKmlExporter().isExportAsKmz()) {
 						fileExtension = ".kmz";
 						File placemarkFile = new File(placemarkDirectory, colladaBundle.getGmlId() + "_collada.kmz");
-						zipOut = new ZipOutputStream(new FileOutputStream(placemarkFile));
-						ZipEntry zipEntry = new ZipEntry("doc.kml");
-						zipOut.putNextEntry(zipEntry);
-						fileWriter = new OutputStreamWriter(zipOut, CHARSET);
+						kmzWriter = new KmzArchiveWriter(placemarkFile);
+						fileWriter = new OutputStreamWriter(kmzWriter.openDocument("doc.kml"), CHARSET);
 	    				kmlMarshaller.marshal(kmlFactory.createKml(kmlType), fileWriter);
-						zipOut.closeEntry();
+						fileWriter.flush();
 					}
 					else {
 						File placemarkFile = new File(placemarkDirectory, colladaBundle.getGmlId() + "_collada.kml");
@@ -487,74 +489,61 @@ public class KmlExporterManager {
 
 		if (config.getProject().getKmlExporter().isExportAsKmz() &&	isBBoxActive
 				&& config.getProject().getKmlExporter().isOneFilePerObject()) {
-			
-			// marshalling in parallel threads should save some time
+
+	        // ----------------- model saving -----------------
 	        StringWriter sw = new StringWriter();
 	        colladaMarshaller.marshal(colladaBundle.getCollada(), sw);
-	        colladaBundle.setColladaAsString(sw.toString());
 	        colladaBundle.setCollada(null); // free heap space
-
-	        // ----------------- model saving -----------------
-	        ZipEntry zipEntry = new ZipEntry(colladaBundle.getId() + "/" + colladaBundle.getGmlId() + ".dae");
-	        zipOut.putNextEntry(zipEntry);
-	        zipOut.write(colladaBundle.getColladaAsString().getBytes(CHARSET));
-	        zipOut.closeEntry();
+	        kmzWriter.addEntry(colladaBundle.getId() + "/" + colladaBundle.getGmlId() + ".dae", sw.toString());
 
 	        // ----------------- image saving -----------------
-	        if (colladaBundle.getUnsupportedTexImageIds() != null) {
-	        	Set<String> keySet = colladaBundle.getUnsupportedTexImageIds().keySet();
-	        	Iterator<String> iterator = keySet.iterator();
-	        	while (iterator.hasNext()) {
-	        		String imageFilename = iterator.next();
-	        		byte[] ordImageBytes = textureExportAdapter.getInByteArray(colladaBundle.getUnsupportedTexImageIds().get(imageFilename), imageFilename);
-	        		zipEntry = imageFilename.startsWith("..") ?
-	        				   new ZipEntry(imageFilename.substring(3)): // skip .. and File.separator
-	        					   new ZipEntry(colladaBundle.getId() + "/" + imageFilename);
-	        		zipOut.putNextEntry(zipEntry);
-	        		zipOut.write(ordImageBytes, 0, ordImageBytes.length);
-	        		zipOut.closeEntry();
-	        	}
-	        }
-
-	        if (colladaBundle.getTexImages() != null) {
-	        	Set<String> keySet = colladaBundle.getTexImages().keySet();
-	        	Iterator<String> iterator = keySet.iterator();
-	        	while (iterator.hasNext()) {
-	        		String imageFilename = iterator.next();
-	        		BufferedImage texImage = colladaBundle.getTexImages().get(imageFilename).getBufferedImage();
-	        		String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1);
-
-					zipEntry = imageFilename.startsWith("..") ?
-							   new ZipEntry(imageFilename.substring(3)): // skip .. and File.separator
-								   new ZipEntry(colladaBundle.getId() + "/" + imageFilename);
-					zipOut.putNextEntry(zipEntry);
-					ImageIO.write(texImage, imageType, zipOut);
-					zipOut.closeEntry();
-	        	}
-			}
+	        for (Map.Entry<String, byte[]> entry : getImages(colladaBundle).entrySet())
+	        	kmzWriter.addEntry(getEntryName(colladaBundle.getId(), entry.getKey()), entry.getValue());
 
 			// ----------------- balloon saving -----------------
-			if (colladaBundle.getExternalBalloonFileContent() != null) {
-	        	zipEntry = new ZipEntry(BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + colladaBundle.getGmlId() + '-' + colladaBundle.getId() + ".html");
-				zipOut.putNextEntry(zipEntry);
-				zipOut.write(colladaBundle.getExternalBalloonFileContent().getBytes(CHARSET));
-				zipOut.closeEntry();
-			}
+			if (colladaBundle.getExternalBalloonFileContent() != null)
+				kmzWriter.addEntry(BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + colladaBundle.getGmlId() + '-' + colladaBundle.getId() + ".html", 
+						colladaBundle.getExternalBalloonFileContent());
 
-			zipOut.close();
+			kmzWriter.close();
 		}
-		else {			
-			if (config.getProject().getKmlExporter().isExportAsKmz()) {
-				
-				// export temporarily as kml, it will be later added to kmz if needed
-				File tempFolder = new File(path, TEMP_FOLDER);
-				if (!tempFolder.exists()) {
-					Logger.getInstance().info("Creating temporary folder...");
-					tempFolder.mkdir();
+		else if (config.getProject().getKmlExporter().isExportAsKmz()) {
+			// stream model, images and balloon directly into the kmz file of the tile
+			KmzArchiveWriter archiveWriter = tracker.getKmzArchiveWriter();
+			String directory = colladaBundle.getId() + "/";
+			LinkedHashMap<String, byte[]> images = getImages(colladaBundle);
+			boolean imagesEmbedded = false;
+
+			// ----------------- model saving -----------------
+			if (gltfWriter == null || !config.getProject().getKmlExporter().isNotCreateColladaFiles()) {
+				ByteArrayOutputStream model = new ByteArrayOutputStream();
+				colladaMarshaller.marshal(colladaBundle.getCollada(), model);
+				archiveWriter.addEntry(directory + colladaBundle.getGmlId() + ".dae", model.toByteArray());
+			}
+
+			// ----------------- glTF saving -----------------
+			if (config.getProject().getKmlExporter().isCreateGltfModel()) {
+				byte[] gltfModel = createGltfModel(colladaBundle, colladaMarshaller, images);
+				if (gltfModel != null) {
+					String extension = gltfWriter != null ? gltfWriter.getFileExtension() : ".gltf";
+					archiveWriter.addEntry(directory + colladaBundle.getGmlId() + extension, gltfModel);
+					imagesEmbedded = config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles() 
+							&& config.getProject().getKmlExporter().isNotCreateColladaFiles();
 				}
-				path = path + File.separator + TEMP_FOLDER;
 			}
 
+			// ----------------- image saving -----------------
+			if (!imagesEmbedded) {
+				for (Map.Entry<String, byte[]> entry : images.entrySet())
+					archiveWriter.addEntry(getEntryName(colladaBundle.getId(), entry.getKey()), entry.getValue());
+			}
+
+			// ----------------- balloon saving -----------------
+			if (colladaBundle.getExternalBalloonFileContent() != null)
+				archiveWriter.addEntry(directory + BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + colladaBundle.getGmlId() + '-' + colladaBundle.getId() + ".html", 
+						colladaBundle.getExternalBalloonFileContent());
+		}
+		else {
 			// --------------- create subfolder ---------------
 			File buildingDirectory = new File(path, String.valueOf(colladaBundle.getId()));
 			if (!buildingDirectory.exists()) {
@@ -563,14 +552,18 @@ public class KmlExporterManager {
 
 			// ----------------- model saving -----------------
 			File colladaModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + ".dae");
-			File gltfModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + ".gltf");
-			FileOutputStream fos = new FileOutputStream(colladaModelFile);
-	        colladaMarshaller.marshal(colladaBundle.getCollada(), fos);
-	        fos.close();
+			File gltfModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + (gltfWriter != null ? gltfWriter.getFileExtension() : ".gltf"));
+
+			// the native glTF writer does not need the COLLADA file
+			if (gltfWriter == null || !config.getProject().getKmlExporter().isNotCreateColladaFiles()) {
+				FileOutputStream fos = new FileOutputStream(colladaModelFile);
+				colladaMarshaller.marshal(colladaBundle.getCollada(), fos);
+				fos.close();
+			}
 	        
 	        // ----------------- create glTF without embedded textures-----------------
 			if (config.getProject().getKmlExporter().isCreateGltfModel() && !config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles()) {
-				convertColladaToglTF(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
+				createGltfModel(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
 			}	        
 	        
 			// ----------------- image saving -----------------
@@ -589,18 +582,21 @@ public class KmlExporterManager {
 				Iterator<String> iterator = keySet.iterator();
 				while (iterator.hasNext()) {
 					String imageFilename = iterator.next();
-					BufferedImage texImage = colladaBundle.getTexImages().get(imageFilename).getBufferedImage();
-					String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1);
-
 					File imageFile = new File(buildingDirectory, imageFilename);
-					if (!imageFile.exists()) // avoid overwriting and access conflicts
-						ImageIO.write(texImage, imageType, imageFile);					
+					if (!imageFile.exists()) { // avoid overwriting and access conflicts
+						byte[] image = getImageBytes(imageFilename, colladaBundle.getTexImages().get(imageFilename), colladaBundle.getTexImageSources());
+						if (image != null) {
+							FileOutputStream fos = new FileOutputStream(imageFile);
+							fos.write(image);
+							fos.close();
+						}
+					}
 				}
 			}
 	
 			// ----------------- create glTF with embedded textures-----------------
 			if (config.getProject().getKmlExporter().isCreateGltfModel() && config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles()) {
-				convertColladaToglTF(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
+				createGltfModel(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
 				if (config.getProject().getKmlExporter().isNotCreateColladaFiles() && gltfModelFile.exists()) {
 					Set<String> keySet = colladaBundle.getTexImages().keySet();
 					Iterator<String> iterator = keySet.iterator();
@@ -631,7 +627,111 @@ public class KmlExporterManager {
 			}
 		}
 	}
+
+	private LinkedHashMap<String, byte[]> getImages(ColladaBundle colladaBundle) throws SQLException, IOException {
+		LinkedHashMap<String, byte[]> images = new LinkedHashMap<String, byte[]>();
+
+		if (colladaBundle.getUnsupportedTexImageIds() != null) {
+			for (Map.Entry<String, Long> entry : colladaBundle.getUnsupportedTexImageIds().entrySet()) {
+				byte[] image = textureImageCache.getImageBytes(entry.getValue(), entry.getKey(), textureExportAdapter);
+				if (image != null)
+					images.put(entry.getKey(), image);
+			}
+		}
+
+		if (colladaBundle.getTexImages() != null) {
+			for (Map.Entry<String, TextureImage> entry : colladaBundle.getTexImages().entrySet()) {
+				byte[] image = getImageBytes(entry.getKey(), entry.getValue(), colladaBundle.getTexImageSources());
+				if (image != null)
+					images.put(entry.getKey(), image);
+			}
+		}
+
+		return images;
+	}
+
+	private byte[] getImageBytes(String imageFilename, TextureImage texImage, IdentityHashMap<TextureImage, byte[]> texImageSources) throws IOException {
+		String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+
+		// unmodified images are written as read from the database instead of encoding them again
+		byte[] source = texImageSources != null ? texImageSources.get(texImage) : null;
+		if (source != null && isImageType(source, imageType))
+			return source;
+
+		ByteArrayOutputStream image = new ByteArrayOutputStream();
+		return ImageIO.write(texImage.getBufferedImage(), imageType, image) ? image.toByteArray() : null;
+	}
+
+	private boolean isImageType(byte[] image, String imageType) {
+		if (imageType.equals("jpg") || imageType.equals("jpeg"))
+			return image.length > 2 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8;
+		else if (imageType.equals("png"))
+			return image.length > 8 && (image[0] & 0xff) == 0x89 && image[1] == 'P' && image[2] == 'N' && image[3] == 'G';
+
+		return false;
+	}
+
+	private String getEntryName(long id, String imageFilename) {
+		String entryName = imageFilename.startsWith("..") ? 
+				imageFilename.substring(3) : // skip .. and File.separator
+					id + "/" + imageFilename;
+
+		return entryName.replace(File.separator, "/");
+	}
+
+	private byte[] createGltfModel(ColladaBundle colladaBundle, Marshaller colladaMarshaller, Map<String, byte[]> images) throws JAXBException, IOException {
+		if (gltfWriter != null) {
+			ByteArrayOutputStream model = new ByteArrayOutputStream();
+			try {
+				gltfWriter.write(colladaBundle.getCollada(), model, images);
+				return model.toByteArray();
+			} catch (IOException e) {
+				Logger.getInstance().warn("Failed to write glTF model of city object " + colladaBundle.getGmlId() + " (id " + colladaBundle.getId() + "): " + e.getMessage());
+				return null;
+			}
+		}
+
+		// the external converter only works on files
+		File buildingDirectory = Files.createTempDirectory("kmz").toFile();
+		try {
+			File colladaModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + ".dae");
+			File gltfModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + ".gltf");
+
+			FileOutputStream fos = new FileOutputStream(colladaModelFile);
+			colladaMarshaller.marshal(colladaBundle.getCollada(), fos);
+			fos.close();
+
+			for (Map.Entry<String, byte[]> entry : images.entrySet()) {
+				if (!entry.getKey().startsWith("..")) {
+					fos = new FileOutputStream(new File(buildingDirectory, entry.getKey()));
+					fos.write(entry.getValue());
+					fos.close();
+				}
+			}
+
+			convertColladaToglTF(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
+			return gltfModelFile.exists() ? Files.readAllBytes(gltfModelFile.toPath()) : null;
+		} finally {
+			for (File file : buildingDirectory.listFiles())
+				file.delete();
+
+			buildingDirectory.delete();
+		}
+	}
 	
+	private void createGltfModel(ColladaBundle colladaBundle, File buildingDirectory, File colladaModelFile, File gltfModelFile) {
+		if (gltfWriter == null) {
+			convertColladaToglTF(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
+			return;
+		}
+
+		try {
+			gltfWriter.write(colladaBundle.getCollada(), gltfModelFile, buildingDirectory);
+		} catch (IOException e) {
+			Logger.getInstance().warn("Failed to write glTF model of city object " + colladaBundle.getGmlId() + " (id " + colladaBundle.getId() + ") to '" + gltfModelFile.getAbsolutePath() + "': " + e.getMessage());
+		}
+	}
+
 	private void convertColladaToglTF(ColladaBundle colladaBundle, File buildingDirectory, File colladaModelFile, File gltfModelFile) {
 		String collada2gltfPath = config.getProject().getKmlExporter().getPathOfGltfConverter();
 		File collada2gltfFile = new File(collada2gltfPath);
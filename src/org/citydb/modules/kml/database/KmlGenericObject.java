@@ -27,29 +27,24 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.Transparency;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
 
 import javax.vecmath.Point3d;
-import javax.vecmath.Vector3f;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.DatatypeFactory;
@@ -80,10 +75,14 @@ import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.kml.datatype.TypeAttributeValueEnum;
-import org.citydb.textureAtlas.TextureAtlasCreator;
+import org.citydb.modules.kml.util.EarClippingTriangulator;
+import org.citydb.modules.kml.util.Java3DTriangulator;
+import org.citydb.modules.kml.util.TextureAtlasGenerator;
+import org.citydb.modules.kml.util.TextureImageCache;
+import org.citydb.modules.kml.util.TriangulatedSurface;
+import org.citydb.modules.kml.util.Triangulator;
 import org.citydb.textureAtlas.image.ImageReader;
 import org.citydb.textureAtlas.model.TextureImage;
-import org.citydb.textureAtlas.model.TextureImagesInfo;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.model.citygml.appearance.Color;
@@ -130,8 +129,6 @@ import org.collada._2005._11.colladaschema.VisualScene;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import com.sun.j3d.utils.geometry.GeometryInfo;
-import com.sun.j3d.utils.geometry.NormalGenerator;
 
 import net.opengis.kml._2.AltitudeModeEnumType;
 import net.opengis.kml._2.BoundaryType;
@@ -151,12 +148,18 @@ public abstract class KmlGenericObject {
 	private final String NO_TEXIMAGE = "default";
 
 	private HashMap<Long, SurfaceInfo> surfaceInfos = new HashMap<Long, SurfaceInfo>();
-	private NodeZ coordinateTree;
+	private VertexBuffer vertexBuffer = new VertexBuffer(TOLERANCE);
+	private Triangulator triangulator;
+	private Triangulator fallbackTriangulator;
 
-	// key is surfaceId, surfaceId is originally a Long, here we use an Object for compatibility with the textureAtlasAPI
-	private HashMap<Object, String> texImageUris = new HashMap<Object, String>();
+	// key is surfaceId
+	private HashMap<Long, String> texImageUris = new HashMap<Long, String>();
 	// key is imageUri
 	private HashMap<String, TextureImage> texImages = new HashMap<String, TextureImage>();
+	// database id of the texture images, key is imageUri
+	private HashMap<String, Long> texImageIds = new HashMap<String, Long>();
+	// encoded images as read from the database, key is the decoded image
+	private IdentityHashMap<TextureImage, byte[]> texImageSources = new IdentityHashMap<TextureImage, byte[]>();
 	// for images in unusual formats or wrapping textures. Most times it will be null.
 	// key is imageUri
 	private HashMap<String, Long> unsupportedTexImageIds = null;
@@ -165,9 +168,6 @@ public abstract class KmlGenericObject {
 
 	private long id;
 	private String gmlId;
-	private BigInteger vertexIdCounter = new BigInteger("-1");
-	protected VertexInfo firstVertexInfo = null;
-	private VertexInfo lastVertexInfo = null;
 
 	// origin of the relative coordinates for the object
 	private List<Point3d> origins = new ArrayList<Point3d>();
@@ -177,6 +177,7 @@ public abstract class KmlGenericObject {
 	private Point3d location = new Point3d();
 	private double zOffset;
 	private boolean ignoreSurfaceOrientation = true;
+	private ColladaGeometryBatch colladaGeometryBatch;
 
 	protected Connection connection;
 	protected KmlExporterManager kmlExporterManager;
@@ -192,8 +193,8 @@ public abstract class KmlGenericObject {
 	protected int currentLod;
 	protected DatabaseSrs dbSrs;
 
-	private SimpleDateFormat dateFormatter;
 	protected final ImageReader imageReader;
+	protected final TextureImageCache textureImageCache;
 
 	protected KmlGenericObject(Connection connection,
 			KmlExporterManager kmlExporterManager,
@@ -218,9 +219,8 @@ public abstract class KmlGenericObject {
 		geometryConverterAdapter = databaseAdapter.getGeometryConverter();
 		dbSrs = databaseAdapter.getConnectionMetaData().getReferenceSystem();
 
-		dateFormatter = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
-
 		imageReader = new ImageReader();
+		textureImageCache = kmlExporterManager.getTextureImageCache();
 	}
 
 	public abstract void read(KmlSplittingResult work);
@@ -430,6 +430,7 @@ public abstract class KmlGenericObject {
 		geometry.setMesh(mesh);
 		libraryGeometries.getGeometry().add(geometry);
 		BigInteger texCoordsCounter = BigInteger.ZERO;
+		HashMap<TexCoords, BigInteger> texCoordsIndexes = new HashMap<TexCoords, BigInteger>();
 
 		// --------------------------- visual scenes ---------------------------
 		VisualScene visualScene = colladaFactory.createVisualScene();
@@ -666,115 +667,77 @@ public abstract class KmlGenericObject {
 
 			// --------------------------- geometry (variable part) ---------------------------
 			SurfaceInfo surfaceInfo = surfaceInfos.get(surfaceId);						
-			List<VertexInfo> vertexInfos = surfaceInfo.getVertexInfos();
-			double[] ordinatesArray = new double[vertexInfos.size() * 3];
+			int[] vertexIndexes = surfaceInfo.getVertexIndexes();
+			double[] ordinatesArray = new double[vertexIndexes.length * 3];
 
 			int count = 0;
-			for (VertexInfo vertexInfo : vertexInfos) {
-				ordinatesArray[count++] = vertexInfo.getX() - origin.x;
-				ordinatesArray[count++] = vertexInfo.getY() - origin.y;
-				ordinatesArray[count++] = vertexInfo.getZ() - origin.z;
+			for (int vertexIndex : vertexIndexes) {
+				ordinatesArray[count++] = vertexBuffer.getX(vertexIndex) - origin.x;
+				ordinatesArray[count++] = vertexBuffer.getY(vertexIndex) - origin.y;
+				ordinatesArray[count++] = vertexBuffer.getZ(vertexIndex) - origin.z;
 			}
 
-			GeometryInfo ginfo = new GeometryInfo(GeometryInfo.POLYGON_ARRAY);
-			ginfo.setCoordinates(ordinatesArray);
-			ginfo.setContourCounts(surfaceInfo.getRingCountAsArray());
-			ginfo.setStripCounts(surfaceInfo.getVertexCount());
-			int outerRingCount = ginfo.getStripCounts()[0];
-
 			// triangulate the surface geometry
-			ginfo.convertToIndexedTriangles();
-
-			// generate normals
-			NormalGenerator ng = new NormalGenerator();
-			ng.generateNormals(ginfo);
-			
-			int[] indexes = ginfo.getCoordinateIndices();
-			int[] normalIndexes = ginfo.getNormalIndices();			
-			Vector3f[] normals = ginfo.getNormals();
-			
-			// fix a reversed orientation of the triangulated surface 
-			byte[] edges = {0, 1, 1, 2, 2, 0};			
-			boolean hasFound = false;
-			boolean reverse = false;
-
-			for (int i = 0; !hasFound && i < indexes.length; i += 3) {				
-				// skip degenerated triangles
-				if (indexes[i] == indexes[i + 1] || indexes[i + 1] == indexes[i + 2] || indexes[i] == indexes[i + 2])
-					continue;
-
-				// find the first edge on the exterior ring
-				for (int j = 0; j < edges.length; j += 2) {
-					int first = i + edges[j];
-					int second = i + edges[j + 1]; 
-
-					if (indexes[first] < outerRingCount && indexes[second] < outerRingCount && Math.abs(indexes[first] - indexes[second]) == 1) {
-						// ok, we found it. now check the order of the vertex indices
-						hasFound = true;						
-						if (indexes[first] > indexes[second])
-							reverse = true;
-
-						break;
-					}
-				}
+			if (triangulator == null) {
+				fallbackTriangulator = new Java3DTriangulator();
+				triangulator = config.getProject().getKmlExporter().isUseJava3DTriangulator() ? 
+						fallbackTriangulator : new EarClippingTriangulator();
 			}
 
-			// reverse indexes and normals
-			if (reverse) {
-				ginfo.reverse();
-				for (int i = 0; i < normals.length; i++)
-					normals[i].negate();
-			}
+			TriangulatedSurface triangulatedSurface = triangulator.triangulate(ordinatesArray, surfaceInfo.getVertexCount());
+			if (triangulatedSurface == null && triangulator != fallbackTriangulator)
+				triangulatedSurface = fallbackTriangulator.triangulate(ordinatesArray, surfaceInfo.getVertexCount());
+
+			int[] indexes = triangulatedSurface.getIndexes();
+			int[] normalIndexes = triangulatedSurface.getNormalIndexes();			
+			float[] normals = triangulatedSurface.getNormals();
 
 			// use vertex indices of the triangulation to populate
 			// the vertex arrays in the collada file
 			for (int i = 0; i < indexes.length; i++) {				
-				VertexInfo vertexInfo = vertexInfos.get(indexes[i]);
-				triangles.getP().add(vertexInfo.getVertexId());
+				int vertexIndex = vertexIndexes[indexes[i]];
+				triangles.getP().add(BigInteger.valueOf(vertexIndex));
 				
 				if (getColladaOptions().isGenerateSurfaceNormals())
 					triangles.getP().add(BigInteger.valueOf(normalIndexes[i] + normalIndexOffset));
 				
 				if (surfaceTextured) {
-					TexCoords texCoords = vertexInfo.getTexCoords(surfaceId);
-					if (texCoords != null) {
+					if (surfaceInfo.hasTexCoords(indexes[i])) {
 						// trying to save some texture points
-						int indexOfT = texCoordsValues.indexOf(texCoords.getT()); 
-						if (indexOfT > 0 && indexOfT%2 == 1 && // avoid coincidences
-								texCoordsValues.get(indexOfT - 1).equals(texCoords.getS())) {
-							triangles.getP().add(new BigInteger(String.valueOf((indexOfT - 1)/2)));
-						}
-						else {
+						TexCoords texCoords = new TexCoords(surfaceInfo.getS(indexes[i]), surfaceInfo.getT(indexes[i]));
+						BigInteger texCoordsIndex = texCoordsIndexes.get(texCoords);
+						if (texCoordsIndex == null) {
 							texCoordsValues.add(texCoords.getS());
 							texCoordsValues.add(texCoords.getT());
-							triangles.getP().add(texCoordsCounter);
+							texCoordsIndex = texCoordsCounter;
+							texCoordsIndexes.put(texCoords, texCoordsIndex);
 							texCoordsCounter = texCoordsCounter.add(BigInteger.ONE);
 						}
+
+						triangles.getP().add(texCoordsIndex);
 					}
 					else { // should never happen
 						triangles.getP().add(texCoordsCounter); // wrong data is better than triangles out of sync
 						Logger.getInstance().log(LogLevel.DEBUG, 
-								"texCoords not found for (" + vertexInfo.getX() + ", " + vertexInfo.getY() + ", "
-										+ vertexInfo.getZ() + "). TOLERANCE = " + TOLERANCE);
+								"texCoords not found for (" + vertexBuffer.getX(vertexIndex) + ", " + vertexBuffer.getY(vertexIndex) + ", "
+										+ vertexBuffer.getZ(vertexIndex) + "). TOLERANCE = " + TOLERANCE);
 					}
 				}
 			}
 			
-			for (Vector3f normal : normals) {
-				normalValues.add(reducePrecisionForXorY((double) normal.x));
-				normalValues.add(reducePrecisionForXorY((double) normal.y));
-				normalValues.add(reducePrecisionForXorY((double) normal.z));
+			for (int i = 0; i < normals.length; i += 3) {
+				normalValues.add(reducePrecisionForXorY((double) normals[i]));
+				normalValues.add(reducePrecisionForXorY((double) normals[i + 1]));
+				normalValues.add(reducePrecisionForXorY((double) normals[i + 2]));
 				normalIndexOffset++;
 			}
 		}
 
-		VertexInfo vertexInfoIterator = firstVertexInfo;
-		while (vertexInfoIterator != null) {
-			positionValues.add(reducePrecisionForXorY((vertexInfoIterator.getX() - origin.x)));
-			positionValues.add(reducePrecisionForXorY((vertexInfoIterator.getY() - origin.y)));
-			positionValues.add(reducePrecisionForZ((vertexInfoIterator.getZ() - origin.z)));
-			vertexInfoIterator = vertexInfoIterator.getNextVertexInfo();
-		} 
+		for (int i = 0; i < vertexBuffer.size(); i++) {
+			positionValues.add(reducePrecisionForXorY((vertexBuffer.getX(i) - origin.x)));
+			positionValues.add(reducePrecisionForXorY((vertexBuffer.getY(i) - origin.y)));
+			positionValues.add(reducePrecisionForZ((vertexBuffer.getZ(i) - origin.z)));
+		}
 
 		positionArray.setCount(new BigInteger(String.valueOf(positionValues.size()))); // gotta love BigInteger!
 		normalArray.setCount(new BigInteger(String.valueOf(normalValues.size()))); // gotta love BigInteger!
@@ -865,12 +828,31 @@ public abstract class KmlGenericObject {
 		}
 	}
 
-	protected void addTexImage(String texImageUri, TextureImage texImage){
+	protected void addTexImage(String texImageUri, long texImageId, TextureImage texImage){
 		if (texImage != null) {
 			texImages.put(texImageUri, texImage);
+			if (texImageId >= 0) {
+				texImageIds.put(texImageUri, texImageId);
+			}
+		}
+	}
+
+	protected void addTexImage(String texImageUri, long texImageId, TextureImage texImage, byte[] imageBytes){
+		addTexImage(texImageUri, texImageId, texImage);
+		if (texImage != null && imageBytes != null) {
+			texImageSources.put(texImage, imageBytes);
 		}
 	}
 
+	public IdentityHashMap<TextureImage, byte[]> getTexImageSources(){
+		return texImageSources;
+	}
+
+	protected long getTexImageId(String texImageUri){
+		Long texImageId = texImageIds.get(texImageUri);
+		return texImageId != null ? texImageId.longValue() : -1;
+	}
+
 	protected void removeTexImage(String texImageUri){
 		texImages.remove(texImageUri);
 	}
@@ -911,115 +893,59 @@ public abstract class KmlGenericObject {
 		return surfaceDataId;
 	}
 
-	protected VertexInfo setVertexInfoForXYZ(long surfaceId, double x, double y, double z){
-		vertexIdCounter = vertexIdCounter.add(BigInteger.ONE);
-		VertexInfo vertexInfo = new VertexInfo(vertexIdCounter, x, y, z);
-		NodeZ nodeToInsert = new NodeZ(z, new NodeY(y, new NodeX(x, vertexInfo)));
-		if (coordinateTree == null) {
-			coordinateTree =  nodeToInsert;
-			firstVertexInfo = vertexInfo;
-			lastVertexInfo = vertexInfo;
-		}
-		else {
-			Node node = insertNode(coordinateTree, nodeToInsert);
-			if (node.value instanceof VertexInfo)
-				vertexInfo = (VertexInfo)node.value;
-		}
-
-		return vertexInfo;
+	protected int addVertex(double x, double y, double z) {
+		return vertexBuffer.addVertex(x, y, z);
 	}
 
-	private Node insertNode(Node currentBasis, Node nodeToInsert) {
-		int compareKeysResult = compareKeys(nodeToInsert.key, currentBasis.key, TOLERANCE);
-		if (compareKeysResult > 0) {
-			if (currentBasis.rightArc == null){
-				currentBasis.setRightArc(nodeToInsert);
-				linkCurrentVertexInfoToLastVertexInfo(nodeToInsert);
-				return nodeToInsert;
-			}
-			else {
-				return insertNode(currentBasis.rightArc, nodeToInsert);
-			}
-		}
-		else if (compareKeysResult < 0) {
-			if (currentBasis.leftArc == null){
-				currentBasis.setLeftArc(nodeToInsert);
-				linkCurrentVertexInfoToLastVertexInfo(nodeToInsert);
-				return nodeToInsert;
-			}
-			else {
-				return insertNode(currentBasis.leftArc, nodeToInsert);
-			}
+	protected SurfaceInfo createSurfaceInfo(GeometryObject surface, StringTokenizer texCoordsTokenized) {
+		int ringCount = surface.getNumElements();
+		int[] vertexCount = new int[ringCount];
+
+		int numVertices = 0;
+		for (int i = 0; i < ringCount; i++) {
+			// geometryInfo ignores last point in a polygon
+			vertexCount[i] = Math.max(0, surface.getCoordinates(i).length / 3 - 1);
+			numVertices += vertexCount[i];
 		}
-		else {
-			return replaceOrAddValue(currentBasis, nodeToInsert);
+
+		int[] vertexIndexes = new int[numVertices];
+		double[] texCoords = null;
+		if (texCoordsTokenized != null) {
+			texCoords = new double[numVertices * 2];
+			Arrays.fill(texCoords, Double.NaN);
 		}
-	}
 
-	private Node replaceOrAddValue(Node currentBasis, Node nodeToInsert) {
-		if (nodeToInsert.value instanceof VertexInfo) {
-			VertexInfo vertexInfoToInsert = (VertexInfo)nodeToInsert.value;
-			if (currentBasis.value == null) { // no vertexInfo yet for this point
-				currentBasis.value = nodeToInsert.value;
-				linkCurrentVertexInfoToLastVertexInfo(vertexInfoToInsert);
-			} else
-				vertexIdCounter = vertexIdCounter.subtract(BigInteger.ONE);
+		int vertex = 0;
+		for (int i = 0; i < ringCount; i++) {
+			double[] ordinatesArray = surface.getCoordinates(i);
 
-			return currentBasis;
-		}
-		else { // Node
-			return insertNode((Node)currentBasis.value, (Node)nodeToInsert.value);
-		}
-	}
+			for (int j = 0; j < ordinatesArray.length - 3; j = j+3) {
 
-	private void linkCurrentVertexInfoToLastVertexInfo (Node node) {
-		while (!(node.value instanceof VertexInfo)) {
-			node = (Node)node.value;
-		}
-		linkCurrentVertexInfoToLastVertexInfo((VertexInfo)node.value);
-	}
+				// calculate origin and list of lowest points
+				updateOrigins(ordinatesArray[j], ordinatesArray[j + 1], ordinatesArray[j + 2]);
 
-	private void linkCurrentVertexInfoToLastVertexInfo (VertexInfo currentVertexInfo) {
-		lastVertexInfo.setNextVertexInfo(currentVertexInfo);
-		lastVertexInfo = currentVertexInfo;
-	}
+				// get or create the vertex in the vertex buffer
+				vertexIndexes[vertex] = addVertex(ordinatesArray[j], ordinatesArray[j + 1], ordinatesArray[j + 2]);
+
+				if (texCoordsTokenized != null && texCoordsTokenized.hasMoreTokens()) {
+					texCoords[vertex * 2] = Double.parseDouble(texCoordsTokenized.nextToken());
+					texCoords[vertex * 2 + 1] = Double.parseDouble(texCoordsTokenized.nextToken());
+				}
 
-	private int compareKeys (double key1, double key2, double tolerance){
-		int result = 0;
-		if (Math.abs(key1 - key2) > tolerance) {
-			result = key1 > key2 ? 1 : -1;
+				vertex++;
+			}
+
+			if (texCoordsTokenized != null && texCoordsTokenized.hasMoreTokens()) {
+				texCoordsTokenized.nextToken(); // geometryInfo ignores last point in a polygon
+				texCoordsTokenized.nextToken(); // keep texture coordinates in sync
+			}
 		}
-		return result;
+
+		return new SurfaceInfo(ringCount, vertexCount, vertexIndexes, texCoords);
 	}
 
 	public void appendObject (KmlGenericObject objectToAppend) {
 
-		VertexInfo vertexInfoIterator = objectToAppend.firstVertexInfo;
-		while (vertexInfoIterator != null) {
-			if (vertexInfoIterator.getAllTexCoords() == null) {
-				VertexInfo tmp = this.setVertexInfoForXYZ(-1, // dummy
-						vertexInfoIterator.getX(),
-						vertexInfoIterator.getY(),
-						vertexInfoIterator.getZ());
-				vertexInfoIterator.setVertexId(tmp.getVertexId());
-			}
-			else {
-				Set<Long> keySet = vertexInfoIterator.getAllTexCoords().keySet();
-				Iterator<Long> iterator = keySet.iterator();				
-				
-				while (iterator.hasNext()) {
-					Long surfaceId = iterator.next();
-					VertexInfo tmp = this.setVertexInfoForXYZ(surfaceId,
-							vertexInfoIterator.getX(),
-							vertexInfoIterator.getY(),
-							vertexInfoIterator.getZ());
-					vertexInfoIterator.setVertexId(tmp.getVertexId());
-					tmp.addTexCoords(surfaceId, vertexInfoIterator.getTexCoords(surfaceId));
-				}
-			}
-			vertexInfoIterator = vertexInfoIterator.getNextVertexInfo();
-		} 
-
 		Set<Long> keySet = objectToAppend.surfaceInfos.keySet();
 		Iterator<Long> iterator = keySet.iterator();
 		while (iterator.hasNext()) {
@@ -1027,9 +953,24 @@ public abstract class KmlGenericObject {
 			this.addX3dMaterial(surfaceId, objectToAppend.getX3dMaterial(surfaceId));
 			String imageUri = objectToAppend.texImageUris.get(surfaceId);
 			this.addTexImageUri(surfaceId, imageUri);
-			this.addTexImage(imageUri, objectToAppend.getTexImage(imageUri));
+			TextureImage texImage = objectToAppend.getTexImage(imageUri);
+			this.addTexImage(imageUri, objectToAppend.getTexImageId(imageUri), texImage, objectToAppend.texImageSources.get(texImage));
 			this.addUnsupportedTexImageId(imageUri, objectToAppend.getUnsupportedTexImageId(imageUri));
-			this.surfaceInfos.put(surfaceId, objectToAppend.surfaceInfos.get(surfaceId));
+
+			// re-index the vertices of the appended surface against our own vertex buffer
+			SurfaceInfo surfaceInfo = objectToAppend.surfaceInfos.get(surfaceId);
+			int[] vertexIndexes = surfaceInfo.getVertexIndexes();
+			int[] newVertexIndexes = new int[vertexIndexes.length];
+			for (int i = 0; i < vertexIndexes.length; i++) {
+				newVertexIndexes[i] = this.addVertex(objectToAppend.vertexBuffer.getX(vertexIndexes[i]),
+						objectToAppend.vertexBuffer.getY(vertexIndexes[i]),
+						objectToAppend.vertexBuffer.getZ(vertexIndexes[i]));
+			}
+
+			this.surfaceInfos.put(surfaceId, new SurfaceInfo(surfaceInfo.getRingCount(),
+					surfaceInfo.getVertexCount(),
+					newVertexIndexes,
+					surfaceInfo.getTexCoords()));
 		}
 
 		// adapt id accordingly
@@ -1066,23 +1007,24 @@ public abstract class KmlGenericObject {
 	// This function allows to crop large CityGML texture atlas into small texture images for the corresponding surface geometries
 	public void cropImages () {	
 		HashMap<String, TextureImage> newTexImages = new HashMap<String, TextureImage>();		
-		Set<Object> sgIdSet = texImageUris.keySet();
-		Iterator<Object> sgIdIterator = sgIdSet.iterator();
+		Set<Long> sgIdSet = texImageUris.keySet();
+		Iterator<Long> sgIdIterator = sgIdSet.iterator();
 		
 		// Crop texture image and calculate new texture coordinates for each surface geometry
 		while (sgIdIterator.hasNext()) {
-			Long sgId = (Long) sgIdIterator.next();		
+			Long sgId = sgIdIterator.next();		
 			
 			// step 1: calculate maximal and minimal texture coordinates
-			VertexInfo vertexInfoIterator = firstVertexInfo;			
+			SurfaceInfo surfaceInfo = surfaceInfos.get(sgId);
+			int numVertices = surfaceInfo != null ? surfaceInfo.getNumVertices() : 0;
 			double maxS = 0;
 			double minS = Double.MAX_VALUE;
 			double maxT = 0;
 			double minT = Double.MAX_VALUE;			
-			while (vertexInfoIterator != null) {
-				if (vertexInfoIterator.getAllTexCoords() != null && vertexInfoIterator.getAllTexCoords().containsKey(sgId)) {
-					double s = vertexInfoIterator.getTexCoords(sgId).getS();
-					double t = vertexInfoIterator.getTexCoords(sgId).getT();
+			for (int i = 0; i < numVertices; i++) {
+				if (surfaceInfo.hasTexCoords(i)) {
+					double s = surfaceInfo.getS(i);
+					double t = surfaceInfo.getT(i);
 					if (s > maxS) {
 						maxS = s;
 					}
@@ -1096,7 +1038,6 @@ public abstract class KmlGenericObject {
 						minT = t;
 					}
 				}
-				vertexInfoIterator = vertexInfoIterator.getNextVertexInfo();
 			}
 			
 			// step 2: crop images
@@ -1130,17 +1071,14 @@ public abstract class KmlGenericObject {
 			}
 			
 			// step 3: update the vertex coordinates according to the cropped images
-			vertexInfoIterator = firstVertexInfo;			
-			while (vertexInfoIterator != null) {
-				if (vertexInfoIterator.getAllTexCoords() != null && vertexInfoIterator.getAllTexCoords().containsKey(sgId)) {
-					double s = vertexInfoIterator.getTexCoords(sgId).getS();
-					double t = vertexInfoIterator.getTexCoords(sgId).getT();					
+			for (int i = 0; i < numVertices; i++) {
+				if (surfaceInfo.hasTexCoords(i)) {
+					double s = surfaceInfo.getS(i);
+					double t = surfaceInfo.getT(i);					
 					double newS = (s * imageWidth - startX) / croppedImageWidth;
 					double newT = (t * imageHeight - (imageHeight - endY)) / croppedImageHeight;
-					vertexInfoIterator.getTexCoords(sgId).setS(newS);
-					vertexInfoIterator.getTexCoords(sgId).setT(newT);
+					surfaceInfo.setTexCoords(i, newS, newT);
 				}
-				vertexInfoIterator = vertexInfoIterator.getNextVertexInfo();
 			}
 		} 
 		
@@ -1148,167 +1086,36 @@ public abstract class KmlGenericObject {
 		texImages = newTexImages;
 	}
 	
-	public void createTextureAtlas(int packingAlgorithm, double imageScaleFactor, boolean pots) throws SQLException, IOException {
+	public void createTextureAtlas(TextureAtlasGenerator textureAtlasGenerator, int packingAlgorithm, double imageScaleFactor, boolean pots) throws SQLException, IOException {
 
 		if (texImages.size() < 2) {
 			// building has not enough textures or they are in an unknown image format 
 			return;
 		}
 
-		useExternalTAGenerator(packingAlgorithm, imageScaleFactor, pots);
-	}
-
-	private void useExternalTAGenerator(int packingAlgorithm, double scaleFactor, boolean pots) throws SQLException, IOException {
-				
-		TextureAtlasCreator taCreator = new TextureAtlasCreator();
-		TextureImagesInfo tiInfo = new TextureImagesInfo();
-		tiInfo.setTexImageURIs(texImageUris);
-		tiInfo.setTexImages(texImages);
-
-		// texture coordinates
-		HashMap<Object, String> tiInfoCoords = new HashMap<Object, String>();
-
-		Set<Object> sgIdSet = texImageUris.keySet();
-		Iterator<Object> sgIdIterator = sgIdSet.iterator();
-		while (sgIdIterator.hasNext()) {
-			Long sgId = (Long) sgIdIterator.next();
-			VertexInfo vertexInfoIterator = firstVertexInfo;
-			while (vertexInfoIterator != null) {
-				if (vertexInfoIterator.getAllTexCoords() != null &&
-						vertexInfoIterator.getAllTexCoords().containsKey(sgId)) {
-					double s = vertexInfoIterator.getTexCoords(sgId).getS();
-					double t = vertexInfoIterator.getTexCoords(sgId).getT();
-					String tiInfoCoordsForSgId = tiInfoCoords.get(sgId);
-					tiInfoCoordsForSgId = (tiInfoCoordsForSgId == null) ?
-							"" :
-								tiInfoCoordsForSgId + " ";	
-					tiInfoCoords.put(sgId, tiInfoCoordsForSgId + String.valueOf(s) + " " + String.valueOf(t));
-				}
-				vertexInfoIterator = vertexInfoIterator.getNextVertexInfo();
-			}
-		} 
-
-		tiInfo.setTexCoordinates(tiInfoCoords);
-
-		taCreator.setUsePOTS(pots);
-		taCreator.setScaleFactor(scaleFactor);
-
-		// create texture atlases
-		taCreator.convert(tiInfo, packingAlgorithm);
-
-		sgIdIterator = sgIdSet.iterator();
-		while (sgIdIterator.hasNext()) {
-			Long sgId = (Long) sgIdIterator.next();
-			StringTokenizer texCoordsTokenized = new StringTokenizer(tiInfoCoords.get(sgId), " ");
-			VertexInfo vertexInfoIterator = firstVertexInfo;
-			while (texCoordsTokenized.hasMoreElements() &&
-					vertexInfoIterator != null) {
-				if (vertexInfoIterator.getAllTexCoords() != null && 
-						vertexInfoIterator.getAllTexCoords().containsKey(sgId)) {
-					vertexInfoIterator.getTexCoords(sgId).setS(Double.parseDouble(texCoordsTokenized.nextToken()));
-					vertexInfoIterator.getTexCoords(sgId).setT(Double.parseDouble(texCoordsTokenized.nextToken()));
-				}
-				vertexInfoIterator = vertexInfoIterator.getNextVertexInfo();
-			}
-		} 
-	}	
-
-	public void resizeAllImagesByFactor (double factor) throws SQLException, IOException {
-		if (texImages.size() == 0) { // building has no textures at all
-			return;
-		}
-
-		Set<String> keySet = texImages.keySet();
-		Iterator<String> iterator = keySet.iterator();
-		while (iterator.hasNext()) {
-			String imageName = iterator.next();
-			BufferedImage imageToResize = texImages.get(imageName).getBufferedImage();
-			if (imageToResize.getWidth()*factor < 1 || imageToResize.getHeight()*factor < 1) {
-				continue;
-			}
-			BufferedImage resizedImage = getScaledInstance(imageToResize,
-					(int)(imageToResize.getWidth()*factor),
-					(int)(imageToResize.getHeight()*factor),
-					RenderingHints.VALUE_INTERPOLATION_BILINEAR,
-					true);
-			texImages.put(imageName, new TextureImage(resizedImage));
+		// texture coordinates are adapted in place
+		HashMap<Long, double[]> texCoords = new HashMap<Long, double[]>();
+		for (Long surfaceId : texImageUris.keySet()) {
+			SurfaceInfo surfaceInfo = surfaceInfos.get(surfaceId);
+			if (surfaceInfo != null && surfaceInfo.getTexCoords() != null)
+				texCoords.put(surfaceId, surfaceInfo.getTexCoords());
 		}
 
+		textureAtlasGenerator.createTextureAtlas(texImageUris, 
+				texImages, 
+				texCoords, 
+				texImageIds, 
+				packingAlgorithm, 
+				imageScaleFactor, 
+				pots);
 	}
 
-
-	/**
-	 * Convenience method that returns a scaled instance of the
-	 * provided {@code BufferedImage}.
-	 *
-	 * @param img the original image to be scaled
-	 * @param targetWidth the desired width of the scaled instance,
-	 *    in pixels
-	 * @param targetHeight the desired height of the scaled instance,
-	 *    in pixels
-	 * @param hint one of the rendering hints that corresponds to
-	 *    {@code RenderingHints.KEY_INTERPOLATION} (e.g.
-	 *    {@code RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR},
-	 *    {@code RenderingHints.VALUE_INTERPOLATION_BILINEAR},
-	 *    {@code RenderingHints.VALUE_INTERPOLATION_BICUBIC})
-	 * @param higherQuality if true, this method will use a multi-step
-	 *    scaling technique that provides higher quality than the usual
-	 *    one-step technique (only useful in downscaling cases, where
-	 *    {@code targetWidth} or {@code targetHeight} is
-	 *    smaller than the original dimensions, and generally only when
-	 *    the {@code BILINEAR} hint is specified)
-	 * @return a scaled version of the original {@code BufferedImage}
-	 */
-	private BufferedImage getScaledInstance(BufferedImage img,
-			int targetWidth,
-			int targetHeight,
-			Object hint,
-			boolean higherQuality) {
-
-		int type = (img.getTransparency() == Transparency.OPAQUE) ?
-				BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
-		BufferedImage ret = (BufferedImage)img;
-		int w, h;
-		if (higherQuality) {
-			// Use multi-step technique: start with original size, then
-			// scale down in multiple passes with drawImage()
-			// until the target size is reached
-			w = img.getWidth();
-			h = img.getHeight();
-		} 
-		else {
-			// Use one-step technique: scale directly from original
-			// size to target size with a single drawImage() call
-			w = targetWidth;
-			h = targetHeight;
-		}
-
-		do {
-			if (higherQuality && w > targetWidth) {
-				w /= 2;
-				if (w < targetWidth) {
-					w = targetWidth;
-				}
-			}
-
-			if (higherQuality && h > targetHeight) {
-				h /= 2;
-				if (h < targetHeight) {
-					h = targetHeight;
-				}
-			}
-
-			BufferedImage tmp = new BufferedImage(w, h, type);
-			Graphics2D g2 = tmp.createGraphics();
-			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, hint);
-			g2.drawImage(ret, 0, 0, w, h, null);
-			g2.dispose();
-
-			ret = tmp;
+	public void resizeAllImagesByFactor (TextureAtlasGenerator textureAtlasGenerator, double factor) throws SQLException, IOException {
+		if (texImages.size() == 0) { // building has no textures at all
+			return;
 		}
-		while (w != targetWidth || h != targetHeight);
 
-		return ret;
+		textureAtlasGenerator.resizeImages(texImages, factor);
 	}
 
 	private String buildNameFromX3dMaterial(X3DMaterial x3dMaterial) {
@@ -1684,11 +1491,15 @@ public abstract class KmlGenericObject {
 		return x3dMaterial;
 	}
 
-	protected void fillGenericObjectForCollada(ResultSet rs, boolean generateTextureAtlas) throws SQLException {
+	public void setColladaGeometryBatch(ColladaGeometryBatch colladaGeometryBatch) {
+		this.colladaGeometryBatch = colladaGeometryBatch;
+	}
+
+	protected void fillGenericObjectForCollada(ResultSet rs, KmlSplittingResult work, boolean generateTextureAtlas) throws SQLException {
+		String currentgmlId = getGmlId();
+		setGmlId(work.getGmlId());
+		setId(work.getId());
 
-		String selectedTheme = config.getProject().getKmlExporter().getAppearanceTheme();
-		int texImageCounter = 0;
-		
 		DisplayForm colladaDisplayForm = null;
 		for (DisplayForm displayForm: getDisplayForms()) {
 			if (displayForm.getForm() == DisplayForm.COLLADA) {
@@ -1702,214 +1513,190 @@ public abstract class KmlGenericObject {
 		if (colladaDisplayForm.isSetRgba2())
 			x3dRoofMaterial = getX3dMaterialFromIntColor(colladaDisplayForm.getRgba2());
 
-		while (rs.next()) {
-			long surfaceRootId = rs.getLong(1);
-			for (String colladaQuery: Queries.COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID) { // parent surfaces come first
-				PreparedStatement psQuery = null;
-				ResultSet rs2 = null;
-
-				try {
-					psQuery = connection.prepareStatement(colladaQuery);
-					psQuery.setLong(1, surfaceRootId);
-					//				psQuery.setString(2, selectedTheme);
-					rs2 = psQuery.executeQuery();
-
-					while (rs2.next()) {
-
-						String theme = rs2.getString("theme");
-
-						Object buildingGeometryObj = rs2.getObject(1); 
-						// surfaceId is the key to all Hashmaps in object
-						long surfaceId = rs2.getLong("id");
-						long textureImageId = rs2.getLong("tex_image_id");
-						long parentId = rs2.getLong("parent_id");
-						long rootId = rs2.getLong("root_id");
-
-						if (buildingGeometryObj == null) { // root or parent
-							if (selectedTheme.equalsIgnoreCase(theme)) {
-								X3DMaterial x3dMaterial = new X3DMaterial();
-								fillX3dMaterialValues(x3dMaterial, rs2);
-								// x3dMaterial will only added if not all x3dMaterial members are null
-								addX3dMaterial(surfaceId, x3dMaterial);
-							}
-							else if (theme == null) { // no theme for this parent surface
-								if (getX3dMaterial(parentId) != null) { // material for parent's parent known
-									addX3dMaterial(surfaceId, getX3dMaterial(parentId));
-								}
-							}
-							continue; 
-						}
-
-						// Closure Surfaces are not going to be exported
-						int surfaceTypeID = rs2.getInt("objectclass_id");
-						if (surfaceTypeID != 0){
-							if (Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BUILDING_CLOSURE_SURFACE ||
-									Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BRIDGE_CLOSURE_SURFACE ||
-									Util.classId2cityObject(surfaceTypeID)==CityGMLClass.TUNNEL_CLOSURE_SURFACE){
-
-								continue;
-							}
-						}
-
-						// from here on it is an elementary surfaceMember
-						eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
-
-						String texImageUri = null;
-						StringTokenizer texCoordsTokenized = null;
-						
-						if (selectedTheme.equals(KmlExporter.THEME_NONE)) {
-							if (surfaceTypeID != 0){
-								if (Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BUILDING_WALL_SURFACE ||
-										Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BRIDGE_WALL_SURFACE ||
-										Util.classId2cityObject(surfaceTypeID)==CityGMLClass.TUNNEL_WALL_SURFACE){
-									addX3dMaterial(surfaceId, x3dWallMaterial);
-								}
-								else if (Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BUILDING_ROOF_SURFACE ||
-										Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BRIDGE_ROOF_SURFACE ||
-										Util.classId2cityObject(surfaceTypeID)==CityGMLClass.TUNNEL_ROOF_SURFACE) {						
-									addX3dMaterial(surfaceId, x3dRoofMaterial);
-								}
-								else {
-									addX3dMaterial(surfaceId, x3dWallMaterial);
-								}
-							}
-							else {
-								addX3dMaterial(surfaceId, x3dWallMaterial);
-							}
-						}
-						else {
-							if (!selectedTheme.equalsIgnoreCase(theme) && !selectedTheme.equalsIgnoreCase("<unknown>")) { // no surface data for this surface and theme
-								if (getX3dMaterial(parentId) != null) // material for parent surface known
-									addX3dMaterial(surfaceId, getX3dMaterial(parentId));
-								else if (getX3dMaterial(rootId) != null) // material for root surface known
-									addX3dMaterial(surfaceId, getX3dMaterial(rootId));
-								else
-									addX3dMaterial(surfaceId, x3dWallMaterial);
-							}
-							else {
-								texImageUri = rs2.getString("tex_image_uri");
-								boolean hasTexture = false;
-
-								StringBuilder sb =  new StringBuilder();
-								Object texCoordsObject = rs2.getObject("texture_coordinates"); 
-								if (texCoordsObject != null){
-									GeometryObject texCoordsGeometryObject = geometryConverterAdapter.getGeometry(texCoordsObject);
-									for (int i = 0; i < texCoordsGeometryObject.getNumElements(); i++) {
-										double[] coordinates = texCoordsGeometryObject.getCoordinates(i);
-										for (double coordinate : coordinates){
-											sb.append(String.valueOf(coordinate));
-											sb.append(" ");
-										}									
-									}									
-								}
-								String texCoords = sb.toString();
-
-								if (texImageUri != null && texImageUri.trim().length() != 0
-										&&  texCoords != null && texCoords.trim().length() != 0) {
-									int fileSeparatorIndex = Math.max(texImageUri.lastIndexOf("\\"), texImageUri.lastIndexOf("/")); 
-									texImageUri = "_" + texImageUri.substring(fileSeparatorIndex + 1); // for example: _tex4712047.jpeg
-									texImageUri = texImageUri.replaceAll(" ", "_"); //replace spaces with underscores
-									hasTexture = true;
-
-									if ((getUnsupportedTexImageId(texImageUri) == -1) && (getTexImage(texImageUri) == null)) { 
-										// not already marked as wrapping texture && not already read in
-										TextureImage texImage = null;
-										byte[] imageBytes = textureExportAdapter.getInByteArray(textureImageId, texImageUri);
-										if (imageBytes != null) {
-											imageReader.setSupportRGB(generateTextureAtlas);
-											try {
-												texImage = imageReader.read(new ByteArrayInputStream(imageBytes));
-
-												if (texImage != null) // image in JPEG, PNG or another usual format
-													addTexImage(texImageUri, texImage);
-												else
-													addUnsupportedTexImageId(texImageUri, textureImageId);
-
-												texImageCounter++;
-												if (texImageCounter > 20) {
-													eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
-													texImageCounter = 0;
-												}
-											} catch (IOException ioe) {
-												//
-											}
-										} else
-											hasTexture = false;
-									}
-								}
-								
-								if (hasTexture) {
-									addTexImageUri(surfaceId, texImageUri);
-									texCoordsTokenized = new StringTokenizer(texCoords.trim(), " ");
-								} else {
-									X3DMaterial x3dMaterial = new X3DMaterial();
-									fillX3dMaterialValues(x3dMaterial, rs2);
-									// x3dMaterial will only added if not all x3dMaterial members are null
-									addX3dMaterial(surfaceId, x3dMaterial);
-									if (getX3dMaterial(surfaceId) == null) {
-										// untextured surface and no x3dMaterial -> default x3dMaterial (gray)
-										addX3dMaterial(surfaceId, x3dWallMaterial);
-									}
-								}
-							}
-						}
-
-						GeometryObject surface = geometryConverterAdapter.getPolygon(buildingGeometryObj);
-						List<VertexInfo> vertexInfos = new ArrayList<VertexInfo>();
+		List<Long> surfaceRootIds = new ArrayList<Long>();
+		while (rs.next())
+			surfaceRootIds.add(rs.getLong(1));
+
+		ColladaGeometryBatch.Fill fill = new ColladaGeometryBatch.Fill(this,
+				work,
+				currentgmlId,
+				surfaceRootIds,
+				generateTextureAtlas,
+				x3dWallMaterial,
+				x3dRoofMaterial);
+
+		// the surfaces are fetched together with those of the other objects of the worker's batch
+		if (colladaGeometryBatch != null)
+			colladaGeometryBatch.addFill(fill);
+		else {
+			ColladaGeometryBatch batch = new ColladaGeometryBatch(connection, eventDispatcher);
+			batch.addFill(fill);
+			batch.execute();
+		}
+	}
 
-						int ringCount = surface.getNumElements();
-						int[] vertexCount = new int[ringCount];
+	protected void fillColladaSurface(ResultSet rs, ColladaGeometryBatch.Fill fill) throws SQLException {
+		String selectedTheme = config.getProject().getKmlExporter().getAppearanceTheme();
+		String theme = rs.getString("theme");
+
+		Object buildingGeometryObj = rs.getObject(1); 
+		// surfaceId is the key to all Hashmaps in object
+		long surfaceId = rs.getLong("id");
+		long textureImageId = rs.getLong("tex_image_id");
+		long parentId = rs.getLong("parent_id");
+		long rootId = rs.getLong("root_id");
+
+		if (buildingGeometryObj == null) { // root or parent
+			if (selectedTheme.equalsIgnoreCase(theme)) {
+				X3DMaterial x3dMaterial = new X3DMaterial();
+				fillX3dMaterialValues(x3dMaterial, rs);
+				// x3dMaterial will only added if not all x3dMaterial members are null
+				addX3dMaterial(surfaceId, x3dMaterial);
+			}
+			else if (theme == null) { // no theme for this parent surface
+				if (getX3dMaterial(parentId) != null) { // material for parent's parent known
+					addX3dMaterial(surfaceId, getX3dMaterial(parentId));
+				}
+			}
+			return;
+		}
 
-						for (int i = 0; i < surface.getNumElements(); i++) {
-							double[] ordinatesArray = surface.getCoordinates(i);
-							int vertices = 0;
+		// Closure Surfaces are not going to be exported
+		int surfaceTypeID = rs.getInt("objectclass_id");
+		if (surfaceTypeID != 0){
+			if (Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BUILDING_CLOSURE_SURFACE ||
+					Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BRIDGE_CLOSURE_SURFACE ||
+					Util.classId2cityObject(surfaceTypeID)==CityGMLClass.TUNNEL_CLOSURE_SURFACE){
 
-							for (int j = 0; j < ordinatesArray.length - 3; j = j+3) {
+				return;
+			}
+		}
 
-								// calculate origin and list of lowest points
-								updateOrigins(ordinatesArray[j], ordinatesArray[j + 1], ordinatesArray[j + 2]);
+		// from here on it is an elementary surfaceMember
+		eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
 
-								// get or create node in vertex info tree
-								VertexInfo vertexInfo = setVertexInfoForXYZ(surfaceId,
-										ordinatesArray[j],
-										ordinatesArray[j+1],
-										ordinatesArray[j+2]);
+		String texImageUri = null;
+		StringTokenizer texCoordsTokenized = null;
+		
+		if (selectedTheme.equals(KmlExporter.THEME_NONE)) {
+			if (surfaceTypeID != 0){
+				if (Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BUILDING_WALL_SURFACE ||
+						Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BRIDGE_WALL_SURFACE ||
+						Util.classId2cityObject(surfaceTypeID)==CityGMLClass.TUNNEL_WALL_SURFACE){
+					addX3dMaterial(surfaceId, fill.x3dWallMaterial);
+				}
+				else if (Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BUILDING_ROOF_SURFACE ||
+						Util.classId2cityObject(surfaceTypeID)==CityGMLClass.BRIDGE_ROOF_SURFACE ||
+						Util.classId2cityObject(surfaceTypeID)==CityGMLClass.TUNNEL_ROOF_SURFACE) {						
+					addX3dMaterial(surfaceId, fill.x3dRoofMaterial);
+				}
+				else {
+					addX3dMaterial(surfaceId, fill.x3dWallMaterial);
+				}
+			}
+			else {
+				addX3dMaterial(surfaceId, fill.x3dWallMaterial);
+			}
+		}
+		else {
+			if (!selectedTheme.equalsIgnoreCase(theme) && !selectedTheme.equalsIgnoreCase("<unknown>")) { // no surface data for this surface and theme
+				if (getX3dMaterial(parentId) != null) // material for parent surface known
+					addX3dMaterial(surfaceId, getX3dMaterial(parentId));
+				else if (getX3dMaterial(rootId) != null) // material for root surface known
+					addX3dMaterial(surfaceId, getX3dMaterial(rootId));
+				else
+					addX3dMaterial(surfaceId, fill.x3dWallMaterial);
+			}
+			else {
+				texImageUri = rs.getString("tex_image_uri");
+				boolean hasTexture = false;
+
+				StringBuilder sb =  new StringBuilder();
+				Object texCoordsObject = rs.getObject("texture_coordinates"); 
+				if (texCoordsObject != null){
+					GeometryObject texCoordsGeometryObject = geometryConverterAdapter.getGeometry(texCoordsObject);
+					for (int i = 0; i < texCoordsGeometryObject.getNumElements(); i++) {
+						double[] coordinates = texCoordsGeometryObject.getCoordinates(i);
+						for (double coordinate : coordinates){
+							sb.append(String.valueOf(coordinate));
+							sb.append(" ");
+						}									
+					}									
+				}
+				String texCoords = sb.toString();
+
+				if (texImageUri != null && texImageUri.trim().length() != 0
+						&&  texCoords != null && texCoords.trim().length() != 0) {
+					int fileSeparatorIndex = Math.max(texImageUri.lastIndexOf("\\"), texImageUri.lastIndexOf("/")); 
+					texImageUri = "_" + texImageUri.substring(fileSeparatorIndex + 1); // for example: _tex4712047.jpeg
+					texImageUri = texImageUri.replaceAll(" ", "_"); //replace spaces with underscores
+					hasTexture = true;
+
+					if ((getUnsupportedTexImageId(texImageUri) == -1) && (getTexImage(texImageUri) == null)) { 
+						// not already marked as wrapping texture && not already read in
+						TextureImage texImage = null;
+						byte[] imageBytes = textureImageCache.getImageBytes(textureImageId, texImageUri, textureExportAdapter);
+						if (imageBytes != null) {
+							try {
+								texImage = textureImageCache.getTextureImage(textureImageId, imageBytes, fill.generateTextureAtlas, imageReader);
+
+								if (texImage != null) // image in JPEG, PNG or another usual format
+									addTexImage(texImageUri, textureImageId, texImage, imageBytes);
+								else
+									addUnsupportedTexImageId(texImageUri, textureImageId);
 
-								if (texCoordsTokenized != null && texCoordsTokenized.hasMoreTokens()) {
-									double s = Double.parseDouble(texCoordsTokenized.nextToken());
-									double t = Double.parseDouble(texCoordsTokenized.nextToken());
-									vertexInfo.addTexCoords(surfaceId, new TexCoords(s, t));
+								fill.texImageCounter++;
+								if (fill.texImageCounter > 20) {
+									eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, fill.texImageCounter, this));
+									fill.texImageCounter = 0;
 								}
-
-								vertexInfos.add(vertexInfo);
-								vertices++;
-							}
-
-							vertexCount[i] = vertices;
-
-							if (texCoordsTokenized != null && texCoordsTokenized.hasMoreTokens()) {
-								texCoordsTokenized.nextToken(); // geometryInfo ignores last point in a polygon
-								texCoordsTokenized.nextToken(); // keep texture coordinates in sync
+							} catch (IOException ioe) {
+								//
 							}
-						}
-
-						addSurfaceInfo(surfaceId, new SurfaceInfo(ringCount, vertexCount, vertexInfos));
+						} else
+							hasTexture = false;
 					}
 				}
-				catch (SQLException sqlEx) {
-					Logger.getInstance().error("SQL error while querying city object: " + sqlEx.getMessage());
-				}
-				finally {
-					if (rs2 != null)
-						try { rs2.close(); } catch (SQLException e) {}
-					if (psQuery != null)
-						try { psQuery.close(); } catch (SQLException e) {}
+				
+				if (hasTexture) {
+					addTexImageUri(surfaceId, texImageUri);
+					texCoordsTokenized = new StringTokenizer(texCoords.trim(), " ");
+				} else {
+					X3DMaterial x3dMaterial = new X3DMaterial();
+					fillX3dMaterialValues(x3dMaterial, rs);
+					// x3dMaterial will only added if not all x3dMaterial members are null
+					addX3dMaterial(surfaceId, x3dMaterial);
+					if (getX3dMaterial(surfaceId) == null) {
+						// untextured surface and no x3dMaterial -> default x3dMaterial (gray)
+						addX3dMaterial(surfaceId, fill.x3dWallMaterial);
+					}
 				}
 			}
 		}
 
-		// count rest images
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
+		GeometryObject surface = geometryConverterAdapter.getPolygon(buildingGeometryObj);
+		addSurfaceInfo(surfaceId, createSurfaceInfo(surface, texCoordsTokenized));
+	}
+
+	protected void finishColladaFill(KmlSplittingResult work, String previousGmlId) {
+		if (previousGmlId != work.getGmlId() && getGeometryAmount() > GEOMETRY_AMOUNT_WARNING) {
+			Logger.getInstance().info("Object " + work.getGmlId() + " has more than " + GEOMETRY_AMOUNT_WARNING + " geometries. This may take a while to process...");
+		}
+
+		List<Point3d> anchorCandidates = getOrigins(); // setOrigins() called mainly for the side-effect
+		double zOffset = getZOffsetFromConfigOrDB(work.getId());
+		if (zOffset == Double.MAX_VALUE) {
+			if (isImplicitGeometry()) {
+				anchorCandidates.clear();
+				anchorCandidates.add(new Point3d(0,0,0)); // will be turned into refPointX,Y,Z by convertToWGS84
+			}
+			zOffset = getZOffsetFromGEService(work.getId(), anchorCandidates);
+		}
+		setZOffset(zOffset);
+	}
+
+	protected boolean isImplicitGeometry() {
+		return false;
 	}
 
 	public PlacemarkType createPlacemarkForColladaModel() throws SQLException {
@@ -2147,9 +1934,13 @@ public abstract class KmlGenericObject {
 				String balloonTemplate = getBalloonContentFromGenericAttribute(id);
 				if (balloonTemplate != null) {
 					if (getBalloonTemplateHandler() == null) { // just in case
-						setBalloonTemplateHandler(databaseAdapter.getBalloonTemplateHandler(balloonTemplate));
+						BalloonTemplateHandler balloonTemplateHandler = databaseAdapter.getBalloonTemplateHandler(balloonTemplate);
+						placemark.setDescription(balloonTemplateHandler.getBalloonContent(balloonTemplate, id, currentLod, connection));
+						balloonTemplateHandler.close();
+					}
+					else {
+						placemark.setDescription(getBalloonTemplateHandler().getBalloonContent(balloonTemplate, id, currentLod, connection));
 					}
-					placemark.setDescription(getBalloonTemplateHandler().getBalloonContent(balloonTemplate, id, currentLod, connection));
 				}
 				break;
 			case GEN_ATTRIB_AND_FILE:
@@ -2160,7 +1951,6 @@ public abstract class KmlGenericObject {
 				}
 			case FILE :
 				if (getBalloonTemplateHandler() != null) {
-					getBalloonTemplateHandler().getBalloonContent(id, currentLod, connection);
 					placemark.setDescription(getBalloonTemplateHandler().getBalloonContent(id, currentLod, connection));
 				}
 				break;
@@ -2225,32 +2015,11 @@ public abstract class KmlGenericObject {
 			zOffset = Double.MAX_VALUE;
 			break;
 		case GENERIC_ATTRIBUTE:
-			PreparedStatement selectQuery = null;
-			ResultSet rs = null;
-			String genericAttribName = "GE_LoD" + currentLod + "_zOffset";
 			try {
 				// first look for the value in the DB
-				selectQuery = connection.prepareStatement(Queries.GET_STRVAL_GENERICATTRIB_FROM_ID);
-				selectQuery.setLong(1, id);
-				selectQuery.setString(2, genericAttribName);
-				rs = selectQuery.executeQuery();
-				if (rs.next()) {
-					String strVal = rs.getString(1);
-					if (strVal != null) { // use value in DB 
-						StringTokenizer attributeTokenized = new StringTokenizer(strVal, "|");
-						attributeTokenized.nextToken(); // skip mode
-						zOffset = Double.parseDouble(attributeTokenized.nextToken());
-					}
-				}
+				zOffset = elevationServiceHandler.getStoredZOffset(id, currentLod);
 			}
 			catch (Exception e) {}
-			finally {
-				try {
-					if (rs != null) rs.close();
-					if (selectQuery != null) selectQuery.close();
-				}
-				catch (Exception e2) {}
-			}
 		}
 
 		return zOffset;
@@ -2289,11 +2058,7 @@ public abstract class KmlGenericObject {
 			catch (Exception e) {}
 		}
 		else if (config.getProject().getKmlExporter().isCallGElevationService()) { // allowed to query
-			PreparedStatement insertQuery = null;
-			ResultSet rs = null;
-
 			try {
-				// convert candidate points to WGS84
 				double[] coords = new double[candidates.size()*3];
 				int index = 0;
 				for (Point3d point3d: candidates) {
@@ -2302,33 +2067,23 @@ public abstract class KmlGenericObject {
 					coords[index++] = point3d.z;
 				}
 
-				if (candidates.size() == 1) {
-					coords = convertPointCoordinatesToWGS84(coords);
-				} else { 
-					GeometryObject geomObj = convertToWGS84(GeometryObject.createCurve(coords, 3, dbSrs.getSrid()));
-					coords = geomObj.getCoordinates(0);
+				if (elevationServiceHandler.requiresWGS84Coordinates()) {
+					// convert candidate points to WGS84
+					if (candidates.size() == 1) {
+						coords = convertPointCoordinatesToWGS84(coords);
+					} else { 
+						GeometryObject geomObj = convertToWGS84(GeometryObject.createCurve(coords, 3, dbSrs.getSrid()));
+						coords = geomObj.getCoordinates(0);
+					}
 				}
 
-				Logger.getInstance().info("Getting zOffset from Google's elevation API for " + getGmlId() + " with " + candidates.size() + " points.");
+				Logger.getInstance().debug("Getting zOffset for " + getGmlId() + " with " + candidates.size() + " points.");
 				zOffset = elevationServiceHandler.getZOffset(coords);
 
 				// save result in DB for next time
-				String genericAttribName = "GE_LoD" + currentLod + "_zOffset";
-				insertQuery = connection.prepareStatement(Queries.INSERT_GE_ZOFFSET(databaseAdapter.getSQLAdapter()));
-				insertQuery.setString(1, genericAttribName);
-				String strVal = "Auto|" + zOffset + "|" + dateFormatter.format(new Date(System.currentTimeMillis()));
-				insertQuery.setString(2, strVal);
-				insertQuery.setLong(3, id);
-				rs = insertQuery.executeQuery();
+				elevationServiceHandler.storeZOffset(id, currentLod, zOffset);
 			}
 			catch (Exception e) {}
-			finally {
-				try {
-					if (rs != null) rs.close();
-					if (insertQuery != null) insertQuery.close();
-				}
-				catch (Exception e2) {}
-			}
 		}
 
 		return zOffset;
@@ -2414,49 +2169,4 @@ public abstract class KmlGenericObject {
 		return convertedGeomObj;
 	}
 
-	protected class Node{
-		double key;
-		Object value;
-		Node rightArc;
-		Node leftArc;
-
-		protected Node(double key, Object value){
-			this.key = key;
-			this.value = value;
-		}
-
-		protected void setLeftArc(Node leftArc) {
-			this.leftArc = leftArc;
-		}
-
-		protected Node getLeftArc() {
-			return leftArc;
-		}
-
-		protected void setRightArc (Node rightArc) {
-			this.rightArc = rightArc;
-		}
-
-		protected Node getRightArc() {
-			return rightArc;
-		}
-	}
-
-	protected class NodeX extends Node{
-		protected NodeX(double key, Object value){
-			super(key, value);
-		}
-	}
-	protected class NodeY extends Node{
-		protected NodeY(double key, Object value){
-			super(key, value);
-		}
-	}
-	protected class NodeZ extends Node{
-		protected NodeZ(double key, Object value){
-			super(key, value);
-		}
-	}
-
-
 }
@@ -185,7 +185,7 @@ public class KmlSplitter {
 			ResultSet rs = null;
 			PreparedStatement spatialQuery = null;
 			try {
-				spatialQuery = connection.prepareStatement(Queries.GET_IDS(databaseAdapter.getDatabaseType())); 				
+				spatialQuery = connection.prepareStatement(Queries.GET_IDS(databaseAdapter)); 				
 				spatialQuery.setObject(1, databaseAdapter.getGeometryConverter().getDatabaseObject(exportFilter.getBoundingBoxFilter().getFilterStateForKml(), connection));
 				rs = spatialQuery.executeQuery();
 
@@ -33,6 +33,7 @@ import org.citydb.api.database.DatabaseType;
 import org.citydb.api.log.LogLevel;
 import org.citydb.config.project.kmlExporter.DisplayForm;
 import org.citydb.config.project.kmlExporter.Lod0FootprintMode;
+import org.citydb.database.adapter.AbstractDatabaseAdapter;
 import org.citydb.database.adapter.AbstractSQLAdapter;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.importer.database.content.DBSequencerEnum;
@@ -43,22 +44,38 @@ public class Queries {
 	// 	GENERIC PURPOSE QUERIES
 	// ----------------------------------------------------------------------
 
-	public static final String GET_IDS(DatabaseType type) {
+	public static final String GET_IDS(AbstractDatabaseAdapter databaseAdapter) {
 		StringBuilder query = new StringBuilder()
 		.append("SELECT co.id, co.gmlid, co.objectclass_id, co.envelope FROM CITYOBJECT co WHERE ");
 		
-		switch (type) {
+		switch (databaseAdapter.getDatabaseType()) {
 		case ORACLE:
 			query.append("SDO_ANYINTERACT(co.envelope, ?) = 'TRUE'");
 			break;
 		case POSTGIS:
-			query.append("co.envelope && ?");
+			query.append("co.envelope && ").append(databaseAdapter.getSQLAdapter().getGeometryParameter());
 			break;
 		}		
 		
 		return query.toString();
 	}
 
+	public static final String GET_MAX_LAST_MODIFICATION_DATE =
+			"SELECT MAX(co.last_modification_date) FROM CITYOBJECT co";
+
+	public static final String GET_CHANGED_IDS =
+			"SELECT co.id, co.envelope FROM CITYOBJECT co WHERE co.last_modification_date > ?";
+
+	public static final String GET_EXISTING_IDS(int amount) {
+		StringBuilder query = new StringBuilder()
+		.append("SELECT co.id FROM CITYOBJECT co WHERE co.id IN (?");
+
+		for (int i = 1; i < amount; i++)
+			query.append(",?");
+
+		return query.append(")").toString();
+	}
+
 	public static final String GET_EXTRUDED_HEIGHT(DatabaseType type) {
 		switch (type) {
 		case ORACLE:
@@ -382,8 +399,7 @@ public class Queries {
 					"LEFT JOIN APPEAR_TO_SURFACE_DATA a2sd ON a2sd.surface_data_id = sd.id " +
 					"LEFT JOIN APPEARANCE a ON a2sd.appearance_id = a.id " +
 					"LEFT JOIN CITYOBJECT co ON sg.cityobject_id = co.id " +
-					"WHERE " +
-					"sg.root_id = ? "; 
+					"WHERE "; 
 	
 	private static final String COLLADA_IMPLICIT_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID_0 =
 			"SELECT sg.implicit_geometry, sg.id, sg.parent_id, sg.root_id, sd.tex_image_id, " +
@@ -403,10 +419,20 @@ public class Queries {
 		COLLADA_IMPLICIT_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID_0 + "AND sg.implicit_geometry IS NOT NULL" // elementary surfaces
 	};
 	
-	public static final String[] COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID = new String[] {
-			COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID_0 + "AND sg.geometry IS NULL ORDER BY sg.id", // parents
-			COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID_0 + "AND sg.geometry IS NOT NULL" // elementary surfaces
-	};
+	public static final int MAX_BATCH_SIZE = 1000;
+
+	public static final String[] COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_IDS(int amount) {
+		StringBuilder rootIds = new StringBuilder("sg.root_id IN (?");
+		for (int i = 1; i < amount; i++)
+			rootIds.append(",?");
+
+		rootIds.append(") ");
+
+		return new String[] {
+				COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID_0 + rootIds + "AND sg.geometry IS NULL ORDER BY sg.id", // parents
+				COLLADA_GEOMETRY_AND_APPEARANCE_FROM_ROOT_ID_0 + rootIds + "AND sg.geometry IS NOT NULL" // elementary surfaces
+		};
+	}
 
 	private static final String BUILDING_PART_GEOMETRY_HIGHLIGHTING_LOD1 =
 			"SELECT sg.geometry, sg.id " +
@@ -1996,7 +2022,7 @@ public class Queries {
 					"FROM GROUP_TO_CITYOBJECT g2co "+ 
 					"WHERE g2co.cityobjectgroup_id = ?)";
 
-	public static final String CITYOBJECTGROUP_MEMBERS_IN_BBOX(DatabaseType type) {
+	public static final String CITYOBJECTGROUP_MEMBERS_IN_BBOX(AbstractDatabaseAdapter databaseAdapter) {
 		StringBuilder query = new StringBuilder()
 		.append("SELECT co.id, co.gmlid, co.objectclass_id, co.envelope ")
 		.append("FROM CITYOBJECT co ")
@@ -2005,12 +2031,12 @@ public class Queries {
 		.append("WHERE g2co.cityobjectgroup_id = ?) ")
 		.append("AND ");
 				
-		switch (type) {
+		switch (databaseAdapter.getDatabaseType()) {
 		case ORACLE:
 			query.append("SDO_ANYINTERACT(co.envelope, ?) = 'TRUE'");
 			break;
 		case POSTGIS:
-			query.append("co.envelope && ?");
+			query.append("co.envelope && ").append(databaseAdapter.getSQLAdapter().getGeometryParameter());
 			break;
 		}	
 		
@@ -33,7 +33,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 
-import javax.vecmath.Point3d;
 import javax.xml.bind.JAXBException;
 
 import org.citydb.api.database.BalloonTemplateHandler;
@@ -223,21 +222,7 @@ public class Relief extends KmlGenericObject{
 					break;
 				case DisplayForm.COLLADA:
 					if (reliefQueryNumber == Queries.RELIEF_TIN_QUERY) { // all others not supported since they have no texture
-						fillGenericObjectForCollada(rs, config.getProject().getKmlExporter().getReliefColladaOptions().isGenerateTextureAtlases());
-						String currentgmlId = getGmlId();
-						setGmlId(work.getGmlId());
-						setId(work.getId());
-
-						if (currentgmlId != work.getGmlId() && getGeometryAmount() > GEOMETRY_AMOUNT_WARNING) {
-							Logger.getInstance().info("Object " + work.getGmlId() + " has more than " + GEOMETRY_AMOUNT_WARNING + " geometries. This may take a while to process...");
-						}
-
-						List<Point3d> anchorCandidates = getOrigins(); // setOrigins() called mainly for the side-effect
-						double zOffset = getZOffsetFromConfigOrDB(work.getId());
-						if (zOffset == Double.MAX_VALUE) {
-							zOffset = getZOffsetFromGEService(work.getId(), anchorCandidates);
-						}
-						setZOffset(zOffset);
+						fillGenericObjectForCollada(rs, work, config.getProject().getKmlExporter().getReliefColladaOptions().isGenerateTextureAtlases());
 	
 						ColladaOptions colladaOptions = getColladaOptions();
 						setIgnoreSurfaceOrientation(colladaOptions.isIgnoreSurfaceOrientation());
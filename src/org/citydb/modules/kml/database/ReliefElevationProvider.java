@@ -0,0 +1,183 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.citydb.api.database.DatabaseSrs;
+import org.citydb.api.geometry.BoundingBox;
+import org.citydb.api.geometry.GeometryObject;
+import org.citydb.api.geometry.Position;
+import org.citydb.database.adapter.AbstractDatabaseAdapter;
+
+/**
+ * Samples terrain heights from the triangulated reliefs (TIN_RELIEF) stored in the
+ * database. The triangles intersecting the bounding box of the candidate points are
+ * fetched with a single query and the height is interpolated within the triangle
+ * containing a point. Instances use the connection of their export worker and are
+ * therefore not thread-safe. The query runs within a savepoint so that a failure
+ * does not abort the transaction of the worker connection.
+ */
+public class ReliefElevationProvider implements ElevationProvider {
+	private final Connection connection;
+	private final AbstractDatabaseAdapter databaseAdapter;
+	private final DatabaseSrs dbSrs;
+
+	private Statement statement;
+
+	public ReliefElevationProvider(Connection connection, AbstractDatabaseAdapter databaseAdapter) {
+		this.connection = connection;
+		this.databaseAdapter = databaseAdapter;
+		dbSrs = databaseAdapter.getConnectionMetaData().getReferenceSystem();
+	}
+
+	@Override
+	public boolean requiresWGS84Coordinates() {
+		return false;
+	}
+
+	@Override
+	public double[] getElevations(double[] coords) throws SQLException {
+		double[] elevations = new double[coords.length / 3];
+		Arrays.fill(elevations, Double.NaN);
+		if (elevations.length == 0)
+			return elevations;
+
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < coords.length; i += 3) {
+			minX = Math.min(minX, coords[i]);
+			minY = Math.min(minY, coords[i + 1]);
+			maxX = Math.max(maxX, coords[i]);
+			maxY = Math.max(maxY, coords[i + 1]);
+		}
+
+		BoundingBox bbox = new BoundingBox(new Position(minX, minY), new Position(maxX, maxY), dbSrs);
+		String query = "SELECT sg.geometry FROM TIN_RELIEF tr, SURFACE_GEOMETRY sg " +
+				"WHERE sg.root_id = tr.surface_geometry_id AND sg.geometry IS NOT NULL AND " +
+				databaseAdapter.getSQLAdapter().getBoundingBoxPredicate("geometry", "sg", bbox, true);
+
+		if (statement == null)
+			statement = connection.createStatement();
+
+		ResultSet rs = null;
+		Savepoint savepoint = setSavepoint();
+		boolean success = false;
+		try {
+			rs = statement.executeQuery(query);
+			while (rs.next()) {
+				Object object = rs.getObject(1);
+				if (rs.wasNull() || object == null)
+					continue;
+
+				GeometryObject polygon = databaseAdapter.getGeometryConverter().getPolygon(object);
+				if (polygon != null)
+					interpolate(polygon.getCoordinates(0), polygon.getDimension(), coords, elevations);
+			}
+
+			success = true;
+		} finally {
+			if (rs != null)
+				try { rs.close(); } catch (SQLException e) {}
+
+			if (success)
+				releaseSavepoint(savepoint);
+			else
+				rollbackToSavepoint(savepoint);
+		}
+
+		return elevations;
+	}
+
+	private Savepoint setSavepoint() throws SQLException {
+		// a failed query aborts the whole transaction on some databases
+		return connection.getAutoCommit() ? null : connection.setSavepoint();
+	}
+
+	private void releaseSavepoint(Savepoint savepoint) {
+		if (savepoint != null) {
+			try { connection.releaseSavepoint(savepoint); } catch (SQLException sqlEx) {}
+		}
+	}
+
+	private void rollbackToSavepoint(Savepoint savepoint) {
+		if (savepoint != null) {
+			try { connection.rollback(savepoint); } catch (SQLException sqlEx) {}
+		}
+	}
+
+	private void interpolate(double[] ring, int dimension, double[] coords, double[] elevations) {
+		if (dimension < 3)
+			return;
+
+		// fan triangulation of the exterior ring, the closing point is skipped
+		int points = ring.length / dimension - 1;
+		for (int k = 1; k < points - 1; k++) {
+			int a = 0, b = k * dimension, c = (k + 1) * dimension;
+			double x1 = ring[a], y1 = ring[a + 1], z1 = ring[a + 2];
+			double x2 = ring[b], y2 = ring[b + 1], z2 = ring[b + 2];
+			double x3 = ring[c], y3 = ring[c + 1], z3 = ring[c + 2];
+
+			double det = (y2 - y3) * (x1 - x3) + (x3 - x2) * (y1 - y3);
+			if (det == 0)
+				continue;
+
+			double minX = Math.min(x1, Math.min(x2, x3)), maxX = Math.max(x1, Math.max(x2, x3));
+			double minY = Math.min(y1, Math.min(y2, y3)), maxY = Math.max(y1, Math.max(y2, y3));
+
+			for (int i = 0; i < elevations.length; i++) {
+				double x = coords[i * 3], y = coords[i * 3 + 1];
+				if (x < minX || x > maxX || y < minY || y > maxY)
+					continue;
+
+				double l1 = ((y2 - y3) * (x - x3) + (x3 - x2) * (y - y3)) / det;
+				double l2 = ((y3 - y1) * (x - x3) + (x1 - x3) * (y - y3)) / det;
+				double l3 = 1 - l1 - l2;
+				if (l1 < -1e-9 || l2 < -1e-9 || l3 < -1e-9)
+					continue;
+
+				// overlapping reliefs resolve to the highest surface
+				double z = l1 * z1 + l2 * z2 + l3 * z3;
+				if (Double.isNaN(elevations[i]) || z > elevations[i])
+					elevations[i] = z;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if (statement != null)
+			try { statement.close(); } catch (SQLException e) {}
+	}
+
+}
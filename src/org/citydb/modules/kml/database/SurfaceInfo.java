@@ -27,17 +27,17 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.util.List;
-
 public class SurfaceInfo {
 	private final int ringCount;
 	private final int[] vertexCount;
-	private final List<VertexInfo> vertexInfos;
+	private final int[] vertexIndexes;
+	private final double[] texCoords;
 
-	public SurfaceInfo(int ringCount, int[] vertexCount, List<VertexInfo> vertexInfos) {
+	public SurfaceInfo(int ringCount, int[] vertexCount, int[] vertexIndexes, double[] texCoords) {
 		this.ringCount = ringCount;
 		this.vertexCount = vertexCount;
-		this.vertexInfos = vertexInfos;
+		this.vertexIndexes = vertexIndexes;
+		this.texCoords = texCoords;
 	}
 
 	public int getRingCount() {
@@ -53,7 +53,32 @@ public class SurfaceInfo {
 		return vertexCount;
 	}
 
-	public List<VertexInfo> getVertexInfos() {
-		return vertexInfos;
-	}	
+	public int getNumVertices() {
+		return vertexIndexes.length;
+	}
+
+	public int[] getVertexIndexes() {
+		return vertexIndexes;
+	}
+
+	public boolean hasTexCoords(int vertex) {
+		return texCoords != null && !Double.isNaN(texCoords[vertex * 2]);
+	}
+
+	public double getS(int vertex) {
+		return texCoords[vertex * 2];
+	}
+
+	public double getT(int vertex) {
+		return texCoords[vertex * 2 + 1];
+	}
+
+	public void setTexCoords(int vertex, double s, double t) {
+		texCoords[vertex * 2] = s;
+		texCoords[vertex * 2 + 1] = t;
+	}
+
+	public double[] getTexCoords() {
+		return texCoords;
+	}
 }
@@ -51,4 +51,22 @@ public class TexCoords {
 	protected double getT() {
 		return t;
 	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(s) * 31 + Double.doubleToLongBits(t);
+		return (int)(bits ^ (bits >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this)
+			return true;
+
+		if (!(obj instanceof TexCoords))
+			return false;
+
+		TexCoords other = (TexCoords)obj;
+		return s == other.s && t == other.t;
+	}
 }
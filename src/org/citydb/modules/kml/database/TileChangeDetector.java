@@ -0,0 +1,280 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+
+import org.citydb.api.database.DatabaseSrs;
+import org.citydb.api.geometry.BoundingBox;
+import org.citydb.api.geometry.GeometryObject;
+import org.citydb.config.Config;
+import org.citydb.config.project.database.Database;
+import org.citydb.database.DatabaseConnectionPool;
+import org.citydb.database.adapter.AbstractDatabaseAdapter;
+import org.citydb.modules.kml.util.TileManifestReader;
+
+public class TileChangeDetector {
+	private final int BATCH_SIZE = 1000;
+
+	private final AbstractDatabaseAdapter databaseAdapter;
+	private final Connection connection;
+	private final int rows;
+	private final int columns;
+
+	// tile grid vertices in the database srs, row by row
+	private double[][] gridX;
+	private double[][] gridY;
+	private double minX, minY, maxX, maxY;
+
+	public TileChangeDetector(DatabaseConnectionPool dbConnectionPool, BoundingBox wgs84Extent, int rows, int columns, Config config) throws SQLException {
+		this.rows = rows;
+		this.columns = columns;
+
+		databaseAdapter = dbConnectionPool.getActiveDatabaseAdapter();
+		connection = dbConnectionPool.getConnection();
+
+		try {
+			// try and change workspace for connection if needed
+			if (databaseAdapter.hasVersioningSupport()) {
+				Database database = config.getProject().getDatabase();
+				databaseAdapter.getWorkspaceManager().gotoWorkspace(connection, 
+						database.getWorkspaces().getKmlExportWorkspace());
+			}
+
+			createGrid(wgs84Extent);
+		} catch (SQLException e) {
+			try { connection.close(); } catch (SQLException sqlEx) {}
+			throw e;
+		}
+	}
+
+	public long getLastModificationDate() throws SQLException {
+		PreparedStatement query = null;
+		ResultSet rs = null;
+
+		try {
+			query = connection.prepareStatement(Queries.GET_MAX_LAST_MODIFICATION_DATE);
+			rs = query.executeQuery();
+
+			Timestamp lastModification = rs.next() ? rs.getTimestamp(1) : null;
+			return lastModification != null ? lastModification.getTime() : 0;
+		} finally {
+			if (rs != null) try { rs.close(); } catch (SQLException e) {}
+			if (query != null) try { query.close(); } catch (SQLException e) {}
+		}
+	}
+
+	public boolean[][] getAffectedTiles(File manifestFile) throws SQLException, IOException {
+		boolean[][] affectedTiles = new boolean[rows][columns];
+		HashSet<Long> changedIds = new HashSet<Long>();
+
+		TileManifestReader reader = new TileManifestReader(manifestFile);
+		PreparedStatement query = null;
+		ResultSet rs = null;
+
+		try {
+			// city objects changed since the last export affect the tile of their new position
+			query = connection.prepareStatement(Queries.GET_CHANGED_IDS);
+			query.setTimestamp(1, new Timestamp(reader.getLastModification()));
+			rs = query.executeQuery();
+
+			while (rs.next()) {
+				changedIds.add(rs.getLong(1));
+
+				Object geomObj = rs.getObject(2);
+				if (!rs.wasNull() && geomObj != null) {
+					GeometryObject envelope = databaseAdapter.getGeometryConverter().getEnvelope(geomObj);
+					if (envelope != null) {
+						double[] coordinates = envelope.getCoordinates(0);
+						int tile = getTile(coordinates[0] + (coordinates[3] - coordinates[0]) / 2, 
+								coordinates[1] + (coordinates[4] - coordinates[1]) / 2);
+
+						if (tile != -1)
+							affectedTiles[tile / columns][tile % columns] = true;
+					}
+				}
+			}
+
+			rs.close();
+			query.close();
+
+			// ... as well as the tiles they were exported to before, which
+			// also holds for city objects deleted in the meantime
+			query = connection.prepareStatement(Queries.GET_EXISTING_IDS(BATCH_SIZE));
+			long[] batch = new long[BATCH_SIZE];
+			int[] batchTiles = new int[BATCH_SIZE];
+			int batchSize = 0;
+
+			while (reader.nextTile()) {
+				int row = reader.getTileRow();
+				int column = reader.getTileColumn();
+				if (row >= rows || column >= columns)
+					continue;
+
+				for (Long id : reader.readCityObjects().keySet()) {
+					if (affectedTiles[row][column])
+						break;
+
+					if (changedIds.contains(id)) {
+						affectedTiles[row][column] = true;
+						break;
+					}
+
+					batch[batchSize] = id;
+					batchTiles[batchSize++] = row * columns + column;
+
+					if (batchSize == BATCH_SIZE) {
+						markDeletedObjects(query, batch, batchTiles, batchSize, affectedTiles);
+						batchSize = 0;
+					}
+				}
+			}
+
+			if (batchSize > 0)
+				markDeletedObjects(query, batch, batchTiles, batchSize, affectedTiles);
+
+		} finally {
+			if (rs != null) try { rs.close(); } catch (SQLException e) {}
+			if (query != null) try { query.close(); } catch (SQLException e) {}
+			reader.close();
+		}
+
+		return affectedTiles;
+	}
+
+	public void close() {
+		try { connection.close(); } catch (SQLException e) {}
+	}
+
+	private void markDeletedObjects(PreparedStatement query, long[] batch, int[] batchTiles, int batchSize, boolean[][] affectedTiles) throws SQLException {
+		// unused parameters are filled with the first id of the batch
+		for (int i = 0; i < BATCH_SIZE; i++)
+			query.setLong(i + 1, batch[i < batchSize ? i : 0]);
+
+		HashSet<Long> existingIds = new HashSet<Long>();
+		ResultSet rs = null;
+		try {
+			rs = query.executeQuery();
+			while (rs.next())
+				existingIds.add(rs.getLong(1));
+		} finally {
+			if (rs != null) try { rs.close(); } catch (SQLException e) {}
+		}
+
+		for (int i = 0; i < batchSize; i++) {
+			if (!existingIds.contains(batch[i]))
+				affectedTiles[batchTiles[i] / columns][batchTiles[i] % columns] = true;
+		}
+	}
+
+	private void createGrid(BoundingBox wgs84Extent) throws SQLException {
+		DatabaseSrs dbSrs = databaseAdapter.getConnectionMetaData().getReferenceSystem();
+		double columnWidth = (wgs84Extent.getUpperCorner().getX() - wgs84Extent.getLowerCorner().getX()) / columns;
+		double rowHeight = (wgs84Extent.getUpperCorner().getY() - wgs84Extent.getLowerCorner().getY()) / rows;
+
+		gridX = new double[rows + 1][columns + 1];
+		gridY = new double[rows + 1][columns + 1];
+		minX = minY = Double.MAX_VALUE;
+		maxX = maxY = -Double.MAX_VALUE;
+
+		// transform the grid lines the same way the tiles are transformed by the bounding box filter
+		for (int i = 0; i <= rows; i++) {
+			double[] coordinates = new double[(columns + 1) * 2];
+			for (int j = 0; j <= columns; j++) {
+				coordinates[j * 2] = wgs84Extent.getLowerCorner().getX() + j * columnWidth;
+				coordinates[j * 2 + 1] = wgs84Extent.getLowerCorner().getY() + i * rowHeight;
+			}
+
+			GeometryObject line = GeometryObject.createCurve(coordinates, 2, Database.PREDEFINED_SRS.get(Database.PredefinedSrsName.WGS84_2D).getSrid());
+			line = databaseAdapter.getUtil().transform(line, dbSrs);
+			if (line == null)
+				throw new SQLException("Transformation returned null geometry.");
+
+			coordinates = line.getCoordinates(0);
+			int dimension = line.getDimension();
+			for (int j = 0; j <= columns; j++) {
+				gridX[i][j] = coordinates[j * dimension];
+				gridY[i][j] = coordinates[j * dimension + 1];
+
+				minX = Math.min(minX, gridX[i][j]);
+				minY = Math.min(minY, gridY[i][j]);
+				maxX = Math.max(maxX, gridX[i][j]);
+				maxY = Math.max(maxY, gridY[i][j]);
+			}
+		}
+	}
+
+	private int getTile(double x, double y) {
+		if (x < minX || x > maxX || y < minY || y > maxY)
+			return -1;
+
+		// the transformed grid is almost regular, so start with the neighbourhood
+		// of the estimated tile before testing all tiles
+		int row = Math.min(rows - 1, (int)((y - minY) / (maxY - minY) * rows));
+		int column = Math.min(columns - 1, (int)((x - minX) / (maxX - minX) * columns));
+
+		for (int i = Math.max(0, row - 1); i <= Math.min(rows - 1, row + 1); i++) {
+			for (int j = Math.max(0, column - 1); j <= Math.min(columns - 1, column + 1); j++) {
+				if (isInTile(x, y, i, j))
+					return i * columns + j;
+			}
+		}
+
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (isInTile(x, y, i, j))
+					return i * columns + j;
+			}
+		}
+
+		return -1;
+	}
+
+	private boolean isInTile(double x, double y, int row, int column) {
+		double[] pointsX = new double[]{gridX[row][column], gridX[row][column + 1], gridX[row + 1][column + 1], gridX[row + 1][column]};
+		double[] pointsY = new double[]{gridY[row][column], gridY[row][column + 1], gridY[row + 1][column + 1], gridY[row + 1][column]};
+
+		// same point in polygon test as used by the bounding box filter
+		boolean result = false;
+		for (int i = 0, j = pointsX.length - 1; i < pointsX.length; j = i++) {
+			if ((pointsY[i] > y) != (pointsY[j] > y)
+					&& (x < (pointsX[j] - pointsX[i]) * (y - pointsY[i]) / (pointsY[j] - pointsY[i]) + pointsX[i]))
+				result = !result;
+		}
+
+		return result;
+	}
+
+}
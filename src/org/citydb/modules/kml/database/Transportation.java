@@ -220,21 +220,7 @@ public class Transportation extends KmlGenericObject{
 						}
 						break;
 					case DisplayForm.COLLADA:
-						fillGenericObjectForCollada(rs, config.getProject().getKmlExporter().getTransportationColladaOptions().isGenerateTextureAtlases());
-						String currentgmlId = getGmlId();
-						setGmlId(work.getGmlId());
-						setId(work.getId());
-
-						if (currentgmlId != work.getGmlId() && getGeometryAmount() > GEOMETRY_AMOUNT_WARNING) {
-							Logger.getInstance().info("Object " + work.getGmlId() + " has more than " + GEOMETRY_AMOUNT_WARNING + " geometries. This may take a while to process...");
-						}
-
-						List<Point3d> anchorCandidates = getOrigins(); // setOrigins() called mainly for the side-effect
-						double zOffset = getZOffsetFromConfigOrDB(work.getId());
-						if (zOffset == Double.MAX_VALUE) {
-							zOffset = getZOffsetFromGEService(work.getId(), anchorCandidates);
-						}
-						setZOffset(zOffset);
+						fillGenericObjectForCollada(rs, work, config.getProject().getKmlExporter().getTransportationColladaOptions().isGenerateTextureAtlases());
 
 						ColladaOptions colladaOptions = getColladaOptions();
 						setIgnoreSurfaceOrientation(colladaOptions.isIgnoreSurfaceOrientation());
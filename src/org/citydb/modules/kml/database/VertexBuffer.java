@@ -0,0 +1,168 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+import java.util.Arrays;
+
+public class VertexBuffer {
+	private final double tolerance;
+	private final double cellSize;
+
+	private double[] coordinates;
+	private int[] next;
+	private int size;
+
+	// open addressing hash table mapping grid cells to the
+	// first vertex of a chain of vertices within that cell
+	private long[] cellKeys;
+	private int[] cellHeads;
+	private int cellCount;
+
+	public VertexBuffer(double tolerance) {
+		this(tolerance, 256);
+	}
+
+	public VertexBuffer(double tolerance, int initialCapacity) {
+		this.tolerance = tolerance;
+
+		// vertices within the tolerance of a point are at most 
+		// one cell away from the cell of that point in each direction
+		cellSize = tolerance * 2;
+
+		initialCapacity = Math.max(16, initialCapacity);
+		coordinates = new double[initialCapacity * 3];
+		next = new int[initialCapacity];
+
+		int tableSize = Integer.highestOneBit(initialCapacity * 2 - 1) << 1;
+		cellKeys = new long[tableSize];
+		cellHeads = new int[tableSize];
+		Arrays.fill(cellHeads, -1);
+	}
+
+	public int addVertex(double x, double y, double z) {
+		long minX = cell(x - tolerance), maxX = cell(x + tolerance);
+		long minY = cell(y - tolerance), maxY = cell(y + tolerance);
+		long minZ = cell(z - tolerance), maxZ = cell(z + tolerance);
+
+		for (long cx = minX; cx <= maxX; cx++) {
+			for (long cy = minY; cy <= maxY; cy++) {
+				for (long cz = minZ; cz <= maxZ; cz++) {
+					int slot = findSlot(key(cx, cy, cz));
+					if (cellHeads[slot] == -1)
+						continue;
+
+					for (int index = cellHeads[slot]; index != -1; index = next[index]) {
+						if (Math.abs(coordinates[index * 3] - x) <= tolerance
+								&& Math.abs(coordinates[index * 3 + 1] - y) <= tolerance
+								&& Math.abs(coordinates[index * 3 + 2] - z) <= tolerance)
+							return index;
+					}
+				}
+			}
+		}
+
+		if (size == next.length) {
+			coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+			next = Arrays.copyOf(next, next.length * 2);
+		}
+
+		int index = size++;
+		coordinates[index * 3] = x;
+		coordinates[index * 3 + 1] = y;
+		coordinates[index * 3 + 2] = z;
+
+		long key = key(cell(x), cell(y), cell(z));
+		int slot = findSlot(key);
+		if (cellHeads[slot] == -1) {
+			cellKeys[slot] = key;
+			if (++cellCount * 2 > cellKeys.length) {
+				next[index] = -1;
+				cellHeads[slot] = index;
+				rehash();
+				return index;
+			}
+		}
+
+		next[index] = cellHeads[slot];
+		cellHeads[slot] = index;
+		return index;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int index) {
+		return coordinates[index * 3];
+	}
+
+	public double getY(int index) {
+		return coordinates[index * 3 + 1];
+	}
+
+	public double getZ(int index) {
+		return coordinates[index * 3 + 2];
+	}
+
+	private long cell(double value) {
+		return (long)Math.floor(value / cellSize);
+	}
+
+	private long key(long cx, long cy, long cz) {
+		long key = cx * 0x9E3779B97F4A7C15L;
+		key = (key ^ cy) * 0xC2B2AE3D27D4EB4FL;
+		return (key ^ cz) * 0x165667B19E3779F9L;
+	}
+
+	private int findSlot(long key) {
+		int mask = cellKeys.length - 1;
+		int slot = (int)(key ^ (key >>> 32)) & mask;
+		while (cellHeads[slot] != -1 && cellKeys[slot] != key)
+			slot = (slot + 1) & mask;
+
+		return slot;
+	}
+
+	private void rehash() {
+		long[] oldKeys = cellKeys;
+		int[] oldHeads = cellHeads;
+
+		cellKeys = new long[oldKeys.length * 2];
+		cellHeads = new int[oldHeads.length * 2];
+		Arrays.fill(cellHeads, -1);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldHeads[i] != -1) {
+				int slot = findSlot(oldKeys[i]);
+				cellKeys[slot] = oldKeys[i];
+				cellHeads[slot] = oldHeads[i];
+			}
+		}
+	}
+
+}
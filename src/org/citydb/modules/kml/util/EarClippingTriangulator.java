@@ -0,0 +1,644 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * The triangulation algorithm is derived from the earcut library
+ * (https://github.com/mapbox/earcut), which is subject to the 
+ * following license:
+ * 
+ * ISC License
+ * 
+ * Copyright (c) 2016, Mapbox
+ * 
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS" AND ISC DISCLAIMS ALL WARRANTIES WITH REGARD TO
+ * THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL ISC BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA
+ * OR PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package org.citydb.modules.kml.util;
+
+import java.util.Arrays;
+
+/**
+ * Ear clipping triangulation of polygons with holes ported from the earcut 
+ * library (ISC License, see the file header). The polygon is projected onto the coordinate plane 
+ * that is closest to its own plane, holes are bridged into the exterior ring 
+ * and the resulting simple polygon is clipped ear by ear. Nodes are held in 
+ * primitive arrays that are reused between calls, so an instance must not be 
+ * shared between threads.
+ */
+public class EarClippingTriangulator implements Triangulator {
+	private static final int NONE = -1;
+	private static final double AREA_TOLERANCE = 1e-6;
+	private static final double SLIVER_TOLERANCE = 1e-3;
+	private static final double MIN_NORMAL_COSINE = Math.cos(Math.toRadians(10));
+
+	// doubly linked node list
+	private double[] x;
+	private double[] y;
+	private int[] vertex;
+	private int[] prev;
+	private int[] next;
+	private boolean[] steiner;
+	private int nodeCount;
+
+	private int[] triangles;
+	private int triangleCount;
+
+	public EarClippingTriangulator() {
+		ensureNodeCapacity(64);
+		triangles = new int[192];
+	}
+
+	@Override
+	public TriangulatedSurface triangulate(double[] coordinates, int[] ringVertexCounts) {
+		if (ringVertexCounts.length == 0 || ringVertexCounts[0] < 3)
+			return null;
+
+		// the plane normal of the exterior ring according to Newell's method
+		double nx = 0, ny = 0, nz = 0;
+		int outerCount = ringVertexCounts[0];
+		for (int i = 0; i < outerCount; i++) {
+			int j = (i + 1) % outerCount;
+			double x1 = coordinates[i * 3], y1 = coordinates[i * 3 + 1], z1 = coordinates[i * 3 + 2];
+			double x2 = coordinates[j * 3], y2 = coordinates[j * 3 + 1], z2 = coordinates[j * 3 + 2];
+			nx += (y1 - y2) * (z1 + z2);
+			ny += (z1 - z2) * (x1 + x2);
+			nz += (x1 - x2) * (y1 + y2);
+		}
+
+		double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (length == 0 || Double.isNaN(length))
+			return null;
+
+		nx /= length;
+		ny /= length;
+		nz /= length;
+
+		// project onto the coordinate plane that is closest to the polygon plane
+		// and keep the exterior ring counter-clockwise in the projection
+		int uAxis, vAxis;
+		double ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+		if (az >= ax && az >= ay) {
+			uAxis = nz > 0 ? 0 : 1;
+			vAxis = nz > 0 ? 1 : 0;
+		} else if (ax >= ay) {
+			uAxis = nx > 0 ? 1 : 2;
+			vAxis = nx > 0 ? 2 : 1;
+		} else {
+			uAxis = ny > 0 ? 2 : 0;
+			vAxis = ny > 0 ? 0 : 2;
+		}
+
+		int numVertices = 0;
+		for (int count : ringVertexCounts)
+			numVertices += count;
+
+		nodeCount = 0;
+		triangleCount = 0;
+		ensureNodeCapacity(numVertices + ringVertexCounts.length * 2 + 16);
+
+		int outerNode = linkedList(coordinates, 0, outerCount, uAxis, vAxis, true);
+		if (outerNode == NONE || next[outerNode] == prev[outerNode])
+			return null;
+
+		if (ringVertexCounts.length > 1)
+			outerNode = eliminateHoles(coordinates, ringVertexCounts, outerNode, uAxis, vAxis);
+
+		earcutLinked(outerNode, 0);
+
+		// the triangles are counter-clockwise in the projection and thus follow the orientation 
+		// of the exterior ring. Degenerated input such as rings touching each other may lead to 
+		// overlapping or missing triangles, and a single plane normal is not appropriate for 
+		// strongly warped polygons. In these cases, the caller has to fall back to another 
+		// triangulator
+		if (triangleCount == 0)
+			return null;
+
+		double polygonArea = polygonArea(coordinates, ringVertexCounts, uAxis, vAxis);
+		if (!isAreaPreserved(coordinates, polygonArea, uAxis, vAxis) || !isPlanar(coordinates, polygonArea, nx, ny, nz))
+			return null;
+
+		return new TriangulatedSurface(Arrays.copyOf(triangles, triangleCount), 
+				new int[triangleCount], 
+				new float[]{(float)nx, (float)ny, (float)nz});
+	}
+
+	private int linkedList(double[] coordinates, int start, int count, int uAxis, int vAxis, boolean counterClockwise) {
+		int last = NONE;
+		int end = start + count;
+
+		if (counterClockwise == (signedArea(coordinates, start, end, uAxis, vAxis) > 0)) {
+			for (int i = start; i < end; i++)
+				last = insertNode(i, coordinates[i * 3 + uAxis], coordinates[i * 3 + vAxis], last);
+		} else {
+			for (int i = end - 1; i >= start; i--)
+				last = insertNode(i, coordinates[i * 3 + uAxis], coordinates[i * 3 + vAxis], last);
+		}
+
+		if (last != NONE && equals(last, next[last])) {
+			removeNode(last);
+			last = next[last];
+		}
+
+		return last;
+	}
+
+	private int filterPoints(int start, int end) {
+		if (start == NONE)
+			return start;
+
+		if (end == NONE)
+			end = start;
+
+		int p = start;
+		boolean again;
+		do {
+			again = false;
+
+			if (!steiner[p] && (equals(p, next[p]) || area(prev[p], p, next[p]) == 0)) {
+				removeNode(p);
+				p = end = prev[p];
+				if (p == next[p])
+					break;
+
+				again = true;
+			} else
+				p = next[p];
+		} while (again || p != end);
+
+		return end;
+	}
+
+	private void earcutLinked(int ear, int pass) {
+		if (ear == NONE)
+			return;
+
+		int stop = ear;
+		while (prev[ear] != next[ear]) {
+			int a = prev[ear];
+			int c = next[ear];
+
+			if (isEar(ear)) {
+				addTriangle(vertex[a], vertex[ear], vertex[c]);
+				removeNode(ear);
+
+				ear = next[c];
+				stop = next[c];
+				continue;
+			}
+
+			ear = c;
+
+			if (ear == stop) {
+				if (pass == 0)
+					earcutLinked(filterPoints(ear, NONE), 1);
+				else if (pass == 1) {
+					ear = cureLocalIntersections(filterPoints(ear, NONE));
+					earcutLinked(ear, 2);
+				} else if (pass == 2)
+					splitEarcut(ear);
+
+				break;
+			}
+		}
+	}
+
+	private boolean isEar(int ear) {
+		int a = prev[ear], b = ear, c = next[ear];
+		if (area(a, b, c) >= 0)
+			return false; // reflex
+
+		double ax = x[a], bx = x[b], cx = x[c];
+		double ay = y[a], by = y[b], cy = y[c];
+
+		double minX = Math.min(ax, Math.min(bx, cx));
+		double minY = Math.min(ay, Math.min(by, cy));
+		double maxX = Math.max(ax, Math.max(bx, cx));
+		double maxY = Math.max(ay, Math.max(by, cy));
+
+		int p = next[c];
+		while (p != a) {
+			if (x[p] >= minX && x[p] <= maxX && y[p] >= minY && y[p] <= maxY
+					&& !(ax == x[p] && ay == y[p])
+					&& pointInTriangle(ax, ay, bx, by, cx, cy, x[p], y[p])
+					&& area(prev[p], p, next[p]) >= 0)
+				return false;
+
+			p = next[p];
+		}
+
+		return true;
+	}
+
+	private int cureLocalIntersections(int start) {
+		int p = start;
+		do {
+			int a = prev[p], b = next[next[p]];
+
+			if (!equals(a, b) && intersects(a, p, next[p], b) && locallyInside(a, b) && locallyInside(b, a)) {
+				addTriangle(vertex[a], vertex[p], vertex[b]);
+
+				removeNode(p);
+				removeNode(next[p]);
+
+				p = start = b;
+			}
+
+			p = next[p];
+		} while (p != start);
+
+		return filterPoints(p, NONE);
+	}
+
+	private void splitEarcut(int start) {
+		int a = start;
+		do {
+			int b = next[next[a]];
+			while (b != prev[a]) {
+				if (vertex[a] != vertex[b] && isValidDiagonal(a, b)) {
+					int c = splitPolygon(a, b);
+
+					a = filterPoints(a, next[a]);
+					c = filterPoints(c, next[c]);
+
+					earcutLinked(a, 0);
+					earcutLinked(c, 0);
+					return;
+				}
+
+				b = next[b];
+			}
+
+			a = next[a];
+		} while (a != start);
+	}
+
+	private int eliminateHoles(double[] coordinates, int[] ringVertexCounts, int outerNode, int uAxis, int vAxis) {
+		int[] queue = new int[ringVertexCounts.length - 1];
+		int queueSize = 0;
+
+		int start = ringVertexCounts[0];
+		for (int i = 1; i < ringVertexCounts.length; i++) {
+			int count = ringVertexCounts[i];
+			int list = linkedList(coordinates, start, count, uAxis, vAxis, false);
+			start += count;
+
+			if (list == NONE)
+				continue;
+
+			if (list == next[list])
+				steiner[list] = true;
+
+			queue[queueSize++] = getLeftmost(list);
+		}
+
+		// process holes from left to right
+		for (int i = 1; i < queueSize; i++) {
+			int node = queue[i];
+			int j = i - 1;
+			while (j >= 0 && (x[queue[j]] > x[node] || (x[queue[j]] == x[node] && y[queue[j]] > y[node]))) {
+				queue[j + 1] = queue[j];
+				j--;
+			}
+			queue[j + 1] = node;
+		}
+
+		for (int i = 0; i < queueSize; i++)
+			outerNode = eliminateHole(queue[i], outerNode);
+
+		return outerNode;
+	}
+
+	private int eliminateHole(int hole, int outerNode) {
+		int bridge = findHoleBridge(hole, outerNode);
+		if (bridge == NONE)
+			return outerNode;
+
+		int bridgeReverse = splitPolygon(bridge, hole);
+		filterPoints(bridgeReverse, next[bridgeReverse]);
+
+		return filterPoints(bridge, next[bridge]);
+	}
+
+	private int findHoleBridge(int hole, int outerNode) {
+		int p = outerNode;
+		double hx = x[hole];
+		double hy = y[hole];
+		double qx = Double.NEGATIVE_INFINITY;
+		int m = NONE;
+
+		// find a segment intersected by a ray from the hole's leftmost point to the left;
+		// segment's endpoint with lesser x will be potential connection point
+		do {
+			int n = next[p];
+			if (hy <= y[p] && hy >= y[n] && y[n] != y[p]) {
+				double qxp = x[p] + (hy - y[p]) * (x[n] - x[p]) / (y[n] - y[p]);
+				if (qxp <= hx && qxp > qx) {
+					qx = qxp;
+					m = x[p] < x[n] ? p : n;
+					if (qxp == hx)
+						return m; // hole touches outer segment
+				}
+			}
+
+			p = n;
+		} while (p != outerNode);
+
+		if (m == NONE)
+			return NONE;
+
+		// look for points inside the triangle of hole point, segment intersection and endpoint;
+		// if there are no points found, we have a valid connection;
+		// otherwise choose the point of the minimum angle with the ray as connection point
+		int stop = m;
+		double mx = x[m];
+		double my = y[m];
+		double tanMin = Double.POSITIVE_INFINITY;
+
+		p = m;
+		do {
+			if (hx >= x[p] && x[p] >= mx && hx != x[p]
+					&& pointInTriangle(hy < my ? hx : qx, hy, mx, my, hy < my ? qx : hx, hy, x[p], y[p])) {
+				double tan = Math.abs(hy - y[p]) / (hx - x[p]);
+
+				if (locallyInside(p, hole)
+						&& (tan < tanMin || (tan == tanMin && (x[p] > x[m] || (x[p] == x[m] && sectorContainsSector(m, p)))))) {
+					m = p;
+					tanMin = tan;
+				}
+			}
+
+			p = next[p];
+		} while (p != stop);
+
+		return m;
+	}
+
+	private boolean sectorContainsSector(int m, int p) {
+		return area(prev[m], m, prev[p]) < 0 && area(next[p], m, next[m]) < 0;
+	}
+
+	private int getLeftmost(int start) {
+		int p = start, leftmost = start;
+		do {
+			if (x[p] < x[leftmost] || (x[p] == x[leftmost] && y[p] < y[leftmost]))
+				leftmost = p;
+
+			p = next[p];
+		} while (p != start);
+
+		return leftmost;
+	}
+
+	private boolean pointInTriangle(double ax, double ay, double bx, double by, double cx, double cy, double px, double py) {
+		return (cx - px) * (ay - py) >= (ax - px) * (cy - py)
+				&& (ax - px) * (by - py) >= (bx - px) * (ay - py)
+				&& (bx - px) * (cy - py) >= (cx - px) * (by - py);
+	}
+
+	private boolean isValidDiagonal(int a, int b) {
+		return vertex[next[a]] != vertex[b] && vertex[prev[a]] != vertex[b] && !intersectsPolygon(a, b)
+				&& (locallyInside(a, b) && locallyInside(b, a) && middleInside(a, b)
+						&& (area(prev[a], a, prev[b]) != 0 || area(a, prev[b], b) != 0)
+						|| equals(a, b) && area(prev[a], a, next[a]) > 0 && area(prev[b], b, next[b]) > 0);
+	}
+
+	// signed area of a triangle, negative for counter-clockwise triangles
+	private double area(int p, int q, int r) {
+		return (y[q] - y[p]) * (x[r] - x[q]) - (x[q] - x[p]) * (y[r] - y[q]);
+	}
+
+	private boolean equals(int p1, int p2) {
+		return x[p1] == x[p2] && y[p1] == y[p2];
+	}
+
+	private boolean intersects(int p1, int q1, int p2, int q2) {
+		int o1 = sign(area(p1, q1, p2));
+		int o2 = sign(area(p1, q1, q2));
+		int o3 = sign(area(p2, q2, p1));
+		int o4 = sign(area(p2, q2, q1));
+
+		if (o1 != o2 && o3 != o4)
+			return true;
+
+		if (o1 == 0 && onSegment(p1, p2, q1)) return true;
+		if (o2 == 0 && onSegment(p1, q2, q1)) return true;
+		if (o3 == 0 && onSegment(p2, p1, q2)) return true;
+		if (o4 == 0 && onSegment(p2, q1, q2)) return true;
+
+		return false;
+	}
+
+	private boolean onSegment(int p, int q, int r) {
+		return x[q] <= Math.max(x[p], x[r]) && x[q] >= Math.min(x[p], x[r]) 
+				&& y[q] <= Math.max(y[p], y[r]) && y[q] >= Math.min(y[p], y[r]);
+	}
+
+	private int sign(double value) {
+		return value > 0 ? 1 : value < 0 ? -1 : 0;
+	}
+
+	private boolean intersectsPolygon(int a, int b) {
+		int p = a;
+		do {
+			int n = next[p];
+			if (vertex[p] != vertex[a] && vertex[n] != vertex[a] && vertex[p] != vertex[b] && vertex[n] != vertex[b]
+					&& intersects(p, n, a, b))
+				return true;
+
+			p = n;
+		} while (p != a);
+
+		return false;
+	}
+
+	private boolean locallyInside(int a, int b) {
+		return area(prev[a], a, next[a]) < 0 ?
+				area(a, b, next[a]) >= 0 && area(a, prev[a], b) >= 0 :
+					area(a, b, prev[a]) < 0 || area(a, next[a], b) < 0;
+	}
+
+	private boolean middleInside(int a, int b) {
+		int p = a;
+		boolean inside = false;
+		double px = (x[a] + x[b]) / 2;
+		double py = (y[a] + y[b]) / 2;
+
+		do {
+			int n = next[p];
+			if (((y[p] > py) != (y[n] > py)) && y[n] != y[p]
+					&& (px < (x[n] - x[p]) * (py - y[p]) / (y[n] - y[p]) + x[p]))
+				inside = !inside;
+
+			p = n;
+		} while (p != a);
+
+		return inside;
+	}
+
+	// link two polygon vertices with a bridge; if the vertices belong to the same ring, 
+	// it splits the polygon into two; if one belongs to the outer ring and another 
+	// to a hole, it merges it into a single ring
+	private int splitPolygon(int a, int b) {
+		int a2 = createNode(vertex[a], x[a], y[a]);
+		int b2 = createNode(vertex[b], x[b], y[b]);
+		int an = next[a];
+		int bp = prev[b];
+
+		next[a] = b;
+		prev[b] = a;
+
+		next[a2] = an;
+		prev[an] = a2;
+
+		next[b2] = a2;
+		prev[a2] = b2;
+
+		next[bp] = b2;
+		prev[b2] = bp;
+
+		return b2;
+	}
+
+	private int insertNode(int vertexIndex, double u, double v, int last) {
+		int p = createNode(vertexIndex, u, v);
+
+		if (last == NONE) {
+			prev[p] = p;
+			next[p] = p;
+		} else {
+			next[p] = next[last];
+			prev[p] = last;
+			prev[next[last]] = p;
+			next[last] = p;
+		}
+
+		return p;
+	}
+
+	private void removeNode(int p) {
+		prev[next[p]] = prev[p];
+		next[prev[p]] = next[p];
+	}
+
+	private int createNode(int vertexIndex, double u, double v) {
+		if (nodeCount == vertex.length)
+			ensureNodeCapacity(nodeCount * 2);
+
+		int p = nodeCount++;
+		vertex[p] = vertexIndex;
+		x[p] = u;
+		y[p] = v;
+		prev[p] = NONE;
+		next[p] = NONE;
+		steiner[p] = false;
+
+		return p;
+	}
+
+	private void addTriangle(int a, int b, int c) {
+		if (triangleCount + 3 > triangles.length)
+			triangles = Arrays.copyOf(triangles, triangles.length * 2);
+
+		triangles[triangleCount++] = a;
+		triangles[triangleCount++] = b;
+		triangles[triangleCount++] = c;
+	}
+
+	private boolean isPlanar(double[] coordinates, double polygonArea, double nx, double ny, double nz) {
+		// ignore slivers whose normal is dominated by rounding errors
+		double minLength = Math.abs(polygonArea) * 2 * SLIVER_TOLERANCE;
+
+		for (int i = 0; i < triangleCount; i += 3) {
+			int a = triangles[i] * 3, b = triangles[i + 1] * 3, c = triangles[i + 2] * 3;
+			double ux = coordinates[b] - coordinates[a], uy = coordinates[b + 1] - coordinates[a + 1], uz = coordinates[b + 2] - coordinates[a + 2];
+			double vx = coordinates[c] - coordinates[a], vy = coordinates[c + 1] - coordinates[a + 1], vz = coordinates[c + 2] - coordinates[a + 2];
+			double cx = uy * vz - uz * vy, cy = uz * vx - ux * vz, cz = ux * vy - uy * vx;
+
+			double length = Math.sqrt(cx * cx + cy * cy + cz * cz);
+			if (length > minLength && (cx * nx + cy * ny + cz * nz) / length < MIN_NORMAL_COSINE)
+				return false;
+		}
+
+		return true;
+	}
+
+	private double signedArea(double[] coordinates, int start, int end, int uAxis, int vAxis) {
+		double sum = 0;
+		for (int i = start, j = end - 1; i < end; j = i++)
+			sum += (coordinates[j * 3 + uAxis] - coordinates[i * 3 + uAxis]) * (coordinates[i * 3 + vAxis] + coordinates[j * 3 + vAxis]);
+
+		return sum;
+	}
+
+	private double polygonArea(double[] coordinates, int[] ringVertexCounts, int uAxis, int vAxis) {
+		double polygonArea = 0;
+		int start = 0;
+		for (int i = 0; i < ringVertexCounts.length; i++) {
+			double area = Math.abs(signedArea(coordinates, start, start + ringVertexCounts[i], uAxis, vAxis)) / 2;
+			polygonArea += i == 0 ? area : -area;
+			start += ringVertexCounts[i];
+		}
+
+		return polygonArea;
+	}
+
+	private boolean isAreaPreserved(double[] coordinates, double polygonArea, int uAxis, int vAxis) {
+		// use the first vertex as local origin to reduce cancellation errors
+		double u0 = coordinates[uAxis];
+		double v0 = coordinates[vAxis];
+
+		double triangleArea = 0;
+		for (int i = 0; i < triangleCount; i += 3) {
+			int a = triangles[i] * 3, b = triangles[i + 1] * 3, c = triangles[i + 2] * 3;
+			double au = coordinates[a + uAxis] - u0, av = coordinates[a + vAxis] - v0;
+			double bu = coordinates[b + uAxis] - u0, bv = coordinates[b + vAxis] - v0;
+			double cu = coordinates[c + uAxis] - u0, cv = coordinates[c + vAxis] - v0;
+			triangleArea += ((bu - au) * (cv - av) - (bv - av) * (cu - au)) / 2;
+		}
+
+		return Math.abs(triangleArea - polygonArea) <= Math.abs(polygonArea) * AREA_TOLERANCE;
+	}
+
+	private void ensureNodeCapacity(int capacity) {
+		if (vertex != null && vertex.length >= capacity)
+			return;
+
+		x = x == null ? new double[capacity] : Arrays.copyOf(x, capacity);
+		y = y == null ? new double[capacity] : Arrays.copyOf(y, capacity);
+		vertex = vertex == null ? new int[capacity] : Arrays.copyOf(vertex, capacity);
+		prev = prev == null ? new int[capacity] : Arrays.copyOf(prev, capacity);
+		next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+		steiner = steiner == null ? new boolean[capacity] : Arrays.copyOf(steiner, capacity);
+	}
+}
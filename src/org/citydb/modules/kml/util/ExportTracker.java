@@ -28,12 +28,15 @@
 package org.citydb.modules.kml.util;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ExportTracker {
 	
 	private final ConcurrentHashMap<Long, CityObject4JSON> map;
 	private String currentWorkingDirectoryPath;
+	private KmzArchiveWriter kmzArchiveWriter;
 	
 	public ExportTracker() {
 		map = new ConcurrentHashMap<Long, CityObject4JSON>();
@@ -55,6 +58,10 @@ public class ExportTracker {
 		return map.values();
 	}
 
+	public Map<Long, CityObject4JSON> getCityObjects() {
+		return Collections.unmodifiableMap(map);
+	}
+
 	public String getCurrentWorkingDirectoryPath() {
 		return currentWorkingDirectoryPath;
 	}
@@ -62,5 +69,13 @@ public class ExportTracker {
 	public void setCurrentWorkingDirectoryPath(String currentWorkingDirectoryPath) {
 		this.currentWorkingDirectoryPath = currentWorkingDirectoryPath;
 	}
+
+	public KmzArchiveWriter getKmzArchiveWriter() {
+		return kmzArchiveWriter;
+	}
+
+	public void setKmzArchiveWriter(KmzArchiveWriter kmzArchiveWriter) {
+		this.kmzArchiveWriter = kmzArchiveWriter;
+	}
 	
 }
@@ -0,0 +1,679 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.xml.bind.JAXBElement;
+
+import org.collada._2005._11.colladaschema.COLLADA;
+import org.collada._2005._11.colladaschema.CommonColorOrTextureType;
+import org.collada._2005._11.colladaschema.CommonFloatOrParamType;
+import org.collada._2005._11.colladaschema.CommonNewparamType;
+import org.collada._2005._11.colladaschema.Effect;
+import org.collada._2005._11.colladaschema.Extra;
+import org.collada._2005._11.colladaschema.FxSurfaceInitFromCommon;
+import org.collada._2005._11.colladaschema.Geometry;
+import org.collada._2005._11.colladaschema.Image;
+import org.collada._2005._11.colladaschema.InputLocal;
+import org.collada._2005._11.colladaschema.InputLocalOffset;
+import org.collada._2005._11.colladaschema.InstanceGeometry;
+import org.collada._2005._11.colladaschema.InstanceMaterial;
+import org.collada._2005._11.colladaschema.LibraryEffects;
+import org.collada._2005._11.colladaschema.LibraryGeometries;
+import org.collada._2005._11.colladaschema.LibraryImages;
+import org.collada._2005._11.colladaschema.LibraryMaterials;
+import org.collada._2005._11.colladaschema.LibraryVisualScenes;
+import org.collada._2005._11.colladaschema.Material;
+import org.collada._2005._11.colladaschema.Mesh;
+import org.collada._2005._11.colladaschema.Node;
+import org.collada._2005._11.colladaschema.ProfileCOMMON;
+import org.collada._2005._11.colladaschema.Source;
+import org.collada._2005._11.colladaschema.Technique;
+import org.collada._2005._11.colladaschema.Triangles;
+import org.collada._2005._11.colladaschema.UpAxisType;
+import org.collada._2005._11.colladaschema.VisualScene;
+import org.w3c.dom.Element;
+
+public class GltfWriter {
+	private final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final int GLB_MAGIC = 0x46546C67;
+	private final int GLB_VERSION = 2;
+	private final int CHUNK_JSON = 0x4E4F534A;
+	private final int CHUNK_BIN = 0x004E4942;
+
+	private final int ARRAY_BUFFER = 34962;
+	private final int ELEMENT_ARRAY_BUFFER = 34963;
+	private final int FLOAT = 5126;
+	private final int UNSIGNED_SHORT = 5123;
+	private final int UNSIGNED_INT = 5125;
+
+	private final boolean binary;
+	private final boolean embedTextures;
+
+	public GltfWriter(boolean binary, boolean embedTextures) {
+		this.binary = binary;
+		this.embedTextures = embedTextures;
+	}
+
+	public String getFileExtension() {
+		return binary ? ".glb" : ".gltf";
+	}
+
+	public void write(COLLADA collada, File file, File textureDirectory) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(collada, out, new GltfModel(textureDirectory, null));
+		} finally {
+			out.close();
+		}
+	}
+
+	public void write(COLLADA collada, OutputStream out, Map<String, byte[]> textures) throws IOException {
+		write(collada, out, new GltfModel(null, textures));
+	}
+
+	private void write(COLLADA collada, OutputStream out, GltfModel model) throws IOException {
+
+		HashMap<String, Image> images = new HashMap<String, Image>();
+		HashMap<String, Material> materials = new HashMap<String, Material>();
+		HashMap<String, Effect> effects = new HashMap<String, Effect>();
+		HashMap<String, Geometry> geometries = new HashMap<String, Geometry>();
+		List<VisualScene> visualScenes = new ArrayList<VisualScene>();
+
+		for (Object library : collada.getLibraryAnimationsOrLibraryAnimationClipsOrLibraryCameras()) {
+			if (library instanceof LibraryImages) {
+				for (Image image : ((LibraryImages)library).getImage())
+					images.put(image.getId(), image);
+			} else if (library instanceof LibraryMaterials) {
+				for (Material material : ((LibraryMaterials)library).getMaterial())
+					materials.put(material.getId(), material);
+			} else if (library instanceof LibraryEffects) {
+				for (Effect effect : ((LibraryEffects)library).getEffect())
+					effects.put(effect.getId(), effect);
+			} else if (library instanceof LibraryGeometries) {
+				for (Geometry geometry : ((LibraryGeometries)library).getGeometry())
+					geometries.put(geometry.getId(), geometry);
+			} else if (library instanceof LibraryVisualScenes)
+				visualScenes.addAll(((LibraryVisualScenes)library).getVisualScene());
+		}
+
+		for (VisualScene visualScene : visualScenes) {
+			for (Node node : visualScene.getNode()) {
+				for (InstanceGeometry instanceGeometry : node.getInstanceGeometry()) {
+					Geometry geometry = geometries.get(stripHash(instanceGeometry.getUrl()));
+					if (geometry == null || geometry.getMesh() == null)
+						continue;
+
+					// material symbols of the triangles are bound to materials by the instance 
+					HashMap<String, Integer> materialIndexes = new HashMap<String, Integer>();
+					if (instanceGeometry.getBindMaterial() != null && instanceGeometry.getBindMaterial().getTechniqueCommon() != null) {
+						for (InstanceMaterial instanceMaterial : instanceGeometry.getBindMaterial().getTechniqueCommon().getInstanceMaterial()) {
+							Material material = materials.get(stripHash(instanceMaterial.getTarget()));
+							if (material != null && material.getInstanceEffect() != null) {
+								Effect effect = effects.get(stripHash(material.getInstanceEffect().getUrl()));
+								if (effect != null)
+									materialIndexes.put(instanceMaterial.getSymbol(), model.addMaterial(material.getId(), effect, images));
+							}
+						}
+					}
+
+					model.addMesh(geometry.getMesh(), materialIndexes);
+				}
+			}
+		}
+
+		boolean isZUp = collada.getAsset() != null && collada.getAsset().getUpAxis() == UpAxisType.Z_UP;
+
+		if (binary) {
+			byte[] json = pad(model.toJson(null, isZUp).getBytes(CHARSET), (byte)' ');
+			byte[] bin = pad(model.getBuffer(), (byte)0);
+
+			ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(GLB_MAGIC).putInt(GLB_VERSION).putInt(12 + 8 + json.length + (bin.length > 0 ? 8 + bin.length : 0));
+			header.putInt(json.length).putInt(CHUNK_JSON);
+			out.write(header.array());
+			out.write(json);
+
+			if (bin.length > 0) {
+				ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+				chunk.putInt(bin.length).putInt(CHUNK_BIN);
+				out.write(chunk.array());
+				out.write(bin);
+			}
+		} else {
+			String uri = "data:application/octet-stream;base64," + Base64.getEncoder().encodeToString(model.getBuffer());
+			out.write(model.toJson(uri, isZUp).getBytes(CHARSET));
+		}
+	}
+
+	private byte[] pad(byte[] bytes, byte padding) {
+		int length = (bytes.length + 3) & ~3;
+		if (length == bytes.length)
+			return bytes;
+
+		byte[] padded = new byte[length];
+		System.arraycopy(bytes, 0, padded, 0, bytes.length);
+		for (int i = bytes.length; i < length; i++)
+			padded[i] = padding;
+
+		return padded;
+	}
+
+	private String stripHash(String url) {
+		return url != null && url.startsWith("#") ? url.substring(1) : url;
+	}
+
+	private String getMimeType(String uri) {
+		String extension = uri.substring(uri.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+		if (extension.equals("jpg") || extension.equals("jpeg"))
+			return "image/jpeg";
+		else if (extension.equals("png"))
+			return "image/png";
+
+		return null;
+	}
+
+	private class GltfModel {
+		private final File textureDirectory;
+		private final Map<String, byte[]> textureData;
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		private final List<String> bufferViews = new ArrayList<String>();
+		private final List<String> accessors = new ArrayList<String>();
+		private final List<String> primitives = new ArrayList<String>();
+		private final List<String> materials = new ArrayList<String>();
+		private final List<String> textures = new ArrayList<String>();
+		private final List<String> images = new ArrayList<String>();
+
+		private final HashMap<String, Integer> materialIndexes = new HashMap<String, Integer>();
+		private final HashMap<String, Integer> textureIndexes = new HashMap<String, Integer>();
+
+		private GltfModel(File textureDirectory, Map<String, byte[]> textureData) {
+			this.textureDirectory = textureDirectory;
+			this.textureData = textureData;
+		}
+
+		private byte[] getBuffer() {
+			return buffer.toByteArray();
+		}
+
+		private int addMaterial(String id, Effect effect, HashMap<String, Image> images) throws IOException {
+			Integer index = materialIndexes.get(id);
+			if (index != null)
+				return index;
+
+			double[] baseColor = new double[]{1, 1, 1, 1};
+			double[] emissive = null;
+			Integer texture = null;
+			boolean doubleSided = false;
+
+			for (JAXBElement<?> element : effect.getFxProfileAbstract()) {
+				if (!(element.getValue() instanceof ProfileCOMMON))
+					continue;
+
+				ProfileCOMMON profileCommon = (ProfileCOMMON)element.getValue();
+				ProfileCOMMON.Technique technique = profileCommon.getTechnique();
+				if (technique != null && technique.getLambert() != null) {
+					ProfileCOMMON.Technique.Lambert lambert = technique.getLambert();
+
+					CommonColorOrTextureType diffuse = lambert.getDiffuse();
+					if (diffuse != null) {
+						if (diffuse.getTexture() != null) {
+							String uri = getImageUri(profileCommon, diffuse.getTexture().getTexture(), images);
+							if (uri != null)
+								texture = addTexture(uri);
+						} else if (diffuse.getColor() != null)
+							baseColor = toColor(diffuse.getColor().getValue(), baseColor);
+					}
+
+					CommonFloatOrParamType transparency = lambert.getTransparency();
+					if (transparency != null && transparency.getFloat() != null)
+						baseColor[3] = transparency.getFloat().getValue();
+
+					CommonColorOrTextureType emission = lambert.getEmission();
+					if (emission != null && emission.getColor() != null) {
+						double[] color = toColor(emission.getColor().getValue(), null);
+						if (color != null && (color[0] > 0 || color[1] > 0 || color[2] > 0))
+							emissive = color;
+					}
+				}
+
+				for (Extra extra : profileCommon.getExtra()) {
+					for (Technique extraTechnique : extra.getTechnique()) {
+						for (Object any : extraTechnique.getAny()) {
+							if (any instanceof Element && "double_sided".equals(((Element)any).getLocalName()))
+								doubleSided = "1".equals(((Element)any).getTextContent().trim());
+						}
+					}
+				}
+			}
+
+			StringBuilder material = new StringBuilder("{\"name\":").append(quote(id));
+			material.append(",\"pbrMetallicRoughness\":{\"baseColorFactor\":[")
+			.append(baseColor[0]).append(',').append(baseColor[1]).append(',')
+			.append(baseColor[2]).append(',').append(baseColor[3]).append(']');
+			if (texture != null)
+				material.append(",\"baseColorTexture\":{\"index\":").append(texture).append('}');
+			material.append(",\"metallicFactor\":0.0,\"roughnessFactor\":1.0}");
+
+			if (emissive != null)
+				material.append(",\"emissiveFactor\":[").append(emissive[0]).append(',').append(emissive[1]).append(',').append(emissive[2]).append(']');
+			if (baseColor[3] < 1)
+				material.append(",\"alphaMode\":\"BLEND\"");
+			if (doubleSided)
+				material.append(",\"doubleSided\":true");
+
+			material.append('}');
+
+			index = materials.size();
+			materials.add(material.toString());
+			materialIndexes.put(id, index);
+			return index;
+		}
+
+		private String getImageUri(ProfileCOMMON profileCommon, String samplerSid, HashMap<String, Image> images) {
+			HashMap<String, CommonNewparamType> newparams = new HashMap<String, CommonNewparamType>();
+			for (Object object : profileCommon.getImageOrNewparam()) {
+				if (object instanceof CommonNewparamType)
+					newparams.put(((CommonNewparamType)object).getSid(), (CommonNewparamType)object);
+			}
+
+			CommonNewparamType sampler = newparams.get(samplerSid);
+			if (sampler == null || sampler.getSampler2D() == null)
+				return null;
+
+			CommonNewparamType surface = newparams.get(sampler.getSampler2D().getSource());
+			if (surface == null || surface.getSurface() == null)
+				return null;
+
+			for (FxSurfaceInitFromCommon initFrom : surface.getSurface().getInitFrom()) {
+				Object value = initFrom.getValue();
+				Image image = value instanceof Image ? (Image)value : images.get(String.valueOf(value));
+				if (image != null && image.getInitFrom() != null)
+					return image.getInitFrom();
+			}
+
+			return null;
+		}
+
+		private int addTexture(String uri) throws IOException {
+			Integer index = textureIndexes.get(uri);
+			if (index != null)
+				return index;
+
+			StringBuilder image = new StringBuilder("{");
+			if (embedTextures) {
+				byte[] source = null;
+				if (textureData != null)
+					source = textureData.get(uri);
+				else {
+					File imageFile = new File(textureDirectory, uri);
+					if (imageFile.exists())
+						source = Files.readAllBytes(imageFile.toPath());
+				}
+
+				if (source != null) {
+					String mimeType = getMimeType(uri);
+					byte[] bytes = null;
+
+					if (mimeType != null)
+						bytes = source;
+					else {
+						// glTF only supports JPEG and PNG images
+						BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(source));
+						if (bufferedImage != null) {
+							ByteArrayOutputStream png = new ByteArrayOutputStream();
+							ImageIO.write(bufferedImage, "png", png);
+							bytes = png.toByteArray();
+							mimeType = "image/png";
+						}
+					}
+
+					if (bytes != null) {
+						if (binary)
+							image.append("\"bufferView\":").append(addBufferView(bytes, null)).append(",\"mimeType\":").append(quote(mimeType));
+						else
+							image.append("\"uri\":").append(quote("data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(bytes)));
+					}
+				}
+			}
+
+			if (image.length() == 1)
+				image.append("\"uri\":").append(quote(uri.replace('\\', '/')));
+
+			image.append('}');
+			images.add(image.toString());
+
+			index = textures.size();
+			textures.add("{\"source\":" + (images.size() - 1) + '}');
+			textureIndexes.put(uri, index);
+			return index;
+		}
+
+		private void addMesh(Mesh mesh, HashMap<String, Integer> materialIndexes) {
+			HashMap<String, List<Double>> sources = new HashMap<String, List<Double>>();
+			for (Source source : mesh.getSource()) {
+				if (source.getFloatArray() != null)
+					sources.put(source.getId(), source.getFloatArray().getValue());
+			}
+
+			List<Double> positionValues = null;
+			if (mesh.getVertices() != null) {
+				for (InputLocal input : mesh.getVertices().getInput()) {
+					if ("POSITION".equals(input.getSemantic()))
+						positionValues = sources.get(stripHash(input.getSource()));
+				}
+			}
+
+			if (positionValues == null)
+				return;
+
+			for (Object primitive : mesh.getLinesOrLinestripsOrPolygons()) {
+				if (primitive instanceof Triangles)
+					addTriangles((Triangles)primitive, positionValues, sources, materialIndexes.get(((Triangles)primitive).getMaterial()));
+			}
+		}
+
+		private void addTriangles(Triangles triangles, List<Double> positionValues, HashMap<String, List<Double>> sources, Integer material) {
+			int stride = 0;
+			int positionOffset = -1, normalOffset = -1, texCoordOffset = -1;
+			List<Double> normalValues = null, texCoordValues = null;
+
+			for (InputLocalOffset input : triangles.getInput()) {
+				int offset = input.getOffset() != null ? input.getOffset().intValue() : 0;
+				stride = Math.max(stride, offset + 1);
+
+				if ("VERTEX".equals(input.getSemantic()))
+					positionOffset = offset;
+				else if ("NORMAL".equals(input.getSemantic())) {
+					normalOffset = offset;
+					normalValues = sources.get(stripHash(input.getSource()));
+				} else if ("TEXCOORD".equals(input.getSemantic())) {
+					texCoordOffset = offset;
+					texCoordValues = sources.get(stripHash(input.getSource()));
+				}
+			}
+
+			List<BigInteger> p = triangles.getP();
+			if (positionOffset == -1 || stride == 0 || p.size() < stride * 3)
+				return;
+
+			if (normalValues == null)
+				normalOffset = -1;
+			if (texCoordValues == null)
+				texCoordOffset = -1;
+
+			// glTF uses a single index per vertex, so every distinct combination
+			// of position, normal and texture coordinate becomes a vertex
+			int corners = p.size() / stride;
+			HashMap<VertexKey, Integer> vertexIndexes = new HashMap<VertexKey, Integer>();
+			int[] indexes = new int[corners];
+			List<VertexKey> vertices = new ArrayList<VertexKey>();
+
+			for (int i = 0; i < corners; i++) {
+				int base = i * stride;
+				VertexKey key = new VertexKey(p.get(base + positionOffset).intValue(),
+						normalOffset != -1 ? p.get(base + normalOffset).intValue() : -1,
+						texCoordOffset != -1 ? p.get(base + texCoordOffset).intValue() : -1);
+
+				Integer index = vertexIndexes.get(key);
+				if (index == null) {
+					index = vertices.size();
+					vertexIndexes.put(key, index);
+					vertices.add(key);
+				}
+
+				indexes[i] = index;
+			}
+
+			int vertexCount = vertices.size();
+			float[] positions = new float[vertexCount * 3];
+			float[] normals = normalOffset != -1 ? new float[vertexCount * 3] : null;
+			float[] texCoords = texCoordOffset != -1 ? new float[vertexCount * 2] : null;
+			float[] min = new float[]{Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+			float[] max = new float[]{-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+
+			for (int i = 0; i < vertexCount; i++) {
+				VertexKey key = vertices.get(i);
+				for (int j = 0; j < 3; j++) {
+					float value = positionValues.get(key.position * 3 + j).floatValue();
+					positions[i * 3 + j] = value;
+					min[j] = Math.min(min[j], value);
+					max[j] = Math.max(max[j], value);
+				}
+
+				if (normals != null) {
+					for (int j = 0; j < 3; j++)
+						normals[i * 3 + j] = normalValues.get(key.normal * 3 + j).floatValue();
+				}
+
+				if (texCoords != null && key.texCoord * 2 + 1 < texCoordValues.size()) {
+					// the texture origin of glTF is the upper left corner
+					texCoords[i * 2] = texCoordValues.get(key.texCoord * 2).floatValue();
+					texCoords[i * 2 + 1] = 1 - texCoordValues.get(key.texCoord * 2 + 1).floatValue();
+				}
+			}
+
+			StringBuilder attributes = new StringBuilder("{\"POSITION\":").append(addAccessor(positions, "VEC3", min, max));
+			if (normals != null)
+				attributes.append(",\"NORMAL\":").append(addAccessor(normals, "VEC3", null, null));
+			if (texCoords != null)
+				attributes.append(",\"TEXCOORD_0\":").append(addAccessor(texCoords, "VEC2", null, null));
+			attributes.append('}');
+
+			StringBuilder primitive = new StringBuilder("{\"attributes\":").append(attributes)
+					.append(",\"indices\":").append(addIndexAccessor(indexes, vertexCount))
+					.append(",\"mode\":4");
+			if (material != null)
+				primitive.append(",\"material\":").append(material);
+			primitive.append('}');
+
+			primitives.add(primitive.toString());
+		}
+
+		private int addAccessor(float[] values, String type, float[] min, float[] max) {
+			ByteBuffer bytes = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+			for (float value : values)
+				bytes.putFloat(value);
+
+			int components = type.equals("VEC3") ? 3 : 2;
+			StringBuilder accessor = new StringBuilder("{\"bufferView\":").append(addBufferView(bytes.array(), ARRAY_BUFFER))
+					.append(",\"componentType\":").append(FLOAT)
+					.append(",\"count\":").append(values.length / components)
+					.append(",\"type\":\"").append(type).append('"');
+
+			if (min != null && max != null) {
+				accessor.append(",\"min\":[").append(min[0]).append(',').append(min[1]).append(',').append(min[2]).append(']');
+				accessor.append(",\"max\":[").append(max[0]).append(',').append(max[1]).append(',').append(max[2]).append(']');
+			}
+
+			accessor.append('}');
+			accessors.add(accessor.toString());
+			return accessors.size() - 1;
+		}
+
+		private int addIndexAccessor(int[] indexes, int vertexCount) {
+			boolean useShort = vertexCount <= 0xFFFF;
+			ByteBuffer bytes = ByteBuffer.allocate(indexes.length * (useShort ? 2 : 4)).order(ByteOrder.LITTLE_ENDIAN);
+			for (int index : indexes) {
+				if (useShort)
+					bytes.putShort((short)index);
+				else
+					bytes.putInt(index);
+			}
+
+			accessors.add("{\"bufferView\":" + addBufferView(bytes.array(), ELEMENT_ARRAY_BUFFER) +
+					",\"componentType\":" + (useShort ? UNSIGNED_SHORT : UNSIGNED_INT) +
+					",\"count\":" + indexes.length + ",\"type\":\"SCALAR\"}");
+			return accessors.size() - 1;
+		}
+
+		private int addBufferView(byte[] bytes, Integer target) {
+			// keep all buffer views aligned to four bytes
+			while (buffer.size() % 4 != 0)
+				buffer.write(0);
+
+			StringBuilder bufferView = new StringBuilder("{\"buffer\":0,\"byteOffset\":").append(buffer.size())
+					.append(",\"byteLength\":").append(bytes.length);
+			if (target != null)
+				bufferView.append(",\"target\":").append(target);
+			bufferView.append('}');
+
+			buffer.write(bytes, 0, bytes.length);
+			bufferViews.add(bufferView.toString());
+			return bufferViews.size() - 1;
+		}
+
+		private String toJson(String bufferUri, boolean isZUp) {
+			StringBuilder json = new StringBuilder("{\"asset\":{\"version\":\"2.0\",\"generator\":")
+					.append(quote(getClass().getPackage().getImplementationTitle() + ", version " + getClass().getPackage().getImplementationVersion()))
+					.append("},\"scene\":0,\"scenes\":[{\"nodes\":[0]}],\"nodes\":[{");
+
+			if (!primitives.isEmpty())
+				json.append("\"mesh\":0");
+
+			// glTF is y-up, whereas the COLLADA models are z-up
+			if (isZUp)
+				json.append(primitives.isEmpty() ? "" : ",").append("\"matrix\":[1,0,0,0,0,0,-1,0,0,1,0,0,0,0,0,1]");
+
+			json.append("}]");
+
+			if (!primitives.isEmpty())
+				json.append(",\"meshes\":[{\"primitives\":").append(toArray(primitives)).append("}]");
+
+			if (!materials.isEmpty())
+				json.append(",\"materials\":").append(toArray(materials));
+
+			if (!textures.isEmpty()) {
+				json.append(",\"textures\":").append(toArray(textures));
+				json.append(",\"images\":").append(toArray(images));
+			}
+
+			if (!accessors.isEmpty())
+				json.append(",\"accessors\":").append(toArray(accessors));
+
+			if (!bufferViews.isEmpty()) {
+				json.append(",\"bufferViews\":").append(toArray(bufferViews));
+				json.append(",\"buffers\":[{\"byteLength\":").append(buffer.size());
+				if (bufferUri != null)
+					json.append(",\"uri\":").append(quote(bufferUri));
+				json.append("}]");
+			}
+
+			json.append('}');
+			return json.toString();
+		}
+
+		private String toArray(List<String> items) {
+			StringBuilder array = new StringBuilder("[");
+			for (int i = 0; i < items.size(); i++) {
+				if (i > 0)
+					array.append(',');
+				array.append(items.get(i));
+			}
+
+			return array.append(']').toString();
+		}
+	}
+
+	private double[] toColor(List<Double> values, double[] defaultColor) {
+		if (values == null || values.size() < 3)
+			return defaultColor;
+
+		return new double[]{values.get(0), values.get(1), values.get(2), values.size() > 3 ? values.get(3) : 1};
+	}
+
+	private String quote(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				quoted.append("\\\"");
+				break;
+			case '\\':
+				quoted.append("\\\\");
+				break;
+			default:
+				if (c < 0x20)
+					quoted.append(String.format("\\u%04x", (int)c));
+				else
+					quoted.append(c);
+			}
+		}
+
+		return quoted.append('"').toString();
+	}
+
+	private static final class VertexKey {
+		private final int position;
+		private final int normal;
+		private final int texCoord;
+
+		private VertexKey(int position, int normal, int texCoord) {
+			this.position = position;
+			this.normal = normal;
+			this.texCoord = texCoord;
+		}
+
+		@Override
+		public int hashCode() {
+			return (position * 31 + normal) * 31 + texCoord;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof VertexKey))
+				return false;
+
+			VertexKey other = (VertexKey)obj;
+			return position == other.position && normal == other.normal && texCoord == other.texCoord;
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import javax.vecmath.Vector3f;
+
+import com.sun.j3d.utils.geometry.GeometryInfo;
+import com.sun.j3d.utils.geometry.NormalGenerator;
+
+public class Java3DTriangulator implements Triangulator {
+	private final NormalGenerator normalGenerator = new NormalGenerator();
+
+	@Override
+	public TriangulatedSurface triangulate(double[] coordinates, int[] ringVertexCounts) {
+		GeometryInfo ginfo = new GeometryInfo(GeometryInfo.POLYGON_ARRAY);
+		ginfo.setCoordinates(coordinates);
+		ginfo.setContourCounts(new int[]{ringVertexCounts.length});
+		ginfo.setStripCounts(ringVertexCounts);
+		int outerRingCount = ringVertexCounts[0];
+
+		// triangulate the surface geometry
+		ginfo.convertToIndexedTriangles();
+
+		// generate normals
+		normalGenerator.generateNormals(ginfo);
+
+		int[] indexes = ginfo.getCoordinateIndices();
+		Vector3f[] normals = ginfo.getNormals();
+
+		// fix a reversed orientation of the triangulated surface 
+		byte[] edges = {0, 1, 1, 2, 2, 0};			
+		boolean hasFound = false;
+		boolean reverse = false;
+
+		for (int i = 0; !hasFound && i < indexes.length; i += 3) {				
+			// skip degenerated triangles
+			if (indexes[i] == indexes[i + 1] || indexes[i + 1] == indexes[i + 2] || indexes[i] == indexes[i + 2])
+				continue;
+
+			// find the first edge on the exterior ring
+			for (int j = 0; j < edges.length; j += 2) {
+				int first = i + edges[j];
+				int second = i + edges[j + 1]; 
+
+				if (indexes[first] < outerRingCount && indexes[second] < outerRingCount && Math.abs(indexes[first] - indexes[second]) == 1) {
+					// ok, we found it. now check the order of the vertex indices
+					hasFound = true;						
+					if (indexes[first] > indexes[second])
+						reverse = true;
+
+					break;
+				}
+			}
+		}
+
+		// reverse indexes and normals
+		if (reverse) {
+			ginfo.reverse();
+			for (int i = 0; i < normals.length; i++)
+				normals[i].negate();
+		}
+
+		float[] normalValues = new float[normals.length * 3];
+		for (int i = 0; i < normals.length; i++) {
+			normalValues[i * 3] = normals[i].x;
+			normalValues[i * 3 + 1] = normals[i].y;
+			normalValues[i * 3 + 2] = normals[i].z;
+		}
+
+		return new TriangulatedSurface(ginfo.getCoordinateIndices(), ginfo.getNormalIndices(), normalValues);
+	}
+}
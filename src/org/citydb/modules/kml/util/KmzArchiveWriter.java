@@ -0,0 +1,337 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes KMZ archives without temporary files. Entries are compressed by the calling
+ * thread, so that several export workers can deflate their models in parallel, and are
+ * then appended to the archive in one step. JPEG and PNG images are stored as they are.
+ * The root document is streamed into a compressed in-memory buffer and written when
+ * the archive is closed. It is nevertheless listed as first entry in the central 
+ * directory. Zip64 records are written for archives exceeding the ZIP limits.
+ */
+public class KmzArchiveWriter {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final int UTF8_FLAG = 0x0800;
+	private static final long ZIP64_LIMIT = 0xffffffffL;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final OutputStream out;
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private final Set<String> names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final int dosTime;
+	private final int dosDate;
+
+	private DocumentStream document;
+	private long offset;
+	private boolean closed;
+
+	public KmzArchiveWriter(File file) throws IOException {
+		out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+
+		Calendar calendar = Calendar.getInstance();
+		dosTime = (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+		dosDate = ((calendar.get(Calendar.YEAR) - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5) | calendar.get(Calendar.DAY_OF_MONTH);
+	}
+
+	public synchronized OutputStream openDocument(String name) throws IOException {
+		if (document != null)
+			throw new IOException("The root document has already been opened.");
+
+		if (!names.add(name))
+			throw new IOException("Duplicate archive entry " + name + ".");
+
+		document = new DocumentStream(name);
+		return document;
+	}
+
+	public boolean addEntry(String name, byte[] content) throws IOException {
+		// entries with the same name are only written once
+		if (!names.add(name))
+			return false;
+
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		byte[] data = content;
+		int length = content.length;
+		int method = STORED;
+
+		if (!isCompressed(name)) {
+			ExposedByteArrayOutputStream compressed = deflate(content);
+			if (compressed.size() < content.length) {
+				data = compressed.getBuffer();
+				length = compressed.size();
+				method = DEFLATED;
+			}
+		}
+
+		write(new Entry(name, method, crc.getValue(), content.length, length), data, length);
+		return true;
+	}
+
+	public boolean addEntry(String name, String content) throws IOException {
+		return addEntry(name, content.getBytes(CHARSET));
+	}
+
+	public boolean containsEntry(String name) {
+		return names.contains(name);
+	}
+
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+
+		closed = true;
+		try {
+			if (document != null) {
+				document.finish();
+				write(document.entry, document.compressed.getBuffer(), document.compressed.size());
+
+				// the root document is the first entry in the central directory
+				entries.remove(document.entry);
+				entries.add(0, document.entry);
+			}
+
+			long centralDirectoryOffset = offset;
+			for (Entry entry : entries)
+				writeCentralHeader(entry);
+
+			long centralDirectorySize = offset - centralDirectoryOffset;
+			if (entries.size() >= 0xffff || centralDirectoryOffset >= ZIP64_LIMIT || centralDirectorySize >= ZIP64_LIMIT) {
+				long zip64EndOffset = offset;
+				ByteBuffer buffer = allocate(56 + 20);
+				buffer.putInt(ZIP64_END_SIGNATURE).putLong(44).putShort((short)45).putShort((short)45)
+				.putInt(0).putInt(0).putLong(entries.size()).putLong(entries.size())
+				.putLong(centralDirectorySize).putLong(centralDirectoryOffset);
+				buffer.putInt(ZIP64_LOCATOR_SIGNATURE).putInt(0).putLong(zip64EndOffset).putInt(1);
+				write(buffer);
+			}
+
+			ByteBuffer buffer = allocate(22);
+			buffer.putInt(END_SIGNATURE).putShort((short)0).putShort((short)0)
+			.putShort((short)Math.min(entries.size(), 0xffff)).putShort((short)Math.min(entries.size(), 0xffff))
+			.putInt((int)Math.min(centralDirectorySize, ZIP64_LIMIT)).putInt((int)Math.min(centralDirectoryOffset, ZIP64_LIMIT))
+			.putShort((short)0);
+			write(buffer);
+		} finally {
+			out.close();
+		}
+	}
+
+	private synchronized void write(Entry entry, byte[] data, int length) throws IOException {
+		if (closed && (document == null || entry != document.entry))
+			throw new IOException("The archive has already been closed.");
+
+		entry.offset = offset;
+		boolean zip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+
+		ByteBuffer buffer = allocate(30 + entry.name.length + (zip64 ? 20 : 0));
+		buffer.putInt(LOCAL_HEADER_SIGNATURE).putShort((short)(zip64 ? 45 : 20)).putShort((short)UTF8_FLAG)
+		.putShort((short)entry.method).putShort((short)dosTime).putShort((short)dosDate).putInt((int)entry.crc)
+		.putInt((int)(zip64 ? ZIP64_LIMIT : entry.compressedSize)).putInt((int)(zip64 ? ZIP64_LIMIT : entry.size))
+		.putShort((short)entry.name.length).putShort((short)(zip64 ? 20 : 0)).put(entry.name);
+		if (zip64)
+			buffer.putShort((short)1).putShort((short)16).putLong(entry.size).putLong(entry.compressedSize);
+
+		write(buffer);
+		out.write(data, 0, length);
+		offset += length;
+		entries.add(entry);
+	}
+
+	private void writeCentralHeader(Entry entry) throws IOException {
+		int extraLength = (entry.size >= ZIP64_LIMIT ? 8 : 0) + (entry.compressedSize >= ZIP64_LIMIT ? 8 : 0) + (entry.offset >= ZIP64_LIMIT ? 8 : 0);
+		if (extraLength > 0)
+			extraLength += 4;
+
+		ByteBuffer buffer = allocate(46 + entry.name.length + extraLength);
+		buffer.putInt(CENTRAL_HEADER_SIGNATURE).putShort((short)45).putShort((short)(extraLength > 0 ? 45 : 20))
+		.putShort((short)UTF8_FLAG).putShort((short)entry.method).putShort((short)dosTime).putShort((short)dosDate)
+		.putInt((int)entry.crc).putInt((int)Math.min(entry.compressedSize, ZIP64_LIMIT)).putInt((int)Math.min(entry.size, ZIP64_LIMIT))
+		.putShort((short)entry.name.length).putShort((short)extraLength).putShort((short)0).putShort((short)0)
+		.putShort((short)0).putInt(0).putInt((int)Math.min(entry.offset, ZIP64_LIMIT)).put(entry.name);
+
+		if (extraLength > 0) {
+			buffer.putShort((short)1).putShort((short)(extraLength - 4));
+			if (entry.size >= ZIP64_LIMIT)
+				buffer.putLong(entry.size);
+			if (entry.compressedSize >= ZIP64_LIMIT)
+				buffer.putLong(entry.compressedSize);
+			if (entry.offset >= ZIP64_LIMIT)
+				buffer.putLong(entry.offset);
+		}
+
+		write(buffer);
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		out.write(buffer.array(), 0, buffer.position());
+		offset += buffer.position();
+	}
+
+	private ByteBuffer allocate(int capacity) {
+		return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private ExposedByteArrayOutputStream deflate(byte[] content) {
+		ExposedByteArrayOutputStream compressed = new ExposedByteArrayOutputStream(Math.max(content.length / 2, 64));
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			byte[] buffer = new byte[Math.min(Math.max(content.length, 64), BUFFER_SIZE)];
+			deflater.setInput(content);
+			deflater.finish();
+			while (!deflater.finished()) {
+				int length = deflater.deflate(buffer);
+				compressed.write(buffer, 0, length);
+			}
+		} finally {
+			deflater.end();
+		}
+
+		return compressed;
+	}
+
+	private boolean isCompressed(String name) {
+		String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+		return lowerCaseName.endsWith(".jpg") || lowerCaseName.endsWith(".jpeg") || lowerCaseName.endsWith(".png")
+				|| lowerCaseName.endsWith(".gif") || lowerCaseName.endsWith(".glb") || lowerCaseName.endsWith(".kmz");
+	}
+
+	private static final class Entry {
+		private final byte[] name;
+		private final int method;
+		private long crc;
+		private long size;
+		private long compressedSize;
+		private long offset;
+
+		private Entry(String name, int method, long crc, long size, long compressedSize) {
+			this.name = name.getBytes(CHARSET);
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.compressedSize = compressedSize;
+		}
+	}
+
+	private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+		private ExposedByteArrayOutputStream(int size) {
+			super(size);
+		}
+
+		private byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	private final class DocumentStream extends OutputStream {
+		private final Entry entry;
+		private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		private final CRC32 crc = new CRC32();
+		private final ExposedByteArrayOutputStream compressed = new ExposedByteArrayOutputStream(BUFFER_SIZE);
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private long size;
+		private boolean finished;
+
+		private DocumentStream(String name) {
+			entry = new Entry(name, DEFLATED, 0, 0, 0);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{ (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (finished)
+				throw new IOException("The root document has already been closed.");
+
+			crc.update(b, off, len);
+			size += len;
+			deflater.setInput(b, off, len);
+			while (!deflater.needsInput())
+				drain();
+		}
+
+		@Override
+		public void close() {
+			// the document is completed when the archive is closed
+		}
+
+		private void finish() {
+			if (finished)
+				return;
+
+			deflater.finish();
+			while (!deflater.finished())
+				drain();
+
+			deflater.end();
+			entry.crc = crc.getValue();
+			entry.size = size;
+			entry.compressedSize = compressed.size();
+			finished = true;
+		}
+
+		private void drain() {
+			int length = deflater.deflate(buffer);
+			compressed.write(buffer, 0, length);
+		}
+	}
+
+}
@@ -0,0 +1,654 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.citydb.textureAtlas.TextureAtlasCreator;
+import org.citydb.textureAtlas.image.ImageProcessor;
+import org.citydb.textureAtlas.model.AtlasRegion;
+import org.citydb.textureAtlas.model.TextureAtlas;
+import org.citydb.textureAtlas.model.TextureImage;
+import org.citydb.textureAtlas.packer.Packer;
+
+/**
+ * Packs the texture images of a KML/COLLADA model into texture atlases and
+ * rescales texture images. The work is carried out on a dedicated, bounded 
+ * thread pool, so the number of atlases being drawn at the same time does not 
+ * depend on the number of database export workers. Texture coordinates are 
+ * exchanged as arrays of s and t values per surface and are adapted in place; 
+ * vertices without texture coordinates are marked by NaN.
+ * 
+ * Packed atlases are kept in a bounded cache and are reused for every 
+ * model that refers to the same set of texture images.
+ */
+public class TextureAtlasGenerator {
+	public static final int ATLAS_MAX_WIDTH = 1024;
+	public static final int ATLAS_MAX_HEIGHT = 1024;
+	public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+	private final ThreadPoolExecutor imagePool;
+	private final Semaphore imagePoolPermits;
+	private final LinkedHashMap<String, PackedAtlas> atlasCache;
+	private final long maxCacheSize;
+	private long cacheSize;
+
+	public TextureAtlasGenerator(int poolSize, long maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+		atlasCache = new LinkedHashMap<String, PackedAtlas>(16, 0.75f, true);
+
+		// callers wait for a free slot instead of running the task on their own thread
+		imagePoolPermits = new Semaphore(poolSize * 2);
+
+		final AtomicInteger threadCounter = new AtomicInteger();
+		imagePool = new ThreadPoolExecutor(poolSize, 
+				poolSize, 
+				0L, 
+				TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>(poolSize * 2), 
+				new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "kml_image_pool-" + threadCounter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	public void createTextureAtlas(final HashMap<Long, String> texImageUris,
+			final HashMap<String, TextureImage> texImages,
+			final HashMap<Long, double[]> texCoords,
+			final HashMap<String, Long> texImageIds,
+			final int packingAlgorithm, 
+			final double scaleFactor, 
+			final boolean usePOTS) throws IOException {
+		execute(new Callable<Void>() {
+			public Void call() throws Exception {
+				new AtlasBuilder(texImageUris, texImages, texCoords, texImageIds, packingAlgorithm, scaleFactor, usePOTS).build();
+				return null;
+			}
+		});
+	}
+
+	public void resizeImages(final HashMap<String, TextureImage> texImages, final double factor) throws IOException {
+		execute(new Callable<Void>() {
+			public Void call() throws Exception {
+				for (Map.Entry<String, TextureImage> entry : texImages.entrySet()) {
+					BufferedImage imageToResize = entry.getValue().getBufferedImage();
+					if (imageToResize.getWidth()*factor < 1 || imageToResize.getHeight()*factor < 1) {
+						continue;
+					}
+					BufferedImage resizedImage = getScaledInstance(imageToResize,
+							(int)(imageToResize.getWidth()*factor),
+							(int)(imageToResize.getHeight()*factor),
+							RenderingHints.VALUE_INTERPOLATION_BILINEAR,
+							true);
+					entry.setValue(new TextureImage(resizedImage));
+				}
+
+				return null;
+			}
+		});
+	}
+
+	public void shutdown() {
+		// tasks that never started must not block their callers
+		for (Runnable runnable : imagePool.shutdownNow()) {
+			if (runnable instanceof Future)
+				((Future<?>)runnable).cancel(false);
+		}
+
+		synchronized (atlasCache) {
+			atlasCache.clear();
+			cacheSize = 0;
+		}
+	}
+
+	private void execute(final Callable<Void> task) throws IOException {
+		try {
+			// the caller runs the task itself once the pool has been shut down
+			if (imagePool.isShutdown())
+				task.call();
+			else {
+				imagePoolPermits.acquire();
+
+				Future<Void> future = null;
+				try {
+					future = imagePool.submit(new Callable<Void>() {
+						public Void call() throws Exception {
+							try {
+								return task.call();
+							} finally {
+								imagePoolPermits.release();
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					imagePoolPermits.release();
+				}
+
+				if (future != null)
+					future.get();
+				else
+					task.call();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for texture processing.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException)cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new IOException(cause);
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	private PackedAtlas getCachedAtlas(String key) {
+		synchronized (atlasCache) {
+			return atlasCache.get(key);
+		}
+	}
+
+	private void putCachedAtlas(String key, PackedAtlas packedAtlas) {
+		if (packedAtlas.size > maxCacheSize)
+			return;
+
+		synchronized (atlasCache) {
+			PackedAtlas previous = atlasCache.put(key, packedAtlas);
+			if (previous != null)
+				cacheSize -= previous.size;
+
+			cacheSize += packedAtlas.size;
+			Iterator<PackedAtlas> iter = atlasCache.values().iterator();
+			while (cacheSize > maxCacheSize && iter.hasNext()) {
+				cacheSize -= iter.next().size;
+				iter.remove();
+			}
+		}
+	}
+
+	private final class AtlasBuilder {
+		private final HashMap<Long, String> texImageUris;
+		private final HashMap<String, TextureImage> texImages;
+		private final HashMap<Long, double[]> texCoords;
+		private final HashMap<String, Long> texImageIds;
+		private final int packingAlgorithm;
+		private final double scaleFactor;
+		private final boolean usePOTS;
+
+		// key is the image name in the output format
+		private final LinkedHashMap<String, List<Long>> surfacesByImage = new LinkedHashMap<String, List<Long>>();
+		private final HashMap<String, Long> imageIds = new HashMap<String, Long>();
+		private final HashMap<String, Boolean> usable = new HashMap<String, Boolean>();
+
+		private AtlasBuilder(HashMap<Long, String> texImageUris,
+				HashMap<String, TextureImage> texImages,
+				HashMap<Long, double[]> texCoords,
+				HashMap<String, Long> texImageIds,
+				int packingAlgorithm, 
+				double scaleFactor, 
+				boolean usePOTS) {
+			this.texImageUris = texImageUris;
+			this.texImages = texImages;
+			this.texCoords = texCoords;
+			this.texImageIds = texImageIds;
+			this.packingAlgorithm = packingAlgorithm >= TextureAtlasCreator.BASIC && packingAlgorithm <= TextureAtlasCreator.TPIM_WO_ROTATION ?
+					packingAlgorithm : TextureAtlasCreator.BASIC;
+			this.scaleFactor = scaleFactor;
+			this.usePOTS = usePOTS;
+		}
+
+		private void build() {
+			HashMap<String, String> renamedImages = new HashMap<String, String>();
+
+			// step 1: convert image names to the output format and index surfaces by image
+			for (Map.Entry<Long, String> entry : texImageUris.entrySet()) {
+				String texImageUri = entry.getValue();
+				String imageName = renamedImages.get(texImageUri);
+
+				if (imageName == null) {
+					TextureImage texImage = texImages.get(texImageUri);
+					if (texImage == null || texImage.getBufferedImage() == null)
+						continue;
+
+					int extIndex = texImageUri.lastIndexOf('.');
+					imageName = (extIndex != -1 ? texImageUri.substring(0, extIndex) : texImageUri) 
+							+ (texImage.getChannels() == 3 ? ".jpeg" : ".png");
+
+					texImages.remove(texImageUri);
+					texImages.put(imageName, texImage);
+					renamedImages.put(texImageUri, imageName);
+
+					Long texImageId = texImageIds != null ? texImageIds.get(texImageUri) : null;
+					if (texImageId != null)
+						imageIds.put(imageName, texImageId);
+
+					surfacesByImage.put(imageName, new ArrayList<Long>());
+					usable.put(imageName, Boolean.TRUE);
+				}
+
+				entry.setValue(imageName);
+				surfacesByImage.get(imageName).add(entry.getKey());
+
+				// an image is only packed if all of its surfaces have valid texture coordinates
+				if (!checkTexCoords(texCoords.get(entry.getKey())))
+					usable.put(imageName, Boolean.FALSE);
+			}
+
+			// step 2: reuse a cached atlas for the same set of images
+			String key = getCacheKey();
+			if (key != null) {
+				PackedAtlas packedAtlas = getCachedAtlas(key);
+				if (packedAtlas != null) {
+					for (String imageName : surfacesByImage.keySet()) {
+						Placement placement = packedAtlas.placements.get(imageIds.get(imageName));
+						if (placement != null)
+							applyPlacement(imageName, placement, packedAtlas.names[placement.atlas]);
+						else
+							rescale(imageName);
+					}
+
+					for (int i = 0; i < packedAtlas.names.length; i++)
+						texImages.put(packedAtlas.names[i], new TextureImage(packedAtlas.images[i]));
+
+					return;
+				}
+			}
+
+			// step 3: rescale images and add them to the packers
+			Packer rgbPacker = new Packer(ATLAS_MAX_WIDTH, ATLAS_MAX_HEIGHT, packingAlgorithm, false);
+			Packer rgbaPacker = new Packer(ATLAS_MAX_WIDTH, ATLAS_MAX_HEIGHT, packingAlgorithm, true);
+
+			for (String imageName : surfacesByImage.keySet()) {
+				BufferedImage image = rescale(imageName);
+				if (!usable.get(imageName))
+					continue;
+
+				if (!fitsIntoAtlas(image)) {
+					image = ImageProcessor.rescale(image, ATLAS_MAX_WIDTH, ATLAS_MAX_HEIGHT);
+					if (image == null || !fitsIntoAtlas(image)) {
+						usable.put(imageName, Boolean.FALSE);
+						continue;
+					}
+
+					texImages.put(imageName, new TextureImage(image));
+				}
+
+				TextureImage texImage = texImages.get(imageName);
+				if (texImage.getChannels() == 3)
+					rgbPacker.addRegion(imageName, texImage.getWidth(), texImage.getHeight());
+				else
+					rgbaPacker.addRegion(imageName, texImage.getWidth(), texImage.getHeight());
+			}
+
+			List<TextureAtlas> atlases = new ArrayList<TextureAtlas>(2);
+			if (rgbPacker.getRegions() > 0)
+				atlases.add(pack(rgbPacker));
+			if (rgbaPacker.getRegions() > 0)
+				atlases.add(pack(rgbaPacker));
+
+			// step 4: draw atlases and adapt texture coordinates
+			String prefix = "textureAtlas_" + Integer.toHexString(key != null ? key.hashCode() : System.identityHashCode(this)) + "_";
+			List<String> names = new ArrayList<String>();
+			List<BufferedImage> images = new ArrayList<BufferedImage>();
+			HashMap<Long, Placement> placements = new HashMap<Long, Placement>();
+			long size = 0;
+
+			for (TextureAtlas atlas : atlases) {
+				if (atlas == null || Math.min(atlas.getBindingBoxWidth(), atlas.getBindingBoxHeight()) < 1)
+					continue;
+
+				boolean fourChannels = atlas.hasFourChannels();
+				String extension = fourChannels ? "png" : "jpeg";
+				int width = Math.min(getMinCoveredPOT(atlas.getBindingBoxWidth()), ATLAS_MAX_WIDTH);
+				int height = Math.min(getMinCoveredPOT(atlas.getBindingBoxHeight()), ATLAS_MAX_HEIGHT);
+				int type = fourChannels ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+				BufferedImage canvas = null;
+				Graphics2D graphics = null;
+				List<AtlasRegion> drawnRegions = new ArrayList<AtlasRegion>();
+				int level = -1;
+				int maxX = 0;
+				int maxY = 0;
+
+				for (AtlasRegion region : atlas.getRegions()) {
+					if (region.level != level) {
+						if (canvas != null) {
+							flush(prefix + names.size() + '.' + extension, canvas, maxX, maxY, drawnRegions, names, images, placements);
+							graphics.dispose();
+						}
+
+						canvas = new BufferedImage(width, height, type);
+						graphics = canvas.createGraphics();
+						size += (long)width * height * 4;
+						drawnRegions.clear();
+						maxX = 0;
+						maxY = 0;
+						level = region.level;
+					}
+
+					BufferedImage image = texImages.get(region.texImageName).getBufferedImage();
+					if (region.isRotated)
+						image = ImageProcessor.rotate(image);
+
+					graphics.drawImage(image, region.x, region.y, null);
+					drawnRegions.add(region);
+					maxX = Math.max(maxX, region.x + region.width);
+					maxY = Math.max(maxY, region.y + region.height);
+				}
+
+				if (canvas != null) {
+					if (maxX > 0 || maxY > 0)
+						flush(prefix + names.size() + '.' + extension, canvas, maxX, maxY, drawnRegions, names, images, placements);
+
+					graphics.dispose();
+				}
+			}
+
+			for (int i = 0; i < names.size(); i++)
+				texImages.put(names.get(i), new TextureImage(images.get(i)));
+
+			if (key != null && !names.isEmpty()) {
+				putCachedAtlas(key, new PackedAtlas(names.toArray(new String[names.size()]), 
+						images.toArray(new BufferedImage[images.size()]),
+						placements,
+						size));
+			}
+		}
+
+		private void flush(String name, 
+				BufferedImage canvas, 
+				int maxX, 
+				int maxY, 
+				List<AtlasRegion> drawnRegions, 
+				List<String> names,
+				List<BufferedImage> images,
+				HashMap<Long, Placement> placements) {
+			int atlasWidth = getMinCoveredPOT(maxX);
+			int atlasHeight = getMinCoveredPOT(maxY);
+			int atlas = names.size();
+
+			names.add(name);
+			images.add(canvas.getSubimage(0, 0, atlasWidth, atlasHeight));
+
+			for (AtlasRegion region : drawnRegions) {
+				Placement placement = new Placement(atlas, region.x, region.y, region.width, region.height, 
+						region.isRotated, atlasWidth, atlasHeight);
+
+				Long texImageId = imageIds.get(region.texImageName);
+				if (texImageId != null)
+					placements.put(texImageId, placement);
+
+				applyPlacement(region.texImageName, placement, name);
+			}
+		}
+
+		private void applyPlacement(String imageName, Placement placement, String atlasName) {
+			for (Long surfaceId : surfacesByImage.get(imageName)) {
+				double[] coords = texCoords.get(surfaceId);
+				for (int i = 0; i < coords.length; i += 2) {
+					double s = coords[i];
+					double t = coords[i + 1];
+					if (Double.isNaN(s))
+						continue;
+
+					if (placement.rotated) {
+						double tmp = s;
+						s = 1 - t;
+						t = tmp;
+					}
+
+					coords[i] = (placement.x + s * placement.width) / placement.atlasWidth;
+					coords[i + 1] = 1 - ((1 - t) * placement.height + placement.y) / placement.atlasHeight;
+				}
+
+				texImageUris.put(surfaceId, atlasName);
+			}
+
+			texImages.remove(imageName);
+		}
+
+		private BufferedImage rescale(String imageName) {
+			TextureImage texImage = texImages.get(imageName);
+			BufferedImage image = texImage.getBufferedImage();
+			if (scaleFactor != 1) {
+				image = ImageProcessor.rescale(image, scaleFactor);
+				texImages.put(imageName, new TextureImage(image));
+			}
+
+			return image;
+		}
+
+		private String getCacheKey() {
+			ArrayList<Long> ids = new ArrayList<Long>();
+			for (String imageName : surfacesByImage.keySet()) {
+				if (!usable.get(imageName))
+					continue;
+
+				Long texImageId = imageIds.get(imageName);
+				if (texImageId == null)
+					return null;
+
+				ids.add(texImageId);
+			}
+
+			if (ids.size() < 2)
+				return null;
+
+			Long[] sorted = ids.toArray(new Long[ids.size()]);
+			Arrays.sort(sorted);
+
+			StringBuilder key = new StringBuilder();
+			key.append(packingAlgorithm).append('_').append(scaleFactor).append('_').append(usePOTS);
+			for (Long id : sorted)
+				key.append('_').append(id);
+
+			return key.toString();
+		}
+
+		private boolean checkTexCoords(double[] coords) {
+			if (coords == null)
+				return false;
+
+			boolean hasTexCoords = false;
+			for (int i = 0; i < coords.length; i += 2) {
+				if (Double.isNaN(coords[i]))
+					continue;
+
+				if (coords[i] < -0.1 || coords[i] > 1.1 
+						|| coords[i + 1] < -0.1 || coords[i + 1] > 1.1)
+					return false;
+
+				hasTexCoords = true;
+			}
+
+			return hasTexCoords;
+		}
+
+		private boolean fitsIntoAtlas(BufferedImage image) {
+			return image.getWidth() <= ATLAS_MAX_WIDTH && image.getHeight() <= ATLAS_MAX_HEIGHT;
+		}
+
+		private TextureAtlas pack(Packer packer) {
+			packer.setBinSize(ATLAS_MAX_WIDTH, ATLAS_MAX_HEIGHT);
+			return packer.pack(usePOTS);
+		}
+
+		private int getMinCoveredPOT(int size) {
+			if (!usePOTS)
+				return size;
+
+			int pot = 1;
+			while (pot < size)
+				pot <<= 1;
+
+			return pot;
+		}
+	}
+
+	/**
+	 * Convenience method that returns a scaled instance of the
+	 * provided {@code BufferedImage}.
+	 *
+	 * @param img the original image to be scaled
+	 * @param targetWidth the desired width of the scaled instance,
+	 *    in pixels
+	 * @param targetHeight the desired height of the scaled instance,
+	 *    in pixels
+	 * @param hint one of the rendering hints that corresponds to
+	 *    {@code RenderingHints.KEY_INTERPOLATION} (e.g.
+	 *    {@code RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR},
+	 *    {@code RenderingHints.VALUE_INTERPOLATION_BILINEAR},
+	 *    {@code RenderingHints.VALUE_INTERPOLATION_BICUBIC})
+	 * @param higherQuality if true, this method will use a multi-step
+	 *    scaling technique that provides higher quality than the usual
+	 *    one-step technique (only useful in downscaling cases, where
+	 *    {@code targetWidth} or {@code targetHeight} is
+	 *    smaller than the original dimensions, and generally only when
+	 *    the {@code BILINEAR} hint is specified)
+	 * @return a scaled version of the original {@code BufferedImage}
+	 */
+	private static BufferedImage getScaledInstance(BufferedImage img,
+			int targetWidth,
+			int targetHeight,
+			Object hint,
+			boolean higherQuality) {
+
+		int type = (img.getTransparency() == Transparency.OPAQUE) ?
+				BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+		BufferedImage ret = img;
+		int w, h;
+		if (higherQuality) {
+			// Use multi-step technique: start with original size, then
+			// scale down in multiple passes with drawImage()
+			// until the target size is reached
+			w = img.getWidth();
+			h = img.getHeight();
+		} 
+		else {
+			// Use one-step technique: scale directly from original
+			// size to target size with a single drawImage() call
+			w = targetWidth;
+			h = targetHeight;
+		}
+
+		do {
+			if (higherQuality && w > targetWidth) {
+				w /= 2;
+				if (w < targetWidth) {
+					w = targetWidth;
+				}
+			}
+
+			if (higherQuality && h > targetHeight) {
+				h /= 2;
+				if (h < targetHeight) {
+					h = targetHeight;
+				}
+			}
+
+			BufferedImage tmp = new BufferedImage(w, h, type);
+			Graphics2D g2 = tmp.createGraphics();
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, hint);
+			g2.drawImage(ret, 0, 0, w, h, null);
+			g2.dispose();
+
+			ret = tmp;
+		}
+		while (w != targetWidth || h != targetHeight);
+
+		return ret;
+	}
+
+	private static final class PackedAtlas {
+		private final String[] names;
+		private final BufferedImage[] images;
+		// key is the database id of the texture image
+		private final HashMap<Long, Placement> placements;
+		private final long size;
+
+		private PackedAtlas(String[] names, BufferedImage[] images, HashMap<Long, Placement> placements, long size) {
+			this.names = names;
+			this.images = images;
+			this.placements = placements;
+			this.size = size;
+		}
+	}
+
+	private static final class Placement {
+		private final int atlas;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+		private final boolean rotated;
+		private final int atlasWidth;
+		private final int atlasHeight;
+
+		private Placement(int atlas, int x, int y, int width, int height, boolean rotated, int atlasWidth, int atlasHeight) {
+			this.atlas = atlas;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.rotated = rotated;
+			this.atlasWidth = atlasWidth;
+			this.atlasHeight = atlasHeight;
+		}
+	}
+
+}
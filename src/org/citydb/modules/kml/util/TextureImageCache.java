@@ -0,0 +1,244 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.citydb.database.adapter.BlobExportAdapter;
+import org.citydb.textureAtlas.image.ImageReader;
+import org.citydb.textureAtlas.model.TextureImage;
+
+/**
+ * Caches texture images read from the TEX_IMAGE table by their database id, 
+ * both as raw bytes and as decoded images, so that textures shared by many 
+ * city objects are read and decoded only once per export. The cache is shared 
+ * by all export workers and bounded by the estimated size of its content in 
+ * bytes; least recently used images are evicted first. Concurrent requests for 
+ * an image that is currently being loaded wait for the result instead of 
+ * loading it again.
+ * 
+ * Cached images are shared between city objects and must not be modified.
+ */
+public class TextureImageCache {
+	public static final long DEFAULT_CACHE_SIZE = 128L * 1024 * 1024;
+
+	private final LinkedHashMap<Long, CachedImage> cache;
+	private final ConcurrentHashMap<Long, FutureTask<byte[]>> loadingImages;
+	private final ConcurrentHashMap<Long, FutureTask<TextureImage>> decodingImages;
+	private final long maxCacheSize;
+	private long cacheSize;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public TextureImageCache(long maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+		cache = new LinkedHashMap<Long, CachedImage>(16, 0.75f, true);
+		loadingImages = new ConcurrentHashMap<Long, FutureTask<byte[]>>();
+		decodingImages = new ConcurrentHashMap<Long, FutureTask<TextureImage>>();
+	}
+
+	public byte[] getImageBytes(final long texImageId, final String texImageUri, final BlobExportAdapter textureExportAdapter) throws SQLException {
+		CachedImage cachedImage = getCachedImage(texImageId);
+		if (cachedImage != null) {
+			hits.incrementAndGet();
+			return cachedImage.imageBytes;
+		}
+
+		FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+			public byte[] call() throws Exception {
+				// the image might have been added while this task was created
+				CachedImage cachedImage = getCachedImage(texImageId);
+				if (cachedImage != null)
+					return cachedImage.imageBytes;
+
+				byte[] imageBytes = textureExportAdapter.getInByteArray(texImageId, texImageUri);
+				if (imageBytes != null)
+					putImageBytes(texImageId, imageBytes);
+
+				return imageBytes;
+			}
+		});
+
+		FutureTask<byte[]> loadingImage = loadingImages.putIfAbsent(texImageId, task);
+		if (loadingImage == null) {
+			misses.incrementAndGet();
+			loadingImage = task;
+
+			try {
+				task.run();
+			} finally {
+				loadingImages.remove(texImageId, task);
+			}
+		} else
+			hits.incrementAndGet();
+
+		try {
+			return loadingImage.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException)e.getCause();
+
+			throw new SQLException("Failed to read texture image " + texImageUri + ".", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for texture image " + texImageUri + ".", e);
+		}
+	}
+
+	public TextureImage getTextureImage(final long texImageId, final byte[] imageBytes, final boolean supportRGB, final ImageReader imageReader) throws IOException {
+		final int mode = supportRGB ? 1 : 0;
+
+		CachedImage cachedImage = getCachedImage(texImageId);
+		if (cachedImage != null && cachedImage.imageBytes == imageBytes && cachedImage.isDecoded[mode]) {
+			hits.incrementAndGet();
+			return cachedImage.textureImages[mode];
+		}
+
+		FutureTask<TextureImage> task = new FutureTask<TextureImage>(new Callable<TextureImage>() {
+			public TextureImage call() throws Exception {
+				imageReader.setSupportRGB(supportRGB);
+				TextureImage textureImage = imageReader.read(new ByteArrayInputStream(imageBytes));
+				putTextureImage(texImageId, imageBytes, mode, textureImage);
+				return textureImage;
+			}
+		});
+
+		// decoded images are tracked per id and decoding mode
+		Long key = texImageId << 1 | mode;
+		FutureTask<TextureImage> decodingImage = decodingImages.putIfAbsent(key, task);
+		if (decodingImage == null) {
+			misses.incrementAndGet();
+			decodingImage = task;
+
+			try {
+				task.run();
+			} finally {
+				decodingImages.remove(key, task);
+			}
+		} else
+			hits.incrementAndGet();
+
+		try {
+			return decodingImage.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+
+			throw new IOException("Failed to decode texture image.", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for texture image.", e);
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public synchronized long getSize() {
+		return cacheSize;
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		cacheSize = 0;
+	}
+
+	private synchronized CachedImage getCachedImage(long texImageId) {
+		return cache.get(texImageId);
+	}
+
+	private synchronized void putImageBytes(long texImageId, byte[] imageBytes) {
+		CachedImage cachedImage = cache.get(texImageId);
+		if (cachedImage != null)
+			return;
+
+		cachedImage = new CachedImage(imageBytes);
+		cache.put(texImageId, cachedImage);
+		cacheSize += cachedImage.size;
+		evict();
+	}
+
+	private synchronized void putTextureImage(long texImageId, byte[] imageBytes, int mode, TextureImage textureImage) {
+		CachedImage cachedImage = cache.get(texImageId);
+		if (cachedImage == null || cachedImage.imageBytes != imageBytes || cachedImage.isDecoded[mode])
+			return;
+
+		cachedImage.textureImages[mode] = textureImage;
+		cachedImage.isDecoded[mode] = true;
+		if (textureImage != null) {
+			// decoded images are estimated with four bytes per pixel
+			long size = 4L * textureImage.getWidth() * textureImage.getHeight();
+			cachedImage.size += size;
+			cacheSize += size;
+			evict();
+		}
+	}
+
+	private void evict() {
+		// the most recently used image is always kept
+		Iterator<CachedImage> iter = cache.values().iterator();
+		while (cacheSize > maxCacheSize && cache.size() > 1) {
+			cacheSize -= iter.next().size;
+			iter.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private static final class CachedImage {
+		private final byte[] imageBytes;
+		private final TextureImage[] textureImages = new TextureImage[2];
+		private final boolean[] isDecoded = new boolean[2];
+		private long size;
+
+		private CachedImage(byte[] imageBytes) {
+			this.imageBytes = imageBytes;
+			size = imageBytes.length;
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TileManifestReader implements Closeable {
+	private final BufferedReader reader;
+	private final String settings;
+	private final long lastModification;
+
+	private String line;
+	private boolean hasTile;
+	private int tileRow;
+	private int tileColumn;
+
+	public TileManifestReader(File file) throws IOException {
+		reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), TileManifestWriter.CHARSET));
+
+		try {
+			if (!TileManifestWriter.HEADER.equals(reader.readLine()))
+				throw new IOException("Unsupported manifest file " + file.getName() + ".");
+
+			settings = getValue(reader.readLine(), TileManifestWriter.SETTINGS);
+			lastModification = Long.parseLong(getValue(reader.readLine(), TileManifestWriter.LAST_MODIFICATION));
+			line = reader.readLine();
+		} catch (IOException | NumberFormatException e) {
+			reader.close();
+			throw e instanceof IOException ? (IOException)e : new IOException("Invalid manifest file " + file.getName() + ".", e);
+		}
+	}
+
+	public String getSettings() {
+		return settings;
+	}
+
+	public long getLastModification() {
+		return lastModification;
+	}
+
+	public boolean nextTile() throws IOException {
+		// skip object entries of the current tile
+		while (line != null && !isTileEntry(line))
+			line = reader.readLine();
+
+		if (line == null)
+			return false;
+
+		String[] values = line.split("\t");
+		if (values.length != 4)
+			throw new IOException("Invalid tile entry in manifest file.");
+
+		try {
+			tileRow = Integer.parseInt(values[1]);
+			tileColumn = Integer.parseInt(values[2]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid tile entry in manifest file.", e);
+		}
+
+		line = reader.readLine();
+		hasTile = true;
+		return true;
+	}
+
+	public int getTileRow() {
+		return tileRow;
+	}
+
+	public int getTileColumn() {
+		return tileColumn;
+	}
+
+	public Map<Long, CityObject4JSON> readCityObjects() throws IOException {
+		Map<Long, CityObject4JSON> cityObjects = new LinkedHashMap<Long, CityObject4JSON>();
+
+		while (line != null && !isTileEntry(line)) {
+			String[] values = line.split("\t");
+			if (values.length != 6)
+				throw new IOException("Invalid object entry in manifest file.");
+
+			try {
+				CityObject4JSON cityObject = new CityObject4JSON(values[1]);
+				cityObject.setEnvelopeXmin(Double.parseDouble(values[2]));
+				cityObject.setEnvelopeYmin(Double.parseDouble(values[3]));
+				cityObject.setEnvelopeXmax(Double.parseDouble(values[4]));
+				cityObject.setEnvelopeYmax(Double.parseDouble(values[5]));
+				cityObject.setTileRow(tileRow);
+				cityObject.setTileColumn(tileColumn);
+				cityObjects.put(Long.parseLong(values[0]), cityObject);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid object entry in manifest file.", e);
+			}
+
+			line = reader.readLine();
+		}
+
+		return cityObjects;
+	}
+
+	public Map<Long, CityObject4JSON> readCityObjects(int row, int column) throws IOException {
+		// tiles are stored in the order of export, so the reader only has to move forward
+		while (!hasTile || tileRow < row || (tileRow == row && tileColumn < column)) {
+			if (!nextTile())
+				return new LinkedHashMap<Long, CityObject4JSON>();
+		}
+
+		if (tileRow == row && tileColumn == column)
+			return readCityObjects();
+
+		return new LinkedHashMap<Long, CityObject4JSON>();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private boolean isTileEntry(String line) {
+		return line.startsWith(TileManifestWriter.TILE + '\t');
+	}
+
+	private String getValue(String line, String key) throws IOException {
+		if (line == null || !line.startsWith(key + '\t'))
+			throw new IOException("Missing '" + key + "' entry in manifest file.");
+
+		return line.substring(key.length() + 1);
+	}
+
+}
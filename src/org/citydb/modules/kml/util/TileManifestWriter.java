@@ -0,0 +1,102 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Map.Entry;
+
+public class TileManifestWriter implements Closeable {
+	public static final String HEADER = "# 3D City Database KML/COLLADA/glTF export manifest";
+	public static final String SETTINGS = "settings";
+	public static final String LAST_MODIFICATION = "lastModification";
+	public static final String TILE = "tile";
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final File file;
+	private final File tmpFile;
+	private BufferedWriter writer;
+
+	public TileManifestWriter(File file, String settings, long lastModification) throws IOException {
+		this.file = file;
+		tmpFile = new File(file.getPath() + ".tmp");
+
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), CHARSET));
+		writer.write(HEADER);
+		writer.newLine();
+		writer.write(SETTINGS + '\t' + settings.replaceAll("[\r\n\t]", " "));
+		writer.newLine();
+		writer.write(LAST_MODIFICATION + '\t' + lastModification);
+		writer.newLine();
+	}
+
+	public void writeTile(int row, int column, Map<Long, CityObject4JSON> cityObjects) throws IOException {
+		if (cityObjects.isEmpty())
+			return;
+
+		writer.write(TILE + '\t' + row + '\t' + column + '\t' + cityObjects.size());
+		writer.newLine();
+
+		for (Entry<Long, CityObject4JSON> entry : cityObjects.entrySet()) {
+			CityObject4JSON cityObject = entry.getValue();
+			writer.write(String.valueOf(entry.getKey()));
+			writer.write('\t');
+			writer.write(cityObject.getGmlId());
+			writer.write('\t');
+			writer.write(cityObject.getEnvelopeXmin() + "\t" + cityObject.getEnvelopeYmin() + '\t' 
+					+ cityObject.getEnvelopeXmax() + '\t' + cityObject.getEnvelopeYmax());
+			writer.newLine();
+		}
+	}
+
+	public void commit() throws IOException {
+		writer.close();
+		writer = null;
+
+		// replace the previous manifest only after the new one is complete
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+			tmpFile.delete();
+		}
+	}
+
+}
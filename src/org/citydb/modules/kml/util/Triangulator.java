@@ -0,0 +1,41 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+public interface Triangulator {
+	/**
+	 * Triangulates a planar polygon given by its exterior ring followed by 
+	 * its interior rings. The closing point of a ring must not be repeated.
+	 * 
+	 * @param coordinates x, y and z values of all ring vertices
+	 * @param ringVertexCounts number of vertices of each ring, exterior ring first
+	 * @return the triangulated surface or null if the polygon cannot be 
+	 * triangulated by this implementation
+	 */
+	public TriangulatedSurface triangulate(double[] coordinates, int[] ringVertexCounts);
+}
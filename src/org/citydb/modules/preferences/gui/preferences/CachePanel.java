@@ -55,6 +55,7 @@ public class CachePanel extends AbstractPreferencesComponent {
 	private JPanel block1;
 	private JRadioButton useDatabase;
 	private JRadioButton useLocalCache;
+	private JRadioButton useOffHeap;
 	private JTextField localCachePath;
 	private JButton browseButton;
 	
@@ -69,6 +70,7 @@ public class CachePanel extends AbstractPreferencesComponent {
 
 		if (useDatabase.isSelected() != cache.isUseDatabase()) return true;
 		if (useLocalCache.isSelected() != cache.isUseLocal()) return true;
+		if (useOffHeap.isSelected() != cache.isUseOffHeap()) return true;
 		if (!localCachePath.getText().equals(cache.getLocalCachePath())) return true;
 		return false;
 	}
@@ -76,9 +78,11 @@ public class CachePanel extends AbstractPreferencesComponent {
 	private void initGui() {
 		useDatabase = new JRadioButton();
 		useLocalCache = new JRadioButton();
+		useOffHeap = new JRadioButton();
 		ButtonGroup cacheRadioGroup = new ButtonGroup();
 		cacheRadioGroup.add(useDatabase);
 		cacheRadioGroup.add(useLocalCache);
+		cacheRadioGroup.add(useOffHeap);
 		
 		localCachePath = new JTextField();
 		browseButton = new JButton();
@@ -103,13 +107,15 @@ public class CachePanel extends AbstractPreferencesComponent {
 			block1.setLayout(new GridBagLayout());
 			useDatabase.setIconTextGap(10);
 			useLocalCache.setIconTextGap(10);
+			useOffHeap.setIconTextGap(10);
 			localCachePath.setPreferredSize(localCachePath.getSize());
 			int lmargin = (int)(useDatabase.getPreferredSize().getWidth()) + 11;
 			{
 				block1.add(useDatabase, GuiUtil.setConstraints(0,0,1.0,1.0,GridBagConstraints.BOTH,0,5,0,5));
 				block1.add(useLocalCache, GuiUtil.setConstraints(0,1,1.0,1.0,GridBagConstraints.BOTH,0,5,0,5));
-				block1.add(localCachePath, GuiUtil.setConstraints(0,2,1.0,1.0,GridBagConstraints.BOTH,0,lmargin,5,5));
-				block1.add(browseButton, GuiUtil.setConstraints(1,2,0.0,0.0,GridBagConstraints.BOTH,0,5,5,5));
+				block1.add(useOffHeap, GuiUtil.setConstraints(0,2,1.0,1.0,GridBagConstraints.BOTH,0,5,0,5));
+				block1.add(localCachePath, GuiUtil.setConstraints(0,3,1.0,1.0,GridBagConstraints.BOTH,0,lmargin,5,5));
+				block1.add(browseButton, GuiUtil.setConstraints(1,3,0.0,0.0,GridBagConstraints.BOTH,0,5,5,5));
 			}
 		}
 		
@@ -121,11 +127,12 @@ public class CachePanel extends AbstractPreferencesComponent {
 		
 		useDatabase.addActionListener(cacheListener);
 		useLocalCache.addActionListener(cacheListener);
+		useOffHeap.addActionListener(cacheListener);
 	}
 	
 	private void setEnabledLocalCachePath() {
-		localCachePath.setEnabled(useLocalCache.isSelected());
-		browseButton.setEnabled(useLocalCache.isSelected());
+		localCachePath.setEnabled(useLocalCache.isSelected() || useOffHeap.isSelected());
+		browseButton.setEnabled(useLocalCache.isSelected() || useOffHeap.isSelected());
 	}
 	
 	@Override
@@ -133,6 +140,7 @@ public class CachePanel extends AbstractPreferencesComponent {
 		((TitledBorder)block1.getBorder()).setTitle(Language.I18N.getString("pref.general.cache.border"));
 		useDatabase.setText(Language.I18N.getString("pref.general.cache.label.useDatabase"));
 		useLocalCache.setText(Language.I18N.getString("pref.general.cache.label.useLocal"));
+		useOffHeap.setText(Language.I18N.getString("pref.general.cache.label.useOffHeap"));
 		browseButton.setText(Language.I18N.getString("common.button.browse"));		
 	}
 
@@ -141,6 +149,8 @@ public class CachePanel extends AbstractPreferencesComponent {
 		Cache cache = config.getProject().getGlobal().getCache();
 		if (cache.isUseDatabase())
 			useDatabase.setSelected(true);
+		else if (cache.isUseOffHeap())
+			useOffHeap.setSelected(true);
 		else
 			useLocalCache.setSelected(true);
 		
@@ -152,7 +162,12 @@ public class CachePanel extends AbstractPreferencesComponent {
 	public void setSettings() {		
 		Cache cache = config.getProject().getGlobal().getCache();
 		
-		cache.setCacheMode(useDatabase.isSelected() ? CacheMode.DATABASE : CacheMode.LOCAL);
+		if (useDatabase.isSelected())
+			cache.setCacheMode(CacheMode.DATABASE);
+		else if (useOffHeap.isSelected())
+			cache.setCacheMode(CacheMode.OFF_HEAP);
+		else
+			cache.setCacheMode(CacheMode.LOCAL);
 		cache.setLocalCachePath(localCachePath.getText());
 	}
 	